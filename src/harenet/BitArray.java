@@ -67,6 +67,90 @@ public class BitArray {
         return (data[bitIndex(b)] & (1 << (bitOffset(b)))) != 0;
     }
 
+    /**
+     * Copies the bits from the source into this array, starting at the supplied bit position.  The source
+     * bits are in the same order this array stores them in (the first bit is the lowest bit of the first byte).
+     * 
+     * @param position the zero based bit position to start at
+     * @param src the bits to copy
+     * @param offset the byte in the source to start copying from
+     * @param numberOfBits the number of bits to copy
+     */
+    public void setBits(int position, byte[] src, int offset, int numberOfBits) {
+        int numberOfBytes = numberOfBits / WORD_SIZE;
+        int leftOver = numberOfBits % WORD_SIZE;
+        
+        if(bitOffset(position) == 0) {
+            System.arraycopy(src, offset, this.data, bitIndex(position), numberOfBytes);
+        }
+        else {
+            for(int i = 0; i < numberOfBytes; i++) {
+                setWord(position + i * WORD_SIZE, src[offset + i], WORD_SIZE);
+            }
+        }
+        
+        if(leftOver > 0) {
+            setWord(position + numberOfBytes * WORD_SIZE, src[offset + numberOfBytes], leftOver);
+        }
+    }
+    
+    /**
+     * Copies the bits from this array into the destination, starting at the supplied bit position.
+     * 
+     * @see #setBits(int, byte[], int, int)
+     * @param position the zero based bit position to start at
+     * @param dst where to copy the bits to
+     * @param numberOfBits the number of bits to copy
+     */
+    public void getBits(int position, byte[] dst, int numberOfBits) {
+        int numberOfBytes = numberOfBits / WORD_SIZE;
+        int leftOver = numberOfBits % WORD_SIZE;
+        
+        if(bitOffset(position) == 0) {
+            System.arraycopy(this.data, bitIndex(position), dst, 0, numberOfBytes);
+        }
+        else {
+            for(int i = 0; i < numberOfBytes; i++) {
+                dst[i] = getWord(position + i * WORD_SIZE, WORD_SIZE);
+            }
+        }
+        
+        if(leftOver > 0) {
+            dst[numberOfBytes] = getWord(position + numberOfBytes * WORD_SIZE, leftOver);
+        }
+    }
+    
+    /**
+     * Sets up to a word of bits, which may straddle two elements
+     */
+    private void setWord(int position, byte value, int numberOfBits) {
+        int index = bitIndex(position);
+        int offset = bitOffset(position);
+        
+        int mask = ((1 << numberOfBits) - 1) << offset;
+        int bits = ((value & 0xFF) << offset) & mask;
+        
+        this.data[index] = (byte)((this.data[index] & ~mask) | bits);
+        if(offset + numberOfBits > WORD_SIZE) {
+            this.data[index + 1] = (byte)((this.data[index + 1] & ~(mask >>> WORD_SIZE)) | (bits >>> WORD_SIZE));
+        }
+    }
+    
+    /**
+     * Gets up to a word of bits, which may straddle two elements
+     */
+    private byte getWord(int position, int numberOfBits) {
+        int index = bitIndex(position);
+        int offset = bitOffset(position);
+        
+        int bits = (this.data[index] & 0xFF) >>> offset;
+        if(offset + numberOfBits > WORD_SIZE) {
+            bits |= (this.data[index + 1] & 0xFF) << (WORD_SIZE - offset);
+        }
+        
+        return (byte)(bits & ((1 << numberOfBits) - 1));
+    }
+    
     /**
      * Set the data directly
      * 
@@ -89,6 +173,19 @@ public class BitArray {
             data[i] = 0;
         }
     }
+    
+    /**
+     * Clears out the elements holding the first number of bits, the rest of
+     * the bits are left as is
+     * 
+     * @param numberOfBits
+     */
+    public void clear(int numberOfBits) {
+        int numberOfElements = Math.min((numberOfBits + WORD_SIZE - 1) / WORD_SIZE, data.length);
+        for(int i = 0; i < numberOfElements; i++) {
+            data[i] = 0;
+        }
+    }
         
     public void setAll() {
         for(int i = 0; i < data.length; i++) {
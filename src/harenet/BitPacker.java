@@ -69,11 +69,14 @@ public class BitPacker {
     }
     
     /**
-     * Clears the {@link BitPacker} so that it can be reused.
+     * Clears the {@link BitPacker} so that it can be reused.  Only the bits that
+     * have been used are cleared, as nothing is ever set past the number of bits
+     * in use.
+     * 
      * @return this object for method chaining
      */
     public BitPacker clear() {
-        this.data.clear();
+        this.data.clear(this.numBits);
         this.numBits = 0;
         this.position = 0;
         this.mark = 0;
@@ -242,6 +245,30 @@ public class BitPacker {
         return this;
     }
     
+    /**
+     * Copies the bits from the source, which must be in the same order this {@link BitPacker} stores
+     * them in (such as bits read out by {@link #getBits(byte[], int)})
+     * 
+     * @param src
+     * @param offset the byte in the source to start copying from
+     * @param numberOfBits
+     * @return this object for method chaining
+     */
+    public BitPacker putBits(byte[] src, int offset, int numberOfBits) {
+        if(this.position + numberOfBits > this.limit) {
+            throw new BufferOverflowException();
+        }
+        
+        data.setBits(this.position, src, offset, numberOfBits);
+        this.position += numberOfBits;
+        
+        if(this.position > numBits) {
+            numBits = this.position;
+        }
+        
+        return this;
+    }
+    
     public BitPacker putByte(byte value) {
         putByte(value, Byte.SIZE);
         return this;
@@ -494,6 +521,19 @@ public class BitPacker {
         return data.getBit(position++);
     }
 
+    /**
+     * Copies out the bits into the destination
+     * 
+     * @param dst
+     * @param numberOfBits
+     * @return the destination
+     */
+    public byte[] getBits(byte[] dst, int numberOfBits) {
+        data.getBits(this.position, dst, numberOfBits);
+        this.position += numberOfBits;
+        return dst;
+    }
+    
     public byte[] getBytes(int length) {
         byte[] output = new byte[length];
         return getBytes(output, 0, length);
@@ -629,6 +629,23 @@ public class ByteBufferIOBuffer implements IOBuffer {
         return packer.getBoolean();
     }
 
+    /* (non-Javadoc)
+     * @see harenet.IOBuffer#putBits(byte[], int, int)
+     */
+    @Override
+    public IOBuffer putBits(byte[] src, int offset, int numberOfBits) {
+        packer.putBits(src, offset, numberOfBits);
+        return this;
+    }
+
+    /* (non-Javadoc)
+     * @see harenet.IOBuffer#getBits(byte[], int)
+     */
+    @Override
+    public byte[] getBits(byte[] dst, int numberOfBits) {
+        return packer.getBits(dst, numberOfBits);
+    }
+
     /* (non-Javadoc)
      * @see harenet.IOBuffer#getByteBits()
      */
@@ -540,6 +540,23 @@ public class ByteCounterIOBuffer implements IOBuffer {
         return false;
     }
 
+    /* (non-Javadoc)
+     * @see harenet.IOBuffer#putBits(byte[], int, int)
+     */
+    @Override
+    public IOBuffer putBits(byte[] src, int offset, int numberOfBits) {
+        this.numberOfBits += numberOfBits;
+        return this;
+    }
+
+    /* (non-Javadoc)
+     * @see harenet.IOBuffer#getBits(byte[], int)
+     */
+    @Override
+    public byte[] getBits(byte[] dst, int numberOfBits) {
+        return dst;
+    }
+
     /* (non-Javadoc)
      * @see harenet.IOBuffer#getByteBits()
      */
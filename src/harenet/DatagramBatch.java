@@ -0,0 +1,104 @@
+/*
+ * see license.txt
+ */
+package harenet;
+
+import java.net.InetSocketAddress;
+
+/**
+ * A fixed ring of pooled packet buffers, used to receive (or send) a number of datagrams
+ * in one go rather than one at a time.
+ *
+ * @author Tony
+ *
+ */
+class DatagramBatch {
+    
+    private final IOBuffer[] buffers;
+    private final InetSocketAddress[] addresses;
+    private final Peer[] peers;
+    
+    private int size;
+    
+    /**
+     * @param batchSize the max number of datagrams held
+     * @param mtu the size of each of the buffers
+     * @param useDirectBuffers
+     */
+    DatagramBatch(int batchSize, int mtu, boolean useDirectBuffers) {
+        batchSize = Math.max(1, batchSize);
+        
+        this.buffers = new IOBuffer[batchSize];
+        this.addresses = new InetSocketAddress[batchSize];
+        this.peers = new Peer[batchSize];
+        
+        for(int i = 0; i < batchSize; i++) {
+            this.buffers[i] = useDirectBuffers ? IOBuffer.Factory.allocateDirect(mtu) :
+                                                 IOBuffer.Factory.allocate(mtu);
+            this.buffers[i].clear();
+        }
+    }
+    
+    /**
+     * @return the next free buffer, which is not part of the batch until it is added
+     */
+    IOBuffer nextBuffer() {
+        return this.buffers[this.size];
+    }
+    
+    /**
+     * Adds the buffer handed out by {@link #nextBuffer()} to the batch
+     *
+     * @param address the remote address of the datagram
+     * @param peer the peer the datagram is for, may be null
+     */
+    void add(InetSocketAddress address, Peer peer) {
+        this.addresses[this.size] = address;
+        this.peers[this.size] = peer;
+        this.size++;
+    }
+    
+    /**
+     * @return true if there is no room left in the batch
+     */
+    boolean isFull() {
+        return this.size >= this.buffers.length;
+    }
+    
+    /**
+     * @return the number of datagrams in the batch
+     */
+    int size() {
+        return this.size;
+    }
+    
+    /**
+     * @return the max number of datagrams the batch can hold
+     */
+    int capacity() {
+        return this.buffers.length;
+    }
+    
+    IOBuffer getBuffer(int index) {
+        return this.buffers[index];
+    }
+    
+    InetSocketAddress getAddress(int index) {
+        return this.addresses[index];
+    }
+    
+    Peer getPeer(int index) {
+        return this.peers[index];
+    }
+    
+    /**
+     * Empties out the batch so that the buffers can be reused
+     */
+    void clear() {
+        for(int i = 0; i < this.size; i++) {
+            this.addresses[i] = null;
+            this.peers[i] = null;
+        }
+        this.size = 0;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * see license.txt
+ */
+package harenet;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A {@link PacketCodec} using deflate.  By default only Huffman coding is used, which is what
+ * packets have always been compressed with.
+ *
+ * @author Tony
+ *
+ */
+public class DeflatePacketCodec implements PacketCodec {
+    
+    private final Deflater deflater;
+    private final Inflater inflater;
+    private final byte[] dictionary;
+    
+    /**
+     */
+    public DeflatePacketCodec() {
+        this(Deflater.BEST_COMPRESSION, Deflater.HUFFMAN_ONLY, null);
+    }
+    
+    /**
+     * @param level the deflate compression level
+     * @param strategy the deflate strategy
+     * @param dictionary the preset dictionary, may be null
+     */
+    protected DeflatePacketCodec(int level, int strategy, byte[] dictionary) {
+        this.deflater = new Deflater(level);
+        this.deflater.setStrategy(strategy);
+        this.inflater = new Inflater();
+        this.dictionary = dictionary;
+    }
+    
+    /* (non-Javadoc)
+     * @see harenet.PacketCodec#getId()
+     */
+    @Override
+    public int getId() {
+        return DEFLATE;
+    }
+    
+    /* (non-Javadoc)
+     * @see harenet.PacketCodec#getName()
+     */
+    @Override
+    public String getName() {
+        return "deflate";
+    }
+    
+    /* (non-Javadoc)
+     * @see harenet.PacketCodec#encode(byte[], int, int, byte[], int, int)
+     */
+    @Override
+    public int encode(byte[] src, int srcOffset, int srcLength, byte[] dest, int destOffset, int destLength) {
+        this.deflater.reset();
+        if(this.dictionary != null) {
+            this.deflater.setDictionary(this.dictionary);
+        }
+        
+        this.deflater.setInput(src, srcOffset, srcLength);
+        this.deflater.finish();
+        
+        /* the first call after the level or strategy has been set may
+         * return early, so keep going until it's done or out of space */
+        int len = 0;
+        do {
+            len += this.deflater.deflate(dest, destOffset + len, destLength - len);
+        }
+        while(!this.deflater.finished() && len < destLength);
+        
+        if(!this.deflater.finished()) {
+            return -1; /* not able to compress with the amount of space given */
+        }
+        
+        return len;
+    }
+    
+    /* (non-Javadoc)
+     * @see harenet.PacketCodec#decode(byte[], int, int, byte[], int, int)
+     */
+    @Override
+    public int decode(byte[] src, int srcOffset, int srcLength, byte[] dest, int destOffset, int destLength) {
+        this.inflater.reset();
+        this.inflater.setInput(src, srcOffset, srcLength);
+        
+        try {
+            int len = this.inflater.inflate(dest, destOffset, destLength);
+            if(len == 0 && this.inflater.needsDictionary()) {
+                
+                /* the dictionary is checked against the one used to encode the packet */
+                if(this.dictionary == null) {
+                    return -1;
+                }
+                
+                this.inflater.setDictionary(this.dictionary);
+                len = this.inflater.inflate(dest, destOffset, destLength);
+            }
+            
+            if(!this.inflater.finished()) {
+                return -1;
+            }
+            
+            return len;
+        }
+        catch(DataFormatException e) {
+            return -1;
+        }
+        catch(IllegalArgumentException e) {
+            /* the dictionary doesn't match */
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * see license.txt
+ */
+package harenet;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+
+/**
+ * A {@link PacketCodec} using deflate with a preset dictionary.  Game packets are small and
+ * highly repetitive from one packet to the next, but there isn't enough in a single packet for
+ * deflate to find the repetition.  The dictionary primes deflate with the byte sequences that are
+ * common across packets, so that they can be matched from the very first byte.
+ *
+ * <p>
+ * The dictionary is trained offline from captured packets (see {@link #train(List, int)} and
+ * {@link #main(String[])}); both ends must use the same dictionary.
+ *
+ * @author Tony
+ *
+ */
+public class DictionaryPacketCodec extends DeflatePacketCodec {
+    
+    /**
+     * The size of the byte sequences that are counted when training
+     */
+    private static final int GRAM_SIZE = 8;
+    
+    /**
+     * The size of the segments that are copied into the dictionary
+     */
+    private static final int SEGMENT_SIZE = 32;
+    
+    /**
+     * The default size of a trained dictionary.  Deflate has to hash the dictionary for each
+     * packet, so this is kept small.
+     */
+    public static final int DEFAULT_DICTIONARY_SIZE = 4 * 1024;
+    
+    /**
+     * @param dictionary
+     */
+    public DictionaryPacketCodec(byte[] dictionary) {
+        super(Deflater.BEST_SPEED, Deflater.DEFAULT_STRATEGY, dictionary);
+    }
+    
+    /* (non-Javadoc)
+     * @see harenet.DeflatePacketCodec#getId()
+     */
+    @Override
+    public int getId() {
+        return DICTIONARY;
+    }
+    
+    /* (non-Javadoc)
+     * @see harenet.DeflatePacketCodec#getName()
+     */
+    @Override
+    public String getName() {
+        return "dictionary";
+    }
+    
+    /**
+     * A candidate segment of the dictionary
+     */
+    private static class Segment {
+        int numberOfSamples;
+        int lastSample;
+        byte[] sample;
+        int offset;
+        int length;
+    }
+    
+    private static long gram(byte[] sample, int offset) {
+        long gram = 0;
+        for(int i = 0; i < GRAM_SIZE; i++) {
+            gram = (gram << 8) | (sample[offset + i] & 0xFF);
+        }
+        return gram;
+    }
+    
+    /**
+     * Trains a dictionary from the sample packets.  The byte sequences that show up in the most
+     * packets are picked, the most common ones are placed at the end of the dictionary as those
+     * are the cheapest for deflate to reference.
+     *
+     * @param samples the packets (without the protocol id and flags bytes)
+     * @param dictionarySize the max size of the dictionary
+     * @return the dictionary
+     */
+    public static byte[] train(List<byte[]> samples, int dictionarySize) {
+        Map<Long, Segment> segments = new HashMap<Long, Segment>();
+        for(int s = 0; s < samples.size(); s++) {
+            byte[] sample = samples.get(s);
+            for(int i = 0; i + GRAM_SIZE <= sample.length; i++) {
+                Long gram = gram(sample, i);
+                Segment segment = segments.get(gram);
+                if(segment == null) {
+                    segment = new Segment();
+                    segment.lastSample = -1;
+                    segment.sample = sample;
+                    segment.offset = i;
+                    segments.put(gram, segment);
+                }
+                
+                /* only count once per packet */
+                if(segment.lastSample != s) {
+                    segment.lastSample = s;
+                    segment.numberOfSamples++;
+                }
+            }
+        }
+        
+        List<Segment> candidates = new ArrayList<Segment>();
+        for(Segment segment : segments.values()) {
+            if(segment.numberOfSamples > 1) {
+                candidates.add(segment);
+            }
+        }
+        
+        Collections.sort(candidates, new Comparator<Segment>() {
+            @Override
+            public int compare(Segment a, Segment b) {
+                return b.numberOfSamples - a.numberOfSamples;
+            }
+        });
+        
+        /* pick the segments, skipping over ones already covered by a picked segment */
+        Set<Long> covered = new HashSet<Long>();
+        List<Segment> picked = new ArrayList<Segment>();
+        int size = 0;
+        for(Segment segment : candidates) {
+            if(size >= dictionarySize) {
+                break;
+            }
+            
+            if(covered.contains(gram(segment.sample, segment.offset))) {
+                continue;
+            }
+            
+            int length = Math.min(Math.min(SEGMENT_SIZE, segment.sample.length - segment.offset), dictionarySize - size);
+            for(int i = 0; i + GRAM_SIZE <= length; i++) {
+                covered.add(gram(segment.sample, segment.offset + i));
+            }
+            
+            segment.length = length;
+            picked.add(segment);
+            size += length;
+        }
+        
+        byte[] dictionary = new byte[size];
+        int position = 0;
+        for(int i = picked.size() - 1; i >= 0; i--) {
+            Segment segment = picked.get(i);
+            System.arraycopy(segment.sample, segment.offset, dictionary, position, segment.length);
+            position += segment.length;
+        }
+        
+        return dictionary;
+    }
+    
+    /**
+     * Reads in captured packets, stored as an int length followed by the bytes of the packet
+     *
+     * @param file
+     * @param samples the list to add the packets to
+     * @throws IOException
+     */
+    public static void readSamples(File file, List<byte[]> samples) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            while(true) {
+                int length = 0;
+                try {
+                    length = input.readInt();
+                }
+                catch(EOFException e) {
+                    break;
+                }
+                
+                byte[] sample = new byte[length];
+                input.readFully(sample);
+                samples.add(sample);
+            }
+        }
+        finally {
+            input.close();
+        }
+    }
+    
+    /**
+     * Trains a dictionary from captured packets.
+     *
+     * <pre>
+     * DictionaryPacketCodec [output file] [dictionary size] [capture files...]
+     * </pre>
+     *
+     * @param args
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        if(args.length < 3) {
+            System.out.println("<usage> DictionaryPacketCodec [output file] [dictionary size] [capture files...]");
+            return;
+        }
+        
+        List<byte[]> samples = new ArrayList<byte[]>();
+        for(int i = 2; i < args.length; i++) {
+            readSamples(new File(args[i]), samples);
+        }
+        
+        byte[] dictionary = train(samples, Integer.parseInt(args[1]));
+        
+        FileOutputStream output = new FileOutputStream(new File(args[0]));
+        try {
+            output.write(dictionary);
+        }
+        finally {
+            output.close();
+        }
+        
+        System.out.println("Trained a " + dictionary.length + " byte dictionary from " + samples.size() + " packets");
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * see license.txt
+ */
+package harenet;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import harenet.messages.FragmentMessage;
+import harenet.messages.Message;
+import harenet.messages.NetMessage;
+import harenet.messages.NetMessageFactory;
+import harenet.messages.ReliableNetMessage;
+
+/**
+ * Stitches {@link FragmentMessage}s received from a {@link Peer} back into the complete message.
+ *
+ * <p>
+ * The amount of memory partially received messages can take up is limited by {@link NetConfig#getMaxReassemblySize()}
+ * and {@link NetConfig#getMaxPendingReassemblySize()}; fragments of messages that go over these limits are dropped.  The
+ * buffers used to reassemble the messages are pooled.
+ *
+ * <p>
+ * Fragments are always sent reliably, so a partial message is only given up on once no fragment of it has been
+ * received for longer than the sender keeps resending (see {@link #timeout(long, long)}); by then the sender has
+ * given up on the missing fragments, and the message is lost.  Lost messages are counted and logged.
+ *
+ * <p>
+ * NOTE: This is only to be used from the network thread.
+ *
+ * @author Tony
+ *
+ */
+public class FragmentAssembler {
+    
+    private static final int MAX_POOLED_BUFFERS = 4;
+    
+    /**
+     * A message being reassembled
+     *
+     * @author Tony
+     *
+     */
+    private static class Reassembly {
+        int numberOfFragments;
+        int totalBits;
+        int numberOfReceived;
+        boolean[] received;
+        IOBuffer buffer;
+        long lastReceivedTime;
+        
+        int sizeInBytes() {
+            return (this.totalBits + 7) / 8;
+        }
+    }
+    
+    private final Log log;
+    private final NetMessageFactory messageFactory;
+    
+    private final int maxReassemblySize;
+    private final int maxPendingReassemblySize;
+    
+    private final Map<Integer, Reassembly> reassemblies;
+    private final Deque<IOBuffer> bufferPool;
+    
+    private int pendingSize;
+    private long numberOfDroppedFragments;
+    private long numberOfLostMessages;
+    
+    /**
+     * @param config
+     */
+    public FragmentAssembler(NetConfig config) {
+        this.log = config.getLog();
+        this.messageFactory = config.getMessageFactory();
+        this.maxReassemblySize = config.getMaxReassemblySize();
+        this.maxPendingReassemblySize = config.getMaxPendingReassemblySize();
+        
+        this.reassemblies = new HashMap<Integer, Reassembly>();
+        this.bufferPool = new ArrayDeque<IOBuffer>();
+    }
+    
+    /**
+     * Adds the received fragment
+     *
+     * @param fragment
+     * @param currentTime
+     * @return the complete message if this was the last missing fragment, otherwise null
+     */
+    public Message receive(FragmentMessage fragment, long currentTime) {
+        if(fragment.getData() == null) {
+            drop(fragment, "malformed fragment");
+            return null;
+        }
+        
+        Integer groupId = fragment.getGroupId();
+        Reassembly reassembly = this.reassemblies.get(groupId);
+        if(reassembly == null) {
+            int size = (fragment.getTotalBits() + 7) / 8;
+            if(size > this.maxReassemblySize) {
+                drop(fragment, "message too large: " + size + " bytes");
+                return null;
+            }
+            
+            if(this.pendingSize + size > this.maxPendingReassemblySize) {
+                drop(fragment, "too many partial messages: " + this.pendingSize + " bytes pending");
+                return null;
+            }
+            
+            reassembly = new Reassembly();
+            reassembly.numberOfFragments = fragment.getNumberOfFragments();
+            reassembly.totalBits = fragment.getTotalBits();
+            reassembly.received = new boolean[reassembly.numberOfFragments];
+            reassembly.buffer = obtainBuffer(size);
+            
+            this.reassemblies.put(groupId, reassembly);
+            this.pendingSize += size;
+        }
+        else if(reassembly.numberOfFragments != fragment.getNumberOfFragments() ||
+                reassembly.totalBits != fragment.getTotalBits()) {
+            drop(fragment, "fragment doesn't match the message");
+            return null;
+        }
+        
+        reassembly.lastReceivedTime = currentTime;
+        
+        int index = fragment.getFragmentIndex();
+        if(reassembly.received[index]) {
+            return null;
+        }
+        
+        reassembly.received[index] = true;
+        reassembly.numberOfReceived++;
+        
+        IOBuffer buffer = reassembly.buffer;
+        buffer.bitPosition(fragment.getBitOffset());
+        buffer.putBits(fragment.getData(), 0, fragment.getNumberOfBits());
+        
+        if(reassembly.numberOfReceived < reassembly.numberOfFragments) {
+            return null;
+        }
+        
+        remove(groupId, reassembly);
+        
+        buffer.bitPosition(0);
+        NetMessage netMessage = this.messageFactory.readNetMessage(buffer);
+        freeBuffer(buffer);
+        
+        ReliableNetMessage message = ReliableNetMessage.obtain(netMessage, (short)reassembly.sizeInBytes());
+        message.setMessageId(fragment.getMessageId());
+        message.setTimeReceived(currentTime);
+        return message;
+    }
+    
+    /**
+     * Throws away any partial messages that have not received a fragment in time.  The partial messages that
+     * are still receiving fragments are kept, no matter how long ago they were started.
+     *
+     * @param currentTime
+     * @param timeout this must be longer than the sender keeps resending a reliable message for, otherwise
+     * a message the sender is still sending could be thrown away
+     */
+    public void timeout(long currentTime, long timeout) {
+        if(this.reassemblies.isEmpty()) {
+            return;
+        }
+        
+        Iterator<Map.Entry<Integer, Reassembly>> it = this.reassemblies.entrySet().iterator();
+        while(it.hasNext()) {
+            Map.Entry<Integer, Reassembly> entry = it.next();
+            Reassembly reassembly = entry.getValue();
+            if(currentTime - reassembly.lastReceivedTime > timeout) {
+                it.remove();
+                this.pendingSize -= reassembly.sizeInBytes();
+                this.numberOfDroppedFragments += reassembly.numberOfReceived;
+                this.numberOfLostMessages++;
+                freeBuffer(reassembly.buffer);
+                
+                if(this.log.enabled()) {
+                    this.log.error("Lost message " + entry.getKey() + ", timed out after receiving "
+                                    + reassembly.numberOfReceived + " of " + reassembly.numberOfFragments + " fragments");
+                }
+            }
+        }
+    }
+    
+    /**
+     * Throws away all of the partial messages
+     */
+    public void clear() {
+        for(Reassembly reassembly : this.reassemblies.values()) {
+            freeBuffer(reassembly.buffer);
+        }
+        this.reassemblies.clear();
+        this.pendingSize = 0;
+    }
+    
+    /**
+     * @return the number of bytes held by partially received messages
+     */
+    public int getPendingSize() {
+        return pendingSize;
+    }
+    
+    /**
+     * @return the number of fragments that have been thrown away
+     */
+    public long getNumberOfDroppedFragments() {
+        return numberOfDroppedFragments;
+    }
+    
+    /**
+     * @return the number of partial messages that have been thrown away, because they timed out
+     */
+    public long getNumberOfLostMessages() {
+        return numberOfLostMessages;
+    }
+    
+    private void remove(Integer groupId, Reassembly reassembly) {
+        this.reassemblies.remove(groupId);
+        this.pendingSize -= reassembly.sizeInBytes();
+    }
+    
+    private void drop(FragmentMessage fragment, String reason) {
+        this.numberOfDroppedFragments++;
+        if(this.log.enabled()) {
+            this.log.error("Dropping fragment " + fragment.getFragmentIndex() + " of message "
+                            + fragment.getGroupId() + ": " + reason);
+        }
+    }
+    
+    private IOBuffer obtainBuffer(int size) {
+        Iterator<IOBuffer> it = this.bufferPool.iterator();
+        while(it.hasNext()) {
+            IOBuffer buffer = it.next();
+            if(buffer.capacity() >= size) {
+                it.remove();
+                return buffer;
+            }
+        }
+        
+        return IOBuffer.Factory.allocate(size);
+    }
+    
+    private void freeBuffer(IOBuffer buffer) {
+        buffer.clear();
+        if(this.bufferPool.size() >= MAX_POOLED_BUFFERS) {
+            this.bufferPool.pollFirst();
+        }
+        this.bufferPool.addLast(buffer);
+    }
+}
@@ -17,9 +17,11 @@ import harenet.messages.ConnectionRequestMessage;
 import harenet.messages.DisconnectMessage;
 import harenet.messages.HeartbeatMessage;
 import harenet.messages.Message;
+import harenet.messages.NetMessage;
 import harenet.messages.NetMessageFactory;
 import harenet.messages.PingMessage;
 import harenet.messages.PongMessage;
+import harenet.messages.SequencedNetMessage;
 import harenet.messages.ServerFullMessage;
 
 /**
@@ -44,7 +46,14 @@ public class Host {
     private InetSocketAddress receivedAddress;
     
     private NetConfig config;
-    private IOBuffer readBuffer, writeBuffer;
+    private IOBuffer writeBuffer;
+    
+    /* datagrams are received and sent out in batches */
+    private DatagramBatch receiveBatch, sendBatch;
+    private IOBuffer packetBuffer;
+    
+    private int numberOfPacketsSent, numberOfBytesSent;
+    private int numberOfPacketsReceived, numberOfBytesReceived;
     
     private Peer[] peers;
     private int maxConnections;
@@ -58,6 +67,17 @@ public class Host {
     private boolean isServer;
     private Peer localPeer;
     
+    /* the number of bytes the packet being built may take up,
+     * and if any messages didn't make it into it */
+    private int packetLimit;
+    private boolean messagesLeftOver;
+    
+    /* records the datagrams, may be null */
+    private PacketCapture capture;
+    
+    /* the time of the packet being replayed, when not bound to a socket */
+    private long replayTime;
+    
     /**
      * Listens for messages and {@link Peer} connection state events.
      * 
@@ -103,14 +123,7 @@ public class Host {
      * @throws IOException
      */
     public Host(NetConfig config, InetSocketAddress address) throws IOException {
-        this.config = config;
-        
-        log = config.getLog();
-        messageFactory = config.getMessageFactory();
-        
-        isServer = address != null;
-        
-        maxConnections = this.config.getMaxConnections();
+        this(config, address != null);
         
         datagramChannel = DatagramChannel.open();
         datagramChannel.configureBlocking(false);
@@ -119,10 +132,32 @@ public class Host {
 
         selector = Selector.open();
         datagramChannel.register(selector, SelectionKey.OP_READ);
-
-        readBuffer = config.useDirectBuffers() ? IOBuffer.Factory.allocateDirect(config.getMtu()) :
-                                                 IOBuffer.Factory.allocate(config.getMtu());
-        readBuffer.clear();
+        
+        if(config.getPacketCaptureFile() != null) {
+            capture = new PacketCapture(config.getPacketCaptureFile(), config.getMtu());
+        }
+    }
+    
+    /**
+     * Creates a {@link Host} which isn't bound to a socket, used to replay captured packets (see 
+     * {@link #replayPacket(InetSocketAddress, IOBuffer, long)}).  Its clock is driven by the 
+     * replayed packets, and anything it sends out is dropped.
+     * 
+     * @param config
+     * @param isServer
+     */
+    public Host(NetConfig config, boolean isServer) {
+        this.config = config;
+        
+        log = config.getLog();
+        messageFactory = config.getMessageFactory();
+        
+        this.isServer = isServer;
+        
+        maxConnections = this.config.getMaxConnections();
+        
+        receiveBatch = new DatagramBatch(config.getIOBatchSize(), config.getMtu(), config.useDirectBuffers());
+        sendBatch = new DatagramBatch(config.getIOBatchSize(), config.getMtu(), config.useDirectBuffers());
 
         writeBuffer = config.useDirectBuffers() ? IOBuffer.Factory.allocateDirect(config.getMtu()) :
                                                   IOBuffer.Factory.allocate(config.getMtu());
@@ -130,7 +165,58 @@ public class Host {
         
         peers = new Peer[config.getMaxConnections()];
         
-        protocol = new Protocol(config.getCompressionThreshold(), config.getMtu());
+        protocol = new Protocol(config.getCompressionThreshold(), config.getMtu(), 
+                                config.getPacketCodec(), config.getPacketDictionary());
+    }
+    
+    /**
+     * @return the time in msec, off of the wall clock, or if replaying captured packets the time
+     * of the packet being replayed
+     */
+    public long currentTime() {
+        return (datagramChannel != null) ? System.currentTimeMillis() : replayTime;
+    }
+    
+    /**
+     * @return the largest a message can be and still fit within a single packet
+     */
+    public int getMaxMessageSize() {
+        return config.getMtu() - protocol.size();
+    }
+    
+    /**
+     * @return the stats of the {@link PacketCodec} used to compress outgoing packets
+     */
+    public PacketCodecStats getPacketCodecStats() {
+        return protocol.getCodecStats(protocol.getCodec().getId());
+    }
+    
+    /**
+     * @return the number of packets sent out in the last update
+     */
+    public int getNumberOfPacketsSent() {
+        return numberOfPacketsSent;
+    }
+    
+    /**
+     * @return the number of bytes sent out in the last update
+     */
+    public int getNumberOfBytesSent() {
+        return numberOfBytesSent;
+    }
+    
+    /**
+     * @return the number of packets received in the last update
+     */
+    public int getNumberOfPacketsReceived() {
+        return numberOfPacketsReceived;
+    }
+    
+    /**
+     * @return the number of bytes received in the last update
+     */
+    public int getNumberOfBytesReceived() {
+        return numberOfBytesReceived;
     }
     
     /**
@@ -180,13 +266,17 @@ public class Host {
         
         this.numberOfConnections = 0;
         
-        if(datagramChannel.isOpen()) {
+        if(datagramChannel != null && datagramChannel.isOpen()) {
             try {datagramChannel.close(); } catch (IOException e) {}
         }
         
-        if(this.selector.isOpen()) {
+        if(this.selector != null && this.selector.isOpen()) {
             try { this.selector.close(); } catch (IOException e) {}
         }
+        
+        if(this.capture != null) {
+            this.capture.close();
+        }
     }
     
     /**
@@ -200,11 +290,13 @@ public class Host {
         if(localPeer != null) {
             localPeer.disconnectNow();
         }
-        if(datagramChannel.isConnected()) {
-            datagramChannel.disconnect();
+        if(datagramChannel != null) {
+            if(datagramChannel.isConnected()) {
+                datagramChannel.disconnect();
+            }
+            
+            datagramChannel.connect(address);
         }
-        
-        datagramChannel.connect(address);
         localPeer = new Peer(this, address, INVALID_PEER_ID);                
         localPeer.send(new ConnectionRequestMessage());                
         return localPeer;
@@ -348,11 +440,14 @@ public class Host {
         else {
             sendPacket(localPeer);
         }
+        
+        flushPackets();
     }
     
     
     /**
-     * Checks to see if any bytes are received
+     * Checks to see if any bytes are received.  This drains all of the datagrams
+     * pending on the socket, a batch at a time.
      * 
      * @return true if packets have been received
      * @throws IOException
@@ -361,19 +456,42 @@ public class Host {
         
         boolean bytesReceived = false;
         
-        /* now lets receive any messages */
-        int numberOfBytesRecv = receive(readBuffer);
-        if(numberOfBytesRecv > 0) {
+        do {
+            receiveBatch.clear();
             
-            /* the received address is updated as
-             * we receive bytes from a peer (it is updated
-             * to the address that send us the bytes
-             */
-            if(this.receivedAddress != null) {
-                parsePacket(readBuffer);
+            /* read in as many datagrams as are waiting, up to the size of the batch */
+            while(!receiveBatch.isFull()) {
+                IOBuffer buffer = receiveBatch.nextBuffer();
+                
+                int numberOfBytesRecv = receive(buffer);
+                
+                /* the received address is updated as
+                 * we receive bytes from a peer (it is updated
+                 * to the address that send us the bytes,
+                 * null if there was nothing to read)
+                 */
+                if(numberOfBytesRecv < 0 || this.receivedAddress == null) {
+                    break;
+                }
+                
+                if(numberOfBytesRecv > 0) {
+                    receiveBatch.add(this.receivedAddress, null);
+                    
+                    numberOfPacketsReceived++;
+                    numberOfBytesReceived += numberOfBytesRecv;
+                }
+            }
+            
+            /* now lets parse the messages */
+            for(int i = 0; i < receiveBatch.size(); i++) {
+                this.receivedAddress = receiveBatch.getAddress(i);
+                parsePacket(receiveBatch.getBuffer(i));
                 bytesReceived = true;
             }
-        }
+        } 
+        while(receiveBatch.isFull());
+        
+        receiveBatch.clear();
         
         return bytesReceived;
     }
@@ -396,6 +514,11 @@ public class Host {
 
         int startTime = Time.time();
         
+        numberOfPacketsSent = 0;
+        numberOfBytesSent = 0;
+        numberOfPacketsReceived = 0;
+        numberOfBytesReceived = 0;
+        
         /* send any pending packets */
         sendClientPackets();
         
@@ -427,6 +550,44 @@ public class Host {
         checkTimeouts(listener);
     }
     
+    /**
+     * Feeds a captured datagram through as if it had just been received off of the socket.  This is only
+     * for a {@link Host} which isn't bound to a socket, and moves its clock up to the time of the datagram.
+     * 
+     * @param address the address the datagram was received from
+     * @param buffer the datagram, from position 0 to the limit; it is decoded in place
+     * @param time the time the datagram was received, in msec
+     * @throws IOException
+     */
+    public void replayPacket(InetSocketAddress address, IOBuffer buffer, long time) throws IOException {
+        if(datagramChannel != null) {
+            throw new IllegalStateException("Only a Host which isn't bound to a socket can replay packets");
+        }
+        
+        this.replayTime = time;
+        this.receivedAddress = address;
+        parsePacket(buffer);
+    }
+    
+    /**
+     * Updates the network state of a {@link Host} replaying captured packets, the counterpart to 
+     * {@link #update(MessageListener, int)}.  Anything sent in response to the replayed packets is
+     * packed up and dropped.
+     * 
+     * @param listener
+     * @param time the current time, in msec
+     * @throws IOException
+     */
+    public void replayUpdate(MessageListener listener, long time) throws IOException {
+        this.replayTime = time;
+        
+        sendClientPackets();
+        
+        dispatchMessages(listener);
+        
+        checkTimeouts(listener);
+    }
+    
     
     /**
      * Packs and sends out the packet for the peer.
@@ -434,13 +595,16 @@ public class Host {
      * @param peer
      */
     private void sendPacket(Peer peer) {
-        if (peer != null) {                        
+        if (peer != null) {
+            IOBuffer writeBuffer = sendBatch.nextBuffer();
+            this.packetBuffer = writeBuffer;
+            
             writeBuffer.clear();            
             protocol.reset();
             
             /* do we need to send a ping? */
             if( this.isServer ) {
-                long currentTime = System.currentTimeMillis();
+                long currentTime = currentTime();
                 if ( currentTime - peer.getLastPingTime() >= config.getPingRate() ) {
                     peer.setLastPingTime(currentTime);
                     peer.send(PingMessage.INSTANCE);
@@ -463,12 +627,39 @@ public class Host {
                         
             byte numberOfMessages = 0;
             
-            /* always give priority to the reliable packets */
-            numberOfMessages += packReliableMessages(writeBuffer, protocol, peer);            
+            SendScheduler scheduler = peer.getScheduler();
+            this.packetLimit = scheduler.beginPacket(currentTime(), writeBuffer.capacity());
+            
+            /* if we have used up the bandwidth budget, hold off until it has been
+             * built back up */
+            if(this.packetLimit <= protocol.size()) {
+                scheduler.throttled();
+                return;
+            }
             
-            /* if there is space, go ahead and put in the unreliable packets */
-            numberOfMessages += packUnreliableMessages(writeBuffer, protocol, peer);            
-            protocol.setNumberOfMessages(numberOfMessages);
+            /* fill up the packet by priority, the reliable messages of a priority going
+             * ahead of the unreliable ones
+             */
+            int[] priorities = scheduler.getPriorityOrder();
+            for(int i = 0; i < priorities.length; i++) {
+                int priority = priorities[i];
+                
+                this.messagesLeftOver = false;
+                
+                int numberOfPacked = packReliableMessages(writeBuffer, protocol, peer, priority);
+                protocol.setNumberOfMessages( (byte)(numberOfMessages + numberOfPacked) );
+                
+                numberOfPacked += packUnreliableMessages(writeBuffer, protocol, peer, priority);
+                numberOfMessages += numberOfPacked;
+                protocol.setNumberOfMessages(numberOfMessages);
+                
+                if(numberOfPacked > 0) {
+                    scheduler.served(priority);
+                }
+                else if(this.messagesLeftOver || !peer.getOutgoingMessages(priority).isEmpty()) {
+                    scheduler.starved(priority);
+                }
+            }
             
 
             /* if we had any messages, lets send it out */
@@ -483,10 +674,14 @@ public class Host {
                 
                 peer.addNumberOfBytesCompressed(protocol.getNumberOfBytesCompressed());
                 
-                send(writeBuffer, peer);
+                /* the packet goes out along with the rest of the batch */
+                sendBatch.add(peer.getAddress(), peer);
+                if(sendBatch.isFull()) {
+                    flushPackets();
+                }
             }
             else {
-                long amountOfTimeSinceLastPacket = System.currentTimeMillis() - peer.getLastSendTime();
+                long amountOfTimeSinceLastPacket = currentTime() - peer.getLastSendTime();
                 if(amountOfTimeSinceLastPacket >= config.getHeartbeatTime()) {                    
                     peer.send(HeartbeatMessage.INSTANCE);
                 }
@@ -495,17 +690,37 @@ public class Host {
     }
     
     /**
-     * Empties the unreliable queue
+     * Sends out all of the packed packets in one burst
+     */
+    private void flushPackets() {
+        for(int i = 0; i < sendBatch.size(); i++) {
+            Peer peer = sendBatch.getPeer(i);
+            
+            int numberOfBytesSent = send(sendBatch.getBuffer(i), peer);
+            if(numberOfBytesSent > 0) {
+                peer.getScheduler().endPacket(numberOfBytesSent);
+                
+                this.numberOfPacketsSent++;
+                this.numberOfBytesSent += numberOfBytesSent;
+            }
+        }
+        
+        sendBatch.clear();
+    }
+    
+    /**
+     * Empties the unreliable queue of the supplied priority
      * @param writeBuffer
      * @param protocol
      * @param peer
+     * @param priority
      * @return the number of messages packed
      */
-    private int packUnreliableMessages(IOBuffer writeBuffer, Protocol protocol, Peer peer) {
+    private int packUnreliableMessages(IOBuffer writeBuffer, Protocol protocol, Peer peer, int priority) {
         int numberOfMessagesSent = 0;
         if (peer != null) {
 
-            Queue<Message> messages = peer.getOutgoingMessages();
+            RingQueue<Message> messages = peer.getOutgoingMessages(priority);
             int numberOfMessages = messages.size();
             if((numberOfMessages+protocol.getNumberOfMessages()) > Byte.MAX_VALUE) {
                 numberOfMessages = Byte.MAX_VALUE - protocol.getNumberOfMessages();
@@ -517,6 +732,9 @@ public class Host {
                     numberOfMessages--;
 
                     Message msg = messages.peek();
+                    if(msg == null) {
+                        break;
+                    }
 
                     /*
                      * check and see if the message can fit
@@ -536,6 +754,14 @@ public class Host {
                     
                     msg.writeTo(writeBuffer);
                     numberOfMessagesSent++;
+                    
+                    /* let the message know which packet it went out on */
+                    NetMessage netMessage = msg.getMessage();
+                    if(netMessage instanceof SequencedNetMessage) {
+                        ((SequencedNetMessage)netMessage).onPacked(peer.getSendSequence()+1);
+                    }
+                    
+                    msg.release();
                 }
 
             }
@@ -546,25 +772,32 @@ public class Host {
     }
     
     /**
-     * Packs as many reliable messages as possible
+     * Packs as many reliable messages of the supplied priority as possible
      * @param writeBuffer
      * @param protocol
      * @param peer
+     * @param priority
      * @return the number of packed messages
      */
-    private int packReliableMessages(IOBuffer writeBuffer, Protocol protocol, Peer peer) {
+    private int packReliableMessages(IOBuffer writeBuffer, Protocol protocol, Peer peer, int priority) {
         int numberOfMessagesSent = 0;
         
         if (peer != null) {
             Queue<Message> reliableMessages = peer.getReliableOutgoingMessages();
                         
             if(!reliableMessages.isEmpty()) {                                                                
-                for (Message msg : reliableMessages) {                                                            
+                for (Message msg : reliableMessages) {
+                    if(msg.getPriority() != priority) {
+                        continue;
+                    }
+                    
                     /* check and see if the message can
                      * fit
                      */
-                    if(! fitsInPacket(msg)) {
+                    if(! fitsInPacket(msg) || 
+                       protocol.getNumberOfMessages() + numberOfMessagesSent >= Byte.MAX_VALUE) {
                         msg.delay();
+                        this.messagesLeftOver = true;
                         break;
                     }
                         
@@ -580,7 +813,7 @@ public class Host {
                         msg.setSequenceNumberSent(seq);
                         msg.setMessageId(peer.nextMessageId());
                         
-                        msg.setTimeSent(System.currentTimeMillis());
+                        msg.setTimeSent(currentTime());
                     }                    
                     
                     msg.addSequenceNumberSent();
@@ -634,6 +867,13 @@ public class Host {
         ByteBuffer buffer = ioBuffer.sendSync().asByteBuffer();        
         buffer.flip();        
         try {                       
+            if(datagramChannel == null) {
+                return -1;
+            }
+            
+            if(capture != null) {
+                capture.packetSent(remoteAddress, buffer);
+            }
             return datagramChannel.send(buffer, remoteAddress);
         } 
         catch (Exception e) {        
@@ -652,8 +892,17 @@ public class Host {
         ByteBuffer buffer = ioBuffer.sendSync().asByteBuffer();        
         buffer.flip();        
         try {
-            peer.setLastSendTime(System.currentTimeMillis());
+            peer.setLastSendTime(currentTime());
             peer.addNumberOfBytesSent(buffer.limit());
+            
+            /* nowhere to send it to when replaying captured packets */
+            if(datagramChannel == null) {
+                return buffer.limit();
+            }
+            
+            if(capture != null) {
+                capture.packetSent(peer.getAddress(), buffer);
+            }
             return datagramChannel.send(buffer, peer.getAddress());
         } 
         catch (Exception e) {        
@@ -676,6 +925,10 @@ public class Host {
             this.receivedAddress = (InetSocketAddress) datagramChannel.receive(buffer);            
             buffer.flip();  
             
+            if(capture != null && this.receivedAddress != null && buffer.hasRemaining()) {
+                capture.packetReceived(this.receivedAddress, buffer);
+            }
+            
             ioBuffer.receiveSync();
             
             return buffer.limit();            
@@ -743,7 +996,7 @@ public class Host {
                      */
                     peer.setId(peerId);
                     peer.setAddress(receivedAddress);
-                    peer.setLastReceivedTime(System.currentTimeMillis());
+                    peer.setLastReceivedTime(currentTime());
                     peer.addNumberOfBytesRecv(buffer.limit());    
                     peer.addNumberOfBytesCompressed(protocol.getNumberOfBytesCompressed());
                     
@@ -830,6 +1083,9 @@ public class Host {
                 if(!peer.isDuplicateMessage(message)) {
                     peer.receive(message);
                 }
+                else {
+                    message.release();
+                }
             }
             else {
                 if(message instanceof PingMessage) {
@@ -852,7 +1108,7 @@ public class Host {
      * @return true if the Message fits in the Packet
      */
     private boolean fitsInPacket(Message msg) {
-        return this.writeBuffer.remaining() > msg.getSize();
+        return Math.min(this.packetBuffer.remaining(), this.packetLimit - this.packetBuffer.position()) > msg.getSize();
     }
     
     /**
@@ -906,7 +1162,7 @@ public class Host {
      */
     private void checkTimeouts(MessageListener listener) {
         
-        long currentTime = System.currentTimeMillis();
+        long currentTime = currentTime();
         long messageTimeout = config.getReliableMessageTimeout() + 500;
         for(int i = 0; i < peers.length; i++) {
             Peer peer = peers[i];
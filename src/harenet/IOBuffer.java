@@ -1138,6 +1138,16 @@ public interface IOBuffer {
     public abstract IOBuffer putShortBits(short value, int numberOfBits);
     public abstract IOBuffer putIntBits(int value, int numberOfBits);
     
+    /**
+     * Copies raw bits into the buffer, such as bits read out by {@link #getBits(byte[], int)}
+     * 
+     * @param src the bits to copy
+     * @param offset the byte in the source to start copying from
+     * @param numberOfBits the number of bits to copy
+     * @return this buffer
+     */
+    public abstract IOBuffer putBits(byte[] src, int offset, int numberOfBits);
+    
     
     public abstract boolean getBooleanBit();
     public abstract byte getByteBits();
@@ -1149,6 +1159,15 @@ public interface IOBuffer {
     public abstract long getLongBits();
     public abstract long getLongBits(int numberOfBits);     
     
+    /**
+     * Copies raw bits out of the buffer
+     * 
+     * @param dst where to copy the bits to, must be able to hold the number of bits
+     * @param numberOfBits the number of bits to copy
+     * @return the destination
+     */
+    public abstract byte[] getBits(byte[] dst, int numberOfBits);
+    
     public abstract int bitPosition(int position);
     public abstract int bitPosition();
     public abstract int bitCapacity();
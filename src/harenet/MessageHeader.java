@@ -6,6 +6,7 @@ package harenet;
 import harenet.messages.ConnectionAcceptedMessage;
 import harenet.messages.ConnectionRequestMessage;
 import harenet.messages.DisconnectMessage;
+import harenet.messages.FragmentMessage;
 import harenet.messages.HeartbeatMessage;
 import harenet.messages.Message;
 import harenet.messages.NetMessageFactory;
@@ -37,6 +38,9 @@ public class MessageHeader {
     public static final byte RELIABLE_NETMESSAGE = 8;
     public static final byte UNRELIABLE_NETMESSAGE = 9;
     
+    /* a piece of a NetMessage too large to fit in a single packet */
+    public static final byte FRAGMENT_MESSAGE = 10;
+    
     
     
     /**
@@ -68,11 +72,15 @@ public class MessageHeader {
                 break;
             }
             case RELIABLE_NETMESSAGE: {
-                message = new ReliableNetMessage();
+                message = ReliableNetMessage.obtain();
                 break;
             }
             case UNRELIABLE_NETMESSAGE: {
-                message = new UnReliableNetMessage();
+                message = UnReliableNetMessage.obtain();
+                break;
+            }
+            case FRAGMENT_MESSAGE: {
+                message = new FragmentMessage();
                 break;
             }
             case HEARTBEAT_MESSAGE: {
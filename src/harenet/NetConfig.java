@@ -3,6 +3,8 @@
  */
 package harenet;
 
+import java.io.File;
+
 import harenet.messages.NetMessageFactory;
 
 /**
@@ -26,6 +28,18 @@ public class NetConfig {
     private int compressionThreshold;
     private boolean useDirectBuffers;
     
+    private int bandwidthLimit;
+    
+    private int maxReassemblySize;
+    private int maxPendingReassemblySize;
+    
+    private int ioBatchSize;
+    
+    private int packetCodec;
+    private byte[] packetDictionary;
+    
+    private File packetCaptureFile;
+    
     private Log log;
     private NetMessageFactory messageFactory;
     
@@ -81,6 +95,11 @@ public class NetConfig {
         this.useDirectBuffers = useDirectBuffers;
         this.log = log;
         this.messageFactory = messageFactory;
+        
+        this.maxReassemblySize = Short.MAX_VALUE;
+        this.maxPendingReassemblySize = 4 * Short.MAX_VALUE;
+        this.ioBatchSize = 32;
+        this.packetCodec = PacketCodec.DEFLATE;
     }
     
     /**
@@ -231,6 +250,49 @@ public class NetConfig {
         this.compressionThreshold = compressionThreshold;
     }
     
+    /**
+     * @return the number of bytes per second that can be sent to each peer, 0 if there is no limit
+     */
+    public int getBandwidthLimit() {
+        return bandwidthLimit;
+    }
+    
+    /**
+     * @param bandwidthLimit the number of bytes per second that can be sent to each peer, 0 for no limit
+     */
+    public void setBandwidthLimit(int bandwidthLimit) {
+        this.bandwidthLimit = bandwidthLimit;
+    }
+    
+    /**
+     * @return the largest message (in bytes) that will be reassembled from fragments
+     */
+    public int getMaxReassemblySize() {
+        return maxReassemblySize;
+    }
+    
+    /**
+     * @param maxReassemblySize the largest message (in bytes) that will be reassembled from fragments
+     */
+    public void setMaxReassemblySize(int maxReassemblySize) {
+        this.maxReassemblySize = maxReassemblySize;
+    }
+    
+    /**
+     * @return the total number of bytes of partially received messages that are held on to for each peer
+     */
+    public int getMaxPendingReassemblySize() {
+        return maxPendingReassemblySize;
+    }
+    
+    /**
+     * @param maxPendingReassemblySize the total number of bytes of partially received messages that are 
+     * held on to for each peer
+     */
+    public void setMaxPendingReassemblySize(int maxPendingReassemblySize) {
+        this.maxPendingReassemblySize = maxPendingReassemblySize;
+    }
+    
     /**
      * @return if native buffers are to be used for reading/writing from
      * the network sockets
@@ -245,4 +307,64 @@ public class NetConfig {
     public void setUseDirectBuffers(boolean useDirectBuffers) {
         this.useDirectBuffers = useDirectBuffers;
     }
+    
+    /**
+     * @return the number of datagrams that are received (or sent) together in one go, 1 to handle
+     * a single datagram at a time
+     */
+    public int getIOBatchSize() {
+        return ioBatchSize;
+    }
+    
+    /**
+     * @param ioBatchSize the number of datagrams that are received (or sent) together in one go, 1 to handle
+     * a single datagram at a time
+     */
+    public void setIOBatchSize(int ioBatchSize) {
+        this.ioBatchSize = ioBatchSize;
+    }
+    
+    /**
+     * @return the id of the {@link PacketCodec} used to compress packets
+     */
+    public int getPacketCodec() {
+        return packetCodec;
+    }
+    
+    /**
+     * @param packetCodec the id of the {@link PacketCodec} used to compress packets
+     */
+    public void setPacketCodec(int packetCodec) {
+        this.packetCodec = packetCodec;
+    }
+    
+    /**
+     * @return the preset dictionary for the {@link DictionaryPacketCodec}, may be null
+     */
+    public byte[] getPacketDictionary() {
+        return packetDictionary;
+    }
+    
+    /**
+     * @param packetDictionary the preset dictionary for the {@link DictionaryPacketCodec}, both
+     * ends must use the same dictionary
+     */
+    public void setPacketDictionary(byte[] packetDictionary) {
+        this.packetDictionary = packetDictionary;
+    }
+    
+    /**
+     * @return the file the datagrams are captured to (see {@link PacketCapture}), null if capturing is disabled
+     */
+    public File getPacketCaptureFile() {
+        return packetCaptureFile;
+    }
+    
+    /**
+     * @param packetCaptureFile the file the datagrams are captured to (see {@link PacketCapture}), null to
+     * disable capturing
+     */
+    public void setPacketCaptureFile(File packetCaptureFile) {
+        this.packetCaptureFile = packetCaptureFile;
+    }
 }
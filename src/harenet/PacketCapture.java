@@ -0,0 +1,250 @@
+/*
+ * see license.txt
+ */
+package harenet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records the datagrams a {@link Host} sends and receives, exactly as they went over the wire, so
+ * that they can be replayed offline (see {@link PacketReplay}).
+ *
+ * <p>
+ * The capture file is a small header followed by records.  Each remote address is written out
+ * once, the first time it is seen, and is referred to by a one byte endpoint id from then on.  Each
+ * packet record holds the number of msec since the capture started, the endpoint id, and the
+ * length prefixed bytes of the datagram.
+ *
+ * @author Tony
+ *
+ */
+public class PacketCapture {
+    
+    private static final int MAGIC = 0x48435054; // HCPT
+    private static final int VERSION = 1;
+    
+    private static final byte RECORD_ENDPOINT = 0;
+    private static final byte RECORD_RECEIVED = 1;
+    private static final byte RECORD_SENT     = 2;
+    
+    /**
+     * The max number of remote addresses a single capture can hold
+     */
+    public static final int MAX_ENDPOINTS = 256;
+    
+    /**
+     * A captured datagram
+     *
+     * @author Tony
+     *
+     */
+    public static class Packet {
+        
+        /**
+         * The number of msec since the capture started
+         */
+        public int time;
+        
+        /**
+         * True if the packet was sent out, false if it was received
+         */
+        public boolean sent;
+        
+        /**
+         * Which remote address the packet was sent to (or received from), unique within the capture
+         */
+        public int endpoint;
+        public InetSocketAddress address;
+        
+        public byte[] data;
+    }
+    
+    private DataOutputStream output;
+    private Map<InetSocketAddress, Integer> endpoints;
+    private byte[] scratch;
+    
+    private long startTime;
+    private int numberOfPackets;
+    
+    /**
+     * @param file the file to write the capture to
+     * @param mtu the largest datagram that will be captured
+     * @throws IOException
+     */
+    public PacketCapture(File file, int mtu) throws IOException {
+        this.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        this.output.writeInt(MAGIC);
+        this.output.writeShort(VERSION);
+        
+        this.endpoints = new HashMap<InetSocketAddress, Integer>();
+        this.scratch = new byte[mtu];
+        this.startTime = System.currentTimeMillis();
+    }
+    
+    /**
+     * @return the number of packets captured
+     */
+    public int getNumberOfPackets() {
+        return numberOfPackets;
+    }
+    
+    /**
+     * A datagram was received
+     *
+     * @param address the address it was received from
+     * @param datagram the bytes of the datagram, from position to limit (which are left untouched)
+     */
+    public void packetReceived(InetSocketAddress address, ByteBuffer datagram) {
+        capture(RECORD_RECEIVED, address, datagram);
+    }
+    
+    /**
+     * A datagram was sent out
+     *
+     * @param address the address it was sent to
+     * @param datagram the bytes of the datagram, from position to limit (which are left untouched)
+     */
+    public void packetSent(InetSocketAddress address, ByteBuffer datagram) {
+        capture(RECORD_SENT, address, datagram);
+    }
+    
+    private synchronized void capture(byte type, InetSocketAddress address, ByteBuffer datagram) {
+        if(this.output == null || address == null) {
+            return;
+        }
+        
+        int length = Math.min(datagram.remaining(), this.scratch.length);
+        int position = datagram.position();
+        for(int i = 0; i < length; i++) {
+            this.scratch[i] = datagram.get(position + i);
+        }
+        
+        try {
+            int endpoint = endpoint(address);
+            if(endpoint < 0) {
+                return;
+            }
+            
+            this.output.writeByte(type);
+            this.output.writeInt((int)(System.currentTimeMillis() - this.startTime));
+            this.output.writeByte(endpoint);
+            this.output.writeShort(length);
+            this.output.write(this.scratch, 0, length);
+            
+            this.numberOfPackets++;
+        }
+        catch(IOException e) {
+            close();
+        }
+    }
+    
+    /**
+     * @param address
+     * @return the endpoint id of the address, writing out the address if it hasn't been seen yet; -1 if
+     * there are too many endpoints
+     * @throws IOException
+     */
+    private int endpoint(InetSocketAddress address) throws IOException {
+        Integer endpoint = this.endpoints.get(address);
+        if(endpoint == null) {
+            if(this.endpoints.size() >= MAX_ENDPOINTS || address.getAddress() == null) {
+                return -1;
+            }
+            
+            endpoint = this.endpoints.size();
+            this.endpoints.put(address, endpoint);
+            
+            byte[] ip = address.getAddress().getAddress();
+            this.output.writeByte(RECORD_ENDPOINT);
+            this.output.writeByte(endpoint);
+            this.output.writeByte(ip.length);
+            this.output.write(ip);
+            this.output.writeShort(address.getPort());
+        }
+        
+        return endpoint;
+    }
+    
+    /**
+     * Flushes and closes out the capture file, nothing else will be captured
+     */
+    public synchronized void close() {
+        if(this.output != null) {
+            try { this.output.close(); } catch(IOException e) {}
+            this.output = null;
+        }
+    }
+    
+    /**
+     * Reads in a capture file
+     *
+     * @param file
+     * @param packets the list to add the packets to, in the order they were captured
+     * @throws IOException
+     */
+    public static void readPackets(File file, List<Packet> packets) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if(input.readInt() != MAGIC) {
+                throw new IOException("Not a packet capture file: " + file);
+            }
+            
+            int version = input.readUnsignedShort();
+            if(version != VERSION) {
+                throw new IOException("Unsupported packet capture version: " + version);
+            }
+            
+            InetSocketAddress[] endpoints = new InetSocketAddress[MAX_ENDPOINTS];
+            while(true) {
+                int type = input.read();
+                if(type < 0) {
+                    break;
+                }
+                
+                try {
+                    if(type == RECORD_ENDPOINT) {
+                        int endpoint = input.readUnsignedByte();
+                        byte[] ip = new byte[input.readUnsignedByte()];
+                        input.readFully(ip);
+                        endpoints[endpoint] = new InetSocketAddress(InetAddress.getByAddress(ip), input.readUnsignedShort());
+                    }
+                    else if(type == RECORD_RECEIVED || type == RECORD_SENT) {
+                        Packet packet = new Packet();
+                        packet.sent = type == RECORD_SENT;
+                        packet.time = input.readInt();
+                        packet.endpoint = input.readUnsignedByte();
+                        packet.address = endpoints[packet.endpoint];
+                        packet.data = new byte[input.readUnsignedShort()];
+                        input.readFully(packet.data);
+                        
+                        packets.add(packet);
+                    }
+                    else {
+                        throw new IOException("Corrupt packet capture file: " + file);
+                    }
+                }
+                catch(EOFException e) {
+                    /* the capture was cut off part way through a record */
+                    break;
+                }
+            }
+        }
+        finally {
+            input.close();
+        }
+    }
+}
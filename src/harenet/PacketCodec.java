@@ -0,0 +1,69 @@
+/*
+ * see license.txt
+ */
+package harenet;
+
+/**
+ * Encodes (compresses) the body of a packet before it is sent out, and decodes it on the
+ * receiving end.  Both ends must agree on the codec, which is identified in the packet by its
+ * id (see {@link Protocol}).
+ *
+ * <p>
+ * Implementations are not expected to be thread safe, each {@link Protocol} has its own instances.
+ *
+ * @author Tony
+ *
+ */
+public interface PacketCodec {
+    
+    /**
+     * Plain deflate, using only Huffman coding
+     */
+    public static final int DEFLATE = 0;
+    
+    /**
+     * Deflate with a preset dictionary trained from captured game traffic, see {@link DictionaryPacketCodec}
+     */
+    public static final int DICTIONARY = 1;
+    
+    /**
+     * The max number of codecs that can be identified in a packet
+     */
+    public static final int MAX_CODECS = 8;
+    
+    /**
+     * @return the id of this codec, identifying it in the packet
+     */
+    public int getId();
+    
+    /**
+     * @return the name of this codec
+     */
+    public String getName();
+    
+    /**
+     * Encodes the source bytes
+     *
+     * @param src
+     * @param srcOffset
+     * @param srcLength
+     * @param dest
+     * @param destOffset
+     * @param destLength the max number of bytes that can be written out
+     * @return the number of bytes written to the destination, or -1 if it was not able to fit
+     */
+    public int encode(byte[] src, int srcOffset, int srcLength, byte[] dest, int destOffset, int destLength);
+    
+    /**
+     * Decodes the source bytes
+     *
+     * @param src
+     * @param srcOffset
+     * @param srcLength
+     * @param dest
+     * @param destOffset
+     * @param destLength the max number of bytes that can be written out
+     * @return the number of bytes written to the destination, or -1 if the source was malformed
+     */
+    public int decode(byte[] src, int srcOffset, int srcLength, byte[] dest, int destOffset, int destLength);
+}
@@ -0,0 +1,137 @@
+/*
+ * see license.txt
+ */
+package harenet;
+
+/**
+ * Keeps track of how much time a {@link PacketCodec} takes and how well it compresses.
+ *
+ * @author Tony
+ *
+ */
+public class PacketCodecStats {
+    
+    private final String name;
+    
+    private long numberOfPacketsEncoded;
+    private long numberOfPacketsSkipped;
+    private long numberOfBytesBeforeEncoding;
+    private long numberOfBytesEncoded;
+    private long encodeTime;
+    
+    private long numberOfPacketsDecoded;
+    private long numberOfPacketsMalformed;
+    private long decodeTime;
+    
+    /**
+     * @param name the name of the codec
+     */
+    public PacketCodecStats(String name) {
+        this.name = name;
+    }
+    
+    /**
+     * @return the name of the codec
+     */
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * A packet was encoded
+     *
+     * @param numberOfBytes the size of the packet before being encoded
+     * @param numberOfBytesEncoded the size of the encoded packet, -1 if it was sent out as is
+     * @param time the number of nanoseconds it took
+     */
+    void encoded(int numberOfBytes, int numberOfBytesEncoded, long time) {
+        this.encodeTime += time;
+        if(numberOfBytesEncoded < 0) {
+            this.numberOfPacketsSkipped++;
+        }
+        else {
+            this.numberOfPacketsEncoded++;
+            this.numberOfBytesBeforeEncoding += numberOfBytes;
+            this.numberOfBytesEncoded += numberOfBytesEncoded;
+        }
+    }
+    
+    /**
+     * A packet was decoded
+     *
+     * @param malformed if the packet could not be decoded
+     * @param time the number of nanoseconds it took
+     */
+    void decoded(boolean malformed, long time) {
+        this.decodeTime += time;
+        if(malformed) {
+            this.numberOfPacketsMalformed++;
+        }
+        else {
+            this.numberOfPacketsDecoded++;
+        }
+    }
+    
+    /**
+     * @return the number of packets that were encoded
+     */
+    public long getNumberOfPacketsEncoded() {
+        return numberOfPacketsEncoded;
+    }
+    
+    /**
+     * @return the number of packets that were sent out as is, because encoding them didn't make them any smaller
+     */
+    public long getNumberOfPacketsSkipped() {
+        return numberOfPacketsSkipped;
+    }
+    
+    /**
+     * @return the number of packets that were decoded
+     */
+    public long getNumberOfPacketsDecoded() {
+        return numberOfPacketsDecoded;
+    }
+    
+    /**
+     * @return the number of packets that could not be decoded
+     */
+    public long getNumberOfPacketsMalformed() {
+        return numberOfPacketsMalformed;
+    }
+    
+    /**
+     * @return the total number of nanoseconds spent encoding
+     */
+    public long getEncodeTime() {
+        return encodeTime;
+    }
+    
+    /**
+     * @return the total number of nanoseconds spent decoding
+     */
+    public long getDecodeTime() {
+        return decodeTime;
+    }
+    
+    /**
+     * @return the encoded size over the original size of the encoded packets, 1 if nothing has been encoded
+     */
+    public double getCompressionRatio() {
+        if(this.numberOfBytesBeforeEncoding == 0) {
+            return 1.0;
+        }
+        return (double)this.numberOfBytesEncoded / (double)this.numberOfBytesBeforeEncoding;
+    }
+    
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return this.name + ": encoded " + this.numberOfPacketsEncoded + " (skipped " + this.numberOfPacketsSkipped + ")"
+                + " ratio " + String.format("%.2f", getCompressionRatio())
+                + " in " + (this.encodeTime / 1000000L) + " ms, decoded " + this.numberOfPacketsDecoded
+                + " (malformed " + this.numberOfPacketsMalformed + ") in " + (this.decodeTime / 1000000L) + " ms";
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * see license.txt
+ */
+package harenet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import harenet.Host.MessageListener;
+import harenet.PacketCapture.Packet;
+import harenet.messages.Message;
+
+/**
+ * Replays captured packets (see {@link PacketCapture}) through a {@link Host} which isn't bound
+ * to a socket.  The packets go through the same decoding as they would off of the network, but the
+ * host's clock is driven by the capture rather than the wall clock, and packets are fed in as fast as
+ * they can be decoded; so a replay of the same capture always plays out the same way.
+ *
+ * <p>
+ * Either side of a capture can be replayed: the packets received by the capturing host, or the packets
+ * it sent out, as the remote end would have received them.
+ *
+ * @author Tony
+ *
+ */
+public class PacketReplay {
+    
+    private NetConfig config;
+    private List<Packet> packets;
+    
+    private int numberOfPackets;
+    private long numberOfBytes;
+    private long numberOfMessages;
+    private long replayTime;
+    
+    /**
+     * @param config the config the packets were captured with, the codec dictionary must match
+     * @param packets the captured packets
+     */
+    public PacketReplay(NetConfig config, List<Packet> packets) {
+        this.config = config;
+        this.packets = packets;
+    }
+    
+    /**
+     * @param packet
+     * @param sent
+     * @param endpoint
+     * @return true if the packet is to be replayed
+     */
+    private static boolean isSelected(Packet packet, boolean sent, int endpoint) {
+        return packet.sent == sent && (endpoint < 0 || packet.endpoint == endpoint);
+    }
+    
+    /**
+     * Replays the packets, the replay stats are reset
+     *
+     * @param listener receives the decoded messages
+     * @param isServer if the packets are replayed as a server (received from clients) or as a client
+     * @param sent true to replay the packets that were sent out, false to replay the received ones
+     * @param endpoint only replay the packets sent to (or received from) this endpoint, -1 for all of them
+     * @throws IOException
+     */
+    public void replay(final MessageListener listener, boolean isServer, boolean sent, int endpoint) throws IOException {
+        this.numberOfPackets = 0;
+        this.numberOfBytes = 0;
+        this.numberOfMessages = 0;
+        
+        MessageListener counter = new MessageListener() {
+            
+            @Override
+            public void onServerFull(Peer peer) {
+                listener.onServerFull(peer);
+            }
+            
+            @Override
+            public void onMessage(Peer peer, Message message) {
+                numberOfMessages++;
+                listener.onMessage(peer, message);
+            }
+            
+            @Override
+            public void onDisconnected(Peer peer) {
+                listener.onDisconnected(peer);
+            }
+            
+            @Override
+            public void onConnected(Peer peer) {
+                listener.onConnected(peer);
+            }
+        };
+        
+        Host host = new Host(this.config, isServer);
+        IOBuffer buffer = IOBuffer.Factory.allocate(this.config.getMtu());
+        
+        long startTime = System.nanoTime();
+        try {
+            int time = -1;
+            for(int i = 0; i < this.packets.size(); i++) {
+                Packet packet = this.packets.get(i);
+                if(!isSelected(packet, sent, endpoint)) {
+                    continue;
+                }
+                
+                if(!isServer && time < 0) {
+                    host.connect(packet.address);
+                }
+                
+                /* the packets that arrived at the same time are dispatched together once the
+                 * clock moves on, which is also when peers that went quiet are timed out */
+                if(time > -1 && packet.time != time) {
+                    host.replayUpdate(counter, packet.time);
+                }
+                time = packet.time;
+                
+                buffer.clear();
+                buffer.putBytes(packet.data, 0, Math.min(packet.data.length, buffer.capacity()));
+                buffer.flip();
+                
+                host.replayPacket(packet.address, buffer, time);
+                
+                this.numberOfPackets++;
+                this.numberOfBytes += packet.data.length;
+            }
+            
+            if(time > -1) {
+                host.replayUpdate(counter, time);
+            }
+        }
+        finally {
+            this.replayTime = System.nanoTime() - startTime;
+            host.destroy();
+        }
+    }
+    
+    /**
+     * Writes out the packets, uncompressed, as samples for training a {@link DictionaryPacketCodec}
+     *
+     * @param file
+     * @param sent true to write out the packets that were sent out, false the received ones
+     * @param endpoint only write out the packets sent to (or received from) this endpoint, -1 for all of them
+     * @return the number of samples written
+     * @throws IOException
+     */
+    public int writeSamples(File file, boolean sent, int endpoint) throws IOException {
+        Protocol protocol = new Protocol(this.config.getCompressionThreshold(), this.config.getMtu(),
+                                         this.config.getPacketCodec(), this.config.getPacketDictionary());
+        IOBuffer buffer = IOBuffer.Factory.allocate(this.config.getMtu());
+        
+        int numberOfSamples = 0;
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            for(int i = 0; i < this.packets.size(); i++) {
+                Packet packet = this.packets.get(i);
+                if(!isSelected(packet, sent, endpoint)) {
+                    continue;
+                }
+                
+                buffer.clear();
+                buffer.putBytes(packet.data, 0, Math.min(packet.data.length, buffer.capacity()));
+                buffer.flip();
+                
+                protocol.reset();
+                protocol.readFrom(buffer, this.config.getMessageFactory());
+                if(!protocol.isValid()) {
+                    continue;
+                }
+                
+                /* the packet is uncompressed in place, the protocol id and flags bytes are left out */
+                int length = buffer.limit() - Protocol.NUMBER_OF_BYTES_TO_SKIP;
+                output.writeInt(length);
+                output.write(buffer.array(), Protocol.NUMBER_OF_BYTES_TO_SKIP, length);
+                numberOfSamples++;
+            }
+        }
+        finally {
+            output.close();
+        }
+        
+        return numberOfSamples;
+    }
+    
+    /**
+     * @return the number of packets replayed in the last replay
+     */
+    public int getNumberOfPackets() {
+        return numberOfPackets;
+    }
+    
+    /**
+     * @return the number of bytes replayed in the last replay
+     */
+    public long getNumberOfBytes() {
+        return numberOfBytes;
+    }
+    
+    /**
+     * @return the number of messages decoded in the last replay
+     */
+    public long getNumberOfMessages() {
+        return numberOfMessages;
+    }
+    
+    /**
+     * @return the number of nanoseconds the last replay took
+     */
+    public long getReplayTime() {
+        return replayTime;
+    }
+    
+    /**
+     * @return the number of messages decoded per second in the last replay
+     */
+    public double getMessagesPerSecond() {
+        if(this.replayTime <= 0) {
+            return 0;
+        }
+        return this.numberOfMessages / (this.replayTime / 1_000_000_000.0);
+    }
+}
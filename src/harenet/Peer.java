@@ -6,7 +6,10 @@ package harenet;
 import harenet.Host.MessageListener;
 import harenet.messages.ConnectionRequestMessage;
 import harenet.messages.DisconnectMessage;
+import harenet.messages.EncodedPayload;
+import harenet.messages.FragmentMessage;
 import harenet.messages.Message;
+import harenet.messages.PrioritizedNetMessage;
 import harenet.messages.ReliableNetMessage;
 import harenet.messages.ServerFullMessage;
 import harenet.messages.UnReliableNetMessage;
@@ -47,9 +50,13 @@ public class Peer {
     private NetConfig config;
     private Log log;
     
-    private Queue<Message> outgoingMessages;
+    /* the size of the preallocated rings the unreliable and inbound messages go through */
+    private static final int MESSAGE_RING_SIZE = 256;
+    
+    /* the unreliable messages, by priority */
+    private RingQueue<Message>[] outgoingMessages;
     private Queue<Message> reliableOutgoingMessages;
-    private Queue<Message> inboundMessages;
+    private RingQueue<Message> inboundMessages;
         
 //    private Queue<Message> outgoingMessagesCache;
     
@@ -65,6 +72,10 @@ public class Peer {
     
     /* what the other connection received from us */
     private int remoteAck;
+    
+    /* the remoteAck (high bits) and the remote ack history (low bits), 
+     * packed so that they can be read atomically from other threads */
+    private volatile long remoteAckState;
         
     /* last time this peer received a message */
     private long lastReceivedTime;
@@ -87,6 +98,11 @@ public class Peer {
     
     private long timeConnected;
     
+    private SendScheduler scheduler;
+    
+    private FragmentAssembler fragmentAssembler;
+    private int fragmentGroupIdGen;
+    
     /**
      * @param host
      * @param address
@@ -101,9 +117,13 @@ public class Peer {
         this.log = config.getLog();
         
         this.state = State.CONNECTING;
-        this.outgoingMessages = new ConcurrentLinkedQueue<Message>();
+        this.outgoingMessages = newMessageQueues(PrioritizedNetMessage.NUMBER_OF_PRIORITIES);
+        for(int i = 0; i < this.outgoingMessages.length; i++) {
+            this.outgoingMessages[i] = new RingQueue<Message>(MESSAGE_RING_SIZE);
+        }
+        
         this.reliableOutgoingMessages = new ConcurrentLinkedQueue<Message>();
-        this.inboundMessages = new ConcurrentLinkedQueue<Message>();
+        this.inboundMessages = new RingQueue<Message>(MESSAGE_RING_SIZE);
 //        this.outgoingMessagesCache = new ConcurrentLinkedQueue<Message>();        
         
         this.receivedReliableMessages = new ConcurrentHashMap<>();
@@ -111,7 +131,19 @@ public class Peer {
         this.ackBuffer = new int[32];
         this.ackBufferIndex = 0;
         
-        this.timeConnected = System.currentTimeMillis();
+        this.timeConnected = host.currentTime();
+        
+        this.scheduler = new SendScheduler(config.getBandwidthLimit(), config.getMtu());
+        this.fragmentAssembler = new FragmentAssembler(config);
+    }
+    
+    /**
+     * @param length
+     * @return a new array of message queues
+     */
+    @SuppressWarnings("unchecked")
+    private static RingQueue<Message>[] newMessageQueues(int length) {
+        return (RingQueue<Message>[]) new RingQueue<?>[length];
     }
     
     /**
@@ -142,7 +174,7 @@ public class Peer {
         this.lastPingTime = lastPingTime;
     }
     public void pongMessageReceived() {        
-        long ping = System.currentTimeMillis() - this.lastPingTime;
+        long ping = this.host.currentTime() - this.lastPingTime;
         this.roundTripTime = (this.roundTripTime + ping) / 2;
     }
     
@@ -188,7 +220,7 @@ public class Peer {
     }
     
     public long getAvgBitsPerSecRecv() {
-        long totalTimeConnected = (System.currentTimeMillis() - this.timeConnected)/1000;
+        long totalTimeConnected = (this.host.currentTime() - this.timeConnected)/1000;
         if(totalTimeConnected > 0) {
             return (long)( (numberOfBytesRecv*8) / totalTimeConnected );
         }
@@ -197,7 +229,7 @@ public class Peer {
     
     
     public long getAvgBitsPerSecSent() {
-        long totalTimeConnected = (System.currentTimeMillis() - this.timeConnected)/1000;
+        long totalTimeConnected = (this.host.currentTime() - this.timeConnected)/1000;
         if(totalTimeConnected > 0) {
             return (long)( (numberOfBytesSent*8) / totalTimeConnected );
         }
@@ -242,7 +274,7 @@ public class Peer {
     public void checkReliableMessages(int ackHistory) {
                 
         if(!this.reliableOutgoingMessages.isEmpty()) {
-            long currentTime = System.currentTimeMillis();
+            long currentTime = this.host.currentTime();
             Iterator<Message> it = this.reliableOutgoingMessages.iterator();
             while(it.hasNext()) {
                 
@@ -259,6 +291,7 @@ public class Peer {
                                         + " MessageId: " + msg.getMessageId()
                                         + " #Of Resends: " + msg.getSequencesSent());
                     }                    
+                    msg.release();
                 }
                 else {
                     long timeSent = msg.getTimeSent();
@@ -274,6 +307,7 @@ public class Peer {
                             }
                             
                             it.remove();
+                            msg.release();
                         }
                     }
                 }
@@ -296,6 +330,7 @@ public class Peer {
      */
     public void setRemoteAck(int ackHistory, int remoteAck) {
         this.remoteAck = remoteAck;
+        this.remoteAckState = ((long)remoteAck << 32) | (ackHistory & 0xFFFFFFFFL);
 
 //        this.ackBuffer[this.ackBufferIndex] = this.remoteAck;
 //        this.ackBufferIndex = (this.ackBufferIndex + 1) % this.ackBuffer.length;
@@ -340,6 +375,31 @@ public class Peer {
                 
     }
     
+    /**
+     * Determines if the remote end has acknowledged receiving the packet
+     * with the supplied sequence number.  This only has knowledge of the 
+     * last 32 packets.
+     * 
+     * @param packetSequence the packet sequence number
+     * @return true if the packet was acknowledged
+     */
+    public boolean isPacketAcknowledged(int packetSequence) {
+        long ackState = this.remoteAckState;
+        int ack = (int)(ackState >>> 32);
+        int ackHistory = (int)ackState;
+        
+        int delta = ack - packetSequence;
+        if(delta == 0) {
+            return true;
+        }
+        
+        if(delta > 0 && delta < 32) {
+            return ((ackHistory >>> delta) & 1) != 0;
+        }
+        
+        return false;
+    }
+    
     /**
      * @return the lastSendTime
      */
@@ -440,16 +500,24 @@ public class Peer {
     }
     
     /**
-     * @return the outgoingMessages
+     * @param priority
+     * @return the unreliable outgoing messages of the supplied priority
      */
-    public Queue<Message> getOutgoingMessages() {
-        return outgoingMessages;
+    public RingQueue<Message> getOutgoingMessages(int priority) {
+        return outgoingMessages[priority];
+    }
+    
+    /**
+     * @return the scheduler that decides what gets sent to this peer
+     */
+    public SendScheduler getScheduler() {
+        return scheduler;
     }
     
     /**
      * @return the inboundMessages
      */
-    public Queue<Message> getInboundMessages() {
+    public RingQueue<Message> getInboundMessages() {
         return inboundMessages;
     }
     
@@ -544,47 +612,162 @@ public class Peer {
     public void disconnectNow() {
         this.state = State.DISCONNECTED;
         this.host.disconnect(this);
-        this.inboundMessages.clear();
-        this.outgoingMessages.clear();
-        this.receivedReliableMessages.clear();
-        this.reliableOutgoingMessages.clear();
+        releaseAll(this.inboundMessages);
+        for(int i = 0; i < this.outgoingMessages.length; i++) {
+            releaseAll(this.outgoingMessages[i]);
+        }
+        for(Map.Entry<Integer, Message> e : this.receivedReliableMessages.entrySet()) {
+            removeDuplicate(e.getKey(), e.getValue());
+        }
+        releaseAll(this.reliableOutgoingMessages);
+        this.fragmentAssembler.clear();
     }
     
     /**
-     * Sends a Message
+     * Releases all of the queued up messages
+     * 
+     * @param messages
+     */
+    private void releaseAll(Queue<Message> messages) {
+        Message msg = null;
+        while( (msg = messages.poll()) != null) {
+            msg.release();
+        }
+    }
+    
+    /**
+     * Releases all of the queued up messages
+     * 
+     * @param messages
+     */
+    private void releaseAll(RingQueue<Message> messages) {
+        Message msg = null;
+        while( (msg = messages.poll()) != null) {
+            msg.release();
+        }
+    }
+    
+    /**
+     * Sends a Message.  The queued up message holds its own reference
+     * to the encoded payload, the caller is still responsible for 
+     * releasing its reference.
+     * 
+     * <p>
+     * Messages too large to fit within a single packet are split up into 
+     * {@link FragmentMessage}s, which are always sent reliably.
+     * 
      * @param message
      */
     public void send(Message message) {
-        if(message.isReliable()) {            
+        /* the size wraps around for the very largest of messages */
+        int size = message.getSize() & 0xFFFF;
+        if(message.getMessage() != null && size >= this.host.getMaxMessageSize()) {
+            sendFragments(message);
+        }
+        else if(message.isReliable()) {            
             this.reliableOutgoingMessages.add(message.copy());
         }
         else {
-            this.outgoingMessages.add(message);
+            message.retain();
+            this.outgoingMessages[message.getPriority()].add(message);
         }
     }
     
+    /**
+     * Splits the message up into {@link FragmentMessage}s that each fit within a packet
+     * 
+     * @param message
+     */
+    private void sendFragments(Message message) {
+        EncodedPayload payload = message.getPayload();
+        boolean isEncodedHere = payload == null;
+        if(isEncodedHere) {
+            payload = EncodedPayload.encode(message.getMessage());
+        }
+        
+        /* leave some slack for the message not starting on a byte boundary */
+        int maxFragmentSize = this.host.getMaxMessageSize() - FragmentMessage.HEADER_SIZE - 16;
+        
+        int numberOfBytes = payload.getNumberOfBytes();
+        int numberOfFragments = (numberOfBytes + maxFragmentSize - 1) / maxFragmentSize;
+        if(numberOfFragments > Short.MAX_VALUE) {
+            if(log.enabled()) {
+                log.error("Message is too large to be sent: " + numberOfBytes + " bytes");
+            }
+        }
+        else {
+            int groupId = nextFragmentGroupId();
+            for(int i = 0; i < numberOfFragments; i++) {
+                this.reliableOutgoingMessages.add(new FragmentMessage(payload, groupId, i, numberOfFragments, message.getPriority()));
+            }
+        }
+        
+        if(isEncodedHere) {
+            payload.release();
+        }
+    }
+    
+    /**
+     * @return the next fragment group id
+     */
+    private int nextFragmentGroupId() {
+        this.fragmentGroupIdGen = (this.fragmentGroupIdGen + 1) & 0xFFFF;
+        return this.fragmentGroupIdGen;
+    }
+    
+    /**
+     * @return the number of fragments received from this peer that have been thrown away
+     */
+    public long getNumberOfDroppedFragments() {
+        return this.fragmentAssembler.getNumberOfDroppedFragments();
+    }
+    
+    /**
+     * @return the number of fragmented messages received from this peer that timed out before
+     * all of their fragments were received
+     */
+    public long getNumberOfLostFragmentedMessages() {
+        return this.fragmentAssembler.getNumberOfLostMessages();
+    }
+    
     /**
      * Removes stored reliable messages
      * @param currentTime
      */
     public void timeoutDuplicates(long currentTime, long timeout) {
+        this.fragmentAssembler.timeout(currentTime, timeout);
+        
         for(Map.Entry<Integer, Message> e : this.receivedReliableMessages.entrySet()) {
             if(currentTime - e.getValue().getTimeReceived() > timeout) {
-                this.receivedReliableMessages.remove(e.getKey());
+                removeDuplicate(e.getKey(), e.getValue());
             }
         }        
     }
     
     /**
-     * Checks and temporarily stores the message to check for duplicates
+     * Removes a stored reliable message, releasing the reference held for it
+     * 
+     * @param messageId
+     * @param msg
+     */
+    private void removeDuplicate(Integer messageId, Message msg) {
+        if(this.receivedReliableMessages.remove(messageId, msg)) {
+            msg.release();
+        }
+    }
+    
+    /**
+     * Checks and temporarily stores the message to check for duplicates, the stored
+     * message holds its own reference
      * @param msg
      * @return true if this message is a duplicate
      */
     public boolean isDuplicateMessage(Message msg) {
         boolean isDup = this.receivedReliableMessages.containsKey(msg.getMessageId());
         if ( !isDup ) {
+            msg.setTimeReceived(this.host.currentTime());            
+            msg.retain();
             this.receivedReliableMessages.put(msg.getMessageId(), msg);
-            msg.setTimeReceived(System.currentTimeMillis());            
         }
         
         return isDup;
@@ -595,17 +778,28 @@ public class Peer {
      * @param message
      */
     public void receive(Message message) {        
+        if(message instanceof FragmentMessage) {
+            message = this.fragmentAssembler.receive((FragmentMessage)message, this.host.currentTime());
+            if(message == null) {
+                return;
+            }
+        }
+        
         this.inboundMessages.add(message);
     }
 
     /**
-     * Receives messages
+     * Receives messages, each message is released once the listener
+     * has been notified of it
      * 
      * @param listener
      */
     public void receiveMessages(MessageListener listener) {
         while(!this.inboundMessages.isEmpty()) {
             Message message = this.inboundMessages.poll();
+            if(message == null) {
+                break;
+            }
             
             if(message instanceof UnReliableNetMessage) {
                 listener.onMessage(this, message);
@@ -624,6 +818,8 @@ public class Peer {
                 
                 listener.onServerFull(this);
             }
+            
+            message.release();
         }
     }
 }
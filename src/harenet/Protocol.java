@@ -5,10 +5,6 @@ package harenet;
 
 import harenet.messages.NetMessageFactory;
 
-import java.util.zip.DataFormatException;
-import java.util.zip.Deflater;
-import java.util.zip.Inflater;
-
 
 /**
  * Simple base Harenet protocol header.  Each UDP packet will contain
@@ -27,6 +23,13 @@ public class Protocol implements Transmittable {
     
     private static final int FLAG_COMPRESSED = 0x0001;
     
+    /* which codec the packet is compressed with */
+    private static final int CODEC_SHIFT = 1;
+    private static final int CODEC_MASK  = PacketCodec.MAX_CODECS - 1;
+    
+    /* the protocol id and flags bytes are never compressed */
+    static final int NUMBER_OF_BYTES_TO_SKIP = 2;
+    
     /* serves as a quick filter and version# */
     private byte protocolId;
     
@@ -56,9 +59,13 @@ public class Protocol implements Transmittable {
      */
     private int numberOfBytesCompressed;
     
-    private Deflater deflater;
-    private Inflater inflater;
-    private IOBuffer compressionBuffer;
+    private PacketCodec[] codecs;
+    private PacketCodecStats[] codecStats;
+    
+    /* the codec used to compress outgoing packets */
+    private PacketCodec codec;
+    
+    private byte[] compressionBuffer;
 
     private int compressionThreshold;
     
@@ -67,17 +74,55 @@ public class Protocol implements Transmittable {
      * @param mtu
      */
     public Protocol(int compressionThreshold, int mtu) {
+        this(compressionThreshold, mtu, PacketCodec.DEFLATE, null);
+    }
+    
+    /**
+     * @param compressionThreshold
+     * @param mtu
+     * @param packetCodec the id of the {@link PacketCodec} to compress outgoing packets with
+     * @param dictionary the preset dictionary for the {@link DictionaryPacketCodec}, may be null
+     */
+    public Protocol(int compressionThreshold, int mtu, int packetCodec, byte[] dictionary) {
         this.compressionThreshold = compressionThreshold;
-        this.deflater = new Deflater(Deflater.BEST_COMPRESSION);
-        this.deflater.setStrategy(Deflater.HUFFMAN_ONLY);
         
-        this.inflater = new Inflater();
+        this.codecs = new PacketCodec[PacketCodec.MAX_CODECS];
+        this.codecStats = new PacketCodecStats[PacketCodec.MAX_CODECS];
+        
+        addCodec(new DeflatePacketCodec());
+        if(dictionary != null) {
+            addCodec(new DictionaryPacketCodec(dictionary));
+        }
+        
+        /* fall back to plain deflate if the codec isn't available */
+        this.codec = (packetCodec >= 0 && packetCodec < this.codecs.length && this.codecs[packetCodec] != null) 
+                        ? this.codecs[packetCodec] : this.codecs[PacketCodec.DEFLATE];
         
-        this.compressionBuffer = IOBuffer.Factory.allocate(mtu);
+        this.compressionBuffer = new byte[mtu];
         
         reset();
     }
     
+    private void addCodec(PacketCodec codec) {
+        this.codecs[codec.getId()] = codec;
+        this.codecStats[codec.getId()] = new PacketCodecStats(codec.getName());
+    }
+    
+    /**
+     * @return the codec used to compress outgoing packets
+     */
+    public PacketCodec getCodec() {
+        return codec;
+    }
+    
+    /**
+     * @param codecId
+     * @return the stats of the codec, or null if the codec isn't available
+     */
+    public PacketCodecStats getCodecStats(int codecId) {
+        return this.codecStats[codecId];
+    }
+    
     /**
      * @return true if the protocol ID matches
      */
@@ -105,11 +150,6 @@ public class Protocol implements Transmittable {
         this.acknowledge = 0;
         this.ackHistory = 0;
         this.numberOfBytesCompressed = 0;
-        
-        this.compressionBuffer.clear();
-        
-        this.deflater.reset();
-        this.inflater.reset();
     }
     
     /**
@@ -229,6 +269,11 @@ public class Protocol implements Transmittable {
         
         uncompress(buffer);
         
+        /* the packet could not be uncompressed */
+        if(!isValid()) {
+            return;
+        }
+        
         this.peerId = buffer.getByte();
         this.numberOfMessages = buffer.getByte();
 //        this.sentTime = buffer.getInt();
@@ -273,56 +318,74 @@ public class Protocol implements Transmittable {
      */
     private void compress(IOBuffer buffer) {
         int size = buffer.position();
-        if(buffer.hasArray() && this.compressionThreshold > 0 && size > this.compressionThreshold) {                        
-            int numberOfBytesToSkip = 2; /* Skip the Protocol and Flags bytes */
-            this.deflater.setInput(buffer.array(), numberOfBytesToSkip, buffer.position()-numberOfBytesToSkip );
-            this.deflater.finish();
+        if(buffer.hasArray() && this.compressionThreshold > 0 && size > this.compressionThreshold) {
+            byte[] packet = buffer.array();
+            int numberOfBytes = size - NUMBER_OF_BYTES_TO_SKIP;
             
-            int len = deflater.deflate(this.compressionBuffer.array(), numberOfBytesToSkip, this.compressionBuffer.capacity()-numberOfBytesToSkip, Deflater.FULL_FLUSH);            
-            if(!deflater.finished()) {
-                return; /* not able to compress with the amount of space given */
+            long startTime = System.nanoTime();
+            int len = this.codec.encode(packet, NUMBER_OF_BYTES_TO_SKIP, numberOfBytes, 
+                                        this.compressionBuffer, NUMBER_OF_BYTES_TO_SKIP, this.compressionBuffer.length - NUMBER_OF_BYTES_TO_SKIP);
+            
+            /* no point in sending it compressed if it didn't get any smaller */
+            if(len >= numberOfBytes) {
+                len = -1;
             }
             
-            this.numberOfBytesCompressed = (size-numberOfBytesToSkip)-len;
+            this.codecStats[this.codec.getId()].encoded(numberOfBytes, len, System.nanoTime() - startTime);
+            if(len < 0) {
+                return;
+            }
             
-            this.compressionBuffer.position(numberOfBytesToSkip);
-            this.compressionBuffer.limit(len);
+            this.numberOfBytesCompressed = numberOfBytes - len;
+            this.flags |= FLAG_COMPRESSED | (this.codec.getId() << CODEC_SHIFT);
             
-            buffer.limit(len+numberOfBytesToSkip);
-            buffer.position(numberOfBytesToSkip);
-            buffer.put(this.compressionBuffer);
+            /* replace the packet with the compressed one */
+            this.compressionBuffer[0] = packet[0];
+            this.compressionBuffer[1] = this.flags;
             
-            this.flags |= FLAG_COMPRESSED;
+            buffer.clear();
+            buffer.putBytes(this.compressionBuffer, 0, len + NUMBER_OF_BYTES_TO_SKIP);
         }
     }
     
     /**
-     * Uncompress the supplied {@link IOBuffer}
+     * Uncompress the supplied {@link IOBuffer}.  If the packet can not be uncompressed
+     * this {@link Protocol} is marked as invalid.
      * 
      * @param buffer
      */
     private void uncompress(IOBuffer buffer) {
         if((this.flags & FLAG_COMPRESSED) != 0) {
-            
-            int numberOfBytesToSkip = 2; /* Skip the Protocol and Flags bytes */
-            this.inflater.setInput(buffer.array(), numberOfBytesToSkip, buffer.limit()-numberOfBytesToSkip);            
-            int len = 0;
-            try {
-                len = this.inflater.inflate(this.compressionBuffer.array(), numberOfBytesToSkip, this.compressionBuffer.capacity()-numberOfBytesToSkip);
+            int codecId = (this.flags >> CODEC_SHIFT) & CODEC_MASK;
+            PacketCodec codec = this.codecs[codecId];
+            if(codec == null || !buffer.hasArray()) {
+                this.protocolId = 0;
+                return;
             }
-            catch(DataFormatException e) {
-                throw new RuntimeException(e);
+            
+            byte[] packet = buffer.array();
+            int numberOfBytes = buffer.limit() - NUMBER_OF_BYTES_TO_SKIP;
+            
+            long startTime = System.nanoTime();
+            int len = codec.decode(packet, NUMBER_OF_BYTES_TO_SKIP, numberOfBytes, 
+                                   this.compressionBuffer, NUMBER_OF_BYTES_TO_SKIP, this.compressionBuffer.length - NUMBER_OF_BYTES_TO_SKIP);
+            
+            this.codecStats[codecId].decoded(len < 0, System.nanoTime() - startTime);
+            if(len < 0) {
+                this.protocolId = 0;
+                return;
             }
             
-            this.numberOfBytesCompressed = len-(buffer.limit()-numberOfBytesToSkip);
+            this.numberOfBytesCompressed = len - numberOfBytes;
             
-            this.compressionBuffer.position(2);
-            this.compressionBuffer.limit(len);
+            /* replace the packet with the uncompressed one */
+            this.compressionBuffer[0] = packet[0];
+            this.compressionBuffer[1] = packet[1];
             
-            buffer.limit(len+numberOfBytesToSkip);
-            buffer.position(numberOfBytesToSkip);
-            buffer.put(this.compressionBuffer);
-            buffer.position(numberOfBytesToSkip);
+            buffer.clear();
+            buffer.putBytes(this.compressionBuffer, 0, len + NUMBER_OF_BYTES_TO_SKIP);
+            buffer.flip();
+            buffer.position(NUMBER_OF_BYTES_TO_SKIP);
         }
     }
 }
@@ -0,0 +1,163 @@
+/*
+ * see license.txt
+ */
+package harenet;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded, lock free queue backed by a preallocated ring of slots (the Vyukov MPMC queue).  Any number of
+ * threads may offer and poll at the same time, and neither allocates, which makes this suitable as a free list
+ * for pooled objects or for handing messages between the network thread and the game thread.
+ *
+ * <p>
+ * Each slot carries a sequence number which tells the producers and consumers whose turn it is to use the slot,
+ * so a producer that has claimed a slot but not yet filled it can make {@link #poll()} return null even though
+ * {@link #size()} counts the element.
+ *
+ * @author Tony
+ *
+ */
+public class RingBuffer<T> {
+    
+    private final Object[] elements;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    
+    private final AtomicLong head;
+    private final AtomicLong tail;
+    
+    /**
+     * @param capacity the max number of elements, rounded up to a power of two
+     */
+    public RingBuffer(int capacity) {
+        if(capacity < 1) {
+            throw new IllegalArgumentException("Invalid ring buffer capacity: " + capacity);
+        }
+        
+        int size = (capacity < 2) ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        
+        this.elements = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        for(int i = 0; i < size; i++) {
+            this.sequences.set(i, i);
+        }
+        
+        this.mask = size - 1;
+        this.head = new AtomicLong();
+        this.tail = new AtomicLong();
+    }
+    
+    /**
+     * @return the max number of elements
+     */
+    public int capacity() {
+        return this.elements.length;
+    }
+    
+    /**
+     * Adds the element to the end of the queue
+     *
+     * @param element
+     * @return true if added, false if the queue is full
+     */
+    public boolean offer(T element) {
+        long position = this.tail.get();
+        int index;
+        for(;;) {
+            index = (int)position & this.mask;
+            long delta = this.sequences.get(index) - position;
+            if(delta == 0) {
+                if(this.tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = this.tail.get();
+            }
+            else if(delta < 0) {
+                return false;
+            }
+            else {
+                position = this.tail.get();
+            }
+        }
+        
+        this.elements[index] = element;
+        this.sequences.set(index, position + 1);
+        return true;
+    }
+    
+    /**
+     * Removes the element at the front of the queue
+     *
+     * @return the element, or null if the queue is empty
+     */
+    @SuppressWarnings("unchecked")
+    public T poll() {
+        long position = this.head.get();
+        int index;
+        for(;;) {
+            index = (int)position & this.mask;
+            long delta = this.sequences.get(index) - (position + 1);
+            if(delta == 0) {
+                if(this.head.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = this.head.get();
+            }
+            else if(delta < 0) {
+                return null;
+            }
+            else {
+                position = this.head.get();
+            }
+        }
+        
+        T element = (T)this.elements[index];
+        this.elements[index] = null;
+        this.sequences.set(index, position + this.mask + 1);
+        return element;
+    }
+    
+    /**
+     * Only reliable with a single consumer, as another consumer may take the element
+     * before it can be polled.
+     *
+     * @return the element at the front of the queue without removing it, or null if empty
+     */
+    @SuppressWarnings("unchecked")
+    public T peek() {
+        long position = this.head.get();
+        int index = (int)position & this.mask;
+        if(this.sequences.get(index) == position + 1) {
+            return (T)this.elements[index];
+        }
+        return null;
+    }
+    
+    /**
+     * @return the number of elements in the queue
+     */
+    public int size() {
+        long size = this.tail.get() - this.head.get();
+        if(size < 0) {
+            return 0;
+        }
+        return (int)Math.min(size, this.elements.length);
+    }
+    
+    /**
+     * @return true if there are no elements in the queue
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+    
+    /**
+     * Removes all of the elements
+     */
+    public void clear() {
+        while(poll() != null) {
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * see license.txt
+ */
+package harenet;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * An unbounded queue for handing elements from one thread to another.  Elements go through a preallocated
+ * {@link RingBuffer}, so in the steady state nothing is allocated; if the ring fills up (a burst of messages, or the
+ * consuming thread stalls) elements spill over into a linked queue until it drains, rather than being dropped.
+ *
+ * <p>
+ * While anything is in the overflow, new elements go to the overflow as well, so elements from the same producer
+ * stay in order.  There must only be a single consumer, for which {@link #peek()} and {@link #poll()} agree on the
+ * element at the front.  Either may return null while a producer is still in the middle of adding an element, in
+ * which case the element shows up on a later call.
+ *
+ * @author Tony
+ *
+ */
+public class RingQueue<T> {
+    
+    private final RingBuffer<T> ring;
+    private final Queue<T> overflow;
+    
+    /**
+     * @param capacity the size of the ring, rounded up to a power of two
+     */
+    public RingQueue(int capacity) {
+        this.ring = new RingBuffer<T>(capacity);
+        this.overflow = new ConcurrentLinkedQueue<T>();
+    }
+    
+    /**
+     * Adds the element to the end of the queue
+     *
+     * @param element
+     */
+    public void add(T element) {
+        if(!this.overflow.isEmpty() || !this.ring.offer(element)) {
+            this.overflow.add(element);
+        }
+    }
+    
+    /**
+     * Removes the element at the front of the queue
+     *
+     * @return the element, or null if empty
+     */
+    public T poll() {
+        return (this.ring.size() > 0) ? this.ring.poll() : this.overflow.poll();
+    }
+    
+    /**
+     * @return the element at the front of the queue without removing it, or null if empty
+     */
+    public T peek() {
+        return (this.ring.size() > 0) ? this.ring.peek() : this.overflow.peek();
+    }
+    
+    /**
+     * @return the number of elements in the queue
+     */
+    public int size() {
+        int size = this.ring.size();
+        if(!this.overflow.isEmpty()) {
+            size += this.overflow.size();
+        }
+        return size;
+    }
+    
+    /**
+     * @return true if there are no elements in the queue
+     */
+    public boolean isEmpty() {
+        return this.ring.isEmpty() && this.overflow.isEmpty();
+    }
+    
+    /**
+     * @return true if the ring has filled up and elements are going to the overflow
+     */
+    public boolean isOverflowing() {
+        return !this.overflow.isEmpty();
+    }
+    
+    /**
+     * Removes all of the elements
+     */
+    public void clear() {
+        this.ring.clear();
+        this.overflow.clear();
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * see license.txt
+ */
+package harenet;
+
+import harenet.messages.PrioritizedNetMessage;
+
+/**
+ * Schedules what gets sent out to a {@link Peer}.  This keeps the {@link Peer} within its
+ * bandwidth budget (see {@link NetConfig#getBandwidthLimit()}) and decides the order in which the
+ * message priorities get to fill up the packet.
+ *
+ * <p>
+ * Higher priority messages normally go first, however each time a priority has messages waiting that
+ * did not make it into a packet it builds up starvation.  Once it has been starved long enough it is
+ * moved ahead of the higher priorities, so that low priority traffic still drains on a busy link.
+ *
+ * @author Tony
+ *
+ */
+public class SendScheduler {
+    
+    /**
+     * Once a priority has been passed over for more than this number of packets it
+     * moves ahead of the next higher priority (and so on for each multiple of it)
+     */
+    public static final int STARVATION_LIMIT = 8;
+    
+    private final int bandwidthLimit;
+    private final int maxBurst;
+    
+    private int availableBytes;
+    private long lastRefillTime;
+    
+    private final int[] starvation;
+    private final long[] totalStarved;
+    private final int[] order;
+    
+    private long numberOfThrottledPackets;
+    
+    /**
+     * @param bandwidthLimit the number of bytes per second that can be sent, 0 for no limit
+     * @param mtu the largest packet size
+     */
+    public SendScheduler(int bandwidthLimit, int mtu) {
+        this.bandwidthLimit = bandwidthLimit;
+        
+        /* allow up to a quarter of a second of traffic to be saved up, which must
+         * always be enough for a full packet */
+        this.maxBurst = Math.max(bandwidthLimit / 4, mtu);
+        this.availableBytes = this.maxBurst;
+        this.lastRefillTime = -1;
+        
+        this.starvation = new int[PrioritizedNetMessage.NUMBER_OF_PRIORITIES];
+        this.totalStarved = new long[PrioritizedNetMessage.NUMBER_OF_PRIORITIES];
+        this.order = new int[PrioritizedNetMessage.NUMBER_OF_PRIORITIES];
+        for(int i = 0; i < this.order.length; i++) {
+            this.order[i] = i;
+        }
+    }
+    
+    /**
+     * @return true if there is a bandwidth limit
+     */
+    public boolean isLimited() {
+        return this.bandwidthLimit > 0;
+    }
+    
+    /**
+     * Starts a new packet, determining how many bytes this packet is allowed to take up
+     *
+     * @param currentTime
+     * @param packetSize the largest the packet can be
+     * @return the number of bytes the packet may take up
+     */
+    public int beginPacket(long currentTime, int packetSize) {
+        if(!isLimited()) {
+            return packetSize;
+        }
+        
+        if(this.lastRefillTime < 0) {
+            this.lastRefillTime = currentTime;
+        }
+        
+        long dt = currentTime - this.lastRefillTime;
+        long refill = (dt * this.bandwidthLimit) / 1000L;
+        if(refill > 0) {
+            this.availableBytes = (int)Math.min(this.maxBurst, this.availableBytes + refill);
+            
+            /* only account for the time that was turned into bytes, so that
+             * frequent updates on a low limit don't round the refill away */
+            this.lastRefillTime += (refill * 1000L) / this.bandwidthLimit;
+        }
+        
+        return Math.max(0, Math.min(packetSize, this.availableBytes));
+    }
+    
+    /**
+     * The packet could not be sent because the bandwidth budget has been used up
+     */
+    public void throttled() {
+        this.numberOfThrottledPackets++;
+    }
+    
+    /**
+     * The packet has been sent
+     *
+     * @param numberOfBytes the number of bytes sent
+     */
+    public void endPacket(int numberOfBytes) {
+        if(isLimited()) {
+            this.availableBytes -= numberOfBytes;
+        }
+    }
+    
+    /**
+     * Calculates the order in which the priorities get to fill up the next packet.
+     *
+     * @return the priorities, in the order they should be packed
+     */
+    public int[] getPriorityOrder() {
+        /* insertion sort, there are only a handful of priorities */
+        for(int i = 1; i < this.order.length; i++) {
+            int priority = this.order[i];
+            int score = score(priority);
+            
+            int j = i - 1;
+            while(j >= 0 && score(this.order[j]) > score) {
+                this.order[j + 1] = this.order[j];
+                j--;
+            }
+            this.order[j + 1] = priority;
+        }
+        
+        return this.order;
+    }
+    
+    private int score(int priority) {
+        return (priority * STARVATION_LIMIT - this.starvation[priority]) * this.order.length + priority;
+    }
+    
+    /**
+     * The priority had messages go out in the packet
+     *
+     * @param priority
+     */
+    public void served(int priority) {
+        this.starvation[priority] = 0;
+    }
+    
+    /**
+     * The priority had messages waiting that were not sent out in the packet
+     *
+     * @param priority
+     */
+    public void starved(int priority) {
+        this.starvation[priority]++;
+        this.totalStarved[priority]++;
+    }
+    
+    /**
+     * @param priority
+     * @return the total number of packets the priority had messages waiting that were not sent out
+     */
+    public long getNumberOfStarvedPackets(int priority) {
+        return this.totalStarved[priority];
+    }
+    
+    /**
+     * @return the number of packets that were held back because of the bandwidth limit
+     */
+    public long getNumberOfThrottledPackets() {
+        return this.numberOfThrottledPackets;
+    }
+}
@@ -4,6 +4,7 @@
 package harenet.api;
 
 import harenet.messages.NetMessage;
+import harenet.messages.SequencedNetMessage;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
@@ -63,6 +64,13 @@ public interface Connection extends Endpoint {
      */
     public long getNumberOfBytesCompressed();
     
+    /**
+     * @param packetSequence the packet sequence number
+     * @return true if the remote computer acknowledged receiving the packet
+     * @see SequencedNetMessage
+     */
+    public boolean isPacketAcknowledged(int packetSequence);
+    
     /**
      * Sends a message to the server
      * @param protocolFlags
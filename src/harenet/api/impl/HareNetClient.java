@@ -153,6 +153,14 @@ public class HareNetClient extends HareNetEndpoint implements Client {
         return peer.getNumberOfBytesCompressed();
     }
     
+    /* (non-Javadoc)
+     * @see harenet.api.Connection#isPacketAcknowledged(int)
+     */
+    @Override
+    public boolean isPacketAcknowledged(int packetSequence) {
+        return (this.peer != null) && this.peer.isPacketAcknowledged(packetSequence);
+    }
+    
     /* (non-Javadoc)
      * @see net.jenet.api.Connection#isConnected()
      */
@@ -168,7 +176,12 @@ public class HareNetClient extends HareNetEndpoint implements Client {
     public void send(int protocolFlags, NetMessage msg) throws IOException {
         if(isConnected()) {
             Message packet = writeMessage(protocolFlags, msg);
-            peer.send(packet);
+            try {
+                peer.send(packet);
+            }
+            finally {
+                packet.release();
+            }
         }
     }
 
@@ -3,11 +3,11 @@
  */
 package harenet.api.impl;
 
-import harenet.ByteCounterIOBuffer;
 import harenet.NetConfig;
 import harenet.api.Connection;
 import harenet.api.ConnectionListener;
 import harenet.api.Endpoint;
+import harenet.messages.EncodedPayload;
 import harenet.messages.Message;
 import harenet.messages.NetMessage;
 import harenet.messages.ReliableNetMessage;
@@ -29,7 +29,6 @@ public abstract class HareNetEndpoint implements Endpoint {
     
 //    private Output output;    
         
-    private ByteCounterIOBuffer byteCounter;
     private NetConfig netConfig;
     
     private int pollRate;
@@ -43,7 +42,6 @@ public abstract class HareNetEndpoint implements Endpoint {
         this.listeners = new Vector<ConnectionListener>();
         
     //    this.output = new Output(1500, 4098);
-        this.byteCounter = new ByteCounterIOBuffer();
         
         this.pollRate = netConfig.getPollRate();
     }
@@ -57,19 +55,23 @@ public abstract class HareNetEndpoint implements Endpoint {
     
     
     /**
-     * Writes out a {@link NetMessage} 
+     * Writes out a {@link NetMessage}.  The {@link NetMessage} is encoded once here, and the
+     * encoded bits are copied into the packets of each peer it is sent to.
+     * 
+     * <p>
+     * The caller holds a reference to the (pooled) message, and must {@link Message#release()} the
+     * message once it has been handed off to the peers.
      * 
      * @param protocolFlags
      * @param message
      * @return the {@link Message} containing the {@link NetMessage} pay load
      */
     protected Message writeMessage(int protocolFlags, NetMessage message) {        
-        byteCounter.clear();
-        message.write(byteCounter);
+        EncodedPayload payload = EncodedPayload.encode(message);
         
         Message msg = ((protocolFlags&Endpoint.FLAG_RELIABLE)!=0) ? 
-                            new ReliableNetMessage(message, (short)byteCounter.capacity()) :
-                            new UnReliableNetMessage(message, (short)byteCounter.capacity()) ;
+                            ReliableNetMessage.obtain(message, payload) :
+                            UnReliableNetMessage.obtain(message, payload) ;
         return msg;
     }
     
@@ -172,7 +172,12 @@ public class HareNetServer extends HareNetEndpoint implements Server {
     public void sendToAll(int protocolFlags, NetMessage msg) throws IOException {
         if(this.host != null) {
             Message message = writeMessage(protocolFlags, msg);
-            this.host.sendToAll(message);
+            try {
+                this.host.sendToAll(message);
+            }
+            finally {
+                message.release();
+            }
         }
     }
 
@@ -183,7 +188,12 @@ public class HareNetServer extends HareNetEndpoint implements Server {
     public void sendToAllExcept(int protocolFlags, NetMessage msg, int connectionId) throws IOException {
         if(this.host != null) {
             Message message = writeMessage(protocolFlags, msg);
-            this.host.sendToAllExcept(message, (byte) connectionId);
+            try {
+                this.host.sendToAllExcept(message, (byte) connectionId);
+            }
+            finally {
+                message.release();
+            }
         }
     }
 
@@ -194,7 +204,12 @@ public class HareNetServer extends HareNetEndpoint implements Server {
     public void sendTo(int protocolFlags, NetMessage msg, int connectionId) throws IOException {
         if(this.host != null) {
             Message message = writeMessage(protocolFlags, msg);
-            this.host.sendTo(message, (byte) connectionId);
+            try {
+                this.host.sendTo(message, (byte) connectionId);
+            }
+            finally {
+                message.release();
+            }
         }
     }
 
@@ -3,6 +3,8 @@
  */
 package harenet.messages;
 
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
 import harenet.IOBuffer;
 import harenet.MessageHeader;
 
@@ -17,12 +19,16 @@ import harenet.MessageHeader;
  */
 public abstract class AbstractMessage implements Message {
 
+    private static final AtomicIntegerFieldUpdater<AbstractMessage> REFERENCES = 
+            AtomicIntegerFieldUpdater.newUpdater(AbstractMessage.class, "references");
+
     /* the type is the only value sent over the wire for this class */
     protected byte type; 
     protected short sizeInBytes;
     
     protected int messageId;
     protected NetMessage message;
+    protected EncodedPayload payload;
     private int numberOfDelays;
     
     /** Tracking the Acknowledgement of the message */
@@ -31,6 +37,10 @@ public abstract class AbstractMessage implements Message {
     private transient int sequencesSent = 0;
     private transient long timeReceived;
     
+    /* each queue holding this message holds a reference, the encoded payload 
+     * is released once all of them have been */
+    private volatile int references = 1;
+    
     /**
      * @param type
      */
@@ -50,6 +60,16 @@ public abstract class AbstractMessage implements Message {
         this.numberOfDelays = 0;
     }
     
+    /**
+     * @param type
+     * @param message
+     * @param payload the already encoded message
+     */
+    public AbstractMessage(byte type, NetMessage message, EncodedPayload payload) {
+        this(type, message, (short)payload.getNumberOfBytes());
+        this.payload = payload;
+    }
+    
     /* (non-Javadoc)
      * @see netspark.Transmittable#writeTo(java.nio.ByteBuffer)
      */
@@ -59,8 +79,13 @@ public abstract class AbstractMessage implements Message {
         
         writeHeader(buffer);
         
-        if(type >= MessageHeader.RELIABLE_NETMESSAGE) {        
-            message.write(buffer);
+        if(type >= MessageHeader.RELIABLE_NETMESSAGE) {
+            if(payload != null) {
+                payload.writeTo(buffer);
+            }
+            else {
+                message.write(buffer);
+            }
         }
     }
 
@@ -192,6 +217,32 @@ public abstract class AbstractMessage implements Message {
         return message;
     }
 
+    /* (non-Javadoc)
+     * @see harenet.messages.Message#getPayload()
+     */
+    @Override
+    public EncodedPayload getPayload() {
+        return payload;
+    }
+    
+    /* (non-Javadoc)
+     * @see harenet.messages.Message#getPriority()
+     */
+    @Override
+    public int getPriority() {
+        /* protocol messages keep the connection alive, so they always go first */
+        if(this.message == null) {
+            return PrioritizedNetMessage.HIGHEST_PRIORITY;
+        }
+        
+        if(this.message instanceof PrioritizedNetMessage) {
+            int priority = ((PrioritizedNetMessage)this.message).getPriority();
+            return Math.max(PrioritizedNetMessage.HIGHEST_PRIORITY, Math.min(PrioritizedNetMessage.LOWEST_PRIORITY, priority));
+        }
+        
+        return PrioritizedNetMessage.NORMAL_PRIORITY;
+    }
+
     /* (non-Javadoc)
      * @see netspark.messages.Message#getSize()
      */
@@ -215,5 +266,56 @@ public abstract class AbstractMessage implements Message {
     public void delay() {
         this.numberOfDelays++;
     }
+    
+    /* (non-Javadoc)
+     * @see harenet.messages.Message#retain()
+     */
+    @Override
+    public void retain() {
+        REFERENCES.incrementAndGet(this);
+    }
+    
+    /* (non-Javadoc)
+     * @see harenet.messages.Message#release()
+     */
+    @Override
+    public void release() {
+        if(REFERENCES.decrementAndGet(this) == 0) {
+            if(this.payload != null) {
+                this.payload.release();
+            }
+            
+            recycle();
+        }
+    }
+    
+    /**
+     * Invoked once all of the references to this message have been released, pooled
+     * messages should return themselves to their pool
+     */
+    protected void recycle() {
+    }
+    
+    /**
+     * Resets this message so that it can be reused from a pool
+     * 
+     * @param message
+     * @param length
+     * @param payload the already encoded message, which the reset message holds the reference of
+     */
+    protected void reset(NetMessage message, short length, EncodedPayload payload) {
+        this.sizeInBytes = length;
+        this.message = message;
+        this.payload = payload;
+        
+        this.messageId = 0;
+        this.numberOfDelays = 0;
+        this.timeSent = -1;
+        this.sequenceNumberSent = -1;
+        this.sequencesSent = 0;
+        this.timeReceived = 0;
+        
+        REFERENCES.set(this, 1);
+    }
 
 }
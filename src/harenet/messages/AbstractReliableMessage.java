@@ -30,6 +30,15 @@ public abstract class AbstractReliableMessage extends AbstractMessage {
         super(type, message, length);
     }
     
+    /**
+     * @param type
+     * @param message
+     * @param payload
+     */
+    public AbstractReliableMessage(byte type, NetMessage message, EncodedPayload payload) {
+        super(type, message, payload);
+    }
+    
     
     /* (non-Javadoc)
      * @see netspark.messages.AbstractMessage#getSize()
@@ -0,0 +1,173 @@
+/*
+ * see license.txt
+ */
+package harenet.messages;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import harenet.IOBuffer;
+
+/**
+ * The encoded bits of a {@link NetMessage}.  A {@link NetMessage} is encoded once when it is queued up to be sent, and the
+ * encoded bits are then copied into each packet it goes out on, for every {@link harenet.Peer} it is sent to.  The payload
+ * is read only once encoded, so it can be shared by all of the peers.
+ *
+ * <p>
+ * Payloads are pooled and reference counted; each queue holding a {@link Message} with the payload holds a reference,
+ * and the payload is returned to the pool once all of the references have been released.  A reference that is never
+ * released simply means the payload is left for the garbage collector.
+ *
+ * @author Tony
+ *
+ */
+public class EncodedPayload {
+    
+    /* the largest payload the size of a message can describe */
+    private static final int MAX_PAYLOAD_SIZE = Short.MAX_VALUE;
+    
+    /* payloads are pooled in power of two sizes, from 16 bytes on up */
+    private static final int SMALLEST_SIZE = 16;
+    private static final int NUMBER_OF_SIZES = 12;
+    private static final int MAX_POOLED_PER_SIZE = 256;
+    
+    private static final ThreadLocal<IOBuffer> encodeBuffers = new ThreadLocal<IOBuffer>() {
+        @Override
+        protected IOBuffer initialValue() {
+            return IOBuffer.Factory.allocate(MAX_PAYLOAD_SIZE);
+        }
+    };
+    
+    private static final List<Queue<EncodedPayload>> pool = new ArrayList<Queue<EncodedPayload>>(NUMBER_OF_SIZES);
+    private static final AtomicInteger[] poolSizes = new AtomicInteger[NUMBER_OF_SIZES];
+    static {
+        for(int i = 0; i < NUMBER_OF_SIZES; i++) {
+            pool.add(new ConcurrentLinkedQueue<EncodedPayload>());
+            poolSizes[i] = new AtomicInteger();
+        }
+    }
+    
+    /**
+     * Encodes the {@link NetMessage}
+     *
+     * @param message
+     * @return the encoded payload, with a single reference held by the caller
+     */
+    public static EncodedPayload encode(NetMessage message) {
+        IOBuffer buffer = encodeBuffers.get();
+        buffer.clear();
+        message.write(buffer);
+        
+        int numberOfBits = buffer.bitPosition();
+        EncodedPayload payload = obtain((numberOfBits + 7) / 8);
+        payload.numberOfBits = numberOfBits;
+        
+        buffer.bitPosition(0);
+        buffer.getBits(payload.data, numberOfBits);
+        
+        return payload;
+    }
+    
+    /**
+     * @param numberOfBytes
+     * @return the pool size index that can hold the number of bytes, or -1 if too large to be pooled
+     */
+    private static int sizeIndex(int numberOfBytes) {
+        int size = SMALLEST_SIZE;
+        for(int i = 0; i < NUMBER_OF_SIZES; i++) {
+            if(numberOfBytes <= size) {
+                return i;
+            }
+            size <<= 1;
+        }
+        return -1;
+    }
+    
+    private static EncodedPayload obtain(int numberOfBytes) {
+        int sizeIndex = sizeIndex(numberOfBytes);
+        if(sizeIndex < 0) {
+            return new EncodedPayload(new byte[numberOfBytes], sizeIndex);
+        }
+        
+        EncodedPayload payload = pool.get(sizeIndex).poll();
+        if(payload != null) {
+            poolSizes[sizeIndex].decrementAndGet();
+        }
+        else {
+            payload = new EncodedPayload(new byte[SMALLEST_SIZE << sizeIndex], sizeIndex);
+        }
+        
+        payload.references.set(1);
+        return payload;
+    }
+    
+    private final byte[] data;
+    private final int sizeIndex;
+    private final AtomicInteger references;
+    private int numberOfBits;
+    
+    private EncodedPayload(byte[] data, int sizeIndex) {
+        this.data = data;
+        this.sizeIndex = sizeIndex;
+        this.references = new AtomicInteger(1);
+    }
+    
+    /**
+     * @return the number of encoded bits
+     */
+    public int getNumberOfBits() {
+        return numberOfBits;
+    }
+    
+    /**
+     * @return the number of bytes needed to hold the encoded bits
+     */
+    public int getNumberOfBytes() {
+        return (this.numberOfBits + 7) / 8;
+    }
+    
+    /**
+     * Copies the encoded bits into the buffer
+     *
+     * @param buffer
+     */
+    public void writeTo(IOBuffer buffer) {
+        buffer.putBits(this.data, 0, this.numberOfBits);
+    }
+    
+    /**
+     * Copies a slice of the encoded bits into the buffer
+     *
+     * @param buffer
+     * @param offset the byte to start copying from
+     * @param numberOfBits the number of bits to copy
+     */
+    public void writeTo(IOBuffer buffer, int offset, int numberOfBits) {
+        buffer.putBits(this.data, offset, numberOfBits);
+    }
+    
+    /**
+     * Adds a reference to this payload
+     */
+    public void retain() {
+        this.references.incrementAndGet();
+    }
+    
+    /**
+     * Releases a reference to this payload, once there are no more references the
+     * payload is returned to the pool
+     */
+    public void release() {
+        if(this.references.decrementAndGet() == 0 && this.sizeIndex > -1) {
+            if(poolSizes[this.sizeIndex].incrementAndGet() <= MAX_POOLED_PER_SIZE) {
+                pool.get(this.sizeIndex).add(this);
+            }
+            else {
+                poolSizes[this.sizeIndex].decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * see license.txt
+ */
+package harenet.messages;
+
+import harenet.IOBuffer;
+import harenet.MessageHeader;
+
+/**
+ * A piece of a {@link NetMessage} that is too large to fit within a single packet.  The encoded
+ * message is split up into a number of fragments of the same size (the last one may be smaller),
+ * which are sent reliably and stitched back together on the receiving end.
+ *
+ * <p>
+ * Each fragment holds a reference to the complete {@link EncodedPayload} and only writes out its slice of it.
+ *
+ * @author Tony
+ *
+ */
+public class FragmentMessage extends AbstractReliableMessage {
+    
+    /**
+     * The number of bytes the fragment information takes up
+     */
+    public static final int HEADER_SIZE = 2 + // groupId
+                                          2 + // fragment index
+                                          2 + // number of fragments
+                                          4;  // total number of bits
+    
+    /**
+     * Calculates the size of each fragment.  Both ends must agree on this, as it is how the
+     * receiving end knows where each fragment belongs.
+     *
+     * @param totalBits the size of the complete message
+     * @param numberOfFragments the number of fragments the message is split into
+     * @return the number of bits in each fragment (except for possibly the last one)
+     */
+    public static int fragmentSize(int totalBits, int numberOfFragments) {
+        int totalBytes = (totalBits + 7) / 8;
+        return ((totalBytes + numberOfFragments - 1) / numberOfFragments) * 8;
+    }
+    
+    private int groupId;
+    private int fragmentIndex;
+    private int numberOfFragments;
+    private int totalBits;
+    private int priority;
+    
+    /* the received bits of this fragment */
+    private byte[] data;
+    
+    /**
+     */
+    public FragmentMessage() {
+        super(MessageHeader.FRAGMENT_MESSAGE);
+    }
+    
+    /**
+     * @param payload the complete encoded message, a reference is held for this fragment
+     * @param groupId identifies the message this fragment is a piece of
+     * @param fragmentIndex
+     * @param numberOfFragments
+     * @param priority the priority of the complete message
+     */
+    public FragmentMessage(EncodedPayload payload, int groupId, int fragmentIndex, int numberOfFragments, int priority) {
+        super(MessageHeader.FRAGMENT_MESSAGE, null, (short)0);
+        this.payload = payload;
+        this.groupId = groupId;
+        this.fragmentIndex = fragmentIndex;
+        this.numberOfFragments = numberOfFragments;
+        this.totalBits = payload.getNumberOfBits();
+        this.priority = priority;
+        
+        this.sizeInBytes = (short)(HEADER_SIZE + (getNumberOfBits() + 7) / 8);
+        
+        payload.retain();
+    }
+    
+    /**
+     * @return the id of the message this fragment is a piece of
+     */
+    public int getGroupId() {
+        return groupId;
+    }
+    
+    /**
+     * @return the index of this fragment
+     */
+    public int getFragmentIndex() {
+        return fragmentIndex;
+    }
+    
+    /**
+     * @return the number of fragments the message was split into
+     */
+    public int getNumberOfFragments() {
+        return numberOfFragments;
+    }
+    
+    /**
+     * @return the number of bits in the complete message
+     */
+    public int getTotalBits() {
+        return totalBits;
+    }
+    
+    /**
+     * @return the bit position of this fragment within the complete message
+     */
+    public int getBitOffset() {
+        return this.fragmentIndex * fragmentSize(this.totalBits, this.numberOfFragments);
+    }
+    
+    /**
+     * @return the number of bits in this fragment
+     */
+    public int getNumberOfBits() {
+        int size = fragmentSize(this.totalBits, this.numberOfFragments);
+        return Math.max(0, Math.min(size, this.totalBits - this.fragmentIndex * size));
+    }
+    
+    /**
+     * @return the received bits of this fragment, or null if the fragment was malformed
+     */
+    public byte[] getData() {
+        return data;
+    }
+    
+    /**
+     * @return true if the fragment information is consistent
+     */
+    public boolean isValid() {
+        return this.numberOfFragments > 0 &&
+               this.fragmentIndex >= 0 && this.fragmentIndex < this.numberOfFragments &&
+               this.totalBits > 0 && getNumberOfBits() > 0;
+    }
+    
+    /* (non-Javadoc)
+     * @see harenet.messages.AbstractMessage#getPriority()
+     */
+    @Override
+    public int getPriority() {
+        return this.priority;
+    }
+    
+    /* (non-Javadoc)
+     * @see harenet.messages.AbstractMessage#writeTo(harenet.IOBuffer)
+     */
+    @Override
+    public void writeTo(IOBuffer buffer) {
+        buffer.putByte(type);
+        
+        writeHeader(buffer);
+        
+        buffer.putShort((short)this.groupId);
+        buffer.putShort((short)this.fragmentIndex);
+        buffer.putShort((short)this.numberOfFragments);
+        buffer.putInt(this.totalBits);
+        
+        this.payload.writeTo(buffer, getBitOffset() / 8, getNumberOfBits());
+    }
+    
+    /* (non-Javadoc)
+     * @see harenet.messages.AbstractMessage#readFrom(harenet.IOBuffer, harenet.messages.NetMessageFactory)
+     */
+    @Override
+    public void readFrom(IOBuffer buffer, NetMessageFactory messageFactory) {
+        readHeader(buffer);
+        
+        this.groupId = buffer.getShort() & 0xFFFF;
+        this.fragmentIndex = buffer.getShort();
+        this.numberOfFragments = buffer.getShort();
+        this.totalBits = buffer.getInt();
+        
+        if(isValid() && getNumberOfBits() <= buffer.remaining() * 8) {
+            int numberOfBits = getNumberOfBits();
+            this.data = buffer.getBits(new byte[(numberOfBits + 7) / 8], numberOfBits);
+        }
+    }
+    
+    /* (non-Javadoc)
+     * @see harenet.messages.Message#copy()
+     */
+    @Override
+    public Message copy() {
+        return new FragmentMessage(this.payload, this.groupId, this.fragmentIndex, this.numberOfFragments, this.priority);
+    }
+}
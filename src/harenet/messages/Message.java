@@ -84,6 +84,17 @@ public interface Message extends Transmittable {
      */
     public NetMessage getMessage();
     
+    /**
+     * @return the already encoded messages data, or null if it has not been encoded
+     */
+    public EncodedPayload getPayload();
+    
+    /**
+     * @return the priority this message should be sent out with
+     * @see PrioritizedNetMessage
+     */
+    public int getPriority();
+    
     /**
      * @return the size of this message
      */
@@ -107,5 +118,18 @@ public interface Message extends Transmittable {
      * @return a copy of this message
      */
     public Message copy();
+    
+    /**
+     * Adds a reference to this message, and so to its encoded payload (if it has one).  Each
+     * queue that holds this message should hold a reference.
+     */
+    public void retain();
+    
+    /**
+     * Releases a reference to this message.  This should be invoked once the message is no longer
+     * queued up to be sent (or has been received); once all of the references are released the
+     * encoded payload is released and pooled messages are reused, so the message must no longer be used.
+     */
+    public void release();
 
 }
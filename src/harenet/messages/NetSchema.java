@@ -0,0 +1,433 @@
+/*
+ * see license.txt
+ */
+package harenet.messages;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+import harenet.IOBuffer;
+
+/**
+ * Declares how the fields of a {@link NetMessage} are packed: the number of bits each field takes
+ * up, and the range values are quantized to.  The fields are looked up once, when the schema is built,
+ * each one being bound to a codec for its Java type and encoding; reading and writing a message then
+ * is just running through the codecs.
+ *
+ * <p>
+ * Values outside of a field's range are clamped to it.
+ *
+ * <pre>
+ * NetSchema schema = NetSchema.define(NetBullet.class)
+ *                      .quantized("posX", 0, 8191, 13)
+ *                      .angle("orientation", 8)
+ *                      .unsigned("health", 7)
+ *                      .build();
+ * </pre>
+ *
+ * @author Tony
+ *
+ */
+public class NetSchema {
+    
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    
+    /**
+     * Reads and writes a field of a message as an int, through method handles bound to the field when the
+     * schema is built; the handles are adapted to take the message as an {@link Object} and the value as the
+     * type the accessor works with, so they can be invoked exactly
+     */
+    private static abstract class Accessor {
+        final MethodHandle getter;
+        final MethodHandle setter;
+        
+        Accessor(Field field, Class<?> valueType) throws IllegalAccessException {
+            this.getter = MethodHandles.explicitCastArguments(LOOKUP.unreflectGetter(field),
+                                                              MethodType.methodType(valueType, Object.class));
+            this.setter = MethodHandles.explicitCastArguments(LOOKUP.unreflectSetter(field),
+                                                              MethodType.methodType(void.class, Object.class, valueType));
+        }
+        
+        abstract int getInt(Object message) throws Throwable;
+        abstract void setInt(Object message, int value) throws Throwable;
+        
+        float getFloat(Object message) throws Throwable {
+            return getInt(message);
+        }
+        
+        void setFloat(Object message, float value) throws Throwable {
+            setInt(message, Math.round(value));
+        }
+    }
+    
+    /**
+     * Handles int, short and byte fields; the narrower fields are widened when read, and cast down when written
+     */
+    private static class IntAccessor extends Accessor {
+        IntAccessor(Field field) throws IllegalAccessException {
+            super(field, int.class);
+        }
+        
+        int getInt(Object message) throws Throwable {
+            return (int)this.getter.invokeExact(message);
+        }
+        
+        void setInt(Object message, int value) throws Throwable {
+            this.setter.invokeExact(message, value);
+        }
+    }
+    
+    private static class FloatAccessor extends Accessor {
+        FloatAccessor(Field field) throws IllegalAccessException {
+            super(field, float.class);
+        }
+        
+        int getInt(Object message) throws Throwable {
+            return (int)getFloat(message);
+        }
+        
+        void setInt(Object message, int value) throws Throwable {
+            setFloat(message, value);
+        }
+        
+        float getFloat(Object message) throws Throwable {
+            return (float)this.getter.invokeExact(message);
+        }
+        
+        void setFloat(Object message, float value) throws Throwable {
+            this.setter.invokeExact(message, value);
+        }
+    }
+    
+    private static class BooleanAccessor extends Accessor {
+        BooleanAccessor(Field field) throws IllegalAccessException {
+            super(field, boolean.class);
+        }
+        
+        int getInt(Object message) throws Throwable {
+            return (boolean)this.getter.invokeExact(message) ? 1 : 0;
+        }
+        
+        void setInt(Object message, int value) throws Throwable {
+            this.setter.invokeExact(message, value != 0);
+        }
+    }
+    
+    private static class EnumAccessor extends Accessor {
+        final Object[] values;
+        
+        EnumAccessor(Field field) throws IllegalAccessException {
+            super(field, Object.class);
+            this.values = field.getType().getEnumConstants();
+        }
+        
+        int getInt(Object message) throws Throwable {
+            Enum<?> value = (Enum<?>)(Object)this.getter.invokeExact(message);
+            return value != null ? value.ordinal() : this.values.length - 1;
+        }
+        
+        void setInt(Object message, int value) throws Throwable {
+            /* anything unknown is read as the last constant, which by convention is UNKNOWN */
+            Object constant = this.values[Math.min(value, this.values.length - 1)];
+            this.setter.invokeExact(message, constant);
+        }
+    }
+    
+    /**
+     * Converts a field to and from its packed bits
+     */
+    private static abstract class FieldCodec {
+        final Accessor accessor;
+        final int numberOfBits;
+        final int maxValue;
+        
+        FieldCodec(Accessor accessor, int numberOfBits) {
+            this.accessor = accessor;
+            this.numberOfBits = numberOfBits;
+            this.maxValue = (int)((1L << numberOfBits) - 1);
+        }
+        
+        int clamp(int value) {
+            return value < 0 ? 0 : (value > this.maxValue ? this.maxValue : value);
+        }
+        
+        abstract int toBits(Object message) throws Throwable;
+        abstract void fromBits(Object message, int bits) throws Throwable;
+    }
+    
+    private static class UnsignedCodec extends FieldCodec {
+        UnsignedCodec(Accessor accessor, int numberOfBits) {
+            super(accessor, numberOfBits);
+        }
+        
+        int toBits(Object message) throws Throwable {
+            return clamp(this.accessor.getInt(message));
+        }
+        
+        void fromBits(Object message, int bits) throws Throwable {
+            this.accessor.setInt(message, bits);
+        }
+    }
+    
+    private static class QuantizedCodec extends FieldCodec {
+        final float min;
+        final float scale;
+        
+        QuantizedCodec(Accessor accessor, float min, float max, int numberOfBits) {
+            super(accessor, numberOfBits);
+            this.min = min;
+            this.scale = this.maxValue / (max - min);
+        }
+        
+        int toBits(Object message) throws Throwable {
+            return clamp(Math.round((this.accessor.getFloat(message) - this.min) * this.scale));
+        }
+        
+        void fromBits(Object message, int bits) throws Throwable {
+            this.accessor.setFloat(message, this.min + bits / this.scale);
+        }
+    }
+    
+    private static class AngleCodec extends FieldCodec {
+        AngleCodec(Accessor accessor, int numberOfBits) {
+            super(accessor, numberOfBits);
+        }
+        
+        int toBits(Object message) throws Throwable {
+            int degrees = this.accessor.getInt(message) % 360;
+            if(degrees < 0) {
+                degrees += 360;
+            }
+            /* rounded to the nearest step, wrapping back around to 0 */
+            return ((degrees * (this.maxValue + 1) + 180) / 360) & this.maxValue;
+        }
+        
+        void fromBits(Object message, int bits) throws Throwable {
+            this.accessor.setInt(message, (bits * 360 + (this.maxValue + 1) / 2) / (this.maxValue + 1));
+        }
+    }
+    
+    /**
+     * Builds a {@link NetSchema}
+     *
+     * @author Tony
+     *
+     */
+    public static class Builder {
+        private final Class<?> type;
+        private final List<FieldCodec> codecs;
+        
+        private Builder(Class<?> type, List<FieldCodec> codecs) {
+            this.type = type;
+            this.codecs = codecs;
+        }
+        
+        private Accessor accessor(String name) {
+            Field field = null;
+            for(Class<?> c = this.type; c != null && field == null; c = c.getSuperclass()) {
+                try {
+                    field = c.getDeclaredField(name);
+                }
+                catch(NoSuchFieldException e) {
+                }
+            }
+            
+            if(field == null || Modifier.isStatic(field.getModifiers())) {
+                throw new IllegalArgumentException("No field named: " + name + " in " + this.type.getName());
+            }
+            
+            field.setAccessible(true);
+            
+            Class<?> fieldType = field.getType();
+            try {
+                if(fieldType == int.class ||
+                   fieldType == short.class ||
+                   fieldType == byte.class)    return new IntAccessor(field);
+                if(fieldType == float.class)   return new FloatAccessor(field);
+                if(fieldType == boolean.class) return new BooleanAccessor(field);
+                if(fieldType.isEnum())         return new EnumAccessor(field);
+            }
+            catch(IllegalAccessException e) {
+                throw new IllegalArgumentException("Unable to access field: " + name + " in " + this.type.getName(), e);
+            }
+            
+            throw new IllegalArgumentException("Unsupported field type: " + fieldType.getName() + " for " + name);
+        }
+        
+        private static void checkBits(String name, int numberOfBits) {
+            if(numberOfBits < 1 || numberOfBits > 31) {
+                throw new IllegalArgumentException("Invalid number of bits for " + name + ": " + numberOfBits);
+            }
+        }
+        
+        /**
+         * A whole number in the range of [0, 2^numberOfBits)
+         *
+         * @param name the field name
+         * @param numberOfBits
+         * @return this builder
+         */
+        public Builder unsigned(String name, int numberOfBits) {
+            checkBits(name, numberOfBits);
+            this.codecs.add(new UnsignedCodec(accessor(name), numberOfBits));
+            return this;
+        }
+        
+        /**
+         * A number in the range of [min, max], quantized to the number of bits
+         *
+         * @param name the field name
+         * @param min
+         * @param max
+         * @param numberOfBits
+         * @return this builder
+         */
+        public Builder quantized(String name, float min, float max, int numberOfBits) {
+            checkBits(name, numberOfBits);
+            if(max <= min) {
+                throw new IllegalArgumentException("Invalid range for " + name + ": " + min + " to " + max);
+            }
+            this.codecs.add(new QuantizedCodec(accessor(name), min, max, numberOfBits));
+            return this;
+        }
+        
+        /**
+         * An angle in degrees, quantized to the number of bits
+         *
+         * @param name the field name
+         * @param numberOfBits
+         * @return this builder
+         */
+        public Builder angle(String name, int numberOfBits) {
+            checkBits(name, numberOfBits);
+            this.codecs.add(new AngleCodec(accessor(name), numberOfBits));
+            return this;
+        }
+        
+        /**
+         * A boolean flag, taking a single bit
+         *
+         * @param name the field name
+         * @return this builder
+         */
+        public Builder flag(String name) {
+            this.codecs.add(new UnsignedCodec(accessor(name), 1));
+            return this;
+        }
+        
+        /**
+         * An enum, sent as its ordinal.  Ordinals that don't fit in the number of bits, or are
+         * unknown when read, become the last constant of the enum.
+         *
+         * @param name the field name
+         * @param numberOfBits
+         * @return this builder
+         */
+        public Builder enumeration(String name, int numberOfBits) {
+            checkBits(name, numberOfBits);
+            this.codecs.add(new UnsignedCodec(accessor(name), numberOfBits));
+            return this;
+        }
+        
+        /**
+         * @return the schema
+         */
+        public NetSchema build() {
+            return new NetSchema(this.codecs.toArray(new FieldCodec[this.codecs.size()]));
+        }
+    }
+    
+    /**
+     * Defines a new schema
+     *
+     * @param type the message class
+     * @return the {@link Builder}
+     */
+    public static Builder define(Class<?> type) {
+        return new Builder(type, new ArrayList<FieldCodec>());
+    }
+    
+    private final FieldCodec[] codecs;
+    private final int numberOfBits;
+    
+    private NetSchema(FieldCodec[] codecs) {
+        this.codecs = codecs;
+        
+        int numberOfBits = 0;
+        for(FieldCodec codec : codecs) {
+            numberOfBits += codec.numberOfBits;
+        }
+        
+        this.numberOfBits = numberOfBits;
+    }
+    
+    /**
+     * Extends this schema, the fields of the returned builder are packed after the fields of
+     * this schema
+     *
+     * @param type the message class, which must be a sub class of the one this schema was defined for
+     * @return the {@link Builder}
+     */
+    public Builder extend(Class<?> type) {
+        List<FieldCodec> codecs = new ArrayList<FieldCodec>();
+        for(FieldCodec codec : this.codecs) {
+            codecs.add(codec);
+        }
+        
+        return new Builder(type, codecs);
+    }
+    
+    /**
+     * @return the number of bits the fields of this schema take up
+     */
+    public int getNumberOfBits() {
+        return numberOfBits;
+    }
+    
+    /**
+     * Writes out the fields of the message
+     *
+     * @param buffer
+     * @param message
+     */
+    public void write(IOBuffer buffer, Object message) {
+        try {
+            for(int i = 0; i < this.codecs.length; i++) {
+                FieldCodec codec = this.codecs[i];
+                buffer.putIntBits(codec.toBits(message), codec.numberOfBits);
+            }
+        }
+        catch(RuntimeException | Error e) {
+            throw e;
+        }
+        catch(Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * Reads in the fields of the message
+     *
+     * @param buffer
+     * @param message
+     */
+    public void read(IOBuffer buffer, Object message) {
+        try {
+            for(int i = 0; i < this.codecs.length; i++) {
+                FieldCodec codec = this.codecs[i];
+                codec.fromBits(message, buffer.getIntBits(codec.numberOfBits));
+            }
+        }
+        catch(RuntimeException | Error e) {
+            throw e;
+        }
+        catch(Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+/*
+ * see license.txt
+ */
+package harenet.messages;
+
+/**
+ * A {@link NetMessage} that is taken from a pool when it is read in by the {@link NetMessageFactory}.  Once
+ * the message has been processed it is {@link #release()}d back to its pool, to be read into again, so whatever
+ * processes the message must not hold on to it (or to anything it reuses).
+ *
+ * @author Tony
+ *
+ */
+public interface PooledNetMessage extends NetMessage {
+    
+    /**
+     * Returns this message to its pool, the message must no longer be used
+     */
+    public void release();
+}
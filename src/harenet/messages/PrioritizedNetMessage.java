@@ -0,0 +1,29 @@
+/*
+ * see license.txt
+ */
+package harenet.messages;
+
+/**
+ * A {@link NetMessage} that has a priority in which it should be sent out.  When there is not
+ * enough room in a packet (or not enough bandwidth) for all of the queued up messages, the
+ * higher priority messages are sent out first.  {@link NetMessage}s that do not implement this
+ * are sent with {@link #NORMAL_PRIORITY}.
+ *
+ * @author Tony
+ *
+ */
+public interface PrioritizedNetMessage extends NetMessage {
+    
+    public static final int HIGHEST_PRIORITY = 0;
+    public static final int HIGH_PRIORITY    = 1;
+    public static final int NORMAL_PRIORITY  = 2;
+    public static final int LOW_PRIORITY     = 3;
+    public static final int LOWEST_PRIORITY  = 4;
+    
+    public static final int NUMBER_OF_PRIORITIES = 5;
+    
+    /**
+     * @return the priority of this message, from {@link #HIGHEST_PRIORITY} to {@link #LOWEST_PRIORITY}
+     */
+    public int getPriority();
+}
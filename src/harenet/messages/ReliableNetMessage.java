@@ -4,15 +4,58 @@
 package harenet.messages;
 
 import harenet.MessageHeader;
+import harenet.RingBuffer;
 
 /**
  * A Reliable message is one that is guaranteed to make it to the peer.  This message
  * can contain a user defined {@link NetMessage} to transfer.
  * 
+ * <p>
+ * Like {@link UnReliableNetMessage}s these are pooled, a message obtained from one of the
+ * <code>obtain</code> methods is returned to the pool once all of its references have been released.
+ * 
  * @author Tony
  *
  */
 public class ReliableNetMessage extends AbstractReliableMessage {
+    
+    private static final RingBuffer<ReliableNetMessage> pool = new RingBuffer<ReliableNetMessage>(1024);
+    
+    /**
+     * @return a pooled message to be read in
+     */
+    public static ReliableNetMessage obtain() {
+        return obtain(null, (short)0, null);
+    }
+    
+    /**
+     * @param message
+     * @param payload the encoded message, the returned message takes over the reference of the caller
+     * @return a pooled message
+     */
+    public static ReliableNetMessage obtain(NetMessage message, EncodedPayload payload) {
+        return obtain(message, (short)payload.getNumberOfBytes(), payload);
+    }
+    
+    /**
+     * @param message an already decoded message
+     * @param length the size of the message in bytes
+     * @return a pooled message
+     */
+    public static ReliableNetMessage obtain(NetMessage message, short length) {
+        return obtain(message, length, null);
+    }
+    
+    private static ReliableNetMessage obtain(NetMessage message, short length, EncodedPayload payload) {
+        ReliableNetMessage msg = pool.poll();
+        if(msg == null) {
+            msg = new ReliableNetMessage();
+        }
+        
+        msg.reset(message, length, payload);
+        return msg;
+    }
+        
         
     /**
      */
@@ -24,11 +67,28 @@ public class ReliableNetMessage extends AbstractReliableMessage {
         super(MessageHeader.RELIABLE_NETMESSAGE, message, length);
     }    
     
+    public ReliableNetMessage(NetMessage message, EncodedPayload payload) {
+        super(MessageHeader.RELIABLE_NETMESSAGE, message, payload);
+    }
+    
     /* (non-Javadoc)
      * @see netspark.messages.Message#copy()
      */
     @Override
     public Message copy() {    
-        return new ReliableNetMessage(getMessage(), this.sizeInBytes);
+        if(this.payload != null) {
+            this.payload.retain();
+            return obtain(getMessage(), this.payload);
+        }
+        return obtain(getMessage(), this.sizeInBytes);
+    }
+    
+    /* (non-Javadoc)
+     * @see harenet.messages.AbstractMessage#recycle()
+     */
+    @Override
+    protected void recycle() {
+        reset(null, (short)0, null);
+        pool.offer(this);
     }
 }
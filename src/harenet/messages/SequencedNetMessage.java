@@ -0,0 +1,27 @@
+/*
+ * see license.txt
+ */
+package harenet.messages;
+
+import harenet.api.Connection;
+
+/**
+ * A {@link NetMessage} that wants to know which packet it was packed into.  This allows
+ * the sender to later ask the {@link Connection} if the remote end acknowledged that packet,
+ * which is useful for delta compressing against state the remote end is known to have.
+ *
+ * @author Tony
+ *
+ */
+public interface SequencedNetMessage extends NetMessage {
+    
+    /**
+     * The message has been packed into the packet with the supplied sequence number.
+     *
+     * <p>
+     * NOTE: This is invoked from the network thread.
+     *
+     * @param packetSequence the packet sequence number
+     */
+    public void onPacked(int packetSequence);
+}
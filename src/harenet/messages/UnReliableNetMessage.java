@@ -4,15 +4,50 @@
 package harenet.messages;
 
 import harenet.MessageHeader;
+import harenet.RingBuffer;
 
 /**
  * A network message that is <b>NOT</b> guaranteed to arrive at the peer. This message
  * can contain a user defined {@link NetMessage} to transfer.
  * 
+ * <p>
+ * These are sent and received for every update, so they are pooled; a message obtained from
+ * one of the <code>obtain</code> methods is returned to the pool once all of its references
+ * have been released.
+ * 
  * @author Tony
  *
  */
 public class UnReliableNetMessage extends AbstractMessage {
+    
+    private static final RingBuffer<UnReliableNetMessage> pool = new RingBuffer<UnReliableNetMessage>(1024);
+    
+    /**
+     * @return a pooled message to be read in
+     */
+    public static UnReliableNetMessage obtain() {
+        return obtain(null, (short)0, null);
+    }
+    
+    /**
+     * @param message
+     * @param payload the encoded message, the returned message takes over the reference of the caller
+     * @return a pooled message
+     */
+    public static UnReliableNetMessage obtain(NetMessage message, EncodedPayload payload) {
+        return obtain(message, (short)payload.getNumberOfBytes(), payload);
+    }
+    
+    private static UnReliableNetMessage obtain(NetMessage message, short length, EncodedPayload payload) {
+        UnReliableNetMessage msg = pool.poll();
+        if(msg == null) {
+            msg = new UnReliableNetMessage();
+        }
+        
+        msg.reset(message, length, payload);
+        return msg;
+    }
+    
     /**
      */
     public UnReliableNetMessage() {
@@ -23,11 +58,28 @@ public class UnReliableNetMessage extends AbstractMessage {
         super(MessageHeader.UNRELIABLE_NETMESSAGE, message, length);
     }    
     
+    public UnReliableNetMessage(NetMessage message, EncodedPayload payload) {
+        super(MessageHeader.UNRELIABLE_NETMESSAGE, message, payload);
+    }
+    
     /* (non-Javadoc)
      * @see netspark.messages.Message#copy()
      */
     @Override
     public Message copy() {    
-        return new UnReliableNetMessage(getMessage(), this.sizeInBytes);
+        if(this.payload != null) {
+            this.payload.retain();
+            return obtain(getMessage(), this.payload);
+        }
+        return obtain(getMessage(), this.sizeInBytes, null);
+    }
+    
+    /* (non-Javadoc)
+     * @see harenet.messages.AbstractMessage#recycle()
+     */
+    @Override
+    protected void recycle() {
+        reset(null, (short)0, null);
+        pool.offer(this);
     }
 }
@@ -53,4 +53,33 @@ public class AIConfig {
     public long getReactionTime() {
         return this.config.getInt(500, "ai", "reactionTime");
     }
+    
+    /**
+     * @return the number of worker threads the brains sense on, 0 to sense on the game thread
+     */
+    public int getSenseThreads() {
+        return this.config.getInt(0, "ai", "senseThreads");
+    }
+    
+    /**
+     * @return the number of msec the brains may spend thinking each update, past which the
+     * brains that can wait are put off to a later update; 0 for no limit
+     */
+    public int getThinkBudget() {
+        return this.config.getInt(0, "ai", "thinkBudget");
+    }
+    
+    /**
+     * @return within this distance of a human player, a brain thinks every update
+     */
+    public int getThinkNearDistance() {
+        return this.config.getInt(800, "ai", "thinkNearDistance");
+    }
+    
+    /**
+     * @return past this distance from every human player, a brain thinks the least often
+     */
+    public int getThinkFarDistance() {
+        return this.config.getInt(1600, "ai", "thinkFarDistance");
+    }
 }
@@ -3,6 +3,7 @@
  */
 package seventh.ai.basic;
 
+import seventh.ai.basic.ThinkScheduler.Thinker;
 import seventh.ai.basic.actions.Action;
 import seventh.ai.basic.teamstrategy.TeamStrategy;
 import seventh.game.PlayerInfo;
@@ -21,7 +22,7 @@ import seventh.shared.TimeStep;
  * @author Tony
  *
  */
-public class Brain implements Debugable {
+public class Brain implements Debugable, Thinker {
         
     private Locomotion motion;
     private Memory memory;
@@ -38,6 +39,9 @@ public class Brain implements Debugable {
     
     private PersonalityTraits personality;
     
+    private long senseTime, actTime;
+    private int thinkInterval;
+    
     /**
      * @param runtime
      * @param world
@@ -57,6 +61,7 @@ public class Brain implements Debugable {
         this.communicator = new Communicator(world);
         
         this.targetingSystem = new TargetingSystem(this);
+        this.thinkInterval = 1;
     }
     
     /**
@@ -149,23 +154,111 @@ public class Brain implements Debugable {
      * @param timeStep
      */
     public void update(TimeStep timeStep) {
-        /* We can't rely on the player's isAlive method because
-         * we might have respawned with a new entity, in which 
-         * case the Brain.spawned method will be invoked, but
-         * for now we must rely on the entity that is currently
-         * bound to this Brain
-         */
-        if(entityOwner!=null&&entityOwner.isAlive()) {            
+        sense(timeStep);
+        act(timeStep);
+    }
+    
+    /**
+     * Updates the memory and polls the sensors.  This only reads from the game, and only 
+     * writes to this brain, so the brains may sense from multiple threads (see {@link SensePhase}).
+     * 
+     * @param timeStep
+     */
+    public void sense(TimeStep timeStep) {
+        long startTime = System.nanoTime();
+        if(isEntityAlive()) {
             this.memory.update(timeStep);
-            this.sensors.update(timeStep);        
+            this.sensors.update(timeStep);
+        }
+        this.senseTime = System.nanoTime() - startTime;
+    }
+    
+    /**
+     * Moves, thinks and aims based off of what was sensed.  This must be invoked from 
+     * the game thread, after {@link #sense(TimeStep)}.
+     * 
+     * @param timeStep
+     */
+    public void act(TimeStep timeStep) {
+        act(timeStep, timeStep);
+    }
+    
+    /**
+     * Moves, thinks and aims based off of what was sensed, the brain only thinks if it is 
+     * handed a think time step (see {@link ThinkScheduler}).  This must be invoked from the 
+     * game thread, after {@link #sense(TimeStep)}.
+     * 
+     * @param timeStep
+     * @param thinkTimeStep the time since this brain last thought, or null if it is not to think
+     */
+    @Override
+    public void act(TimeStep timeStep, TimeStep thinkTimeStep) {
+        long startTime = System.nanoTime();
+        if(isEntityAlive()) {
             this.motion.update(timeStep);
-            this.thoughtProcess.think(timeStep, this);
+            if(thinkTimeStep != null) {
+                this.thoughtProcess.think(thinkTimeStep, this);
+            }
             
             this.targetingSystem.update(timeStep);
             
             //debugDraw();
             //debugDrawPathPlanner();
         }        
+        this.actTime = System.nanoTime() - startTime;
+    }
+    
+    /**
+     * @return the amount of nano seconds this brain spent sensing and acting in the last update
+     */
+    public long getAITime() {
+        return this.senseTime + this.actTime;
+    }
+    
+    /**
+     * @return how often this brain thinks, in number of updates
+     */
+    public int getThinkInterval() {
+        return thinkInterval;
+    }
+    
+    /**
+     * @param thinkInterval how often this brain thinks, in number of updates
+     */
+    @Override
+    public void setThinkInterval(int thinkInterval) {
+        this.thinkInterval = thinkInterval;
+    }
+    
+    /* (non-Javadoc)
+     * @see seventh.ai.basic.ThinkScheduler.Thinker#isInCombat()
+     */
+    @Override
+    public boolean isInCombat() {
+        return this.targetingSystem.hasTarget() ||
+               this.sensors.getFeelSensor().getMostRecentAttacker() != null;
+    }
+    
+    /* (non-Javadoc)
+     * @see seventh.ai.basic.ThinkScheduler.Thinker#getCenterPos()
+     */
+    @Override
+    public Vector2f getCenterPos() {
+        return this.entityOwner.getCenterPos();
+    }
+    
+    /* (non-Javadoc)
+     * @see seventh.ai.basic.ThinkScheduler.Thinker#isEntityAlive()
+     */
+    @Override
+    public boolean isEntityAlive() {
+        /* We can't rely on the player's isAlive method because
+         * we might have respawned with a new entity, in which 
+         * case the Brain.spawned method will be invoked, but
+         * for now we must rely on the entity that is currently
+         * bound to this Brain
+         */
+        return entityOwner!=null&&entityOwner.isAlive();
     }
     
     
@@ -309,6 +402,8 @@ public class Brain implements Debugable {
     public DebugInformation getDebugInformation() {
         DebugInformation me = new DebugInformation();
         me.add("entity_id", (this.entityOwner!=null) ? getEntityOwner().getId() : null)
+          .add("ai_time_usec", getAITime() / 1_000L)
+          .add("think_interval", this.thinkInterval)
           .add("locomotion", this.motion)
           .add("thoughts", getThoughtProcess());
         return me;
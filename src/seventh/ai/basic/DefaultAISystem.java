@@ -70,6 +70,8 @@ public class DefaultAISystem implements AISystem {
     
     private AIConfig config;
     private World world;
+    private SensePhase sensePhase;
+    private ThinkScheduler thinkScheduler;
     
     private final Map<String, PersonalityTraits> personalities;
     private static final PersonalityTraits defaultPersonality = new PersonalityTraits();
@@ -167,6 +169,12 @@ public class DefaultAISystem implements AISystem {
         this.aiCommands = new AICommands(this);
         this.world = new World(config, game, zones, goals, random);
         
+        if(this.sensePhase != null) {
+            this.sensePhase.shutdown();
+        }
+        this.sensePhase = new SensePhase(config.getSenseThreads());
+        this.thinkScheduler = new ThinkScheduler(game, config, this.brains.length);
+        
         GameType gameType = game.getGameType();
         
         switch(gameType.getType()) {
@@ -310,6 +318,13 @@ public class DefaultAISystem implements AISystem {
         return world;
     }
     
+    /**
+     * @return the scheduler deciding which brains think each update
+     */
+    public ThinkScheduler getThinkScheduler() {
+        return thinkScheduler;
+    }
+    
     /* (non-Javadoc)
      * @see seventh.ai.AISystem#destroy()
      */
@@ -317,6 +332,10 @@ public class DefaultAISystem implements AISystem {
     public void destroy() {
         this.watcher.stopWatching();
         
+        if(this.sensePhase != null) {
+            this.sensePhase.shutdown();
+        }
+        
         for(int i = 0; i < this.brains.length; i++) {
             this.brains[i] = null;
         }                
@@ -380,12 +399,11 @@ public class DefaultAISystem implements AISystem {
     public void update(TimeStep timeStep) {
         this.stats.update(timeStep);
         
-        for(int i = 0; i < brains.length; i++) {
-            Brain brain = brains[i];
-            if(brain != null) {
-                brain.update(timeStep);
-            }
-        }
+        /* the brains sense in parallel, and then act
+         * in order on the game thread */
+        this.world.updateSoundEvents();
+        this.sensePhase.sense(brains, timeStep);
+        this.thinkScheduler.act(brains, timeStep);
         
         
         this.alliedAIStrategy.update(timeStep, game);
@@ -550,6 +568,7 @@ public class DefaultAISystem implements AISystem {
         DebugInformation me = new DebugInformation();
         me.add("brains", this.brains)
           .add("stats", this.stats)
+          .add("think_scheduler", this.thinkScheduler)
           .add("allied_strategy", this.alliedAIStrategy)
           .add("axis_strategy", this.axisAIStrategy);
         return me;
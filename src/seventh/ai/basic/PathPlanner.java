@@ -17,6 +17,7 @@ import seventh.graph.AStarGraphSearch;
 import seventh.graph.GraphNode;
 import seventh.map.MapGraph;
 import seventh.map.Tile;
+import seventh.math.Rectangle;
 import seventh.math.Vector2f;
 
 
@@ -35,6 +36,13 @@ public class PathPlanner<E> {
     private int currentNodeCount;
     private Vector2f nextWaypoint;
     private Vector2f finalDestination;    
+    private Vector2f plannedDestination;
+    private Vector2f zoneCenter;
+    
+    /* true if the path only goes part of the way to the
+     * final destination, along a route of zones */
+    private boolean isPartialPath;
+    private ZoneGraph zoneGraph;
     
     private World world;
     private Brain brain;
@@ -87,6 +95,23 @@ public class PathPlanner<E> {
     public static class SearchPath<E> extends AStarGraphSearch<Tile, E> {
         public List<Tile> tilesToAvoid = new ArrayList<>();
         
+        /* if set, the search is kept within these zones */
+        private ZoneGraph zoneGraph;
+        private Zone fromZone, toZone;
+        
+        /**
+         * Keeps the search within the block of zones spanning the from and to {@link Zone}s
+         * 
+         * @param zoneGraph the zone graph, or null to search the whole map
+         * @param fromZone
+         * @param toZone
+         */
+        public void restrictTo(ZoneGraph zoneGraph, Zone fromZone, Zone toZone) {
+            this.zoneGraph = zoneGraph;
+            this.fromZone = fromZone;
+            this.toZone = toZone;
+        }
+        
         @Override
         protected int heuristicEstimateDistance(
                 GraphNode<Tile, E> startNode,
@@ -113,6 +138,10 @@ public class PathPlanner<E> {
         
         @Override
         protected boolean shouldIgnore(GraphNode<Tile, E> node) {
+            if(this.zoneGraph != null && !this.zoneGraph.isInZones(node, this.fromZone, this.toZone)) {
+                return true;
+            }
+            
             boolean ignore = this.tilesToAvoid.contains(node.getValue());
             if(ignore) {
                 //System.out.println("Ignoring: " + node.getValue().getXIndex() + "," + node.getValue().getYIndex());
@@ -185,7 +214,10 @@ public class PathPlanner<E> {
         this.world = brain.getWorld();
         this.graph = graph;
         this.finalDestination = new Vector2f();
+        this.plannedDestination = new Vector2f();
+        this.zoneCenter = new Vector2f();
         this.nextWaypoint = new Vector2f();
+        this.zoneGraph = this.world.getZoneGraph();
         
         this.path = new ArrayList<GraphNode<Tile, E>>();
         this.tilesToAvoid = new ArrayList<Tile>();
@@ -209,6 +241,7 @@ public class PathPlanner<E> {
      */
     public void clearPath() {
         this.currentNode = 0;
+        this.isPartialPath = false;
         this.finalDestination.zeroOut();
         this.path.clear();
         this.tilesToAvoid.clear();
@@ -234,20 +267,96 @@ public class PathPlanner<E> {
      * @param destination
      */
     public void findPath(Vector2f start, Vector2f destination) {                
-        List<GraphNode<Tile, E>> newPath = this.graph.findPath(this.fuzzySearchPath, start, destination);
-        setPath(newPath);
-        
-        this.finalDestination.set(destination);
+        planPath(start, destination);
     }
     
     public void findPath(Vector2f start, Vector2f destination, List<Tile> tilesToAvoid) {
         this.fuzzySearchPath.tilesToAvoid.clear();
         this.fuzzySearchPath.tilesToAvoid.addAll(tilesToAvoid);
         
-        List<GraphNode<Tile, E>> newPath = this.graph.findPath(this.fuzzySearchPath, start, destination);
+        planPath(start, destination);
+    }
+    
+    /**
+     * Plans the path to the destination.  If the destination is more than one {@link Zone} away, this only plans
+     * the path to the next zone along the route of zones, and the rest is planned as each zone is reached.
+     * 
+     * @param start
+     * @param destination
+     */
+    private void planPath(Vector2f start, Vector2f destination) {
+        // the destination may be the finalDestination, which gets
+        // cleared out along with the old path
+        this.plannedDestination.set(destination);
+        
+        List<GraphNode<Tile, E>> newPath = findZoneLeg(start, this.plannedDestination);
+        boolean isPartial = newPath != null;
+        if(!isPartial) {
+            newPath = this.graph.findPath(this.fuzzySearchPath, start, this.plannedDestination);
+        }
+        
         setPath(newPath);
         
-        this.finalDestination.set(destination);
+        this.finalDestination.set(this.plannedDestination);
+        this.isPartialPath = isPartial;
+    }
+    
+    /**
+     * Finds the path to the next {@link Zone} on the route to the destination, only searching the tiles
+     * of the current and next zone.
+     * 
+     * @param start
+     * @param destination
+     * @return the path to the next zone, or null if the whole path should be searched for instead
+     */
+    private List<GraphNode<Tile, E>> findZoneLeg(Vector2f start, Vector2f destination) {
+        if(this.zoneGraph == null) {
+            return null;
+        }
+        
+        Zone fromZone = this.zoneGraph.getZone(start);
+        Zone toZone = this.zoneGraph.getZone(destination);
+        if(fromZone == null || toZone == null || fromZone == toZone) {
+            return null;
+        }
+        
+        /* close by destinations are cheap enough to search for directly */
+        Zone[] route = this.zoneGraph.findRoute(fromZone, toZone);
+        if(route == null || route.length <= 2) {
+            return null;
+        }
+        
+        Zone nextZone = route[1];
+        
+        Vector2f towards = destination;
+        if(route.length > 3) {
+            Rectangle bounds = route[2].getBounds();
+            this.zoneCenter.set(bounds.x + bounds.width / 2, bounds.y + bounds.height / 2);
+            towards = this.zoneCenter;
+        }
+        
+        int portal = this.zoneGraph.findPortal(fromZone, nextZone, start, towards);
+        if(portal < 0) {
+            return null;
+        }
+        
+        GraphNode<Tile, E> startNode = this.graph.getNearestNodeByWorld(start);
+        GraphNode<Tile, E> portalNode = this.graph.getNode(portal);
+        if(startNode == null || portalNode == null) {
+            return null;
+        }
+        
+        this.fuzzySearchPath.restrictTo(this.zoneGraph, fromZone, nextZone);
+        try {
+            List<GraphNode<Tile, E>> leg = this.fuzzySearchPath.search(startNode, portalNode);
+            
+            /* the portal may not be reachable from within these zones, in 
+             * which case fall back to searching the whole map */
+            return (leg != null && !leg.isEmpty()) ? leg : null;
+        }
+        finally {
+            this.fuzzySearchPath.restrictTo(null, null, null);
+        }
     }
     
     
@@ -326,6 +435,11 @@ public class PathPlanner<E> {
         
         nextWaypoint.zeroOut();
         
+        // we reached the end of this leg of the route, so plan the next one
+        if(isPartialPath && currentNode >= path.size()) {
+            planPath(cPos, this.finalDestination);
+        }
+        
         if(! path.isEmpty() && currentNode < path.size() ) {
             GraphNode<Tile, E> node = path.get(currentNode);
             Tile tile = node.getValue();
@@ -407,7 +521,7 @@ public class PathPlanner<E> {
      * @return true if the current position is about the end of the path
      */
     public boolean atDestination() {
-        return (currentNode >= path.size());
+        return (currentNode >= path.size()) && !isPartialPath;
     }
 }
 
@@ -0,0 +1,150 @@
+/*
+ * see license.txt
+ */
+package seventh.ai.basic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import seventh.shared.Cons;
+import seventh.shared.TimeStep;
+
+/**
+ * Lets each {@link Brain} sense the world (see {@link Brain#sense(TimeStep)}).  The brains can either sense
+ * on the game thread, one after another, or spread across a pool of worker threads.  When using the worker
+ * threads, the game thread also senses and waits until every brain has sensed, so the game is never modified
+ * while the brains are sensing.
+ *
+ * <p>
+ * Sensing only reads from the game and only writes to the brain doing the sensing, so what each brain
+ * senses does not depend on which thread it sensed on, or in what order.  The brains then act, one after
+ * another and in the same order, on the game thread; which keeps the matches deterministic.
+ *
+ * @author Tony
+ *
+ */
+public class SensePhase {
+    
+    private ExecutorService pool;
+    private int numberOfThreads;
+    
+    private Brain[] brains;
+    private TimeStep timeStep;
+    
+    private final AtomicInteger nextBrain;
+    private final List<Future<?>> futures;
+    
+    /**
+     * @param numberOfThreads the number of worker threads, if 0 all of the
+     * brains sense on the game thread
+     */
+    public SensePhase(int numberOfThreads) {
+        this.nextBrain = new AtomicInteger();
+        this.futures = new ArrayList<Future<?>>();
+        
+        setNumberOfThreads(numberOfThreads);
+    }
+    
+    /**
+     * Sets the number of worker threads, this will replace the existing worker threads.
+     *
+     * @param numberOfThreads the number of worker threads, if 0 all of the
+     * brains sense on the game thread
+     */
+    public void setNumberOfThreads(int numberOfThreads) {
+        shutdown();
+        
+        this.numberOfThreads = Math.max(0, numberOfThreads);
+        if(this.numberOfThreads > 0) {
+            this.pool = Executors.newFixedThreadPool(this.numberOfThreads, new ThreadFactory() {
+                private int threadId;
+                
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "ai-sense-worker-" + (threadId++));
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
+    
+    /**
+     * @return the number of worker threads
+     */
+    public int getNumberOfThreads() {
+        return numberOfThreads;
+    }
+    
+    /**
+     * Shuts down the worker threads
+     */
+    public void shutdown() {
+        if(this.pool != null) {
+            this.pool.shutdownNow();
+            this.pool = null;
+        }
+    }
+    
+    /**
+     * Lets each of the brains sense the world.  This must be invoked from the game thread.
+     *
+     * @param brains the brains, which may contain null entries
+     * @param timeStep
+     */
+    public void sense(Brain[] brains, TimeStep timeStep) {
+        this.brains = brains;
+        this.timeStep = timeStep;
+        this.nextBrain.set(0);
+        
+        if(this.pool != null) {
+            for(int i = 0; i < this.numberOfThreads; i++) {
+                this.futures.add(this.pool.submit(new Runnable() {
+                    
+                    @Override
+                    public void run() {
+                        senseBrains();
+                    }
+                }));
+            }
+        }
+        
+        senseBrains();
+        
+        for(int i = 0; i < this.futures.size(); i++) {
+            try {
+                this.futures.get(i).get();
+            }
+            catch(Exception e) {
+                Cons.println("*** Error waiting for the brains to sense: " + e);
+            }
+        }
+        
+        this.futures.clear();
+        this.brains = null;
+    }
+    
+    /**
+     * Takes the next brain until there are no more brains
+     */
+    private void senseBrains() {
+        Brain[] brains = this.brains;
+        int index = 0;
+        while( (index = this.nextBrain.getAndIncrement()) < brains.length) {
+            Brain brain = brains[index];
+            if(brain != null) {
+                try {
+                    brain.sense(this.timeStep);
+                }
+                catch(Exception e) {
+                    Cons.println("*** Error sensing for brain: " + e);
+                }
+            }
+        }
+    }
+}
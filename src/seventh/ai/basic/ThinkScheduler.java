@@ -0,0 +1,304 @@
+/*
+ * see license.txt
+ */
+package seventh.ai.basic;
+
+import java.util.Arrays;
+
+import seventh.game.GameInfo;
+import seventh.game.PlayerInfo;
+import seventh.game.entities.PlayerEntity;
+import seventh.math.Vector2f;
+import seventh.shared.Debugable;
+import seventh.shared.TimeStep;
+
+/**
+ * Decides which {@link Brain}s think each update (see {@link Brain#act(TimeStep, TimeStep)}).  Thinking is
+ * where the actions are evaluated, and where paths are planned and cover is searched for; whereas moving and
+ * aiming are cheap and are done every update.
+ *
+ * <p>
+ * How often a brain thinks depends on how close it is to a human player, and whether it is in combat:
+ * <ul>
+ *  <li>in combat (has a target or has been recently attacked), or near a human: every update</li>
+ *  <li>a ways away from every human: every {@link #MID_THINK_INTERVAL} updates</li>
+ *  <li>far away from every human: every {@link #FAR_THINK_INTERVAL} updates</li>
+ * </ul>
+ * When a brain does think, it is handed all of the time that has passed since it last thought.  Brains which
+ * start thinking on the same update (such as when they spawn together) are staggered by their index, so that
+ * they do not all think on the same update from then on.
+ *
+ * <p>
+ * If there is a think budget, once the brains have spent it for the update, the brains which do not have to
+ * think every update are put off to a later update; although never past twice their interval.  The brains
+ * always act in the same order.
+ *
+ * @author Tony
+ *
+ */
+public class ThinkScheduler implements Debugable {
+    
+    /**
+     * What the {@link ThinkScheduler} needs of a {@link Brain}
+     * 
+     * @author Tony
+     *
+     */
+    public static interface Thinker {
+        
+        /**
+         * @return true if the entity is alive, only the living act
+         */
+        boolean isEntityAlive();
+        
+        /**
+         * @return true if in combat, meaning there is a target or there has been a recent attack
+         */
+        boolean isInCombat();
+        
+        /**
+         * @return the center position of the entity
+         */
+        Vector2f getCenterPos();
+        
+        /**
+         * @param thinkInterval how often to think, in number of updates
+         */
+        void setThinkInterval(int thinkInterval);
+        
+        /**
+         * Moves and aims, and thinks if handed a think time step
+         * 
+         * @param timeStep
+         * @param thinkTimeStep the time since the last think, or null if not to think
+         */
+        void act(TimeStep timeStep, TimeStep thinkTimeStep);
+    }
+    
+    public static final int NEAR_THINK_INTERVAL = 1;
+    public static final int MID_THINK_INTERVAL = 2;
+    public static final int FAR_THINK_INTERVAL = 4;
+    
+    private final GameInfo game;
+    
+    private long budget;
+    private float nearDistanceSq;
+    private float farDistanceSq;
+    
+    private long[] timeSinceThought;
+    private int[] updatesSinceThought;
+    private TimeStep thinkTimeStep;
+    
+    private float[] humanX, humanY;
+    private int numberOfHumans;
+    
+    private long updateTime;
+    private int numberOfThoughts;
+    private int numberOfDeferred;
+    
+    /**
+     * @param game
+     * @param config
+     * @param maxBrains
+     */
+    public ThinkScheduler(GameInfo game, AIConfig config, int maxBrains) {
+        this(game, config.getThinkBudget(), config.getThinkNearDistance(), config.getThinkFarDistance(), maxBrains);
+    }
+    
+    /**
+     * @param game
+     * @param thinkBudget the number of msec the brains may spend thinking each update, 0 for no limit
+     * @param nearDistance within this distance of a human player, a brain thinks every update
+     * @param farDistance past this distance from every human player, a brain thinks the least often
+     * @param maxBrains
+     */
+    public ThinkScheduler(GameInfo game, long thinkBudget, float nearDistance, float farDistance, int maxBrains) {
+        this.game = game;
+        
+        this.budget = thinkBudget * 1_000_000L;
+        
+        this.nearDistanceSq = nearDistance * nearDistance;
+        this.farDistanceSq = farDistance * farDistance;
+        
+        this.timeSinceThought = new long[maxBrains];
+        this.updatesSinceThought = new int[maxBrains];
+        Arrays.fill(this.updatesSinceThought, -1);
+        this.thinkTimeStep = new TimeStep();
+        
+        this.humanX = new float[maxBrains];
+        this.humanY = new float[maxBrains];
+    }
+    
+    /**
+     * @return the number of nano seconds the brains spent acting in the last update
+     */
+    public long getUpdateTime() {
+        return updateTime;
+    }
+    
+    /**
+     * @return the number of brains that thought in the last update
+     */
+    public int getNumberOfThoughts() {
+        return numberOfThoughts;
+    }
+    
+    /**
+     * @return the number of brains that were put off to a later update in the last update, because
+     * the think budget was spent
+     */
+    public int getNumberOfDeferred() {
+        return numberOfDeferred;
+    }
+    
+    /**
+     * Has each of the brains act, in order, thinking if it is their time to.  This must be
+     * invoked from the game thread, after the brains have sensed.
+     *
+     * @param brains the brains, which may contain null entries
+     * @param timeStep
+     */
+    public void act(Thinker[] brains, TimeStep timeStep) {
+        this.numberOfHumans = 0;
+        findHumans();
+        
+        long startTime = System.nanoTime();
+        this.numberOfThoughts = 0;
+        this.numberOfDeferred = 0;
+        
+        for(int i = 0; i < brains.length; i++) {
+            Thinker brain = brains[i];
+            if(brain == null) {
+                continue;
+            }
+            
+            if(!brain.isEntityAlive()) {
+                this.timeSinceThought[i] = 0;
+                this.updatesSinceThought[i] = -1;
+                continue;
+            }
+            
+            int interval = calculateThinkInterval(brain);
+            brain.setThinkInterval(interval);
+            
+            if(this.updatesSinceThought[i] < 0) {
+                /* just spawned, so start somewhere in the interval by the index of the brain */
+                this.updatesSinceThought[i] = i % interval;
+            }
+            
+            this.timeSinceThought[i] += timeStep.getDeltaTime();
+            this.updatesSinceThought[i]++;
+            
+            boolean think = false;
+            int updatesSinceThought = this.updatesSinceThought[i];
+            if(updatesSinceThought >= interval) {
+                think = interval == NEAR_THINK_INTERVAL ||
+                        updatesSinceThought >= interval * 2 ||
+                        this.budget <= 0 ||
+                        System.nanoTime() - startTime < this.budget;
+                
+                if(!think) {
+                    this.numberOfDeferred++;
+                }
+            }
+            
+            if(think) {
+                this.thinkTimeStep.setGameClock(timeStep.getGameClock());
+                this.thinkTimeStep.setDeltaTime(this.timeSinceThought[i]);
+                
+                this.timeSinceThought[i] = 0;
+                this.updatesSinceThought[i] = 0;
+                this.numberOfThoughts++;
+                
+                brain.act(timeStep, this.thinkTimeStep);
+            }
+            else {
+                brain.act(timeStep, null);
+            }
+        }
+        
+        this.updateTime = System.nanoTime() - startTime;
+    }
+    
+    /**
+     * @param brain
+     * @return how often the brain should think, in number of updates
+     */
+    private int calculateThinkInterval(Thinker brain) {
+        if(brain.isInCombat()) {
+            return NEAR_THINK_INTERVAL;
+        }
+        
+        Vector2f pos = brain.getCenterPos();
+        
+        float closestDistanceSq = Float.MAX_VALUE;
+        for(int i = 0; i < this.numberOfHumans; i++) {
+            float dx = this.humanX[i] - pos.x;
+            float dy = this.humanY[i] - pos.y;
+            closestDistanceSq = Math.min(closestDistanceSq, dx * dx + dy * dy);
+        }
+        
+        if(closestDistanceSq < this.nearDistanceSq) {
+            return NEAR_THINK_INTERVAL;
+        }
+        
+        if(closestDistanceSq < this.farDistanceSq) {
+            return MID_THINK_INTERVAL;
+        }
+        
+        return FAR_THINK_INTERVAL;
+    }
+    
+    /**
+     * Takes down where each of the living human players are, see {@link #addHuman(float, float)}
+     */
+    protected void findHumans() {
+        PlayerEntity[] players = this.game.getPlayerEntities();
+        for(int i = 0; i < players.length && this.numberOfHumans < this.humanX.length; i++) {
+            PlayerEntity entity = players[i];
+            if(entity != null && entity.isAlive()) {
+                PlayerInfo player = this.game.getPlayerById(entity.getId());
+                if(player != null && !player.isBot()) {
+                    Vector2f pos = entity.getCenterPos();
+                    addHuman(pos.x, pos.y);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Takes down where a living human player is for this update
+     * 
+     * @param x
+     * @param y
+     */
+    protected void addHuman(float x, float y) {
+        if(this.numberOfHumans < this.humanX.length) {
+            this.humanX[this.numberOfHumans] = x;
+            this.humanY[this.numberOfHumans] = y;
+            this.numberOfHumans++;
+        }
+    }
+    
+    /* (non-Javadoc)
+     * @see seventh.shared.Debugable#getDebugInformation()
+     */
+    @Override
+    public DebugInformation getDebugInformation() {
+        DebugInformation me = new DebugInformation();
+        me.add("ai_time_usec", this.updateTime / 1_000L)
+          .add("think_budget_msec", this.budget / 1_000_000L)
+          .add("thoughts", this.numberOfThoughts)
+          .add("deferred", this.numberOfDeferred)
+          .add("humans", this.numberOfHumans);
+        return me;
+    }
+    
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return getDebugInformation().toString();
+    }
+}
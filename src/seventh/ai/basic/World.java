@@ -9,6 +9,7 @@ import java.util.List;
 import seventh.ai.basic.actions.Actions;
 import seventh.game.GameInfo;
 import seventh.game.Player;
+import seventh.game.PlayerVisibility;
 import seventh.game.SoundEventPool;
 import seventh.game.Team;
 import seventh.game.entities.BombTarget;
@@ -44,7 +45,6 @@ public class World {
     
     private List<Tile> tiles;
     
-    private Rectangle tileBounds;
     private GameInfo game;
     private SoundEventPool lastFramesSounds;
     
@@ -52,6 +52,7 @@ public class World {
     private List<BombTarget> activeBombs;
     
     private Zones zones;
+    private ZoneGraph zoneGraph;
     
     private Actions goals;
     
@@ -76,12 +77,10 @@ public class World {
         
         this.map = game.getMap();
         this.graph = game.getGraph();
+        this.zoneGraph = new ZoneGraph(zones, graph, map.getTileWidth(), map.getTileHeight());
         
         
         this.tiles = new ArrayList<Tile>();
-        this.tileBounds = new Rectangle();
-        this.tileBounds.setWidth(map.getTileWidth());
-        this.tileBounds.setHeight(map.getTileHeight());
         
         this.lastFramesSounds = new SoundEventPool(SeventhConstants.MAX_SOUNDS);
         this.attackDirections = new ArrayList<AttackDirection>();
@@ -111,13 +110,27 @@ public class World {
     }
     
     /**
-     * @return the soundEvents
+     * @return the graph over the zones, used for planning long routes
      */
-    public SoundEventPool getSoundEvents() {        
+    public ZoneGraph getZoneGraph() {
+        return zoneGraph;
+    }
+    
+    /**
+     * Takes in the sounds emitted over this frame and the last one.  This is done once per
+     * AI update, before the brains sense the world, so that the sounds do not change
+     * while the brains are listening from multiple threads.
+     */
+    public void updateSoundEvents() {
         this.lastFramesSounds.clear();
         this.lastFramesSounds.set(this.game.getLastFramesSoundEvents());
         this.lastFramesSounds.set(this.game.getSoundEvents());
-        
+    }
+    
+    /**
+     * @return the soundEvents, as of the last {@link #updateSoundEvents()}
+     */
+    public SoundEventPool getSoundEvents() {        
         return this.lastFramesSounds;
     }
     
@@ -258,7 +271,7 @@ public class World {
      */
     public boolean inLineOfFire(PlayerEntity entity, PlayerEntity target) {
         // TODO: account for vehicles
-        return !map.lineCollides(entity.getCenterPos(), target.getCenterPos(), entity.getHeightMask());
+        return game.getPlayerVisibility().isInLineOfFire(entity, target);
     }
     
     /**
@@ -274,23 +287,18 @@ public class World {
      * 
      * @param players
      * @param entity
-     * @return
+     * @return the players the entity is able to see
      */
     public List<PlayerEntity> getPlayersInLineOfSight(List<PlayerEntity> players, PlayerEntity entity) {        
-        tiles = entity.calculateLineOfSight(tiles);
-        int size = tiles.size();
-        for(int i = 0; i < size;i++) {
-            Tile tile = tiles.get(i);
-            if(tile!=null && tile.getMask() > 0) {
-                this.tileBounds.setLocation(tile.getX(), tile.getY());
-                playersIn(players, tileBounds);
-            }
-        }
+        PlayerVisibility visibility = game.getPlayerVisibility();
         
-        map.setMask(tiles, 0);
-
-        if(!players.isEmpty()) {
-            players.remove(entity);
+        for(int i = 0; i < this.players.length; i++) {
+            PlayerEntity player = this.players[i];
+            if(player != null && player != entity) {
+                if(visibility.isInSight(entity, player)) {
+                    players.add(player);
+                }
+            }
         }
         
         return players;
@@ -301,20 +309,7 @@ public class World {
      * @return the players found in the supplied bounds
      */
     public List<PlayerEntity> playersIn(List<PlayerEntity> result, Rectangle bounds) {
-        
-        /*
-         * Currently uses brute force
-         */
-        for(int i = 0; i < this.players.length; i++) {
-            PlayerEntity entity = this.players[i];
-            if(entity!=null) {
-                if(bounds.contains(entity.getCenterPos())) {
-                    result.add(entity);
-                }            
-            }
-        }
-        
-        return result;
+        return this.game.getPlayersIn(bounds, result);
     }
     
     /**
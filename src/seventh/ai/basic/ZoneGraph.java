@@ -0,0 +1,343 @@
+/*
+ * see license.txt
+ */
+package seventh.ai.basic;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import seventh.graph.AStarGraphSearch;
+import seventh.graph.Edge;
+import seventh.graph.Edges;
+import seventh.graph.Edges.Directions;
+import seventh.graph.GraphNode;
+import seventh.map.MapGraph;
+import seventh.math.Rectangle;
+import seventh.math.Vector2f;
+
+/**
+ * An abstract graph over the {@link Zones}, used to plan long routes across the map without searching
+ * every tile in between.  Two {@link Zone}s are linked if a walkable tile in one is linked to a walkable tile
+ * in the other; the tiles that are linked across the border are the portals between the zones.
+ *
+ * <p>
+ * The routes between zones are cached and shared by all of the bots.  When tiles are added or removed from
+ * the {@link MapGraph} the portals are recalculated, and the cached routes thrown away, the next time a route
+ * is requested.
+ *
+ * @author Tony
+ *
+ */
+public class ZoneGraph {
+    
+    private static final Zone[] NO_ROUTE = new Zone[0];
+    
+    /* the zone offsets for each of the Directions */
+    private static final int[] DIRECTION_X = { 0, 1, 0, -1, 1, 1, -1, -1 };
+    private static final int[] DIRECTION_Y = { -1, 0, 1, 0, -1, 1, 1, -1 };
+    
+    private final Zones zones;
+    private final MapGraph<?> graph;
+    
+    private final int tileWidth, tileHeight;
+    
+    /**
+     * The zone id of each tile, indexed by the tile {@link GraphNode#getIndex()}
+     */
+    private final int[] tileZones;
+    
+    private final GraphNode<Zone, Void>[] zoneNodes;
+    
+    /**
+     * The portal tiles (on the neighboring side of the border) for each zone
+     * and direction, indexed by zoneId * 8 + direction
+     */
+    private final int[][] portalTiles;
+    private final int[] portalSizes;
+    
+    private final AStarGraphSearch<Zone, Void> zoneSearch;
+    private final Map<Integer, Zone[]> routeCache;
+    
+    private int graphVersion;
+    
+    /**
+     * @param zones
+     * @param graph
+     * @param tileWidth
+     * @param tileHeight
+     */
+    public ZoneGraph(Zones zones, MapGraph<?> graph, int tileWidth, int tileHeight) {
+        this.zones = zones;
+        this.graph = graph;
+        this.tileWidth = tileWidth;
+        this.tileHeight = tileHeight;
+        
+        int numberOfZones = zones.getNumberOfZones();
+        this.zoneNodes = newZoneNodes(numberOfZones);
+        this.portalTiles = new int[numberOfZones * 8][];
+        this.portalSizes = new int[numberOfZones * 8];
+        this.routeCache = new HashMap<Integer, Zone[]>();
+        
+        int width = graph.getWidth();
+        int height = graph.getHeight();
+        
+        /* tiles belong to the zone their center falls in, the zones don't
+         * always line up with the tiles or cover the whole map */
+        this.tileZones = new int[width * height];
+        for(int y = 0; y < height; y++) {
+            int row = Math.min((y * tileHeight + tileHeight / 2) / zones.getZoneHeight(), zones.getNumberOfRows() - 1);
+            for(int x = 0; x < width; x++) {
+                int column = Math.min((x * tileWidth + tileWidth / 2) / zones.getZoneWidth(), zones.getNumberOfColumns() - 1);
+                this.tileZones[y * width + x] = row * zones.getNumberOfColumns() + column;
+            }
+        }
+        
+        this.zoneSearch = new AStarGraphSearch<Zone, Void>() {
+            @Override
+            protected int heuristicEstimateDistance(GraphNode<Zone, Void> startNode,
+                                                    GraphNode<Zone, Void> currentNode,
+                                                    GraphNode<Zone, Void> goal) {
+                return distance(currentNode.getValue(), goal.getValue());
+            }
+        };
+        
+        this.graphVersion = graph.getVersion();
+        buildPortals();
+    }
+    
+    /**
+     * @param numberOfZones
+     * @return a new array of zone nodes
+     */
+    @SuppressWarnings("unchecked")
+    private static GraphNode<Zone, Void>[] newZoneNodes(int numberOfZones) {
+        return (GraphNode<Zone, Void>[]) new GraphNode<?, ?>[numberOfZones];
+    }
+    
+    /**
+     * @param a
+     * @param b
+     * @return the distance between the centers of the two zones
+     */
+    private static int distance(Zone a, Zone b) {
+        Rectangle ab = a.getBounds();
+        Rectangle bb = b.getBounds();
+        float dx = (ab.x + ab.width / 2f) - (bb.x + bb.width / 2f);
+        float dy = (ab.y + ab.height / 2f) - (bb.y + bb.height / 2f);
+        return (int)Math.sqrt(dx * dx + dy * dy);
+    }
+    
+    /**
+     * Finds all of the tiles that link one zone to another
+     */
+    private void buildPortals() {
+        for(int i = 0; i < this.portalSizes.length; i++) {
+            this.portalSizes[i] = 0;
+        }
+        
+        for(int i = 0; i < this.zoneNodes.length; i++) {
+            GraphNode<Zone, Void> node = new GraphNode<Zone, Void>(this.zones.getZoneById(i));
+            node.setIndex(i);
+            this.zoneNodes[i] = node;
+        }
+        
+        int numberOfColumns = this.zones.getNumberOfColumns();
+        for(int index = 0; index < this.tileZones.length; index++) {
+            GraphNode<?, ?> tile = this.graph.getNode(index);
+            if(tile == null) {
+                continue;
+            }
+            
+            int zoneId = this.tileZones[index];
+            Edges<?, ?> edges = tile.edges();
+            for(int i = 0; i < edges.size(); i++) {
+                Edge<?, ?> edge = edges.get(i);
+                if(edge == null || edge.getRight() == null) {
+                    continue;
+                }
+                
+                int neighbor = edge.getRight().getIndex();
+                int neighborZoneId = this.tileZones[neighbor];
+                if(neighborZoneId == zoneId) {
+                    continue;
+                }
+                
+                int dx = (neighborZoneId % numberOfColumns) - (zoneId % numberOfColumns);
+                int dy = (neighborZoneId / numberOfColumns) - (zoneId / numberOfColumns);
+                int dir = toDirection(dx, dy);
+                if(dir < 0) {
+                    continue;
+                }
+                
+                addPortal(zoneId * 8 + dir, neighbor);
+                
+                GraphNode<Zone, Void> zoneNode = this.zoneNodes[zoneId];
+                if(zoneNode.edges().get(dir) == null) {
+                    GraphNode<Zone, Void> neighborNode = this.zoneNodes[neighborZoneId];
+                    zoneNode.addEdge(Directions.fromIndex(dir),
+                            new Edge<Zone, Void>(zoneNode, neighborNode, null, distance(zoneNode.getValue(), neighborNode.getValue())));
+                }
+            }
+        }
+        
+        this.routeCache.clear();
+    }
+    
+    /**
+     * @param dx
+     * @param dy
+     * @return the {@link Directions} ordinal of the zone offset, or -1 if the zones are not next to each other
+     */
+    private static int toDirection(int dx, int dy) {
+        for(int i = 0; i < DIRECTION_X.length; i++) {
+            if(DIRECTION_X[i] == dx && DIRECTION_Y[i] == dy) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    private void addPortal(int portal, int tileIndex) {
+        int[] tiles = this.portalTiles[portal];
+        int size = this.portalSizes[portal];
+        if(tiles == null) {
+            tiles = new int[8];
+            this.portalTiles[portal] = tiles;
+        }
+        else if(size > 0 && tiles[size - 1] == tileIndex) {
+            return;
+        }
+        else if(size >= tiles.length) {
+            tiles = Arrays.copyOf(tiles, tiles.length * 2);
+            this.portalTiles[portal] = tiles;
+        }
+        
+        tiles[size] = tileIndex;
+        this.portalSizes[portal] = size + 1;
+    }
+    
+    /**
+     * Recalculates the portals if the map has changed since they were last calculated
+     */
+    private void checkForChanges() {
+        int version = this.graph.getVersion();
+        if(this.graphVersion != version) {
+            this.graphVersion = version;
+            buildPortals();
+        }
+    }
+    
+    /**
+     * @param pos
+     * @return the {@link Zone} the walkable tile nearest to the position belongs to, or null if there is no
+     * walkable tile near the position
+     */
+    public Zone getZone(Vector2f pos) {
+        GraphNode<?, ?> node = this.graph.getNearestNodeByWorld(pos);
+        if(node == null) {
+            return null;
+        }
+        
+        return this.zones.getZoneById(this.tileZones[node.getIndex()]);
+    }
+    
+    /**
+     * Determines if the tile is within the block of zones spanning the two supplied zones.  For zones that are
+     * diagonal to each other, this includes the two zones they both touch.
+     * 
+     * @param tile
+     * @param a
+     * @param b
+     * @return true if the tile is in the block of zones
+     */
+    public boolean isInZones(GraphNode<?, ?> tile, Zone a, Zone b) {
+        int numberOfColumns = this.zones.getNumberOfColumns();
+        int zoneId = this.tileZones[tile.getIndex()];
+        int column = zoneId % numberOfColumns;
+        int row = zoneId / numberOfColumns;
+        
+        int aColumn = a.getId() % numberOfColumns, aRow = a.getId() / numberOfColumns;
+        int bColumn = b.getId() % numberOfColumns, bRow = b.getId() / numberOfColumns;
+        
+        return column >= Math.min(aColumn, bColumn) && column <= Math.max(aColumn, bColumn) &&
+               row >= Math.min(aRow, bRow) && row <= Math.max(aRow, bRow);
+    }
+    
+    /**
+     * Finds the route of zones to travel through to get from one zone to another.
+     *
+     * @param from
+     * @param to
+     * @return the zones to travel through, starting with from and ending with to, or null if
+     * there is no way to reach the zone
+     */
+    public Zone[] findRoute(Zone from, Zone to) {
+        checkForChanges();
+        
+        Integer key = from.getId() * this.zoneNodes.length + to.getId();
+        Zone[] route = this.routeCache.get(key);
+        if(route == null) {
+            List<GraphNode<Zone, Void>> path = this.zoneSearch.search(this.zoneNodes[from.getId()], this.zoneNodes[to.getId()]);
+            if(path == null) {
+                route = NO_ROUTE;
+            }
+            else {
+                route = new Zone[path.size() + 1];
+                route[0] = from;
+                for(int i = 0; i < path.size(); i++) {
+                    route[i + 1] = path.get(i).getValue();
+                }
+            }
+            
+            this.routeCache.put(key, route);
+        }
+        
+        return route != NO_ROUTE ? route : null;
+    }
+    
+    /**
+     * Finds the portal tile to use when moving from one zone into the next.  The portal tile picked is
+     * the one that is the shortest detour from the start position to the position being headed towards.
+     *
+     * @param from the zone being left
+     * @param to the zone being entered, this must be next to the from zone
+     * @param start the current position
+     * @param towards where to head after entering the next zone
+     * @return the {@link GraphNode#getIndex()} of the portal tile (which is in the next zone), or -1 if
+     * the zones are not linked
+     */
+    public int findPortal(Zone from, Zone to, Vector2f start, Vector2f towards) {
+        checkForChanges();
+        
+        int numberOfColumns = this.zones.getNumberOfColumns();
+        int dx = (to.getId() % numberOfColumns) - (from.getId() % numberOfColumns);
+        int dy = (to.getId() / numberOfColumns) - (from.getId() / numberOfColumns);
+        int dir = toDirection(dx, dy);
+        if(dir < 0) {
+            return -1;
+        }
+        
+        int portal = from.getId() * 8 + dir;
+        int[] tiles = this.portalTiles[portal];
+        int size = this.portalSizes[portal];
+        
+        int width = this.graph.getWidth();
+        int bestTile = -1;
+        float bestDistance = Float.MAX_VALUE;
+        for(int i = 0; i < size; i++) {
+            int tileIndex = tiles[i];
+            float x = (tileIndex % width) * this.tileWidth + this.tileWidth / 2f;
+            float y = (tileIndex / width) * this.tileHeight + this.tileHeight / 2f;
+            
+            float distance = (float)(Math.hypot(x - start.x, y - start.y) + Math.hypot(towards.x - x, towards.y - y));
+            if(distance < bestDistance) {
+                bestDistance = distance;
+                bestTile = tileIndex;
+            }
+        }
+        
+        return bestTile;
+    }
+}
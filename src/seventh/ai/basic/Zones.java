@@ -151,6 +151,34 @@ public class Zones {
     }
         
     
+    /**
+     * @return the width of each zone, in pixels
+     */
+    public int getZoneWidth() {
+        return zoneWidth;
+    }
+    
+    /**
+     * @return the height of each zone, in pixels
+     */
+    public int getZoneHeight() {
+        return zoneHeight;
+    }
+    
+    /**
+     * @return the number of columns of zones
+     */
+    public int getNumberOfColumns() {
+        return numberOfCols;
+    }
+    
+    /**
+     * @return the number of rows of zones
+     */
+    public int getNumberOfRows() {
+        return numberOfRows;
+    }
+    
     /**
      * @return the bombTargetZones
      */
@@ -251,11 +279,13 @@ public class Zones {
      * @param id
      * @return the {@link Zone}
      */
-//    public Zone getZoneById(int id) {
-//        // TODO
-////        int y = (id / this.numberOfRows) - 1;
-////        int x = (id-y) % this.numberOfCols;
-////        return this.zones[y][x];
-//        return null;
-//    }
+    public Zone getZoneById(int id) {
+        if(id < 0 || id >= this.numberOfZones) {
+            return null;
+        }
+        
+        int y = id / this.numberOfCols;
+        int x = id % this.numberOfCols;
+        return this.zones[y][x];
+    }
 }
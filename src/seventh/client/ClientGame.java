@@ -43,7 +43,9 @@ import seventh.client.gfx.effects.particle_system.Emitters;
 import seventh.client.gfx.hud.Hud;
 import seventh.client.gfx.hud.Scoreboard;
 import seventh.client.inputs.CameraController;
+import seventh.client.network.ClientConnection;
 import seventh.client.network.LocalSession;
+import seventh.client.network.PlayoutDelay;
 import seventh.client.screens.InGameScreen.Actions;
 import seventh.client.screens.Screen;
 import seventh.client.sfx.Sound;
@@ -91,6 +93,7 @@ import seventh.network.messages.PlayerAwardMessage;
 import seventh.network.messages.PlayerCommanderMessage;
 import seventh.network.messages.PlayerConnectedMessage;
 import seventh.network.messages.PlayerDisconnectedMessage;
+import seventh.network.messages.PlayerInputMessage;
 import seventh.network.messages.PlayerKilledMessage;
 import seventh.network.messages.PlayerSpawnedMessage;
 import seventh.network.messages.PlayerSpeechMessage;
@@ -152,8 +155,13 @@ public class ClientGame {
 
     
     private long gameClock;
+    private long serverClock;
+    private long localClock;
+    private int inputSequence;
     private boolean gameEnded, roundEnded;
     
+    private final PlayoutDelay playoutDelay;
+    
     
 
     private       Camera camera;
@@ -258,6 +266,8 @@ public class ClientGame {
         
         this.pools = new Pools(this);
         this.zings = new Zings(this);
+        
+        this.playoutDelay = new PlayoutDelay();
     
         // NOTE: The Server side runs a new Runtime for each Round, and
         // keeps a persistent Runtime in the GameType -- for now the 
@@ -423,6 +433,13 @@ public class ClientGame {
         this.gameEffects.update(timeStep);
         
         long gameClock = timeStep.getGameClock();
+        this.localClock = gameClock;
+        
+        ClientConnection connection = app.getClientConnection();
+        if(connection != null) {
+            this.playoutDelay.updatePacketLoss(connection.getClient().getNumberOfDroppedPackets());
+        }
+        this.playoutDelay.update(gameClock);
                 
         ClientEntity[] entityList = entities.getEntities();
         int size = entityList.length;
@@ -800,6 +817,37 @@ public class ClientGame {
         return gameClock;
     }
     
+    /**
+     * @return the {@link PlayoutDelay} which determines the time entities are rendered at
+     */
+    public PlayoutDelay getPlayoutDelay() {
+        return playoutDelay;
+    }
+    
+    /**
+     * @return the server time the entities are rendered at
+     */
+    public long getRenderTime() {
+        return playoutDelay.getRenderTime();
+    }
+    
+    /**
+     * Advances the input sequence number, for the next {@link PlayerInputMessage} sent
+     * 
+     * @return the new sequence number
+     */
+    public int nextInputSequence() {
+        this.inputSequence = (this.inputSequence + 1) & PlayerInputMessage.SEQUENCE_MASK;
+        return this.inputSequence;
+    }
+    
+    /**
+     * @return the sequence number of the latest {@link PlayerInputMessage} sent
+     */
+    public int getInputSequence() {
+        return inputSequence;
+    }
+    
     /**
      * @return the camera
      */
@@ -1165,7 +1213,7 @@ public class ClientGame {
         }
         
         if(entity != null) {
-            entity.updateState(ent, gameClock);
+            entity.updateState(ent, serverClock);
             entities.addEntity(ent.id, entity);
                         
             entityListener.onEntityCreated(entity);
@@ -1313,6 +1361,8 @@ public class ClientGame {
         NetGameUpdate netUpdate = msg.netUpdate;
 
         gameClock = netUpdate.time;
+        serverClock = netUpdate.serverTime;
+        playoutDelay.updateReceived(serverClock, localClock);
         
         if(netUpdate.entities != null) {
             int size = netUpdate.entities.length;
@@ -1322,7 +1372,7 @@ public class ClientGame {
                     if(entities.containsEntity(netEnt.id)) {
                         ClientEntity ent = entities.getEntity(netEnt.id);
                         if(netEnt.type == ent.getType()) {                        
-                            ent.updateState(netEnt, gameClock);
+                            ent.updateState(netEnt, serverClock);
                         }
                         else {
                             removeEntity(i);
@@ -6,6 +6,7 @@ package seventh.client.entities;
 import java.util.List;
 
 import seventh.client.ClientGame;
+import seventh.client.inputs.InputHistory;
 import seventh.client.entities.vehicles.ClientVehicle;
 import seventh.game.entities.Entity;
 import seventh.game.entities.Entity.State;
@@ -50,6 +51,15 @@ public abstract class ClientControllableEntity extends ClientEntity {
     
     private Rectangle collisionRect;
     
+    /*
+     * The moves predicted for the local player which the server hasn't
+     * applied yet, replayed on top of each authoritative state
+     */
+    private InputHistory inputHistory;
+    private int acknowledgedInput;
+    private boolean isReconcilePending;
+    private Vector2f replayVel;
+    
     /**
      * @param game
      * @param pos
@@ -74,6 +84,9 @@ public abstract class ClientControllableEntity extends ClientEntity {
         this.visualBounds.centerAround(pos);
         
         this.collisionRect = new Rectangle();
+        
+        this.inputHistory = new InputHistory();
+        this.replayVel = new Vector2f();
     }
 
     @Override
@@ -89,6 +102,27 @@ public abstract class ClientControllableEntity extends ClientEntity {
         }
     }
     
+    /* (non-Javadoc)
+     * @see seventh.client.entities.ClientEntity#isInterpolationDelayed()
+     */
+    @Override
+    protected boolean isInterpolationDelayed() {
+        /* the local player is corrected against the latest state */
+        return !isControlledByLocalPlayer();
+    }
+    
+    /* (non-Javadoc)
+     * @see seventh.client.entities.ClientEntity#interpolate(seventh.shared.TimeStep)
+     */
+    @Override
+    protected void interpolate(TimeStep timeStep) {
+        super.interpolate(timeStep);
+        
+        if(!isControlledByLocalPlayer()) {
+            this.predictedOrientation = this.orientation;
+        }
+    }
+    
     /**
      * @return true if we are operating a vehicle
      */
@@ -309,7 +343,7 @@ public abstract class ClientControllableEntity extends ClientEntity {
         return true;
     }
     
-    protected State calculatePredictedState(TimeStep timeStep, Vector2f vel, int keys) {
+    protected State calculatePredictedState(long deltaTime, Vector2f vel, int keys) {
         if(!vel.isZero()) {
             if(Keys.WALK.isDown(keys)) {
                 predictedState = State.WALKING;
@@ -328,7 +362,7 @@ public abstract class ClientControllableEntity extends ClientEntity {
                 predictedState = State.IDLE;
             }
             
-            walkingTime -= timeStep.getDeltaTime();
+            walkingTime -= deltaTime;
             
             if(predictedState == State.CROUCHING && !Keys.CROUCH.isDown(keys)) {
                 predictedState = State.IDLE;
@@ -341,18 +375,74 @@ public abstract class ClientControllableEntity extends ClientEntity {
         return predictedState;
     }
     
+    /**
+     * The server has applied the local player's inputs up to and including the supplied
+     * sequence number, and sent its authoritative state for them
+     * 
+     * @param sequence
+     */
+    protected void acknowledgeInput(int sequence) {
+        this.acknowledgedInput = sequence;
+        this.isReconcilePending = true;
+    }
+    
     /**
      * Does client side movement prediction
      * 
      */
     public void movementPrediction(Map map, TimeStep timeStep, Vector2f vel, Vector2f mousePos, int keys) {    
-        calculatePredictedState(timeStep, vel, keys);
+        if(this.isReconcilePending) {
+            reconcile(map);
+        }
+        
         predictedOrientation = game.calcPlayerOrientation(mousePos.x, mousePos.y);
         
+        int deltaTime = (int)timeStep.getDeltaTime();
+        predictMovement(map, deltaTime, vel, keys);
+        
+        this.inputHistory.add(game.getInputSequence(), keys, vel.x, vel.y, deltaTime);
+    }
+    
+    /**
+     * Moves the predicted position back to where the server has the entity, and replays the
+     * moves the server hasn't seen yet on top of it.  Rather than being pulled back toward
+     * a position that is a round trip old, the prediction only changes if the server
+     * disagreed with it.
+     * 
+     * @param map
+     */
+    private void reconcile(Map map) {
+        this.isReconcilePending = false;
+        this.inputHistory.acknowledge(this.acknowledgedInput);
+        
+        if(this.nextState == null) {
+            return;
+        }
+        
+        this.predictedPos.set(this.nextState.posX, this.nextState.posY);
+        this.predictedState = this.currentState;
+        
+        for(int i = 0; i < this.inputHistory.size(); i++) {
+            this.replayVel.set(this.inputHistory.getVelocityX(i), this.inputHistory.getVelocityY(i));
+            predictMovement(map, this.inputHistory.getDeltaTime(i), this.replayVel, this.inputHistory.getKeys(i));
+        }
+    }
+    
+    /**
+     * Moves the predicted position, mirroring the server side movement and collision
+     * 
+     * @param map
+     * @param deltaTime the frame time, in msec
+     * @param vel the movement direction
+     * @param keys
+     */
+    protected void predictMovement(Map map, int deltaTime, Vector2f vel, int keys) {
+        calculatePredictedState(deltaTime, vel, keys);
+        
         if(isAlive() && !vel.isZero()) {            
             int movementSpeed = calculateMovementSpeed();
                                     
-            float dt = (float)timeStep.asFraction();            
+            float dt = deltaTime / 1000.0f;            
             float deltaX = (vel.x * movementSpeed * dt);
             float deltaY = (vel.y * movementSpeed * dt);
             
@@ -415,19 +505,7 @@ public abstract class ClientControllableEntity extends ClientEntity {
             }
             
             predictedPos.set(newX, newY);
-            clientSideCorrection(pos, predictedPos, predictedPos, 0.15f);
-            
-            lastMoveTime = timeStep.getGameClock();
         }        
-        else {
-            float alpha = 0.15f + 0.108f * (float)((timeStep.getGameClock() - lastMoveTime) / timeStep.getDeltaTime());
-            if(alpha > 0.75f) {
-                alpha = 0.75f;
-            }
-
-            clientSideCorrection(pos, predictedPos, predictedPos, alpha);
-        }
-        
     }
     
     protected boolean collidesAgainstEntity(Rectangle bounds) {
@@ -43,6 +43,8 @@ public abstract class ClientEntity implements Renderable {
     protected NetEntity prevState, nextState;
     protected long prevTime, nextTime;
     
+    private final SnapshotBuffer snapshots;
+    
     private boolean isAlive;
     
     private boolean isDestroyed;
@@ -90,6 +92,8 @@ public abstract class ClientEntity implements Renderable {
         this.bounds = new Rectangle();        
         this.isAlive = true;
         
+        this.snapshots = new SnapshotBuffer();
+        
         this.zOrder = 100;
         
         this.scriptObj = LeoObject.valueOf(this);
@@ -136,6 +140,8 @@ public abstract class ClientEntity implements Renderable {
         this.movementDir.zeroOut();
         this.bounds.setLocation(this.pos);
         
+        this.snapshots.clear();
+        
         if(this.attachedSounds != null) {
             for(int i = 0; i < this.attachedSounds.length; i++) {
                 this.attachedSounds[i] = null;
@@ -155,6 +161,8 @@ public abstract class ClientEntity implements Renderable {
         this.prevTime = this.nextTime;
         this.nextTime = time;
         
+        this.snapshots.add(state, time);
+        
         this.id = state.id;
         this.type = state.type;
                 
@@ -307,50 +315,72 @@ public abstract class ClientEntity implements Renderable {
     
     
     /**
-     * Interpolates between the previous and current state sent
-     * from the server.
+     * @return true if this entity is rendered behind the server by the playout delay (see 
+     * {@link ClientGame#getRenderTime()}), false if it is rendered at its latest state
+     */
+    protected boolean isInterpolationDelayed() {
+        return true;
+    }
+    
+    /**
+     * Interpolates between the buffered states sent from the server, at
+     * the render time.
      * 
      * @param timeStep
      */
     protected void interpolate(TimeStep timeStep) {
-        if(this.prevState != null && this.nextState != null) {
-            // TODO :: figure out ping time
-            float alpha = 0.75f;             
-            float dist = (pos.x - nextState.posX) * (pos.x - nextState.posX) + 
-                         (pos.y - nextState.posY) * (pos.y - nextState.posY);
-            
-            /* if the entity is more than two tile off, snap
-             * into position
-             */
-            if(dist > 64 * 64) {
-                this.pos.x = nextState.posX;
-                this.pos.y = nextState.posY;            
-                this.previousPos.set(this.pos);
-            }
-            else {
-            
-                this.pos.x = pos.x + (alpha * (nextState.posX - pos.x));
-                this.pos.y = pos.y + (alpha * (nextState.posY - pos.y));
-            }
-            
-            this.bounds.setLocation(pos);
-            
-            /* calculate movement direction */
-            this.movementDir.x = nextState.posX - prevState.posX;
-            this.movementDir.y = nextState.posY - prevState.posY;
-            
-            
-            //if( Math.abs(prevState.orientation - nextState.orientation) > (Math.PI/2))
-            if( Math.abs(prevState.orientation - nextState.orientation) > (30))
-            {
-                this.orientation = nextState.orientation;
-            }
-            else {
-                this.orientation = prevState.orientation + (alpha * (nextState.orientation - prevState.orientation));
-            }
-            
-            this.orientation = (float) Math.toRadians(this.orientation);
+        long renderTime = isInterpolationDelayed() ? game.getRenderTime() : this.snapshots.getNewestTime();
+        if(this.snapshots.sample(renderTime, game.getPlayoutDelay().getMaxExtrapolation()) == SnapshotBuffer.EMPTY) {
+            return;
         }
+        
+        NetEntity from = this.snapshots.getFrom();
+        NetEntity to = this.snapshots.getTo();
+        float alpha = this.snapshots.getAlpha();
+        
+        float x = from.posX + (alpha * (to.posX - from.posX));
+        float y = from.posY + (alpha * (to.posY - from.posY));
+        
+        /* if the entity moved more than two tiles between states, it 
+         * was moved there (such as respawning), so don't slide across
+         */
+        float stateDist = (to.posX - from.posX) * (to.posX - from.posX) + 
+                          (to.posY - from.posY) * (to.posY - from.posY);
+        if(stateDist > 64 * 64) {
+            x = to.posX;
+            y = to.posY;
+        }
+        
+        float dist = (pos.x - x) * (pos.x - x) + 
+                     (pos.y - y) * (pos.y - y);
+        
+        this.pos.x = x;
+        this.pos.y = y;
+        
+        /* if the entity is more than two tile off, snap
+         * into position
+         */
+        if(dist > 64 * 64) {
+            this.previousPos.set(this.pos);
+        }
+        
+        this.bounds.setLocation(pos);
+        
+        /* calculate movement direction */
+        this.movementDir.x = to.posX - from.posX;
+        this.movementDir.y = to.posY - from.posY;
+        
+        if( Math.abs(from.orientation - to.orientation) > (30))
+        {
+            this.orientation = to.orientation;
+        }
+        else {
+            this.orientation = from.orientation + (Math.min(alpha, 1f) * (to.orientation - from.orientation));
+        }
+        
+        this.orientation = (float) Math.toRadians(this.orientation);
+        this.facing.set(1, 0);
+        Vector2f.Vector2fRotate(facing, orientation, facing);
     }
     
     /**
@@ -346,6 +346,8 @@ public class ClientPlayerEntity extends ClientControllableEntity {
             this.numberOfGrenades = ps.grenades;
             this.isSmokeGrenades = ps.isSmokeGrenades;
             
+            acknowledgeInput(ps.lastInputSequence);
+            
             if(ps.isOperatingVehicle) {
                 if(this.vehicle == null || this.vehicle.getId() != ps.vehicleId) {
                     this.vehicle = game.getVehicleById(ps.vehicleId);
@@ -0,0 +1,264 @@
+/*
+ * see license.txt
+ */
+package seventh.client.entities;
+
+import seventh.game.net.NetEntity;
+import seventh.network.messages.BufferIO;
+
+/**
+ * A ring buffer of the states received from the server for an entity, keyed on the server
+ * game clock.  The entity is rendered at a time slightly in the past (see
+ * {@link seventh.client.network.PlayoutDelay}) so that there is usually a state on either side
+ * of it to interpolate between, even if an update arrives late or is lost.
+ *
+ * <p>
+ * When the render time gets ahead of the latest state (a buffer underrun), the motion is extrapolated
+ * from the last two states, but only for a bounded amount of time after which the entity is held in place.
+ *
+ * <p>
+ * States that fall off the end of the buffer are released (see {@link BufferIO#releaseEntity(NetEntity)}) to be read
+ * into again; they are older than the states the entity holds on to.  States that are replaced or cleared out are left
+ * alone, as the entity may still reference them.
+ *
+ * @author Tony
+ *
+ */
+public class SnapshotBuffer {
+    
+    /**
+     * No states have been received
+     */
+    public static final int EMPTY = 0;
+    
+    /**
+     * The render time falls between two states
+     */
+    public static final int INTERPOLATED = 1;
+    
+    /**
+     * The render time is past the latest state, and is extrapolated
+     */
+    public static final int EXTRAPOLATED = 2;
+    
+    /**
+     * The render time is too far past the latest state to keep extrapolating, or there is only
+     * one state
+     */
+    public static final int HELD = 3;
+    
+    /**
+     * The default number of states kept, must be a power of two
+     */
+    public static final int DEFAULT_SIZE = 16;
+    
+    private final NetEntity[] states;
+    private final long[] times;
+    private final int mask;
+    
+    private int newest;
+    private int size;
+    
+    private NetEntity from, to;
+    private float alpha;
+    
+    /**
+     * @param size the number of states to keep, must be a power of two
+     */
+    public SnapshotBuffer(int size) {
+        if(size < 2 || (size & (size - 1)) != 0) {
+            throw new IllegalArgumentException("Invalid snapshot buffer size: " + size);
+        }
+        
+        this.states = new NetEntity[size];
+        this.times = new long[size];
+        this.mask = size - 1;
+        
+        clear();
+    }
+    
+    public SnapshotBuffer() {
+        this(DEFAULT_SIZE);
+    }
+    
+    /**
+     * Removes all of the states
+     */
+    public void clear() {
+        for(int i = 0; i < this.states.length; i++) {
+            this.states[i] = null;
+        }
+        
+        this.newest = -1;
+        this.size = 0;
+        
+        this.from = null;
+        this.to = null;
+        this.alpha = 0;
+    }
+    
+    /**
+     * Adds a state received from the server.  States that are older than the latest state
+     * are dropped, a state with the same time as the latest state replaces it.
+     *
+     * @param state
+     * @param time the server game clock of the state
+     * @return true if the state was added
+     */
+    public boolean add(NetEntity state, long time) {
+        if(this.size > 0) {
+            long newestTime = this.times[this.newest];
+            if(time < newestTime) {
+                return false;
+            }
+            
+            if(time == newestTime) {
+                this.states[this.newest] = state;
+                return true;
+            }
+        }
+        
+        this.newest = (this.newest + 1) & this.mask;
+        if(this.size == this.states.length) {
+            NetEntity evicted = this.states[this.newest];
+            if(evicted != state && !contains(evicted)) {
+                BufferIO.releaseEntity(evicted);
+            }
+        }
+        
+        this.states[this.newest] = state;
+        this.times[this.newest] = time;
+        
+        if(this.size < this.states.length) {
+            this.size++;
+        }
+        
+        return true;
+    }
+    
+    /**
+     * @param state
+     * @return true if the state is in another slot than the newest one
+     */
+    private boolean contains(NetEntity state) {
+        for(int i = 0; i < this.states.length; i++) {
+            if(i != this.newest && this.states[i] == state) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * @return the number of states in the buffer
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * @return the latest state, or null if empty
+     */
+    public NetEntity getNewest() {
+        return (this.size > 0) ? this.states[this.newest] : null;
+    }
+    
+    /**
+     * @return the server time of the latest state, or -1 if empty
+     */
+    public long getNewestTime() {
+        return (this.size > 0) ? this.times[this.newest] : -1;
+    }
+    
+    /**
+     * @param age 0 for the latest state, 1 for the one before it, etc.
+     * @return the index of the state
+     */
+    private int index(int age) {
+        return (this.newest - age) & this.mask;
+    }
+    
+    /**
+     * Finds the states to render at the supplied time, the result is available from
+     * {@link #getFrom()}, {@link #getTo()} and {@link #getAlpha()}
+     *
+     * @param renderTime the server time to render at
+     * @param maxExtrapolation the max amount of time (in msec) to extrapolate past the latest state
+     * @return {@link #EMPTY}, {@link #INTERPOLATED}, {@link #EXTRAPOLATED} or {@link #HELD}
+     */
+    public int sample(long renderTime, long maxExtrapolation) {
+        if(this.size == 0) {
+            this.from = null;
+            this.to = null;
+            this.alpha = 0;
+            return EMPTY;
+        }
+        
+        long newestTime = this.times[this.newest];
+        if(renderTime >= newestTime) {
+            this.to = this.states[this.newest];
+            
+            if(this.size < 2) {
+                this.from = this.to;
+                this.alpha = 1;
+                return HELD;
+            }
+            
+            int result = (renderTime == newestTime) ? INTERPOLATED : EXTRAPOLATED;
+            
+            /* stop where the extrapolation left off, rather than snapping back */
+            if(renderTime - newestTime > maxExtrapolation) {
+                renderTime = newestTime + maxExtrapolation;
+                result = HELD;
+            }
+            
+            int previous = index(1);
+            this.from = this.states[previous];
+            this.alpha = (float)(renderTime - this.times[previous]) / (float)(newestTime - this.times[previous]);
+            
+            return result;
+        }
+        
+        /* walk back to find the states on either side of the render time */
+        for(int age = 1; age < this.size; age++) {
+            int index = index(age);
+            long time = this.times[index];
+            if(time <= renderTime) {
+                int next = index(age - 1);
+                this.from = this.states[index];
+                this.to = this.states[next];
+                this.alpha = (float)(renderTime - time) / (float)(this.times[next] - time);
+                return INTERPOLATED;
+            }
+        }
+        
+        /* older than anything we have, use the oldest state */
+        int oldest = index(this.size - 1);
+        this.from = this.states[oldest];
+        this.to = this.from;
+        this.alpha = 0;
+        return INTERPOLATED;
+    }
+    
+    /**
+     * @return the state being interpolated from
+     */
+    public NetEntity getFrom() {
+        return from;
+    }
+    
+    /**
+     * @return the state being interpolated to
+     */
+    public NetEntity getTo() {
+        return to;
+    }
+    
+    /**
+     * @return the amount to interpolate between {@link #getFrom()} and {@link #getTo()},
+     * greater than 1 if extrapolating
+     */
+    public float getAlpha() {
+        return alpha;
+    }
+}
@@ -30,6 +30,7 @@ import seventh.client.gfx.MiniMap;
 import seventh.client.gfx.RenderFont;
 import seventh.client.gfx.Renderable;
 import seventh.client.inputs.KeyMap;
+import seventh.client.network.PlayoutDelay;
 import seventh.client.sfx.Sounds;
 import seventh.client.weapon.ClientHammer;
 import seventh.client.weapon.ClientWeapon;
@@ -693,6 +694,11 @@ public class Hud implements Renderable {
                                     client.getNumberOfBytesCompressed()/1024 + " KiB" : 
                                     client.getNumberOfBytesCompressed() + " B";
         canvas.drawString("Comp B: " + compressedBytes, x, y - 100, color);
+        
+        PlayoutDelay playoutDelay = game.getPlayoutDelay();
+        canvas.drawString("Delay : " + playoutDelay.getDelay() + " ms", x, y - 120, color);
+        canvas.drawString("Jitter: " + (int)playoutDelay.getJitter() + " ms", x, y - 135, color);
+        canvas.drawString("Undrun: " + playoutDelay.getNumberOfUnderruns(), x, y - 150, color);
     }
     
     
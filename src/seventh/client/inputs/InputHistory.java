@@ -0,0 +1,153 @@
+/*
+ * see license.txt
+ */
+package seventh.client.inputs;
+
+import seventh.network.messages.PlayerInputMessage;
+
+/**
+ * The moves the local player predicted which the server hasn't acknowledged yet.  Each move is
+ * tagged with the sequence number of the {@link PlayerInputMessage} sent in the same frame; when the
+ * server echoes back the latest sequence number it applied, the acknowledged moves are dropped and the
+ * rest are replayed on top of the server's position.
+ *
+ * @author Tony
+ *
+ */
+public class InputHistory {
+    
+    /**
+     * The default number of moves kept, must be a power of two
+     */
+    public static final int DEFAULT_SIZE = 128;
+    
+    private final int[] sequences;
+    private final int[] keys;
+    private final float[] velocityX, velocityY;
+    private final int[] deltaTimes;
+    private final int mask;
+    
+    private int oldest;
+    private int size;
+    
+    /**
+     * @param size the number of moves to keep, must be a power of two
+     */
+    public InputHistory(int size) {
+        if(size < 2 || (size & (size - 1)) != 0) {
+            throw new IllegalArgumentException("Invalid input history size: " + size);
+        }
+        
+        this.sequences = new int[size];
+        this.keys = new int[size];
+        this.velocityX = new float[size];
+        this.velocityY = new float[size];
+        this.deltaTimes = new int[size];
+        this.mask = size - 1;
+        
+        clear();
+    }
+    
+    public InputHistory() {
+        this(DEFAULT_SIZE);
+    }
+    
+    /**
+     * Removes all of the moves
+     */
+    public void clear() {
+        this.oldest = 0;
+        this.size = 0;
+    }
+    
+    /**
+     * Adds a predicted move, if full the oldest move is dropped
+     *
+     * @param sequence the sequence number of the input sent in the same frame
+     * @param keys the keys the move was predicted with
+     * @param velX the movement direction
+     * @param velY the movement direction
+     * @param deltaTime the frame time, in msec
+     */
+    public void add(int sequence, int keys, float velX, float velY, int deltaTime) {
+        if(this.size == this.sequences.length) {
+            this.oldest = (this.oldest + 1) & this.mask;
+            this.size--;
+        }
+        
+        int index = (this.oldest + this.size) & this.mask;
+        this.sequences[index] = sequence;
+        this.keys[index] = keys;
+        this.velocityX[index] = velX;
+        this.velocityY[index] = velY;
+        this.deltaTimes[index] = deltaTime;
+        
+        this.size++;
+    }
+    
+    /**
+     * Drops the moves up to and including the supplied sequence number
+     *
+     * @param sequence the latest sequence number the server applied
+     * @return the number of moves left to replay
+     */
+    public int acknowledge(int sequence) {
+        while(this.size > 0 && !PlayerInputMessage.isNewerSequence(this.sequences[this.oldest], sequence)) {
+            this.oldest = (this.oldest + 1) & this.mask;
+            this.size--;
+        }
+        
+        return this.size;
+    }
+    
+    /**
+     * @return the number of moves not yet acknowledged
+     */
+    public int size() {
+        return size;
+    }
+    
+    private int index(int i) {
+        return (this.oldest + i) & this.mask;
+    }
+    
+    /**
+     * @param i 0 for the oldest move not yet acknowledged
+     * @return the sequence number of the move
+     */
+    public int getSequence(int i) {
+        return this.sequences[index(i)];
+    }
+    
+    /**
+     * @param i 0 for the oldest move not yet acknowledged
+     * @return the keys of the move
+     */
+    public int getKeys(int i) {
+        return this.keys[index(i)];
+    }
+    
+    /**
+     * @param i 0 for the oldest move not yet acknowledged
+     * @return the x movement direction of the move
+     */
+    public float getVelocityX(int i) {
+        return this.velocityX[index(i)];
+    }
+    
+    /**
+     * @param i 0 for the oldest move not yet acknowledged
+     * @return the y movement direction of the move
+     */
+    public float getVelocityY(int i) {
+        return this.velocityY[index(i)];
+    }
+    
+    /**
+     * @param i 0 for the oldest move not yet acknowledged
+     * @return the frame time of the move, in msec
+     */
+    public int getDeltaTime(int i) {
+        return this.deltaTimes[index(i)];
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * see license.txt
+ */
+package seventh.client.network;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import harenet.Host.MessageListener;
+import harenet.NetConfig;
+import harenet.PacketCapture;
+import harenet.PacketReplay;
+import harenet.Peer;
+import harenet.messages.Message;
+import harenet.messages.NetMessage;
+import harenet.messages.PooledNetMessage;
+import seventh.network.messages.BufferIO.SeventhNetMessageFactory;
+import seventh.network.messages.GameUpdateMessage;
+
+/**
+ * Replays a {@link PacketCapture} of a match without a network, decoding the game messages and resolving
+ * the snapshots just as the {@link ClientNetworkProtocol} does, and reports how fast they were decoded.
+ * This allows changes to the codecs or the snapshots to be benchmarked against real match traffic.
+ *
+ * <pre>
+ * CaptureReplay [capture file] [options]
+ *   -server           the capture was made on the server
+ *   -sent             replay the packets the capturing host sent out, rather than the ones it received
+ *   -endpoint [n]     only replay the packets of the nth remote address in the capture
+ *   -dictionary [f]   the packet dictionary the capture was made with
+ *   -runs [n]         the number of times to replay the capture
+ *   -samples [f]      write the packets out as samples for training a DictionaryPacketCodec
+ * </pre>
+ *
+ * To replay what a client received from a server capture, use <code>-server -sent -endpoint n</code>.
+ *
+ * @author Tony
+ *
+ */
+public class CaptureReplay implements MessageListener {
+    
+    private SnapshotResolver snapshotResolver;
+    
+    private int numberOfSnapshotsResolved;
+    private int numberOfSnapshotsUnresolved;
+    
+    public CaptureReplay() {
+        this.snapshotResolver = new SnapshotResolver();
+    }
+    
+    /**
+     * Clears out the state from the last replay
+     */
+    public void reset() {
+        this.snapshotResolver.clear();
+        this.numberOfSnapshotsResolved = 0;
+        this.numberOfSnapshotsUnresolved = 0;
+    }
+    
+    /* (non-Javadoc)
+     * @see harenet.Host.MessageListener#onConnected(harenet.Peer)
+     */
+    @Override
+    public void onConnected(Peer peer) {
+    }
+    
+    /* (non-Javadoc)
+     * @see harenet.Host.MessageListener#onDisconnected(harenet.Peer)
+     */
+    @Override
+    public void onDisconnected(Peer peer) {
+    }
+    
+    /* (non-Javadoc)
+     * @see harenet.Host.MessageListener#onServerFull(harenet.Peer)
+     */
+    @Override
+    public void onServerFull(Peer peer) {
+    }
+    
+    /* (non-Javadoc)
+     * @see harenet.Host.MessageListener#onMessage(harenet.Peer, harenet.messages.Message)
+     */
+    @Override
+    public void onMessage(Peer peer, Message message) {
+        NetMessage netMessage = message.getMessage();
+        if(netMessage instanceof GameUpdateMessage) {
+            GameUpdateMessage msg = (GameUpdateMessage)netMessage;
+            if(msg.netUpdate.isDeltaCompressed()) {
+                if(this.snapshotResolver.resolve(msg.netUpdate)) {
+                    this.numberOfSnapshotsResolved++;
+                }
+                else {
+                    this.numberOfSnapshotsUnresolved++;
+                }
+            }
+        }
+        
+        if(netMessage instanceof PooledNetMessage) {
+            ((PooledNetMessage)netMessage).release();
+        }
+    }
+    
+    /**
+     * @return the number of delta compressed snapshots resolved in the last replay
+     */
+    public int getNumberOfSnapshotsResolved() {
+        return numberOfSnapshotsResolved;
+    }
+    
+    /**
+     * @return the number of delta compressed snapshots whose base was missing in the last replay
+     */
+    public int getNumberOfSnapshotsUnresolved() {
+        return numberOfSnapshotsUnresolved;
+    }
+    
+    /**
+     * @param args
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        if(args.length < 1) {
+            System.out.println("<usage> CaptureReplay [capture file] [-server] [-sent] [-endpoint n] [-dictionary file] [-runs n] [-samples file]");
+            return;
+        }
+        
+        boolean isServerCapture = false;
+        boolean sent = false;
+        int endpoint = -1;
+        int numberOfRuns = 1;
+        File samplesFile = null;
+        
+        NetConfig config = new NetConfig(new SeventhNetMessageFactory());
+        
+        for(int i = 1; i < args.length; i++) {
+            String arg = args[i];
+            if(arg.equals("-server")) {
+                isServerCapture = true;
+            }
+            else if(arg.equals("-sent")) {
+                sent = true;
+            }
+            else if(arg.equals("-endpoint") && i + 1 < args.length) {
+                endpoint = Integer.parseInt(args[++i]);
+            }
+            else if(arg.equals("-dictionary") && i + 1 < args.length) {
+                config.setPacketDictionary(Files.readAllBytes(new File(args[++i]).toPath()));
+            }
+            else if(arg.equals("-runs") && i + 1 < args.length) {
+                numberOfRuns = Integer.parseInt(args[++i]);
+            }
+            else if(arg.equals("-samples") && i + 1 < args.length) {
+                samplesFile = new File(args[++i]);
+            }
+            else {
+                System.out.println("Unknown option: " + arg);
+                return;
+            }
+        }
+        
+        List<PacketCapture.Packet> packets = new ArrayList<PacketCapture.Packet>();
+        PacketCapture.readPackets(new File(args[0]), packets);
+        
+        PacketReplay replay = new PacketReplay(config, packets);
+        if(samplesFile != null) {
+            int numberOfSamples = replay.writeSamples(samplesFile, sent, endpoint);
+            System.out.println("Wrote " + numberOfSamples + " samples to " + samplesFile);
+            return;
+        }
+        
+        /* the packets the server received came from the clients, and vice versa */
+        boolean replayAsServer = isServerCapture != sent;
+        
+        CaptureReplay listener = new CaptureReplay();
+        for(int run = 0; run < numberOfRuns; run++) {
+            listener.reset();
+            replay.replay(listener, replayAsServer, sent, endpoint);
+            
+            System.out.printf("Run %d: %d packets (%d bytes), %d messages in %.2f msec => %.0f messages/sec; %d snapshots resolved, %d unresolved%n",
+                    run + 1,
+                    replay.getNumberOfPackets(),
+                    replay.getNumberOfBytes(),
+                    replay.getNumberOfMessages(),
+                    replay.getReplayTime() / 1_000_000.0,
+                    replay.getMessagesPerSecond(),
+                    listener.getNumberOfSnapshotsResolved(),
+                    listener.getNumberOfSnapshotsUnresolved());
+        }
+    }
+}
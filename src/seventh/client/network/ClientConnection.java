@@ -8,6 +8,7 @@ import java.net.InetSocketAddress;
 
 import harenet.api.Client;
 import harenet.api.impl.HareNetClient;
+import seventh.client.ClientGame;
 import seventh.client.ClientSeventhConfig;
 import seventh.client.SeventhGame;
 import seventh.client.network.ClientProtocol.GameCreationListener;
@@ -48,9 +49,22 @@ public class ClientConnection {
                     console.println("Bandwidth Usage:");
                     console.println("\tTotal Incoming Bytes: " + (client.getNumberOfBytesReceived() / 1024) + "KiB");
                     console.println("\tTotal Outgoing Bytes: " + (client.getNumberOfBytesSent() / 1024) + "KiB");
+                    console.println("\tTotal Compressed Bytes: " + (client.getNumberOfBytesCompressed() / 1024) + "KiB");
                     console.println("\tIncoming bit/s: " + client.getAvgBitsPerSecRecv());
                     console.println("\tOutgoing bit/s: " + client.getAvgBitsPerSecSent());
                     console.println("");
+                    
+                    ClientGame game = protocol.getGame();
+                    if(game != null) {
+                        PlayoutDelay playoutDelay = game.getPlayoutDelay();
+                        console.println("Interpolation:");
+                        console.println("\tRender Delay: " + playoutDelay.getDelay() + "ms (target " + playoutDelay.getTargetDelay() + "ms)");
+                        console.println("\tUpdate Interval: " + (int)playoutDelay.getUpdateInterval() + "ms");
+                        console.println("\tJitter: " + (int)playoutDelay.getJitter() + "ms");
+                        console.println("\tPacket Loss: " + (int)(playoutDelay.getPacketLoss() * 100) + "%");
+                        console.println("\tBuffer Underruns: " + playoutDelay.getNumberOfUnderruns());
+                        console.println("");
+                    }
                 }
                 else {
                     console.println("Not connected.");
@@ -104,6 +104,8 @@ public class ClientNetworkProtocol extends NetworkProtocol implements ClientProt
     
     private Queue<QueuedMessage> outboundQ;
     
+    private SnapshotResolver snapshotResolver;
+    
         
     /**
      * @param connection
@@ -119,12 +121,22 @@ public class ClientNetworkProtocol extends NetworkProtocol implements ClientProt
             
         this.localPlayer = new LocalSession();
         this.players = new ClientPlayers(SeventhConstants.MAX_PLAYERS);
+        
+        this.snapshotResolver = new SnapshotResolver();
     }
     
     
+    /**
+     * @return the current {@link ClientGame}, or null if not in a game
+     */
+    public ClientGame getGame() {
+        return game;
+    }
+    
     private void cleanup() {
         this.players.clear();
         this.outboundQ.clear();
+        this.snapshotResolver.clear();
         
         this.localPlayer.invalidate();
         
@@ -399,6 +411,16 @@ public class ClientNetworkProtocol extends NetworkProtocol implements ClientProt
      */
     @Override
     public void receiveGameUpdateMessage(Connection conn, GameUpdateMessage msg) {
+        
+        /* snapshots must always be resolved, even if we do not have a game yet, 
+         * as the server may base future snapshots off of this one
+         */
+        if(msg.netUpdate.isDeltaCompressed()) {
+            if(!this.snapshotResolver.resolve(msg.netUpdate)) {
+                return;
+            }
+        }
+        
         if(game != null) {
             game.applyGameUpdate(msg);
         }
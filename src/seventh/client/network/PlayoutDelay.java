@@ -0,0 +1,305 @@
+/*
+ * see license.txt
+ */
+package seventh.client.network;
+
+/**
+ * Determines the server time the client renders the world at.  Entities are rendered a little in the
+ * past (the playout delay) so that there is a buffered state on either side of the render time to
+ * interpolate between.  The delay adapts to the network: it covers the interval between server updates, plus
+ * the measured jitter of the updates, plus an extra interval in proportion to the packet loss (so that a
+ * lost update can be bridged over by interpolating to the one after it).
+ *
+ * <p>
+ * The jitter is measured as in RTP (RFC 3550), from the difference between the spacing of the updates on
+ * the server clock and the spacing of their arrival on the client clock.
+ *
+ * @author Tony
+ *
+ */
+public class PlayoutDelay {
+    
+    /**
+     * The default min and max delay, in msec
+     */
+    public static final long DEFAULT_MIN_DELAY = 50;
+    public static final long DEFAULT_MAX_DELAY = 500;
+    
+    /**
+     * The max amount of time to extrapolate past the latest update, in msec
+     */
+    public static final long DEFAULT_MAX_EXTRAPOLATION = 150;
+    
+    /**
+     * How many deviations of jitter to cover
+     */
+    private static final float JITTER_FACTOR = 2.0f;
+    
+    /**
+     * How fast the delay moves to its target, as a fraction of the elapsed time.  This is how much
+     * faster or slower than real time the render clock runs while adapting.
+     */
+    private static final float ADAPT_RATE = 0.1f;
+    
+    /**
+     * The min amount the delay is bumped up by (in msec) when the render clock runs past the latest
+     * update, and how fast (in msec per msec) that wears off
+     */
+    private static final float UNDERRUN_STEP = 10.0f;
+    private static final float UNDERRUN_DECAY_RATE = 0.005f;
+    
+    private final long minDelay;
+    private final long maxDelay;
+    private final long maxExtrapolation;
+    
+    private long clockOffset;
+    private boolean hasClockOffset;
+    
+    private long lastServerTime;
+    private long lastArrivalTime;
+    
+    private float updateInterval;
+    private float jitter;
+    private float packetLoss;
+    
+    private long numberOfUpdates;
+    private long lastNumberOfUpdates;
+    private long lastDroppedPackets;
+    
+    private float delay;
+    private float targetDelay;
+    
+    private long lastLocalTime;
+    private long renderTime;
+    
+    private long numberOfUnderruns;
+    private boolean isUnderrun;
+    private float underrunDelay;
+    
+    /**
+     * @param minDelay the min playout delay, in msec
+     * @param maxDelay the max playout delay, in msec
+     * @param maxExtrapolation the max amount of time (in msec) entities are extrapolated past their latest update
+     */
+    public PlayoutDelay(long minDelay, long maxDelay, long maxExtrapolation) {
+        this.minDelay = minDelay;
+        this.maxDelay = maxDelay;
+        this.maxExtrapolation = maxExtrapolation;
+        
+        reset();
+    }
+    
+    public PlayoutDelay() {
+        this(DEFAULT_MIN_DELAY, DEFAULT_MAX_DELAY, DEFAULT_MAX_EXTRAPOLATION);
+    }
+    
+    /**
+     * Resets the measurements, for instance when joining a new game
+     */
+    public void reset() {
+        this.hasClockOffset = false;
+        this.clockOffset = 0;
+        this.lastServerTime = -1;
+        this.lastArrivalTime = -1;
+        
+        this.updateInterval = 0;
+        this.jitter = 0;
+        this.packetLoss = 0;
+        
+        this.numberOfUpdates = 0;
+        this.lastNumberOfUpdates = 0;
+        this.lastDroppedPackets = -1;
+        
+        this.delay = this.minDelay;
+        this.targetDelay = this.minDelay;
+        
+        this.lastLocalTime = -1;
+        this.renderTime = 0;
+        
+        this.numberOfUnderruns = 0;
+        this.isUnderrun = false;
+        this.underrunDelay = 0;
+    }
+    
+    /**
+     * A game update was received from the server
+     *
+     * @param serverTime the server game clock of the update
+     * @param localTime the client clock when it arrived
+     */
+    public void updateReceived(long serverTime, long localTime) {
+        if(serverTime <= this.lastServerTime) {
+            /* the server clock started over */
+            if(this.lastServerTime - serverTime > this.maxDelay) {
+                reset();
+            }
+            /* otherwise a duplicate or out of order, nothing to measure */
+            else {
+                return;
+            }
+        }
+        
+        this.numberOfUpdates++;
+        
+        /* the server clock is ahead of the local clock by the offset, less the latency; as
+         * latency only delays an update, the largest offset seen is the least delayed one.
+         * The offset is slowly let back down so that a drifting clock is followed.
+         */
+        long offset = serverTime - localTime;
+        if(!this.hasClockOffset || offset > this.clockOffset) {
+            this.clockOffset = offset;
+            this.hasClockOffset = true;
+        }
+        else if(this.numberOfUpdates % 16 == 0) {
+            this.clockOffset--;
+        }
+        
+        if(this.lastServerTime >= 0) {
+            long serverDelta = serverTime - this.lastServerTime;
+            long arrivalDelta = localTime - this.lastArrivalTime;
+            
+            if(this.updateInterval <= 0) {
+                this.updateInterval = serverDelta;
+            }
+            else {
+                this.updateInterval += (serverDelta - this.updateInterval) / 16.0f;
+            }
+            
+            float deviation = Math.abs(arrivalDelta - serverDelta);
+            this.jitter += (deviation - this.jitter) / 16.0f;
+        }
+        
+        this.lastServerTime = serverTime;
+        this.lastArrivalTime = localTime;
+    }
+    
+    /**
+     * Updates the packet loss from the connection statistics
+     *
+     * @param numberOfDroppedPackets the total number of packets dropped by the connection
+     */
+    public void updatePacketLoss(long numberOfDroppedPackets) {
+        if(this.lastDroppedPackets < 0) {
+            this.lastDroppedPackets = numberOfDroppedPackets;
+            this.lastNumberOfUpdates = this.numberOfUpdates;
+            return;
+        }
+        
+        long dropped = numberOfDroppedPackets - this.lastDroppedPackets;
+        long received = this.numberOfUpdates - this.lastNumberOfUpdates;
+        
+        /* wait for a handful of packets to get a meaningful ratio */
+        if(dropped + received >= 20) {
+            float loss = (float)dropped / (float)(dropped + received);
+            this.packetLoss += (loss - this.packetLoss) * 0.25f;
+            
+            this.lastDroppedPackets = numberOfDroppedPackets;
+            this.lastNumberOfUpdates = this.numberOfUpdates;
+        }
+    }
+    
+    /**
+     * Advances the render clock
+     *
+     * @param localTime the client clock
+     */
+    public void update(long localTime) {
+        long elapsed = (this.lastLocalTime < 0) ? 0 : localTime - this.lastLocalTime;
+        this.lastLocalTime = localTime;
+        
+        /* the extra delay from running out of updates wears off over time */
+        this.underrunDelay = Math.max(0, this.underrunDelay - elapsed * UNDERRUN_DECAY_RATE);
+        
+        float target = this.updateInterval * (1.0f + Math.min(this.packetLoss * 10.0f, 2.0f))
+                     + this.jitter * JITTER_FACTOR
+                     + this.underrunDelay;
+        
+        this.targetDelay = Math.max(this.minDelay, Math.min(this.maxDelay, target));
+        
+        /* move toward the target, so that the render clock slows down or speeds up rather than jumps */
+        float step = elapsed * ADAPT_RATE;
+        if(this.delay < this.targetDelay) {
+            this.delay = Math.min(this.targetDelay, this.delay + step);
+        }
+        else if(this.delay > this.targetDelay) {
+            this.delay = Math.max(this.targetDelay, this.delay - step);
+        }
+        
+        /* never run the render clock backwards */
+        long time = localTime + this.clockOffset - (long)this.delay;
+        if(time > this.renderTime) {
+            this.renderTime = time;
+        }
+        
+        /* the render clock ran past the latest update, so anything moving is being extrapolated */
+        boolean isUnderrun = this.lastServerTime >= 0 && this.renderTime > this.lastServerTime;
+        if(isUnderrun && !this.isUnderrun) {
+            this.numberOfUnderruns++;
+            this.underrunDelay = Math.min(this.underrunDelay + Math.max(this.updateInterval, UNDERRUN_STEP), this.maxDelay);
+        }
+        this.isUnderrun = isUnderrun;
+    }
+    
+    /**
+     * @return the server time to render the entities at
+     */
+    public long getRenderTime() {
+        return renderTime;
+    }
+    
+    /**
+     * @return the current playout delay in msec
+     */
+    public long getDelay() {
+        return (long)delay;
+    }
+    
+    /**
+     * @return the playout delay being adapted to, in msec
+     */
+    public long getTargetDelay() {
+        return (long)targetDelay;
+    }
+    
+    /**
+     * @return the max amount of time (in msec) entities are extrapolated past their latest update
+     */
+    public long getMaxExtrapolation() {
+        return maxExtrapolation;
+    }
+    
+    /**
+     * @return the average interval between updates from the server, in msec
+     */
+    public float getUpdateInterval() {
+        return updateInterval;
+    }
+    
+    /**
+     * @return the measured jitter, in msec
+     */
+    public float getJitter() {
+        return jitter;
+    }
+    
+    /**
+     * @return the measured packet loss, from 0 to 1
+     */
+    public float getPacketLoss() {
+        return packetLoss;
+    }
+    
+    /**
+     * @return true if the render clock is currently past the latest update
+     */
+    public boolean isUnderrun() {
+        return isUnderrun;
+    }
+    
+    /**
+     * @return the number of times the render clock ran past the latest update
+     */
+    public long getNumberOfUnderruns() {
+        return numberOfUnderruns;
+    }
+}
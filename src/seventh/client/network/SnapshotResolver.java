@@ -0,0 +1,71 @@
+/*
+ * see license.txt
+ */
+package seventh.client.network;
+
+import harenet.IOBuffer;
+import seventh.game.net.NetGameUpdate;
+import seventh.game.net.NetSnapshot;
+import seventh.game.net.NetSnapshotHistory;
+
+/**
+ * Resolves the delta compressed snapshots received from the server against the snapshots
+ * they were compressed against, keeping a history of the resolved snapshots for the
+ * snapshots still to come.
+ *
+ * @author Tony
+ *
+ */
+public class SnapshotResolver {
+    
+    private NetSnapshotHistory snapshotHistory;
+    private IOBuffer snapshotBuffer;
+    
+    /**
+     */
+    public SnapshotResolver() {
+        this.snapshotHistory = new NetSnapshotHistory();
+        this.snapshotBuffer = IOBuffer.Factory.allocate(NetSnapshot.WORKING_BUFFER_SIZE);
+    }
+    
+    /**
+     * Removes all of the resolved snapshots
+     */
+    public void clear() {
+        this.snapshotHistory.clear();
+    }
+    
+    /**
+     * Resolves the delta compressed entities of the game update against the 
+     * base snapshot it was compressed against.
+     * 
+     * @param netUpdate
+     * @return true if the snapshot was resolved, false if the base snapshot is missing
+     */
+    public boolean resolve(NetGameUpdate netUpdate) {
+        NetSnapshot snapshot = netUpdate.snapshot;
+        
+        NetSnapshot base = null;
+        if(netUpdate.baseAge > 0) {
+            base = this.snapshotHistory.get(NetSnapshotHistory.baseSnapshotId(snapshot.id, netUpdate.baseAge));
+            if(base == null) {
+                snapshot.release();
+                return false;
+            }
+        }
+        
+        if(!snapshot.resolve(base, this.snapshotBuffer)) {
+            snapshot.release();
+            return false;
+        }
+        
+        /* the snapshots are pooled, the one that falls out of the history can be read into again */
+        NetSnapshot replaced = this.snapshotHistory.add(snapshot);
+        if(replaced != null) {
+            replaced.release();
+        }
+        
+        snapshot.toNetEntities(netUpdate.entities, this.snapshotBuffer);
+        return true;
+    }
+}
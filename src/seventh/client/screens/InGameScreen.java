@@ -773,7 +773,9 @@ public class InGameScreen implements Screen {
             inputMessage.keys = 0;
         }
         
+        inputMessage.sequence = game.nextInputSequence();
         inputMessage.orientation = game.calcPlayerOrientation(mousePos.x, mousePos.y);                 
+        inputMessage.interpolationDelay = (int)game.getPlayoutDelay().getDelay();
         connection.getClientProtocol().sendPlayerInputMessage(inputMessage);
         connection.updateNetwork(timeStep);
                         
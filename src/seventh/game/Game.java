@@ -11,6 +11,7 @@ import static seventh.shared.SeventhConstants.SPAWN_INVINCEABLILITY_TIME;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.Random;
@@ -20,6 +21,7 @@ import leola.vm.types.LeoObject;
 import seventh.ai.AISystem;
 import seventh.ai.basic.AILeolaLibrary;
 import seventh.ai.basic.DefaultAISystem;
+import seventh.game.Players.PlayerIterator;
 import seventh.game.entities.Base;
 import seventh.game.entities.Bomb;
 import seventh.game.entities.BombTarget;
@@ -62,6 +64,7 @@ import seventh.game.net.NetGameUpdate;
 import seventh.game.net.NetMapAddition;
 import seventh.game.net.NetMapAdditions;
 import seventh.game.net.NetMapDestructables;
+import seventh.game.net.NetPlayer;
 import seventh.game.net.NetSound;
 import seventh.game.net.NetSoundByEntity;
 import seventh.game.weapons.Explosion;
@@ -177,6 +180,7 @@ public class Game implements GameInfo, Debugable, Updatable {
     private EventDispatcher dispatcher;
             
     private long time;
+    private long gameClock;
     
     private Random random;
     
@@ -187,9 +191,39 @@ public class Game implements GameInfo, Debugable, Updatable {
     
     // data members that are strictly here for performance
     // reasons
-    public List<Tile> tilesInLineOfSight = new ArrayList<Tile>();
-    List<SoundEmittedEvent> aSoundsHeard = new ArrayList<SoundEmittedEvent>();
-    List<Entity> aEntitiesInView = new ArrayList<Entity>();
+    private ViewBuffers viewBuffers = new ViewBuffers();
+    private PlayerVisibility playerVisibility;
+    
+    /*
+     * The network state of each entity, taken once per frame
+     * so that the game updates can be built from multiple threads
+     */
+    private NetEntity[] netEntities;
+    private NetPlayer[] netPlayers;
+    private boolean netUpdatesPrepared;
+    
+    /*
+     * Broadphase for entities, doors (by their index in the doors list) and
+     * collidable map objects (by their index in the collidable map objects list)
+     */
+    private SpatialGrid entityGrid;
+    private SpatialGrid doorGrid;
+    private SpatialGrid mapObjectGrid;
+    
+    /*
+     * The query results, a touch callback may end up querying again so
+     * each nested query gets its own results
+     */
+    private SpatialGrid.Result[] gridResults;
+    private int gridResultsDepth;
+    
+    /*
+     * Lag compensation, the recent bounds of the players so that
+     * a shot can be checked against where the shooter saw them
+     */
+    private PlayerBoundsHistory playerHistory;
+    private long maxRewind;
+    private Rectangle rewoundBounds;
         
     private Timers gameTimers;
     private Triggers gameTriggers;
@@ -242,6 +276,9 @@ public class Game implements GameInfo, Debugable, Updatable {
         
         this.deadFrames = new int[MAX_ENTITIES];
         markDeadFrames();
+        
+        this.netEntities = new NetEntity[MAX_ENTITIES];
+        this.netPlayers = new NetPlayer[MAX_PLAYERS];
                 
         this.bombTargets = new ArrayList<BombTarget>();
         this.vehicles = new ArrayList<Vehicle>();
@@ -268,6 +305,18 @@ public class Game implements GameInfo, Debugable, Updatable {
         
         this.DISTANCE_CHECK = TILE_HEIGHT * TILE_WIDTH * 2;
         
+        this.entityGrid = new SpatialGrid(map.getMapWidth(), map.getMapHeight(), TILE_WIDTH, TILE_HEIGHT, MAX_ENTITIES);
+        this.doorGrid = new SpatialGrid(map.getMapWidth(), map.getMapHeight(), TILE_WIDTH, TILE_HEIGHT, MAX_ENTITIES);
+        this.mapObjectGrid = new SpatialGrid(map.getMapWidth(), map.getMapHeight(), TILE_WIDTH, TILE_HEIGHT, 1);
+        
+        this.rewoundBounds = new Rectangle();
+        this.playerVisibility = new PlayerVisibility(this);
+        
+        this.gridResults = new SpatialGrid.Result[8];
+        for(int i = 0; i < this.gridResults.length; i++) {
+            this.gridResults[i] = new SpatialGrid.Result();
+        }
+        
         this.eventRegistration = new EventRegistration(this.dispatcher);
         
         this.dispatcher.addEventListener(PlayerKilledEvent.class, new PlayerKilledListener() {
@@ -316,6 +365,7 @@ public class Game implements GameInfo, Debugable, Updatable {
                 
                 map.restoreDestroyedTiles();
                 map.removeAddedTiles();
+                playerVisibility.invalidate();
                 
                 loadMapScripts();
                 
@@ -760,6 +810,7 @@ public class Game implements GameInfo, Debugable, Updatable {
             if(tile != null) {
                 // add the tile to the world map
                 map.addTile(tile);
+                playerVisibility.invalidate();
                 
                 // make this tile unwalkable, so that pathfinding works correctly
                 graph.removeNode(data.tileX, data.tileY);
@@ -898,17 +949,22 @@ public class Game implements GameInfo, Debugable, Updatable {
      */
     @Override
     public void update(TimeStep timeStep) {        
+        this.netUpdatesPrepared = false;
+        this.gameClock = timeStep.getGameClock();
+        
         for(int i = 0; i < entities.length; i++) {
             Entity ent = entities[i];            
             if(ent!=null) {
                 if(ent.isAlive()) {
                     deadFrames[i] = 0;
                     ent.update(timeStep);
+                    updateSpatialIndex(ent);
                 }
                 else {
                     deadFrames[i]++;
                     if(deadFrames[i] > 1) {
                         entities[i] = null;
+                        entityGrid.remove(i);
                     }
                 }
             }    
@@ -917,12 +973,84 @@ public class Game implements GameInfo, Debugable, Updatable {
             }
         }            
         
+        // the players (and doors) have moved, so everyone
+        // sees things differently now
+        centerSensoryBounds();
+        this.playerVisibility.invalidate();
+        
         this.aiSystem.update(timeStep);
         this.gameTimers.update(timeStep);
         this.gameTriggers.update(timeStep);
         
         this.gameType.update(this, timeStep);
         this.time = this.gameType.getRemainingTime();
+        
+        recordPlayerHistory();
+    }
+    
+    /**
+     * Enables lag compensation, bullets fired by remote players are checked against the
+     * players as they were when the shot was taken on the client.
+     * 
+     * @param maxRewind the max amount of time (in msec) to rewind the players by, 0 to disable
+     * @param frameRate the server frame rate, used to size the history
+     */
+    public void setLagCompensation(long maxRewind, int frameRate) {
+        this.maxRewind = Math.max(0, maxRewind);
+        if(this.maxRewind > 0) {
+            int numberOfTicks = (int)(this.maxRewind * Math.max(1, frameRate) / 1000L) + 2;
+            this.playerHistory = new PlayerBoundsHistory(numberOfTicks, MAX_PLAYERS);
+        }
+        else {
+            this.playerHistory = null;
+        }
+    }
+    
+    /**
+     * @return the max amount of time (in msec) the players are rewound by, 0 if lag compensation is disabled
+     */
+    public long getMaxRewind() {
+        return maxRewind;
+    }
+    
+    /**
+     * @return the server game clock of the current frame
+     */
+    public long getGameClock() {
+        return gameClock;
+    }
+    
+    /**
+     * Determines how far back to rewind the players when checking a shot fired by the supplied entity.  The
+     * remote player saw the world one round trip plus their interpolation delay in the past.
+     * 
+     * @param shooter
+     * @return the amount of time (in msec) to rewind by, 0 if none
+     */
+    public long getRewindTime(Entity shooter) {
+        if(this.playerHistory != null && shooter != null && shooter.getType() == Type.PLAYER) {
+            Player player = this.players.getPlayer(shooter.getId());
+            if(player != null && !player.isBot()) {
+                return Math.min(player.getViewDelay(), this.maxRewind);
+            }
+        }
+        
+        return 0;
+    }
+    
+    /**
+     * Records where the players are at the end of this frame
+     */
+    private void recordPlayerHistory() {
+        if(this.playerHistory != null) {
+            this.playerHistory.beginTick(this.gameClock);
+            for(int i = 0; i < this.playerEntities.length; i++) {
+                PlayerEntity entity = this.playerEntities[i];
+                if(entity != null && entity.isAlive()) {
+                    this.playerHistory.record(i, entity.getBounds());
+                }
+            }
+        }
     }
         
     /**
@@ -979,6 +1107,12 @@ public class Game implements GameInfo, Debugable, Updatable {
                 this.collidableMapObjects.add(mapObject);
             }
         }      
+        
+        this.mapObjectGrid = new SpatialGrid(map.getMapWidth(), map.getMapHeight(), TILE_WIDTH, TILE_HEIGHT, 
+                                             Math.max(1, this.collidableMapObjects.size()));
+        for(int i = 0; i < this.collidableMapObjects.size(); i++) {
+            this.mapObjectGrid.update(i, this.collidableMapObjects.get(i).getBounds());
+        }
     }
         
     /* (non-Javadoc)
@@ -1224,10 +1358,17 @@ public class Game implements GameInfo, Debugable, Updatable {
             this.deadFrames[i] = 0;
         }
         
+        this.entityGrid.clear();
+        this.doorGrid.clear();
+        
         for(int i = 0; i < this.playerEntities.length;i++) {
             this.playerEntities[i] = null;
         }
         
+        if(this.playerHistory != null) {
+            this.playerHistory.clear();
+        }
+        
         this.bombTargets.clear();
         this.vehicles.clear();
         this.flags.clear();
@@ -1256,6 +1397,10 @@ public class Game implements GameInfo, Debugable, Updatable {
         int id = player.getId();
         if(id >= 0 && id < MAX_PLAYERS) {
             playerEntities[id] = player;
+            
+            if(playerHistory != null) {
+                playerHistory.remove(id);
+            }
         }
     }
     
@@ -1331,7 +1476,51 @@ public class Game implements GameInfo, Debugable, Updatable {
         
         if(id >= 0 && id < MAX_ENTITIES) {            
             entities[id] = ent;
+            entityGrid.update(id, ent.getBounds());
+        }
+    }
+    
+    /**
+     * Updates the location of the {@link Entity} in the broadphase, this must be invoked
+     * whenever an entity moves outside of its {@link Entity#update(TimeStep)}
+     * 
+     * @param ent
+     */
+    public void updateSpatialIndex(Entity ent) {
+        int id = ent.getId();
+        if(id >= 0 && id < MAX_ENTITIES && entities[id] == ent) {
+            entityGrid.update(id, ent.getBounds());
+        }
+    }
+    
+    /**
+     * @return the broadphase for the entities, each handle is the {@link Entity#getId()}
+     */
+    public SpatialGrid getEntityGrid() {
+        return entityGrid;
+    }
+    
+    /* (non-Javadoc)
+     * @see seventh.game.GameInfo#getPlayerVisibility()
+     */
+    @Override
+    public PlayerVisibility getPlayerVisibility() {
+        return playerVisibility;
+    }
+    
+    private SpatialGrid.Result pushGridResult() {
+        if(this.gridResultsDepth >= this.gridResults.length) {
+            this.gridResults = Arrays.copyOf(this.gridResults, this.gridResults.length * 2);
+            for(int i = this.gridResultsDepth; i < this.gridResults.length; i++) {
+                this.gridResults[i] = new SpatialGrid.Result();
+            }
         }
+        
+        return this.gridResults[this.gridResultsDepth++];
+    }
+    
+    private void popGridResult() {
+        this.gridResultsDepth--;
     }
     
     public boolean playerSwitchedTeam(int playerId, byte teamId) {
@@ -1504,9 +1693,14 @@ public class Game implements GameInfo, Debugable, Updatable {
     public void applyPlayerInput(int playerId, PlayerInputMessage msg) {
         Player player = this.players.getPlayer(playerId);
         if(player != null) {            
+            if(!player.updateInputSequence(msg.sequence)) {
+                return;
+            }
+            
             if(player.isAlive()) {
                 PlayerEntity entity = player.getEntity();                
                 entity.handleUserCommand(msg.keys, msg.orientation);                                
+                entity.setLastInputSequence(msg.sequence);
             }
             else {                
                 player.handleInput(this, msg.keys);
@@ -1528,10 +1722,17 @@ public class Game implements GameInfo, Debugable, Updatable {
             entities[i] = null;
         }    
         
+        this.entityGrid.clear();
+        this.doorGrid.clear();
+        
         for(int i = 0; i < playerEntities.length; i++) {
             playerEntities[i] = null;
         }    
         
+        if(this.playerHistory != null) {
+            this.playerHistory.clear();
+        }
+        
         this.bombTargets.clear();
         this.vehicles.clear();
         this.flags.clear();
@@ -1564,6 +1765,7 @@ public class Game implements GameInfo, Debugable, Updatable {
             // Add in a graph node so this terrain object 
             // can be traversed for path finding for bots
             this.graph.addNode(tileX, tileY);
+            this.playerVisibility.invalidate();
             this.dispatcher.queueEvent(new TileRemovedEvent(this, tileX, tileY));
         }
     }
@@ -1802,6 +2004,7 @@ public class Game implements GameInfo, Debugable, Updatable {
     public Door newDoor(Vector2f pos, Vector2f facing) {
         Door door = new Door(pos, this, facing);
         this.doors.add(door);
+        this.doorGrid.update(this.doors.size() - 1, door.getSwingBounds());
         this.addEntity(door);
         return door;
     }
@@ -2054,17 +2257,29 @@ public class Game implements GameInfo, Debugable, Updatable {
     public boolean doesVehicleTouchPlayers(Vehicle vehicle) {
         if(vehicle.hasOperator()) {
             PlayerEntity operator = vehicle.getOperator();
-            for(int i = 0; i < this.playerEntities.length; i++) {
-                Entity other = this.playerEntities[i];
-                if(other != null) {
-                    if(other != operator && vehicle.isTouching(other)) {
-                        if(vehicle.onTouch != null) {
-                            vehicle.onTouch.onTouch(vehicle, other);
-                            return true;
+            SpatialGrid.Result candidates = pushGridResult();
+            try {
+                this.entityGrid.queryRect(vehicle.getBounds(), candidates);
+                for(int i = 0; i < candidates.size(); i++) {
+                    int id = candidates.get(i);
+                    if(id >= this.playerEntities.length) {
+                        break;
+                    }
+                    
+                    Entity other = this.playerEntities[id];
+                    if(other != null) {
+                        if(other != operator && vehicle.isTouching(other)) {
+                            if(vehicle.onTouch != null) {
+                                vehicle.onTouch.onTouch(vehicle, other);
+                                return true;
+                            }
                         }
                     }
                 }
             }
+            finally {
+                popGridResult();
+            }
         }
         
         return false;
@@ -2077,50 +2292,64 @@ public class Game implements GameInfo, Debugable, Updatable {
     
     @Override
     public boolean doesTouchOthers(Entity ent, boolean invokeTouch) {
-        for(int i = 0; i < this.vehicles.size(); i++) {
-            Entity other = this.vehicles.get(i);
-            if(other != null) {
-                if(other != ent && other.isTouching(ent)) {
-                    if(!invokeTouch) {
-                        return true;
-                    }
-                    if(ent.onTouch != null) {
-                        ent.onTouch.onTouch(ent, other);
-                        return true;
+        SpatialGrid.Result candidates = pushGridResult();
+        try {
+            this.entityGrid.queryRect(ent.getBounds(), candidates);
+            for(int i = 0; i < candidates.size(); i++) {
+                Entity other = this.entities[candidates.get(i)];
+                if(other != null && other.getType().isVehicle() && this.vehicles.contains(other)) {
+                    if(other != ent && other.isTouching(ent)) {
+                        if(!invokeTouch) {
+                            return true;
+                        }
+                        if(ent.onTouch != null) {
+                            ent.onTouch.onTouch(ent, other);
+                            return true;
+                        }
                     }
                 }
             }
-        }
-        
-        for(int i = 0; i < this.doors.size(); i++) {
-            Entity other = this.doors.get(i);
-            if(other != null) {
-                if(other != ent && other.isTouching(ent)) {
-                    if(!invokeTouch) {
-                        return true;
-                    }
-                    if(ent.onTouch != null) {
-                        ent.onTouch.onTouch(ent, other);
-                        return true;
+            
+            this.doorGrid.queryRect(ent.getBounds(), candidates);
+            for(int i = 0; i < candidates.size(); i++) {
+                Entity other = this.doors.get(candidates.get(i));
+                if(other != null) {
+                    if(other != ent && other.isTouching(ent)) {
+                        if(!invokeTouch) {
+                            return true;
+                        }
+                        if(ent.onTouch != null) {
+                            ent.onTouch.onTouch(ent, other);
+                            return true;
+                        }
                     }
                 }
             }
         }
-        
+        finally {
+            popGridResult();
+        }
         
         return false;
     }
     
     @Override
     public boolean doesTouchEntity(Rectangle bounds) {
-        for(int i = 0; i < this.entities.length; i++) {
-            Entity other = this.entities[i];
-            if(other != null) {
-                if(bounds.intersects(other.getBounds())) {
-                    return true;
+        SpatialGrid.Result candidates = pushGridResult();
+        try {
+            this.entityGrid.queryRect(bounds, candidates);
+            for(int i = 0; i < candidates.size(); i++) {
+                Entity other = this.entities[candidates.get(i)];
+                if(other != null) {
+                    if(bounds.intersects(other.getBounds())) {
+                        return true;
+                    }
                 }
             }
         }
+        finally {
+            popGridResult();
+        }
         
         return false;
     }
@@ -2130,17 +2359,29 @@ public class Game implements GameInfo, Debugable, Updatable {
      */
     @Override
     public boolean doesTouchPlayers(Entity ent) {
-        for(int i = 0; i < this.playerEntities.length; i++) {
-            Entity other = this.playerEntities[i];
-            if(other != null) {
-                if(other != ent && /*other.bounds.intersects(ent.bounds)*/ ent.isTouching(other)) {
-                    if(ent.onTouch != null) {
-                        ent.onTouch.onTouch(ent, other);
-                        return true;
+        SpatialGrid.Result candidates = pushGridResult();
+        try {
+            this.entityGrid.queryRect(ent.getBounds(), candidates);
+            for(int i = 0; i < candidates.size(); i++) {
+                int id = candidates.get(i);
+                if(id >= this.playerEntities.length) {
+                    break;
+                }
+                
+                Entity other = this.playerEntities[id];
+                if(other != null) {
+                    if(other != ent && /*other.bounds.intersects(ent.bounds)*/ ent.isTouching(other)) {
+                        if(ent.onTouch != null) {
+                            ent.onTouch.onTouch(ent, other);
+                            return true;
+                        }
                     }
                 }
             }
         }
+        finally {
+            popGridResult();
+        }
         
         return false;
     }
@@ -2167,25 +2408,85 @@ public class Game implements GameInfo, Debugable, Updatable {
     
     public boolean doesTouchMapObject(Entity ent, boolean invokeTouch) {
         List<MapObject> mapObjects = getCollidableMapObjects();
-        for(int i = 0; i < mapObjects.size(); i++) {
-            MapObject object = mapObjects.get(i);
-            if(object.isCollidable()) {
-                if(object.isTouching(ent)) { 
-                    if(!invokeTouch) {
-                        return true;
-                    }
-                    
-                    if(!object.onTouch(this, ent)) {
-                        continue;
+        SpatialGrid.Result candidates = pushGridResult();
+        try {
+            this.mapObjectGrid.queryRect(ent.getBounds(), candidates);
+            for(int i = 0; i < candidates.size(); i++) {
+                MapObject object = mapObjects.get(candidates.get(i));
+                if(object.isCollidable()) {
+                    if(object.isTouching(ent)) { 
+                        if(!invokeTouch) {
+                            return true;
+                        }
+                        
+                        if(!object.onTouch(this, ent)) {
+                            continue;
+                        }
+                        
+                        if(ent.onMapObjectTouch != null) {                
+                            ent.onMapObjectTouch.onTouch(ent, object);
+                            return true;
+                        }
                     }
-                    
-                    if(ent.onMapObjectTouch != null) {                
-                        ent.onMapObjectTouch.onTouch(ent, object);
-                        return true;
+                }
+            }
+        }
+        finally {
+            popGridResult();
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Determines if the supplied bounds touches a collidable {@link MapObject} that 
+     * blocks the {@link Entity}
+     * 
+     * @param ent
+     * @param bounds
+     * @return true if blocked by a {@link MapObject}
+     */
+    public boolean isBlockedByMapObject(Entity ent, Rectangle bounds) {
+        List<MapObject> mapObjects = getCollidableMapObjects();
+        SpatialGrid.Result candidates = pushGridResult();
+        try {
+            this.mapObjectGrid.queryRect(bounds, candidates);
+            for(int i = 0; i < candidates.size(); i++) {
+                MapObject object = mapObjects.get(candidates.get(i));
+                if(object.isCollidable()) {
+                    if(object.isTouching(bounds)) {
+                        if(object.onTouch(this, ent)) {
+                            return true;
+                        }
                     }
                 }
             }
         }
+        finally {
+            popGridResult();
+        }
+        
+        return false;
+    }
+    
+    /**
+     * @param bounds
+     * @return true if the supplied bounds touches a {@link Door}
+     */
+    public boolean isBlockedByDoor(Rectangle bounds) {
+        SpatialGrid.Result candidates = pushGridResult();
+        try {
+            this.doorGrid.queryRect(bounds, candidates);
+            for(int i = 0; i < candidates.size(); i++) {
+                Door door = this.doors.get(candidates.get(i));
+                if(door.isTouching(bounds)) {
+                    return true;
+                }
+            }
+        }
+        finally {
+            popGridResult();
+        }
         
         return false;
     }
@@ -2196,34 +2497,48 @@ public class Game implements GameInfo, Debugable, Updatable {
      */
     @Override
     public boolean doesTouchVehicles(Entity ent) {
-        for(int i = 0; i < this.vehicles.size(); i++) {
-            Entity other = this.vehicles.get(i);
-            if(other != null) {
-                if(other != ent && other.isTouching(ent)) {
-                    if(ent.onTouch != null) {
-                        ent.onTouch.onTouch(ent, other);
-                        return true;
+        SpatialGrid.Result candidates = pushGridResult();
+        try {
+            this.entityGrid.queryRect(ent.getBounds(), candidates);
+            for(int i = 0; i < candidates.size(); i++) {
+                Entity other = this.entities[candidates.get(i)];
+                if(other != null && other.getType().isVehicle() && this.vehicles.contains(other)) {
+                    if(other != ent && other.isTouching(ent)) {
+                        if(ent.onTouch != null) {
+                            ent.onTouch.onTouch(ent, other);
+                            return true;
+                        }
                     }
                 }
             }
         }
+        finally {
+            popGridResult();
+        }
         
         return false;
     }
 
     @Override
     public boolean doesTouchDoors(Entity ent) {
-        for(int i = 0; i < this.doors.size(); i++) {
-            Entity other = this.doors.get(i);
-            if(other != null) {
-                if(other != ent && other.isTouching(ent)) {
-                    if(ent.onTouch != null) {
-                        ent.onTouch.onTouch(ent, other);
-                        return true;
+        SpatialGrid.Result candidates = pushGridResult();
+        try {
+            this.doorGrid.queryRect(ent.getBounds(), candidates);
+            for(int i = 0; i < candidates.size(); i++) {
+                Entity other = this.doors.get(candidates.get(i));
+                if(other != null) {
+                    if(other != ent && other.isTouching(ent)) {
+                        if(ent.onTouch != null) {
+                            ent.onTouch.onTouch(ent, other);
+                            return true;
+                        }
                     }
                 }
             }
         }
+        finally {
+            popGridResult();
+        }
         
         return false;
     }
@@ -2234,13 +2549,64 @@ public class Game implements GameInfo, Debugable, Updatable {
     @Override
     public boolean doesTouchPlayers(Entity ent, Vector2f origin, Vector2f dir) {        
         if(ent.onTouch != null) {
-            for(int i = 0; i < this.playerEntities.length; i++) {
-                Entity other = this.playerEntities[i];
-                if(other != null) {
-                    if(other != ent && other.canTakeDamage() && /*other.bounds.intersects(ent.bounds)*/ ent.isTouching(other)) {                                
+            SpatialGrid.Result candidates = pushGridResult();
+            try {
+                this.entityGrid.queryRect(ent.getBounds(), candidates);
+                for(int i = 0; i < candidates.size(); i++) {
+                    int id = candidates.get(i);
+                    if(id >= this.playerEntities.length) {
+                        break;
+                    }
+                    
+                    Entity other = this.playerEntities[id];
+                    if(other != null) {
+                        if(other != ent && other.canTakeDamage() && /*other.bounds.intersects(ent.bounds)*/ ent.isTouching(other)) {                                
+                            if(isEntityReachable(other, origin, dir)) {
+                                ent.onTouch.onTouch(ent, other);
+                                return true;                                        
+                            }
+                        }
+                    }
+                }
+            }
+            finally {
+                popGridResult();
+            }
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Determines if the supplied entity touches a player as they were the supplied amount of time
+     * ago, see {@link #getRewindTime(Entity)}.  If the {@link Entity#onTouch} listener is
+     * implemented, it will invoke it.
+     * 
+     * @param ent
+     * @param origin
+     * @param dir
+     * @param rewindTime the amount of time (in msec) to rewind the players by
+     * @return true if it does
+     */
+    public boolean doesTouchPlayers(Entity ent, Vector2f origin, Vector2f dir, long rewindTime) {
+        if(rewindTime <= 0 || this.playerHistory == null) {
+            return doesTouchPlayers(ent, origin, dir);
+        }
+        
+        if(ent.onTouch != null) {
+            long time = this.gameClock - rewindTime;
+            Rectangle bounds = ent.getBounds();
+            
+            /* the players may have moved out of their grid cells since, but there are
+             * few enough of them to just check each one against the history
+             */
+            for(int id = 0; id < this.playerEntities.length; id++) {
+                Entity other = this.playerEntities[id];
+                if(other != null && other != ent && other.canTakeDamage()) {
+                    if(this.playerHistory.getBounds(id, time, this.rewoundBounds) && this.rewoundBounds.intersects(bounds)) {
                         if(isEntityReachable(other, origin, dir)) {
                             ent.onTouch.onTouch(ent, other);
-                            return true;                                        
+                            return true;
                         }
                     }
                 }
@@ -2250,6 +2616,102 @@ public class Game implements GameInfo, Debugable, Updatable {
         return false;
     }
     
+    /**
+     * Finds everything the supplied entity may touch, by way of {@link #doesTouchPlayers(Entity, Vector2f, Vector2f, long)},
+     * {@link #doesTouchVehicles(Entity)}, {@link #doesTouchDoors(Entity)}, {@link #doesTouchBases(Entity)} and
+     * {@link #doesTouchMapObject(Entity)}, while it moves within the swept bounds.  If the candidates can not touch the
+     * entity's bounds at some point along its path, then neither can any of the doesTouch checks.
+     * 
+     * @param ent
+     * @param sweptBounds the area covering the whole path of the entity
+     * @param rewindTime the amount of time (in msec) the players are rewound by
+     * @param result
+     * @return the result
+     */
+    public SweepCandidates findSweepCandidates(Entity ent, Rectangle sweptBounds, long rewindTime, SweepCandidates result) {
+        result.clear();
+        
+        boolean isRewound = rewindTime > 0 && this.playerHistory != null;
+        
+        SpatialGrid.Result candidates = pushGridResult();
+        try {
+            this.entityGrid.queryRect(sweptBounds, candidates);
+            for(int i = 0; i < candidates.size(); i++) {
+                int id = candidates.get(i);
+                
+                Entity other = this.entities[id];
+                boolean isPlayer = !isRewound && id < this.playerEntities.length && this.playerEntities[id] != null;
+                boolean isVehicle = other != null && other.getType().isVehicle() && this.vehicles.contains(other);
+                if(isPlayer || isVehicle) {
+                    result.addHandle(this.entityGrid, id);
+                }
+            }
+            
+            this.doorGrid.queryRect(sweptBounds, candidates);
+            for(int i = 0; i < candidates.size(); i++) {
+                result.addHandle(this.doorGrid, candidates.get(i));
+            }
+            
+            this.mapObjectGrid.queryRect(sweptBounds, candidates);
+            for(int i = 0; i < candidates.size(); i++) {
+                result.addHandle(this.mapObjectGrid, candidates.get(i));
+            }
+        }
+        finally {
+            popGridResult();
+        }
+        
+        if(isRewound) {
+            long time = this.gameClock - rewindTime;
+            for(int id = 0; id < this.playerEntities.length; id++) {
+                Entity other = this.playerEntities[id];
+                if(other != null && other != ent) {
+                    if(this.playerHistory.getBounds(id, time, this.rewoundBounds) && this.rewoundBounds.intersects(sweptBounds)) {
+                        result.addArea(this.rewoundBounds);
+                    }
+                }
+            }
+        }
+        
+        for(int i = 0; i < this.bases.size(); i++) {
+            Base base = this.bases.get(i);
+            if(base != ent && base.getBounds().intersects(sweptBounds)) {
+                result.addArea(base.getBounds());
+            }
+        }
+        
+        return result;
+    }
+    
+    /* (non-Javadoc)
+     * @see seventh.game.GameInfo#getPlayersIn(seventh.math.Rectangle, java.util.List)
+     */
+    @Override
+    public List<PlayerEntity> getPlayersIn(Rectangle bounds, List<PlayerEntity> result) {
+        SpatialGrid.Result candidates = pushGridResult();
+        try {
+            this.entityGrid.queryRect(bounds, candidates);
+            for(int i = 0; i < candidates.size(); i++) {
+                int id = candidates.get(i);
+                if(id >= this.playerEntities.length) {
+                    break;
+                }
+                
+                PlayerEntity entity = this.playerEntities[id];
+                if(entity != null) {
+                    if(bounds.contains(entity.getCenterPos())) {
+                        result.add(entity);
+                    }
+                }
+            }
+        }
+        finally {
+            popGridResult();
+        }
+        
+        return result;
+    }
+    
     /* (non-Javadoc)
      * @see seventh.game.GameInfo#isEntityReachable(seventh.game.Entity, seventh.math.Vector2f, seventh.math.Vector2f)
      */
@@ -2423,11 +2885,123 @@ public class Game implements GameInfo, Debugable, Updatable {
         }
     }
     
+    /**
+     * Takes the network state of every entity for this frame.  Once prepared, 
+     * {@link #getNetGameUpdateFor(int, ViewBuffers)} only reads from the game state, so 
+     * the game updates for each player can be built from multiple threads (each with their
+     * own {@link ViewBuffers}).  The game must not be modified until all of the game updates
+     * are built.
+     * 
+     * <p>
+     * This must be invoked from the game thread, after {@link #update(TimeStep)}.
+     */
+    public void prepareNetGameUpdates() {
+        for(int i = 0; i < entities.length; i++) {
+            Entity ent = entities[i];
+            if(ent != null) {
+                /* refresh the cached center position, so that reading
+                 * it from the worker threads doesn't change it
+                 */
+                ent.getCenterPos();
+                this.netEntities[i] = ent.getNetEntity();
+                
+                if(i < MAX_PLAYERS && ent.getType() == Type.PLAYER) {
+                    PlayerEntity playerEntity = (PlayerEntity)ent;
+                    playerEntity.centerSensoryBounds();
+                    this.netPlayers[i] = playerEntity.getNetPlayer();
+                }
+                else if(i < MAX_PLAYERS) {
+                    this.netPlayers[i] = null;
+                }
+            }
+            else {
+                this.netEntities[i] = null;
+                if(i < MAX_PLAYERS) {
+                    this.netPlayers[i] = null;
+                }
+            }
+        }
+        
+        /*
+         * If the current player a spectator is watching is dead,
+         * follow another player
+         */
+        this.players.forEachPlayer(new PlayerIterator() {
+            
+            @Override
+            public void onPlayer(Player player) {
+                if(player.isPureSpectator()) {
+                    if( player.getSpectating()==null || player.getSpectating().isDead()) {
+                        Player otherPlayer = players.getRandomAlivePlayer();
+                        if(otherPlayer!=null) {                    
+                            player.setSpectating(otherPlayer);                    
+                        }
+                    }
+                }
+            }
+        });
+        
+        this.netUpdatesPrepared = true;
+    }
+    
+    /**
+     * Centers the hearing and visual bounds of the players around where they now are, so that
+     * the AI senses (which may run from multiple threads) only read them
+     */
+    private void centerSensoryBounds() {
+        for(int i = 0; i < MAX_PLAYERS; i++) {
+            Entity ent = entities[i];
+            if(ent != null && ent.getType() == Type.PLAYER) {
+                ((PlayerEntity)ent).centerSensoryBounds();
+            }
+        }
+    }
+    
+    /**
+     * Copies the prepared network state of the entities into the results
+     * 
+     * @param entities
+     * @param results
+     */
+    private void toNetEntities(List<Entity> entities, NetEntity[] results) {
+        int size = entities.size();
+        for(int i = 0; i < size; i++) {
+            Entity ent = entities.get(i);
+            if(ent != null) {
+                int id = ent.getId();
+                results[id] = this.netEntities[id];
+            }
+        }
+    }
+    
     /**
      * @param playerId
      * @return returns only the entities within the viewport of the supplied player
      */    
     public NetGameUpdate getNetGameUpdateFor(int playerId) {
+        if(!this.netUpdatesPrepared) {
+            prepareNetGameUpdates();
+        }
+        
+        return getNetGameUpdateFor(playerId, this.viewBuffers);
+    }
+    
+    /**
+     * @return the {@link ViewBuffers} to be used from the game thread
+     */
+    public ViewBuffers getViewBuffers() {
+        return viewBuffers;
+    }
+    
+    /**
+     * Builds the game update for the supplied player.  {@link #prepareNetGameUpdates()} must be
+     * invoked prior to this.
+     * 
+     * @param playerId
+     * @param buffers the caller owned working buffers
+     * @return returns only the entities within the viewport of the supplied player
+     */    
+    public NetGameUpdate getNetGameUpdateFor(int playerId, ViewBuffers buffers) {
         Player player = this.players.getPlayer(playerId);
         if(player == null) {
             return null;
@@ -2436,42 +3010,28 @@ public class Game implements GameInfo, Debugable, Updatable {
         NetGameUpdate netUpdate =  new NetGameUpdate();
         
         if (player.isPureSpectator()) {
-            NetEntity.toNetEntities(entities, netUpdate.entities);
+            System.arraycopy(this.netEntities, 0, netUpdate.entities, 0, this.netEntities.length);
             netUpdate.setNetSounds(NetSound.toNetSounds(soundEvents));
-                        
-            /*
-             * If the current player you are watching is dead,
-             * follow another player
-             */                        
-            if( player.getSpectating()==null || player.getSpectating().isDead()) {
-                Player otherPlayer = this.players.getRandomAlivePlayer();
-                if(otherPlayer!=null) {                    
-                    player.setSpectating(otherPlayer);                    
-                }
-            }
-            
         }    
         else if(player.isCommander()) {
             Team team = player.getTeam();
             List<Player> players = team.getPlayers();
             
-            aEntitiesInView.clear();
-            aSoundsHeard.clear();
-            
+            buffers.clear();
             
             for(int i = 0; i < players.size(); i++) {
                 Player p = players.get(i);
                 if(p.isAlive()) {
                     PlayerEntity playerEntity = p.getEntity();
                     
-                    aSoundsHeard = playerEntity.getHeardSounds(soundEvents, aSoundsHeard);            
-                    aEntitiesInView = playerEntity.getEntitiesInView(this, aEntitiesInView);    
-                    aEntitiesInView.add(playerEntity);
+                    playerEntity.getHeardSounds(soundEvents, buffers.soundsHeard);            
+                    playerEntity.getEntitiesInView(this, buffers, buffers.entitiesInView);    
+                    buffers.entitiesInView.add(playerEntity);
                 }
             }
             
-            netUpdate.setNetSounds(NetSound.consolidateToNetSounds(aSoundsHeard));             
-            NetEntity.toNetEntities(aEntitiesInView, netUpdate.entities);
+            netUpdate.setNetSounds(NetSound.consolidateToNetSounds(buffers.soundsHeard));             
+            toNetEntities(buffers.entitiesInView, netUpdate.entities);
             
             adjustNetSoundsPosition(netUpdate.sounds, netUpdate.entities);
         }
@@ -2479,24 +3039,25 @@ public class Game implements GameInfo, Debugable, Updatable {
             PlayerEntity playerEntity = player.isSpectating() ? player.getSpectatingEntity() : player.getEntity();
             
             if(playerEntity != null) {
+                buffers.clear();
+                
                 /*
                  * Calculate all the sounds this player can hear
                  */            
-                aSoundsHeard.clear();
-                aSoundsHeard = playerEntity.getHeardSounds(soundEvents, aSoundsHeard);            
-                netUpdate.setNetSounds(NetSound.toNetSounds(aSoundsHeard)); 
+                playerEntity.getHeardSounds(soundEvents, buffers.soundsHeard);            
+                netUpdate.setNetSounds(NetSound.toNetSounds(buffers.soundsHeard)); 
                                         
                 
                 /*
                  * Calculate all the visuals this player can see
                  */
-                aEntitiesInView.clear();
-                aEntitiesInView = playerEntity.getEntitiesInView(this, aEntitiesInView);
-                NetEntity.toNetEntities(aEntitiesInView, netUpdate.entities);
+                playerEntity.getEntitiesInView(this, buffers, buffers.entitiesInView);
+                toNetEntities(buffers.entitiesInView, netUpdate.entities);
                 
                 /* now add the players full entity state */
-                if(playerEntity.isAlive()) {
-                    netUpdate.entities[playerEntity.getId()] = playerEntity.getNetPlayer();
+                int id = playerEntity.getId();
+                if(playerEntity.isAlive() && id >= 0 && id < MAX_PLAYERS && this.netPlayers[id] != null) {
+                    netUpdate.entities[id] = this.netPlayers[id];
                 }
                 
                 adjustNetSoundsPosition(netUpdate.sounds, netUpdate.entities);
@@ -2510,6 +3071,7 @@ public class Game implements GameInfo, Debugable, Updatable {
         }
         
         netUpdate.time = (int)time;        
+        netUpdate.serverTime = (int)gameClock;
         netUpdate.spectatingPlayerId = player.getSpectatingPlayerId();
         return netUpdate;
     }
@@ -235,6 +235,15 @@ public interface GameInfo {
      */
     public abstract boolean doesVehicleTouchPlayers(Vehicle vehicle);
     
+    /**
+     * Retrieves the players whose center position is within the supplied bounds
+     * 
+     * @param bounds
+     * @param result the out parameter
+     * @return the same instance as result, just returned for convenience
+     */
+    public List<PlayerEntity> getPlayersIn(Rectangle bounds, List<PlayerEntity> result);
+    
     /**
      * Determines if the supplied entity is reachable given the origin and direction.
      * 
@@ -244,5 +253,10 @@ public interface GameInfo {
      * @return true if reachable (i.e., in sight or projectile can pierce)
      */
     public abstract boolean isEntityReachable(Entity other, Vector2f origin, Vector2f dir);
+    
+    /**
+     * @return which players each player is able to see, shared by the game updates and the AI
+     */
+    public abstract PlayerVisibility getPlayerVisibility();
 
 }
\ No newline at end of file
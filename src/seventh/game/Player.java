@@ -12,6 +12,7 @@ import seventh.game.entities.PlayerEntity.Keys;
 import seventh.game.net.NetPlayerPartialStat;
 import seventh.game.net.NetPlayerStat;
 import seventh.math.Vector2f;
+import seventh.network.messages.PlayerInputMessage;
 import seventh.shared.Debugable;
 import seventh.shared.TimeStep;
 
@@ -29,6 +30,12 @@ public class Player implements PlayerInfo, Debugable {
     public static final long SPAWN_DELAY = 3000;
     public static final long LOOK_AT_DEATH_DELAY = 2000;
     
+    /**
+     * How far behind the latest input sequence number an input can be and still
+     * be considered late, rather than the client having started counting over
+     */
+    private static final int MAX_LATE_INPUTS = 256;
+    
     private int id;
     private String name;
     
@@ -36,6 +43,8 @@ public class Player implements PlayerInfo, Debugable {
     private int deaths;
     private int assists;
     private int ping;
+    private long viewDelay;
+    private int lastInputSequence;
     private int hitPercentage;
     
     private long joinTime;
@@ -95,6 +104,7 @@ public class Player implements PlayerInfo, Debugable {
         this.killedAt = new Vector2f();
         
         this.activeTile = 0;
+        this.lastInputSequence = -1;
                 
         setPlayerClass(PlayerClass.Default);
         setTeam(Team.SPECTATOR);
@@ -341,6 +351,47 @@ public class Player implements PlayerInfo, Debugable {
         return ping;
     }
     
+    /**
+     * Records the sequence number of an input received from this player.  Inputs are sent
+     * unreliably, so one may arrive after a newer one.
+     * 
+     * @param sequence the {@link PlayerInputMessage#sequence}
+     * @return false if the input is a late (or duplicate) one, in which case it should be dropped
+     */
+    public boolean updateInputSequence(int sequence) {
+        if(this.lastInputSequence >= 0) {
+            int age = (this.lastInputSequence - sequence) & PlayerInputMessage.SEQUENCE_MASK;
+            if(age < MAX_LATE_INPUTS) {
+                return false;
+            }
+        }
+        
+        this.lastInputSequence = sequence;
+        return true;
+    }
+    
+    /**
+     * @return the sequence number of the latest input received from this player, or -1 if none
+     */
+    public int getLastInputSequence() {
+        return lastInputSequence;
+    }
+    
+    /**
+     * @param viewDelay how far behind the server (in msec) this player sees the game
+     */
+    public void setViewDelay(long viewDelay) {
+        this.viewDelay = viewDelay;
+    }
+    
+    /**
+     * @return how far behind the server (in msec) this player sees the game, the round trip
+     * time plus the client interpolation delay
+     */
+    public long getViewDelay() {
+        return viewDelay;
+    }
+    
     
     /* (non-Javadoc)
      * @see seventh.game.PlayerInfo#isBot()
@@ -623,6 +674,7 @@ public class Player implements PlayerInfo, Debugable {
           .add("assists", getAssists())
           .add("hitPercentage", getHitPercentage())
           .add("ping", getPing())
+          .add("view_delay", getViewDelay())
           .add("time_joined", new Date(getJoinTime()).toString())          
           .add("weapon_class", getWeaponClass().name())
           .add("isAlive", isAlive())
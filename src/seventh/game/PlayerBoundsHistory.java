@@ -0,0 +1,212 @@
+/*
+ * see license.txt
+ */
+package seventh.game;
+
+import seventh.math.Rectangle;
+
+/**
+ * A ring of the bounds of each player over the last few server ticks, used for lag compensation: a
+ * shot is checked against the players where the shooter saw them, rather than where they are now.
+ *
+ * <p>
+ * Everything is kept in flat preallocated arrays (a tick's bounds are packed as x, y, width and height for
+ * each player slot, and which slots were alive is kept as a bit set), so recording a tick and rewinding a
+ * player do not allocate.
+ *
+ * @author Tony
+ *
+ */
+public class PlayerBoundsHistory {
+    
+    private static final int FIELDS = 4;
+    
+    private final int numberOfPlayers;
+    private final int numberOfWords;
+    private final int mask;
+    
+    private final long[] times;
+    private final long[] present;
+    private final int[] bounds;
+    
+    private int newest;
+    private int size;
+    
+    /**
+     * @param numberOfTicks the number of ticks to keep, rounded up to a power of two
+     * @param numberOfPlayers the number of player slots
+     */
+    public PlayerBoundsHistory(int numberOfTicks, int numberOfPlayers) {
+        if(numberOfTicks < 2 || numberOfPlayers < 1) {
+            throw new IllegalArgumentException("Invalid history size: " + numberOfTicks + " ticks for " + numberOfPlayers + " players");
+        }
+        
+        int capacity = Integer.highestOneBit(numberOfTicks - 1) << 1;
+        
+        this.numberOfPlayers = numberOfPlayers;
+        this.numberOfWords = (numberOfPlayers + 63) / 64;
+        this.mask = capacity - 1;
+        
+        this.times = new long[capacity];
+        this.present = new long[capacity * this.numberOfWords];
+        this.bounds = new int[capacity * numberOfPlayers * FIELDS];
+        
+        clear();
+    }
+    
+    /**
+     * Removes all of the recorded ticks
+     */
+    public void clear() {
+        this.newest = -1;
+        this.size = 0;
+    }
+    
+    /**
+     * @return the number of ticks that can be kept
+     */
+    public int capacity() {
+        return this.times.length;
+    }
+    
+    /**
+     * @return the number of recorded ticks
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * @return the time of the latest tick, or -1 if empty
+     */
+    public long getNewestTime() {
+        return (this.size > 0) ? this.times[this.newest] : -1;
+    }
+    
+    /**
+     * @return the time of the oldest tick, or -1 if empty
+     */
+    public long getOldestTime() {
+        return (this.size > 0) ? this.times[index(this.size - 1)] : -1;
+    }
+    
+    /**
+     * Starts a new tick, overwriting the oldest one if full.  The players are then added
+     * with {@link #record(int, Rectangle)}, any player that isn't recorded is absent for the tick.
+     *
+     * @param time the game clock of the tick
+     */
+    public void beginTick(long time) {
+        this.newest = (this.newest + 1) & this.mask;
+        if(this.size < this.times.length) {
+            this.size++;
+        }
+        
+        this.times[this.newest] = time;
+        
+        int word = this.newest * this.numberOfWords;
+        for(int i = 0; i < this.numberOfWords; i++) {
+            this.present[word + i] = 0;
+        }
+    }
+    
+    /**
+     * Records the bounds of a player for the current tick
+     *
+     * @param playerId
+     * @param rect
+     */
+    public void record(int playerId, Rectangle rect) {
+        if(this.size == 0 || playerId < 0 || playerId >= this.numberOfPlayers) {
+            return;
+        }
+        
+        this.present[this.newest * this.numberOfWords + (playerId >> 6)] |= (1L << playerId);
+        
+        int offset = (this.newest * this.numberOfPlayers + playerId) * FIELDS;
+        this.bounds[offset + 0] = rect.x;
+        this.bounds[offset + 1] = rect.y;
+        this.bounds[offset + 2] = rect.width;
+        this.bounds[offset + 3] = rect.height;
+    }
+    
+    /**
+     * Forgets the recorded bounds of a player, for instance when the slot is taken
+     * by a newly spawned player so that it isn't rewound to where the previous one was
+     *
+     * @param playerId
+     */
+    public void remove(int playerId) {
+        if(playerId < 0 || playerId >= this.numberOfPlayers) {
+            return;
+        }
+        
+        long bit = ~(1L << playerId);
+        for(int i = playerId >> 6; i < this.present.length; i += this.numberOfWords) {
+            this.present[i] &= bit;
+        }
+    }
+    
+    /**
+     * @param age 0 for the latest tick, 1 for the one before it, etc.
+     * @return the index of the tick
+     */
+    private int index(int age) {
+        return (this.newest - age) & this.mask;
+    }
+    
+    private boolean isPresent(int index, int playerId) {
+        return (this.present[index * this.numberOfWords + (playerId >> 6)] & (1L << playerId)) != 0;
+    }
+    
+    /**
+     * Rewinds a player to the supplied time, interpolating between the ticks on either side of it.  A
+     * time past the latest tick uses the latest tick, a time before the oldest tick uses the oldest tick.
+     *
+     * @param playerId
+     * @param time the game clock to rewind to
+     * @param result the rewound bounds
+     * @return true if the player was alive at that time, false otherwise (in which case the result is untouched)
+     */
+    public boolean getBounds(int playerId, long time, Rectangle result) {
+        if(this.size == 0 || playerId < 0 || playerId >= this.numberOfPlayers) {
+            return false;
+        }
+        
+        /* rewinds are only a handful of ticks, so walk back from the latest */
+        int from = -1;
+        int to = -1;
+        for(int age = 0; age < this.size; age++) {
+            int index = index(age);
+            if(this.times[index] <= time) {
+                from = index;
+                break;
+            }
+            to = index;
+        }
+        
+        if(from < 0) {
+            from = to;
+            to = -1;
+        }
+        
+        if(!isPresent(from, playerId)) {
+            return false;
+        }
+        
+        int offset = (from * this.numberOfPlayers + playerId) * FIELDS;
+        result.x = this.bounds[offset + 0];
+        result.y = this.bounds[offset + 1];
+        result.width = this.bounds[offset + 2];
+        result.height = this.bounds[offset + 3];
+        
+        if(to >= 0 && isPresent(to, playerId)) {
+            float alpha = (float)(time - this.times[from]) / (float)(this.times[to] - this.times[from]);
+            int toOffset = (to * this.numberOfPlayers + playerId) * FIELDS;
+            result.x += Math.round(alpha * (this.bounds[toOffset + 0] - result.x));
+            result.y += Math.round(alpha * (this.bounds[toOffset + 1] - result.y));
+        }
+        
+        return true;
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ * see license.txt
+ */
+package seventh.game;
+
+import static seventh.shared.SeventhConstants.MAX_PLAYERS;
+
+import java.util.List;
+
+import seventh.game.entities.Entity;
+import seventh.game.entities.PlayerEntity;
+import seventh.map.VisibleTiles;
+import seventh.math.Rectangle;
+import seventh.math.Vector2f;
+
+/**
+ * Answers which players each player is able to see, both for the game updates sent to the clients (see
+ * {@link PlayerEntity#getEntitiesInView(Game, ViewBuffers, List)}) and for the AI's senses and targeting, so that
+ * the line of sight of a player is calculated at most once per frame rather than once by each of them.
+ *
+ * <p>
+ * Each viewer keeps its line of sight, along with a row of bits (one per player) for each of the questions
+ * that has been asked of it.  The line of sight is only calculated once a player is close enough to the viewer's
+ * view to possibly be in it.  The answers are remembered until either the viewer or the player moves, turns, crouches
+ * or stands up; or until {@link #invalidate()}, which is invoked once the entities have been updated each frame and
+ * whenever the map changes.
+ *
+ * <p>
+ * The answers are not symmetric, a player may see someone who is behind them and can not see them back.
+ *
+ * <p>
+ * The viewers may be queried from multiple threads, but the game must not be modified while they are.
+ *
+ * @author Tony
+ *
+ */
+public class PlayerVisibility {
+    
+    /**
+     * The cached answers of a single viewer
+     *
+     * @author Tony
+     *
+     */
+    private static class Viewer {
+        int generation = -1;
+        
+        /* what the line of sight was calculated from */
+        Entity sight;
+        Rectangle sightBounds = new Rectangle();
+        float sightX, sightY;
+        int sightHeightMask;
+        
+        boolean hasLineOfSight;
+        VisibleTiles visibleTiles = new VisibleTiles();
+        
+        /* what the line of fire is tested from */
+        boolean hasFire;
+        float fireX, fireY;
+        int fireHeightMask;
+        
+        long inViewKnown, inView;
+        long inSightKnown, inSight;
+        long inLineOfFireKnown, inLineOfFire;
+        
+        /* what the answers of each player were worked out against */
+        PlayerEntity[] targets = new PlayerEntity[MAX_PLAYERS];
+        float[] targetX = new float[MAX_PLAYERS];
+        float[] targetY = new float[MAX_PLAYERS];
+        int[] targetHeightMask = new int[MAX_PLAYERS];
+        
+        Rectangle bounds = new Rectangle();
+        Vector2f enemyDir = new Vector2f();
+    }
+    
+    private final Game game;
+    private final Viewer[] viewers;
+    private volatile int generation;
+    
+    /**
+     * @param game
+     */
+    public PlayerVisibility(Game game) {
+        this.game = game;
+        this.viewers = new Viewer[MAX_PLAYERS];
+        for(int i = 0; i < this.viewers.length; i++) {
+            this.viewers[i] = new Viewer();
+        }
+    }
+    
+    /**
+     * Forgets every answer, this must be invoked when anything other than the players
+     * themselves changes what can be seen (doors, the map, etc.)
+     */
+    public void invalidate() {
+        this.generation++;
+    }
+    
+    /**
+     * Determines if the target can be seen by the viewer with fog of war enabled, see
+     * {@link PlayerEntity#isPlayerInView(Game, Entity, VisibleTiles, Vector2f)}
+     *
+     * @param viewer
+     * @param target
+     * @return true if the target is in the viewer's view
+     */
+    public boolean isInView(PlayerEntity viewer, PlayerEntity target) {
+        Viewer v = this.viewers[viewer.getId()];
+        synchronized (v) {
+            long bit = refresh(v, target);
+            updateSight(v, viewer);
+            
+            if((v.inViewKnown & bit) == 0) {
+                v.inViewKnown |= bit;
+                
+                if(mayBeInView(v.sightBounds, target) &&
+                   viewer.isPlayerInView(this.game, target, getLineOfSight(v, viewer), v.enemyDir)) {
+                    v.inView |= bit;
+                }
+                else {
+                    v.inView &= ~bit;
+                }
+            }
+            
+            return (v.inView & bit) != 0;
+        }
+    }
+    
+    /**
+     * Determines if the center of the target is within the viewer's line of sight
+     *
+     * @param viewer
+     * @param target
+     * @return true if the target is in the viewer's line of sight
+     */
+    public boolean isInSight(PlayerEntity viewer, PlayerEntity target) {
+        Viewer v = this.viewers[viewer.getId()];
+        synchronized (v) {
+            long bit = refresh(v, target);
+            updateSight(v, viewer);
+            
+            if((v.inSightKnown & bit) == 0) {
+                v.inSightKnown |= bit;
+                
+                Vector2f pos = target.getCenterPos();
+                int x = (int)pos.x;
+                int y = (int)pos.y;
+                if(v.sightBounds.contains(x, y) && getLineOfSight(v, viewer).isVisibleWorld(x, y)) {
+                    v.inSight |= bit;
+                }
+                else {
+                    v.inSight &= ~bit;
+                }
+            }
+            
+            return (v.inSight & bit) != 0;
+        }
+    }
+    
+    /**
+     * Determines if nothing on the map stands between the shooter and the target
+     *
+     * @param shooter
+     * @param target
+     * @return true if the target is in the shooter's line of fire
+     */
+    public boolean isInLineOfFire(PlayerEntity shooter, PlayerEntity target) {
+        Viewer v = this.viewers[shooter.getId()];
+        synchronized (v) {
+            long bit = refresh(v, target);
+            
+            Vector2f pos = shooter.getCenterPos();
+            int heightMask = shooter.getHeightMask();
+            if(!v.hasFire || v.fireX != pos.x || v.fireY != pos.y || v.fireHeightMask != heightMask) {
+                v.hasFire = true;
+                v.fireX = pos.x;
+                v.fireY = pos.y;
+                v.fireHeightMask = heightMask;
+                v.inLineOfFireKnown = 0;
+            }
+            
+            if((v.inLineOfFireKnown & bit) == 0) {
+                v.inLineOfFireKnown |= bit;
+                
+                if(!this.game.getMap().lineCollides(pos, target.getCenterPos(), heightMask)) {
+                    v.inLineOfFire |= bit;
+                }
+                else {
+                    v.inLineOfFire &= ~bit;
+                }
+            }
+            
+            return (v.inLineOfFire & bit) != 0;
+        }
+    }
+    
+    /**
+     * Forgets the viewer's answers if they have been invalidated, and its answers about the target
+     * if the target has changed since they were worked out
+     *
+     * @param v
+     * @param target
+     * @return the target's bit
+     */
+    private long refresh(Viewer v, PlayerEntity target) {
+        int generation = this.generation;
+        if(v.generation != generation) {
+            v.generation = generation;
+            v.sight = null;
+            v.hasLineOfSight = false;
+            v.hasFire = false;
+            v.inViewKnown = 0;
+            v.inSightKnown = 0;
+            v.inLineOfFireKnown = 0;
+        }
+        
+        int id = target.getId();
+        long bit = 1L << id;
+        
+        Vector2f pos = target.getCenterPos();
+        int heightMask = target.getHeightMask();
+        if(v.targets[id] != target || v.targetX[id] != pos.x || v.targetY[id] != pos.y || v.targetHeightMask[id] != heightMask) {
+            v.targets[id] = target;
+            v.targetX[id] = pos.x;
+            v.targetY[id] = pos.y;
+            v.targetHeightMask[id] = heightMask;
+            
+            v.inViewKnown &= ~bit;
+            v.inSightKnown &= ~bit;
+            v.inLineOfFireKnown &= ~bit;
+        }
+        
+        return bit;
+    }
+    
+    /**
+     * Forgets the viewer's line of sight (and the answers worked out from it) if the viewer has
+     * moved, turned, crouched or stood up since it was calculated
+     *
+     * @param v
+     * @param viewer
+     */
+    private void updateSight(Viewer v, PlayerEntity viewer) {
+        Entity sight = viewer.isOperatingVehicle() ? viewer.getVehicle() : viewer;
+        
+        Rectangle bounds = sight.getLineOfSightBounds(v.bounds);
+        Vector2f pos = sight.getCenterPos();
+        int heightMask = sight.getHeightMask();
+        
+        if(v.sight != sight || !v.sightBounds.equals(bounds) ||
+           v.sightX != pos.x || v.sightY != pos.y || v.sightHeightMask != heightMask) {
+            
+            v.sight = sight;
+            v.sightBounds.set(bounds);
+            v.sightX = pos.x;
+            v.sightY = pos.y;
+            v.sightHeightMask = heightMask;
+            
+            v.hasLineOfSight = false;
+            v.inViewKnown = 0;
+            v.inSightKnown = 0;
+        }
+    }
+    
+    /**
+     * @param v
+     * @param viewer
+     * @return the viewer's line of sight, calculating it if need be
+     */
+    private VisibleTiles getLineOfSight(Viewer v, PlayerEntity viewer) {
+        if(!v.hasLineOfSight) {
+            v.sight.calculateLineOfSight(v.visibleTiles);
+            v.hasLineOfSight = true;
+        }
+        
+        return v.visibleTiles;
+    }
+    
+    /**
+     * @param sightBounds
+     * @param target
+     * @return false if none of the points {@link PlayerEntity#isPlayerInView(Game, Entity, VisibleTiles, Vector2f)}
+     * tests are within the sight bounds
+     */
+    private static boolean mayBeInView(Rectangle sightBounds, PlayerEntity target) {
+        Vector2f center = target.getCenterPos();
+        Vector2f pos = target.getPos();
+        Rectangle bounds = target.getBounds();
+        
+        int minX = Math.min((int)center.x, (int)pos.x);
+        int minY = Math.min((int)center.y, (int)pos.y);
+        int maxX = Math.max((int)center.x, (int)pos.x + bounds.width);
+        int maxY = Math.max((int)center.y, (int)pos.y + bounds.height);
+        
+        return maxX >= sightBounds.x && minX <= sightBounds.x + sightBounds.width &&
+               maxY >= sightBounds.y && minY <= sightBounds.y + sightBounds.height;
+    }
+}
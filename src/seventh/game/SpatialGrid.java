@@ -0,0 +1,463 @@
+/*
+ * see license.txt
+ */
+package seventh.game;
+
+import java.util.Arrays;
+
+import seventh.math.Rectangle;
+import seventh.math.Vector2f;
+
+/**
+ * A uniform grid over the game world, used as a broadphase for finding which objects may be touching an
+ * area.  Each object is identified by a handle (such as the {@link seventh.game.entities.Entity#getId()}) and
+ * is placed in every cell its bounds overlap.  Objects outside of the world are placed in the closest cells.
+ *
+ * <p>
+ * Queries only return candidates; the handles of any object that <b>may</b> touch the queried area.  The
+ * caller must still do the exact test.  The candidates are returned in ascending handle order, so iterating
+ * over them visits objects in the same order as iterating over an array indexed by the handles.
+ *
+ * <p>
+ * Queries do not modify the grid, so multiple threads may query at the same time (each with their own
+ * {@link Result}), as long as no thread is updating the grid.
+ *
+ * @author Tony
+ *
+ */
+public class SpatialGrid {
+    
+    /**
+     * The handles found by a query
+     *
+     * @author Tony
+     *
+     */
+    public static class Result {
+        private int[] handles;
+        private int size;
+        
+        public Result() {
+            this.handles = new int[32];
+        }
+        
+        /**
+         * Clears out the results
+         */
+        public void clear() {
+            this.size = 0;
+        }
+        
+        /**
+         * @return the number of handles found
+         */
+        public int size() {
+            return size;
+        }
+        
+        /**
+         * @param i
+         * @return the i'th handle
+         */
+        public int get(int i) {
+            return this.handles[i];
+        }
+        
+        /**
+         * @param handle
+         * @return true if the handle was found by the query
+         */
+        public boolean contains(int handle) {
+            return Arrays.binarySearch(this.handles, 0, this.size, handle) > -1;
+        }
+        
+        void add(int handle) {
+            if(this.size >= this.handles.length) {
+                this.handles = Arrays.copyOf(this.handles, this.handles.length * 2);
+            }
+            
+            this.handles[this.size++] = handle;
+        }
+        
+        /**
+         * Sorts the handles, and removes any duplicates
+         */
+        void sortUnique() {
+            if(this.size > 1) {
+                Arrays.sort(this.handles, 0, this.size);
+                
+                int unique = 1;
+                for(int i = 1; i < this.size; i++) {
+                    if(this.handles[i] != this.handles[unique-1]) {
+                        this.handles[unique++] = this.handles[i];
+                    }
+                }
+                this.size = unique;
+            }
+        }
+    }
+    
+    private static final int EMPTY = -1;
+    
+    private final int cellWidth, cellHeight;
+    private final int numberOfColumns, numberOfRows;
+    
+    private final int[][] cells;
+    private final int[] cellSizes;
+    
+    /**
+     * The cells each handle is in, stored as minX, minY, maxX, maxY
+     */
+    private final int[] ranges;
+    private final int maxHandles;
+    
+    /**
+     * @param worldWidth the width of the world
+     * @param worldHeight the height of the world
+     * @param cellWidth the width of each cell
+     * @param cellHeight the height of each cell
+     * @param maxHandles the maximum number of handles (all handles must be below this)
+     */
+    public SpatialGrid(int worldWidth, int worldHeight, int cellWidth, int cellHeight, int maxHandles) {
+        if(cellWidth <= 0 || cellHeight <= 0) {
+            throw new IllegalArgumentException("Invalid cell size: " + cellWidth + "x" + cellHeight);
+        }
+        
+        this.cellWidth = cellWidth;
+        this.cellHeight = cellHeight;
+        this.numberOfColumns = Math.max(1, (worldWidth + cellWidth - 1) / cellWidth);
+        this.numberOfRows = Math.max(1, (worldHeight + cellHeight - 1) / cellHeight);
+        
+        this.cells = new int[this.numberOfColumns * this.numberOfRows][];
+        this.cellSizes = new int[this.cells.length];
+        
+        this.maxHandles = maxHandles;
+        this.ranges = new int[maxHandles * 4];
+        Arrays.fill(this.ranges, EMPTY);
+    }
+    
+    /**
+     * @return the number of columns
+     */
+    public int getNumberOfColumns() {
+        return numberOfColumns;
+    }
+    
+    /**
+     * @return the number of rows
+     */
+    public int getNumberOfRows() {
+        return numberOfRows;
+    }
+    
+    private int toColumn(float x) {
+        int column = (int)Math.floor(x / this.cellWidth);
+        if(column < 0) {
+            return 0;
+        }
+        if(column >= this.numberOfColumns) {
+            return this.numberOfColumns - 1;
+        }
+        return column;
+    }
+    
+    private int toRow(float y) {
+        int row = (int)Math.floor(y / this.cellHeight);
+        if(row < 0) {
+            return 0;
+        }
+        if(row >= this.numberOfRows) {
+            return this.numberOfRows - 1;
+        }
+        return row;
+    }
+    
+    private void checkHandle(int handle) {
+        if(handle < 0 || handle >= this.maxHandles) {
+            throw new IllegalArgumentException("Invalid handle: " + handle);
+        }
+    }
+    
+    /**
+     * @param handle
+     * @return true if the handle is in this grid
+     */
+    public boolean contains(int handle) {
+        return handle >= 0 && handle < this.maxHandles && this.ranges[handle * 4] != EMPTY;
+    }
+    
+    /**
+     * Places the handle in the cells the bounds overlap, if the handle is already in the grid it
+     * is moved
+     *
+     * @param handle
+     * @param bounds
+     */
+    public void update(int handle, Rectangle bounds) {
+        update(handle, bounds.x, bounds.y, bounds.width, bounds.height);
+    }
+    
+    /**
+     * Places the handle in the cells the bounds overlap, if the handle is already in the grid it
+     * is moved
+     *
+     * @param handle
+     * @param x
+     * @param y
+     * @param width
+     * @param height
+     */
+    public void update(int handle, int x, int y, int width, int height) {
+        checkHandle(handle);
+        
+        /* edges are included, so objects that just touch a cell border
+         * are found by queries on either side of it */
+        int minX = toColumn(x);
+        int minY = toRow(y);
+        int maxX = toColumn(x + Math.max(0, width));
+        int maxY = toRow(y + Math.max(0, height));
+        
+        int index = handle * 4;
+        if(this.ranges[index] != EMPTY) {
+            if(this.ranges[index + 0] == minX && this.ranges[index + 1] == minY &&
+               this.ranges[index + 2] == maxX && this.ranges[index + 3] == maxY) {
+                return;
+            }
+            
+            remove(handle);
+        }
+        
+        this.ranges[index + 0] = minX;
+        this.ranges[index + 1] = minY;
+        this.ranges[index + 2] = maxX;
+        this.ranges[index + 3] = maxY;
+        
+        for(int row = minY; row <= maxY; row++) {
+            for(int column = minX; column <= maxX; column++) {
+                addToCell(row * this.numberOfColumns + column, handle);
+            }
+        }
+    }
+    
+    /**
+     * Removes the handle from the grid
+     *
+     * @param handle
+     */
+    public void remove(int handle) {
+        if(!contains(handle)) {
+            return;
+        }
+        
+        int index = handle * 4;
+        int minX = this.ranges[index + 0];
+        int minY = this.ranges[index + 1];
+        int maxX = this.ranges[index + 2];
+        int maxY = this.ranges[index + 3];
+        
+        for(int row = minY; row <= maxY; row++) {
+            for(int column = minX; column <= maxX; column++) {
+                removeFromCell(row * this.numberOfColumns + column, handle);
+            }
+        }
+        
+        this.ranges[index + 0] = EMPTY;
+        this.ranges[index + 1] = EMPTY;
+        this.ranges[index + 2] = EMPTY;
+        this.ranges[index + 3] = EMPTY;
+    }
+    
+    /**
+     * Removes all handles
+     */
+    public void clear() {
+        Arrays.fill(this.cellSizes, 0);
+        Arrays.fill(this.ranges, EMPTY);
+    }
+    
+    private void addToCell(int cell, int handle) {
+        int[] handles = this.cells[cell];
+        int size = this.cellSizes[cell];
+        if(handles == null) {
+            handles = new int[4];
+            this.cells[cell] = handles;
+        }
+        else if(size >= handles.length) {
+            handles = Arrays.copyOf(handles, handles.length * 2);
+            this.cells[cell] = handles;
+        }
+        
+        handles[size] = handle;
+        this.cellSizes[cell] = size + 1;
+    }
+    
+    private void removeFromCell(int cell, int handle) {
+        int[] handles = this.cells[cell];
+        int size = this.cellSizes[cell];
+        for(int i = 0; i < size; i++) {
+            if(handles[i] == handle) {
+                handles[i] = handles[size - 1];
+                this.cellSizes[cell] = size - 1;
+                break;
+            }
+        }
+    }
+    
+    private void addCell(int column, int row, Result result) {
+        int cell = row * this.numberOfColumns + column;
+        int[] handles = this.cells[cell];
+        int size = this.cellSizes[cell];
+        for(int i = 0; i < size; i++) {
+            result.add(handles[i]);
+        }
+    }
+    
+    /**
+     * Tests a single handle, without gathering up all of the candidates
+     *
+     * @param handle
+     * @param bounds
+     * @return true if a {@link #queryRect(Rectangle, Result)} on the bounds would find the handle
+     */
+    public boolean overlaps(int handle, Rectangle bounds) {
+        if(!contains(handle)) {
+            return false;
+        }
+        
+        int index = handle * 4;
+        return toColumn(bounds.x) <= this.ranges[index + 2] &&
+               toRow(bounds.y) <= this.ranges[index + 3] &&
+               toColumn(bounds.x + Math.max(0, bounds.width)) >= this.ranges[index + 0] &&
+               toRow(bounds.y + Math.max(0, bounds.height)) >= this.ranges[index + 1];
+    }
+    
+    /**
+     * Finds the handles that may touch the supplied bounds
+     *
+     * @param bounds
+     * @param result the handles found, in ascending order
+     * @return the result
+     */
+    public Result queryRect(Rectangle bounds, Result result) {
+        return queryRect(bounds.x, bounds.y, bounds.width, bounds.height, result);
+    }
+    
+    /**
+     * Finds the handles that may touch the supplied bounds
+     *
+     * @param x
+     * @param y
+     * @param width
+     * @param height
+     * @param result the handles found, in ascending order
+     * @return the result
+     */
+    public Result queryRect(int x, int y, int width, int height, Result result) {
+        result.clear();
+        
+        int minX = toColumn(x);
+        int minY = toRow(y);
+        int maxX = toColumn(x + Math.max(0, width));
+        int maxY = toRow(y + Math.max(0, height));
+        
+        for(int row = minY; row <= maxY; row++) {
+            for(int column = minX; column <= maxX; column++) {
+                addCell(column, row, result);
+            }
+        }
+        
+        result.sortUnique();
+        return result;
+    }
+    
+    /**
+     * Finds the handles that may touch the supplied circle
+     *
+     * @param center
+     * @param radius
+     * @param result the handles found, in ascending order
+     * @return the result
+     */
+    public Result queryCircle(Vector2f center, float radius, Result result) {
+        result.clear();
+        
+        int minX = toColumn(center.x - radius);
+        int minY = toRow(center.y - radius);
+        int maxX = toColumn(center.x + radius);
+        int maxY = toRow(center.y + radius);
+        
+        float radiusSq = radius * radius;
+        
+        for(int row = minY; row <= maxY; row++) {
+            float cellY = row * this.cellHeight;
+            float closestY = Math.max(cellY, Math.min(center.y, cellY + this.cellHeight));
+            
+            for(int column = minX; column <= maxX; column++) {
+                float cellX = column * this.cellWidth;
+                float closestX = Math.max(cellX, Math.min(center.x, cellX + this.cellWidth));
+                
+                float dx = center.x - closestX;
+                float dy = center.y - closestY;
+                
+                /* the edge cells also hold anything outside of the world */
+                boolean isEdge = row == 0 || column == 0 ||
+                                 row == this.numberOfRows - 1 || column == this.numberOfColumns - 1;
+                
+                if(isEdge || (dx * dx + dy * dy) <= radiusSq) {
+                    addCell(column, row, result);
+                }
+            }
+        }
+        
+        result.sortUnique();
+        return result;
+    }
+    
+    /**
+     * Finds the handles that may touch the line segment
+     *
+     * @param a the start of the segment
+     * @param b the end of the segment
+     * @param result the handles found, in ascending order
+     * @return the result
+     */
+    public Result querySegment(Vector2f a, Vector2f b, Result result) {
+        result.clear();
+        
+        int minY = toRow(Math.min(a.y, b.y));
+        int maxY = toRow(Math.max(a.y, b.y));
+        
+        float dy = b.y - a.y;
+        
+        /* for each row the segment passes through, find the
+         * columns the segment covers within that row */
+        for(int row = minY; row <= maxY; row++) {
+            float startX = a.x;
+            float endX = b.x;
+            
+            if(dy != 0) {
+                float rowTop = (row == 0) ? Math.min(a.y, b.y) : row * this.cellHeight;
+                float rowBottom = (row == this.numberOfRows - 1) ? Math.max(a.y, b.y) : (row + 1) * this.cellHeight;
+                
+                float t0 = (rowTop - a.y) / dy;
+                float t1 = (rowBottom - a.y) / dy;
+                
+                float tMin = Math.max(0f, Math.min(t0, t1));
+                float tMax = Math.min(1f, Math.max(t0, t1));
+                
+                startX = a.x + (b.x - a.x) * tMin;
+                endX = a.x + (b.x - a.x) * tMax;
+            }
+            
+            /* pad by a pixel, to stay clear of any rounding errors */
+            int minX = toColumn(Math.min(startX, endX) - 1);
+            int maxX = toColumn(Math.max(startX, endX) + 1);
+            for(int column = minX; column <= maxX; column++) {
+                addCell(column, row, result);
+            }
+        }
+        
+        result.sortUnique();
+        return result;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * see license.txt
+ */
+package seventh.game;
+
+import java.util.Arrays;
+
+import seventh.math.Rectangle;
+
+/**
+ * Everything a moving {@link seventh.game.entities.Entity} may touch somewhere along its path for an update, see
+ * {@link Game#findSweepCandidates(seventh.game.entities.Entity, Rectangle, long, SweepCandidates)}.  The path only
+ * needs the exact touch tests at the steps where {@link #mayTouch(Rectangle)} is true.
+ *
+ * <p>
+ * A candidate is either a handle in one of the {@link SpatialGrid}s, which may be touched wherever a query of the
+ * grid would find it, or an area which may be touched wherever it is intersected.
+ *
+ * @author Tony
+ *
+ */
+public class SweepCandidates {
+    
+    private SpatialGrid[] grids;
+    private int[] handles;
+    private int numberOfHandles;
+    
+    private Rectangle[] areas;
+    private int numberOfAreas;
+    
+    public SweepCandidates() {
+        this.grids = new SpatialGrid[4];
+        this.handles = new int[4];
+        this.areas = new Rectangle[4];
+    }
+    
+    /**
+     * Clears out the candidates
+     */
+    public void clear() {
+        this.numberOfHandles = 0;
+        this.numberOfAreas = 0;
+    }
+    
+    /**
+     * @return true if there is nothing to touch
+     */
+    public boolean isEmpty() {
+        return this.numberOfHandles == 0 && this.numberOfAreas == 0;
+    }
+    
+    /**
+     * @return the number of candidates
+     */
+    public int size() {
+        return this.numberOfHandles + this.numberOfAreas;
+    }
+    
+    void addHandle(SpatialGrid grid, int handle) {
+        if(this.numberOfHandles >= this.handles.length) {
+            this.grids = Arrays.copyOf(this.grids, this.grids.length * 2);
+            this.handles = Arrays.copyOf(this.handles, this.handles.length * 2);
+        }
+        
+        this.grids[this.numberOfHandles] = grid;
+        this.handles[this.numberOfHandles] = handle;
+        this.numberOfHandles++;
+    }
+    
+    void addArea(Rectangle area) {
+        if(this.numberOfAreas >= this.areas.length) {
+            this.areas = Arrays.copyOf(this.areas, this.areas.length * 2);
+        }
+        
+        Rectangle copy = this.areas[this.numberOfAreas];
+        if(copy == null) {
+            copy = new Rectangle();
+            this.areas[this.numberOfAreas] = copy;
+        }
+        
+        copy.set(area);
+        this.numberOfAreas++;
+    }
+    
+    /**
+     * @param bounds the bounds at a step along the path
+     * @return true if any of the candidates may touch the bounds, false if none of them can
+     */
+    public boolean mayTouch(Rectangle bounds) {
+        for(int i = 0; i < this.numberOfHandles; i++) {
+            if(this.grids[i].overlaps(this.handles[i], bounds)) {
+                return true;
+            }
+        }
+        
+        for(int i = 0; i < this.numberOfAreas; i++) {
+            if(this.areas[i].intersects(bounds)) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * see license.txt
+ */
+package seventh.game;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import seventh.game.entities.Entity;
+import seventh.game.events.SoundEmittedEvent;
+
+/**
+ * The working buffers used when calculating what a player can see and hear.  Each thread that builds
+ * {@link Game#getNetGameUpdateFor(int, ViewBuffers)} must own its own {@link ViewBuffers}.
+ *
+ * @author Tony
+ *
+ */
+public class ViewBuffers {
+    
+    public final List<Entity> entitiesInView;
+    public final List<SoundEmittedEvent> soundsHeard;
+    public final SpatialGrid.Result candidates;
+    
+    /**
+     */
+    public ViewBuffers() {
+        this.entitiesInView = new ArrayList<Entity>();
+        this.soundsHeard = new ArrayList<SoundEmittedEvent>();
+        this.candidates = new SpatialGrid.Result();
+    }
+    
+    /**
+     * Clears out the entities and sounds
+     */
+    public void clear() {
+        this.entitiesInView.clear();
+        this.soundsHeard.clear();
+    }
+}
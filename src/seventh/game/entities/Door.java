@@ -187,7 +187,8 @@ public class Door extends Entity {
     
     private Rectangle handleTouchRadius,
                       hingeTouchRadius,
-                      autoCloseRadius;
+                      autoCloseRadius,
+                      swingBounds;
     
     
     private SmoothOrientation rotation;
@@ -228,6 +229,13 @@ public class Door extends Entity {
         this.hingeTouchRadius.centerAround(getPos());
         this.autoCloseRadius.centerAround(getPos());
         
+        /* the door panels never reach further than this 
+         * from the door position, no matter the rotation
+         */
+        int swingRadius = DOOR_WIDTH/2 + 64 + 1;
+        this.swingBounds = new Rectangle(swingRadius * 2, swingRadius * 2);
+        this.swingBounds.centerAround(getPos());
+        
         this.autoCloseTimer = new Timer(false, 5_000);
         this.autoCloseTimer.stop();
         
@@ -533,6 +541,14 @@ public class Door extends Entity {
         return isBlocked;
     }
     
+    /**
+     * @return the area the door can touch, when opened, closed or anywhere
+     * in between
+     */
+    public Rectangle getSwingBounds() {
+        return swingBounds;
+    }
+    
     /**
      * @return the frontDoorHandle
      */
@@ -12,6 +12,7 @@ import seventh.game.net.NetEntity;
 import seventh.map.Map;
 import seventh.map.MapObject;
 import seventh.map.Tile;
+import seventh.map.VisibleTiles;
 import seventh.math.Rectangle;
 import seventh.math.Vector2f;
 import seventh.shared.Debugable;
@@ -535,6 +536,7 @@ public abstract class Entity implements Debugable {
     public void moveTo(Vector2f pos) {
         this.pos.set(pos);
         this.bounds.setLocation(pos);
+        this.game.updateSpatialIndex(this);
     }
     
     /**
@@ -879,19 +881,7 @@ public abstract class Entity implements Debugable {
     }
     
     protected boolean collidesAgainstMapObject(Rectangle bounds) {
-        List<MapObject> mapObjects = game.getCollidableMapObjects();
-        for(int i = 0; i < mapObjects.size(); i++) {
-            MapObject object = mapObjects.get(i);
-            if(object.isCollidable()) {
-                if(object.isTouching(bounds)) {
-                    if(object.onTouch(game, this)) {
-                        return true;
-                    }
-                }
-            }
-        }
-        
-        return false;
+        return game.isBlockedByMapObject(this, bounds);
     }
     
     protected boolean collidesAgainstEntity(Rectangle bounds) {
@@ -899,14 +889,7 @@ public abstract class Entity implements Debugable {
     }
     
     protected boolean collidesAgainstDoor(Rectangle bounds) {
-        List<Door> doors = game.getDoors();
-        for(int i = 0; i < doors.size(); i++) {
-            Door door = doors.get(i);
-            if(door.isTouching(bounds)) {
-                return true;
-            }
-        }
-        return false;
+        return game.isBlockedByDoor(bounds);
     }
     
     /**
@@ -1093,16 +1076,24 @@ public abstract class Entity implements Debugable {
     }
     
     /**
-     * @param tiles an empty list of tiles that is used as the returned list
-     * @return calculates the line of sight, which returns a {@link List} of {@link Tile} this entity
+     * @param tiles the caller owned {@link VisibleTiles} that is used as the result
+     * @return calculates the line of sight, which returns the {@link VisibleTiles} this entity
      * is able to see
      */
-    public List<Tile> calculateLineOfSight(List<Tile> tiles) {
+    public VisibleTiles calculateLineOfSight(VisibleTiles tiles) {
         Map map = game.getMap();
-        Geom.calculateLineOfSight(tiles, centerPos, getFacing(), WeaponConstants.DEFAULT_LINE_OF_SIGHT, map, getHeightMask(), cache);
+        Geom.calculateLineOfSight(tiles, centerPos, getFacing(), WeaponConstants.DEFAULT_LINE_OF_SIGHT, map, getHeightMask());
         return tiles;
     }
     
+    /**
+     * @param result the out parameter
+     * @return the area outside of which {@link #calculateLineOfSight(VisibleTiles)} never finds a visible tile
+     */
+    public Rectangle getLineOfSightBounds(Rectangle result) {
+        return Geom.getLineOfSightBounds(result, centerPos, getFacing(), WeaponConstants.DEFAULT_LINE_OF_SIGHT, game.getMap());
+    }
+    
     /* (non-Javadoc)
      * @see seventh.shared.Debugable#getDebugInformation(seventh.shared.Debugable.DebugEntryChain)
      */
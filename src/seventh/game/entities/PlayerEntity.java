@@ -5,6 +5,7 @@ package seventh.game.entities;
 
 import static seventh.shared.SeventhConstants.ENTERING_VEHICLE_TIME;
 import static seventh.shared.SeventhConstants.EXITING_VEHICLE_TIME;
+import static seventh.shared.SeventhConstants.MAX_PLAYERS;
 import static seventh.shared.SeventhConstants.MAX_PRIMARY_WEAPONS;
 import static seventh.shared.SeventhConstants.MAX_STAMINA;
 import static seventh.shared.SeventhConstants.PLAYER_HEARING_RADIUS;
@@ -28,9 +29,12 @@ import seventh.game.Inventory;
 import seventh.game.Player;
 import seventh.game.PlayerClass;
 import seventh.game.PlayerClass.WeaponEntry;
+import seventh.game.PlayerVisibility;
 import seventh.game.SoundEventPool;
+import seventh.game.SpatialGrid;
 import seventh.game.SurfaceTypeToSoundType;
 import seventh.game.Team;
+import seventh.game.ViewBuffers;
 import seventh.game.entities.vehicles.Vehicle;
 import seventh.game.events.SoundEmittedEvent;
 import seventh.game.net.NetEntity;
@@ -55,6 +59,7 @@ import seventh.game.weapons.Weapon;
 import seventh.map.Map;
 import seventh.map.Tile;
 import seventh.map.Tile.SurfaceType;
+import seventh.map.VisibleTiles;
 import seventh.math.Line;
 import seventh.math.Rectangle;
 import seventh.math.Vector2f;
@@ -123,6 +128,7 @@ public class PlayerEntity extends Entity implements Controllable {
         
     private int previousKeys;
     private float previousOrientation;
+    private int lastInputSequence;
     
     private Inventory inventory;
         
@@ -139,8 +145,6 @@ public class PlayerEntity extends Entity implements Controllable {
     private long runTime, recoveryTime;
     private boolean wasSprinting;
     
-    private Vector2f enemyDir;
-    
     private BombTarget bombTarget;
     private Vehicle operating;
     
@@ -169,7 +173,6 @@ public class PlayerEntity extends Entity implements Controllable {
                 
         this.bounds.set(position, PLAYER_WIDTH, PLAYER_HEIGHT);
         this.inputVel = new Vector2f();
-        this.enemyDir = new Vector2f();
         
         this.headshot = new Rectangle(4, 4);
         this.limbshot = new Rectangle(10, 10);
@@ -837,6 +840,21 @@ public class PlayerEntity extends Entity implements Controllable {
             setPlayerClass(player.getPlayerClass(), player.getWeaponClass());
         }
     }
+    
+    /**
+     * @param sequence the sequence number of the latest input applied to this entity, 
+     * echoed back to the client in the {@link NetPlayer}
+     */
+    public void setLastInputSequence(int sequence) {
+        this.lastInputSequence = sequence;
+    }
+    
+    /**
+     * @return the sequence number of the latest input applied to this entity
+     */
+    public int getLastInputSequence() {
+        return lastInputSequence;
+    }
         
     /*
      * (non-Javadoc)
@@ -1609,6 +1627,17 @@ public class PlayerEntity extends Entity implements Controllable {
         return this.operating;
     }
     
+    /**
+     * Centers the hearing and visual bounds around this entity.  This is done from the game thread
+     * once the entities have moved, and again prior to building the game updates; the views and
+     * senses, which may be calculated from multiple threads, only ever read the bounds.
+     */
+    public void centerSensoryBounds() {
+        Vector2f centerPos = getCenterPos();
+        this.hearingBounds.centerAround(centerPos);
+        this.visualBounds.centerAround(centerPos);
+    }
+    
     /**
      * Retrieves the sounds heard by an Entity
      * @param soundEvents
@@ -1616,8 +1645,6 @@ public class PlayerEntity extends Entity implements Controllable {
      * @return the same instance as soundsHeard, just returned for convenience
      */
     public List<SoundEmittedEvent> getHeardSounds(SoundEventPool soundEvents, List<SoundEmittedEvent> soundsHeard) {        
-        this.hearingBounds.centerAround(getCenterPos());        
-        
         int size = soundEvents.numberOfSounds();        
         for(int i = 0; i < size; i++) {
             SoundEmittedEvent event = soundEvents.getSound(i);
@@ -1632,24 +1659,24 @@ public class PlayerEntity extends Entity implements Controllable {
     }
     
     @Override
-    public List<Tile> calculateLineOfSight(List<Tile> tiles) {
+    public VisibleTiles calculateLineOfSight(VisibleTiles tiles) {
         Map map = game.getMap();
-        Geom.calculateLineOfSight(tiles, getCenterPos(), getFacing(), getLineOfSight(), map, getHeightMask(), cache);
+        Geom.calculateLineOfSight(tiles, getCenterPos(), getFacing(), getLineOfSight(), map, getHeightMask());
         
         int tileSize = tiles.size();
         List<Door> doors = game.getDoors();
         int doorSize = doors.size();
         
         Vector2f centerPos = getCenterPos();
+        Vector2f tilePos = new Vector2f();
         
         for(int j = 0; j < doorSize; j++ ) {
             Door door = doors.get(j);
             if(this.visualBounds.intersects(door.getBounds())) {        
                 for(int i = 0; i < tileSize; i++) {
-                    Tile tile = tiles.get(i);
-                    if(Line.lineIntersectLine(centerPos, tile.getCenterPos(), 
+                    if(tiles.isVisible(i) && Line.lineIntersectLine(centerPos, tiles.getTileCenterPos(i, tilePos), 
                                               door.getPos(), door.getHandle())) {
-                        tile.setMask(Tile.TILE_INVISIBLE);
+                        tiles.setInvisible(tiles.getTileX(i), tiles.getTileY(i));
                     }
                 }
             }
@@ -1679,6 +1706,14 @@ public class PlayerEntity extends Entity implements Controllable {
         return tiles;
     }
     
+    /* (non-Javadoc)
+     * @see seventh.game.entities.Entity#getLineOfSightBounds(seventh.math.Rectangle)
+     */
+    @Override
+    public Rectangle getLineOfSightBounds(Rectangle result) {
+        return Geom.getLineOfSightBounds(result, getCenterPos(), getFacing(), getLineOfSight(), game.getMap());
+    }
+    
     /**
      * Hides players that are behind smoke
      */
@@ -1716,137 +1751,160 @@ public class PlayerEntity extends Entity implements Controllable {
      * @return a list of {@link Entity}s that are in this players view
      */
     public List<Entity> getEntitiesInView(Game game, List<Entity> entitiesInView) {
-        /*
-         * Calculate all the visuals this player can see
-         */
-        Map map = game.getMap();
-        Entity[] entities = game.getEntities();
-        
+        return getEntitiesInView(game, game.getViewBuffers(), entitiesInView);
+    }
+    
+    /**
+     * Determines if the supplied player entity can be seen with fog of war enabled.  This is answered
+     * by {@link PlayerVisibility#isInView(PlayerEntity, PlayerEntity)}, which remembers the result.
+     * 
+     * @param game
+     * @param ent
+     * @param visibleTiles this player's line of sight
+     * @param enemyDir
+     * @return true if visible
+     */
+    public boolean isPlayerInView(Game game, Entity ent, VisibleTiles visibleTiles, Vector2f enemyDir) {
         Vector2f centerPos = getCenterPos();
-        this.visualBounds.centerAround(centerPos);
+        Vector2f pos = ent.getCenterPos();
         
-        if(isOperatingVehicle()) {
-            getVehicle().calculateLineOfSight(game.tilesInLineOfSight);
-        }
-        else {
-            calculateLineOfSight(game.tilesInLineOfSight);                        
+        Vector2f.Vector2fSubtract(pos, centerPos, enemyDir);
+        Vector2f.Vector2fNormalize(enemyDir, enemyDir);
+        
+        if(!game.isEntityReachable(ent, centerPos, enemyDir)) {
+            return false;
         }
         
+//        if(map.lineCollides(pos, centerPos)) {
+//            return false;
+//        }                                
+        
+        int px = (int)pos.x;
+        int py = (int)pos.y;
+        
+        // check center of entity
+        if(visibleTiles.isVisibleWorld(px, py)) {
+            return true;
+        }                                                
+                                
+        // make this a rectangle
+        int width = ent.getBounds().width; // 4
+        int height = ent.getBounds().height; // 4
+        
+        // offset a bit to because for whatever
+        // reason entities butted against the lower right
+        // corner become hidden
+        px = (int)ent.getPos().x;//width/4; // 3
+        py = (int)ent.getPos().y;//+height/4;
+        
+        
+        // check upper right corner
+        if(visibleTiles.isVisibleWorld(px+width, py)) {
+            //tile.getCollisionMask().pointCollide(hearingBounds, px, py)
+            return true;
+        }        
+            
+        // check lower right corner
+        if(visibleTiles.isVisibleWorld(px+width, py+height)) {
+            return true;
+        }        
         
-        for(int i = 0; i < entities.length; i++) {
-            Entity ent = entities[i];
+        // check lower left corner
+        if(visibleTiles.isVisibleWorld(px, py+height)) {
+            return true;
+        }                                            
+        
+        // check upper left corner
+        if(visibleTiles.isVisibleWorld(px, py)) {
+            return true;
+        }        
+        
+        return false;
+    }
+    
+    /**
+     * Given the game state, retrieve the {@link Entity}'s in the current entities view.
+     * @param game
+     * @param buffers the caller owned buffers used for calculating the line of sight and
+     * querying the entities
+     * @param entitiesInView
+     * @return a list of {@link Entity}s that are in this players view
+     */
+    public List<Entity> getEntitiesInView(Game game, ViewBuffers buffers, List<Entity> entitiesInView) {
+        Entity[] entities = game.getEntities();
+        
+        boolean isFOW = game.isEnableFOW();
+        
+        /*
+         * With fog of war, players are only seen if they are in 
+         * the line of sight (which is shared with the AI, and only 
+         * calculated if someone may be in it)
+         */
+        if(isFOW) {
+            PlayerVisibility visibility = game.getPlayerVisibility();
+            for(int i = 0; i < MAX_PLAYERS; i++) {
+                Entity ent = entities[i];
+                if(ent != null && ent.getType()==Type.PLAYER && ent.getId() != id) {
+                    if(visibility.isInView(this, (PlayerEntity)ent)) {
+                        entitiesInView.add(ent);
+                    }
+                }
+            }
+        }
+        
+        /*
+         * Everything else is seen if it is close enough
+         */
+        SpatialGrid.Result candidates = game.getEntityGrid().queryRect(this.visualBounds, buffers.candidates);
+        for(int i = 0; i < candidates.size(); i++) {
+            Entity ent = entities[candidates.get(i)];
             if(ent==null /*|| !ent.isAlive()*/) {
                 continue;
             }
             
             Type entType = ent.getType();
-            boolean isCalculatedEntity = entType==Type.PLAYER;
+            if(isFOW && entType==Type.PLAYER) {
+                continue;
+            }
             
-            if(isCalculatedEntity && game.isEnableFOW()) {                
-                if(ent.getId() != id) {
-                    Vector2f pos = ent.getCenterPos();
-                    
-                    Vector2f.Vector2fSubtract(pos, centerPos, this.enemyDir);
-                    Vector2f.Vector2fNormalize(this.enemyDir, this.enemyDir);
-                    
-                    if(!game.isEntityReachable(ent, centerPos, this.enemyDir)) {
-                        continue;
+            /* We don't always send every entity over the wire */
+            switch(entType) {
+                case BOMB: 
+                    Bomb bomb = (Bomb)ent;
+                    if(bomb.isPlanted()) {
+                        entitiesInView.add(ent);
+                    }
+                    break;
+                /*case ALLIED_FLAG:
+                case AXIS_FLAG:
+                    entitiesInView.add(ent);
+                    break;*/
+                case LIGHT_BULB:
+                case BOMB_TARGET:
+                    /* don't add */
+                    //break; we must add this, scripts
+                    // may add these items well after the initial
+                    // NetGameState message was sent
+                default: {
+                    if(visualBounds.intersects(ent.getBounds())) {
+                        entitiesInView.add(ent); 
                     }
-                    
-//                    if(map.lineCollides(pos, centerPos)) {
-//                        continue;
-//                    }                                
-                    
-                    int px = (int)pos.x;
-                    int py = (int)pos.y;
-                    
-                    // check center of entity
-                    Tile tile = map.getWorldTile(0, px, py);
-                    if(tile!=null) {
-                        if (tile.getMask() > 0) {
-                            entitiesInView.add(ent);
-                            continue;                            
-                        }
-                    }                                                
-                                            
-                    // make this a rectangle
-                    int width = ent.getBounds().width; // 4
-                    int height = ent.getBounds().height; // 4
-                    
-                    // offset a bit to because for whatever
-                    // reason entities butted against the lower right
-                    // corner become hidden
-                    px = (int)ent.getPos().x;//width/4; // 3
-                    py = (int)ent.getPos().y;//+height/4;
-                    
-                    
-                    // check upper right corner
-                    tile = map.getWorldTile(0, px+width, py);
-                    if(tile!=null) {
-                        if (tile.getMask() > 0) {
-                            //tile.getCollisionMask().pointCollide(hearingBounds, px, py)
-                            entitiesInView.add(ent);
-                            continue;
-                        }
-                    }        
-                        
-                    // check lower right corner
-                    tile = map.getWorldTile(0, px+width, py+height);
-                    if(tile!=null) {
-                        if (tile.getMask() > 0) {
-                            entitiesInView.add(ent);
-                            continue;
-                
-                        }
-                    }        
-                    
-                    // check lower left corner
-                    tile = map.getWorldTile(0, px, py+height);
-                    if(tile!=null) {
-                        if (tile.getMask() > 0) {
-                            entitiesInView.add(ent);
-                            continue;
-                        }
-                    }                                            
-                    
-                    // check upper left corner
-                    tile = map.getWorldTile(0, px, py);
-                    if(tile!=null) {
-                        if (tile.getMask() > 0) {
-                            entitiesInView.add(ent);
-                            continue;                
-                        }
-                    }        
-                
                 }
             }
-            else {        
-                /* We don't always send every entity over the wire */
-                Type type = ent.getType();
-                switch(type) {
-                    case BOMB: 
-                        Bomb bomb = (Bomb)ent;
-                        if(bomb.isPlanted()) {
-                            entitiesInView.add(ent);
-                        }
-                        break;
-                    /*case ALLIED_FLAG:
-                    case AXIS_FLAG:
-                        entitiesInView.add(ent);
-                        break;*/
-                    case LIGHT_BULB:
-                    case BOMB_TARGET:
-                        /* don't add */
-                        //break; we must add this, scripts
-                        // may add these items well after the initial
-                        // NetGameState message was sent
-                    default: {
-                        if(visualBounds.intersects(ent.getBounds())) {
-                            entitiesInView.add(ent); 
-                        }
-                    }
+        }
+        
+        /*
+         * Planted bombs are always seen, no matter how far away
+         */
+        List<BombTarget> targets = game.getBombTargets();
+        for(int i = 0; i < targets.size(); i++) {
+            Bomb bomb = targets.get(i).getBomb();
+            if(bomb != null && bomb.isPlanted() && !candidates.contains(bomb.getId())) {
+                int bombId = bomb.getId();
+                if(bombId >= 0 && bombId < entities.length && entities[bombId] == bomb) {
+                    entitiesInView.add(bomb);
                 }
-            }                    
+            }
         }
         
         pruneEntitiesBehindSmoke(entitiesInView);
@@ -1883,6 +1941,7 @@ public class PlayerEntity extends Entity implements Controllable {
         }
         
         player.health = (byte)getHealth(); 
+        player.lastInputSequence = lastInputSequence;
         
         player.isOperatingVehicle = isOperatingVehicle();
         if(player.isOperatingVehicle) {
@@ -19,7 +19,7 @@ import seventh.game.weapons.Rocket;
 import seventh.game.weapons.RocketLauncher;
 import seventh.game.weapons.Weapon;
 import seventh.map.Map;
-import seventh.map.Tile;
+import seventh.map.VisibleTiles;
 import seventh.math.FastMath;
 import seventh.math.Rectangle;
 import seventh.math.Vector2f;
@@ -796,11 +796,19 @@ public class Tank extends Vehicle {
      * @see seventh.game.Entity#calculateLineOfSight()
      */
     @Override
-    public List<Tile> calculateLineOfSight(List<Tile> tiles) {
+    public VisibleTiles calculateLineOfSight(VisibleTiles tiles) {
         Map map = game.getMap();
-        Geom.calculateLineOfSight(tiles, getCenterPos(), getTurretFacing(), WeaponConstants.TANK_DEFAULT_LINE_OF_SIGHT, map, getHeightMask(), cache);
+        Geom.calculateLineOfSight(tiles, getCenterPos(), getTurretFacing(), WeaponConstants.TANK_DEFAULT_LINE_OF_SIGHT, map, getHeightMask());
         return tiles;
     }
+    
+    /* (non-Javadoc)
+     * @see seventh.game.entities.Entity#getLineOfSightBounds(seventh.math.Rectangle)
+     */
+    @Override
+    public Rectangle getLineOfSightBounds(Rectangle result) {
+        return Geom.getLineOfSightBounds(result, getCenterPos(), getTurretFacing(), WeaponConstants.TANK_DEFAULT_LINE_OF_SIGHT, game.getMap());
+    }
         
     /**
      * Begins the primary fire
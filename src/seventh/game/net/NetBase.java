@@ -3,7 +3,6 @@
  */
 package seventh.game.net;
 
-import harenet.IOBuffer;
 import seventh.game.entities.Entity.Type;
 
 /**
@@ -18,15 +17,4 @@ public class NetBase extends NetEntity {
     
     public NetBase() {
     }
-    
-    @Override
-    public void read(IOBuffer buffer) {
-        super.read(buffer);
-    }
-    
-
-    @Override
-    public void write(IOBuffer buffer) {
-        super.write(buffer);
-    }
 }
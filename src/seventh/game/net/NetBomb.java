@@ -3,7 +3,7 @@
  */
 package seventh.game.net;
 
-import harenet.IOBuffer;
+import harenet.messages.NetSchema;
 import seventh.game.entities.Entity.Type;
 
 /**
@@ -13,6 +13,15 @@ import seventh.game.entities.Entity.Type;
  *
  */
 public class NetBomb extends NetEntity {
+    
+    /**
+     * The time remaining is sent in 100 ms steps
+     */
+    public static final int MAX_TIME_REMAINING = 51_100;
+    
+    public static final NetSchema SCHEMA = NetEntity.SCHEMA.extend(NetBomb.class)
+                                           .quantized("timeRemaining", 0, MAX_TIME_REMAINING, 9)
+                                           .build();
 
     public NetBomb() {
         this.type = Type.BOMB;
@@ -20,20 +29,10 @@ public class NetBomb extends NetEntity {
     public int timeRemaining;
     
     /* (non-Javadoc)
-     * @see seventh.game.net.NetEntity#read(java.nio.ByteBuffer)
-     */
-    @Override
-    public void read(IOBuffer buffer) {    
-        super.read(buffer);
-        timeRemaining = buffer.getInt();
-    }
-    
-    /* (non-Javadoc)
-     * @see seventh.game.net.NetEntity#write(java.nio.ByteBuffer)
+     * @see seventh.game.net.NetEntity#getSchema()
      */
     @Override
-    public void write(IOBuffer buffer) {    
-        super.write(buffer);
-        buffer.putInt(timeRemaining);
+    protected NetSchema getSchema() {
+        return SCHEMA;
     }
 }
@@ -3,7 +3,7 @@
  */
 package seventh.game.net;
 
-import harenet.IOBuffer;
+import harenet.messages.NetSchema;
 import seventh.game.entities.Entity.Type;
 
 /**
@@ -13,6 +13,10 @@ import seventh.game.entities.Entity.Type;
  *
  */
 public class NetBombTarget extends NetEntity {
+    
+    public static final NetSchema SCHEMA = NetEntity.SCHEMA.extend(NetBombTarget.class)
+                                           .flag("isRotated")
+                                           .build();
 
     public boolean isRotated;
     
@@ -29,20 +33,10 @@ public class NetBombTarget extends NetEntity {
     }
     
     /* (non-Javadoc)
-     * @see seventh.game.net.NetEntity#read(java.nio.ByteBuffer)
-     */
-    @Override
-    public void read(IOBuffer buffer) {    
-        super.read(buffer);
-        isRotated = buffer.getBooleanBit();
-    }
-    
-    /* (non-Javadoc)
-     * @see seventh.game.net.NetEntity#write(java.nio.ByteBuffer)
+     * @see seventh.game.net.NetEntity#getSchema()
      */
     @Override
-    public void write(IOBuffer buffer) {    
-        super.write(buffer);
-        buffer.putBooleanBit(isRotated);
+    protected NetSchema getSchema() {
+        return SCHEMA;
     }
 }
@@ -3,7 +3,7 @@
  */
 package seventh.game.net;
 
-import harenet.IOBuffer;
+import harenet.messages.NetSchema;
 import seventh.game.entities.Entity.Type;
 import seventh.network.messages.BufferIO;
 
@@ -13,6 +13,11 @@ import seventh.network.messages.BufferIO;
  *
  */
 public class NetBullet extends NetEntity {
+    
+    public static final NetSchema SCHEMA = NetEntity.SCHEMA.extend(NetBullet.class)
+                                           .unsigned("ownerId", BufferIO.numPlayerIdBits())
+                                           .build();
+    
     public byte damage;
     public int ownerId;
         
@@ -25,20 +30,10 @@ public class NetBullet extends NetEntity {
     
     
     /* (non-Javadoc)
-     * @see seventh.game.net.NetEntity#read(java.nio.ByteBuffer)
-     */
-    @Override
-    public void read(IOBuffer buffer) {    
-        super.read(buffer);
-        ownerId = BufferIO.readPlayerId(buffer);    
-    }
-    
-    /* (non-Javadoc)
-     * @see seventh.game.net.NetEntity#write(java.nio.ByteBuffer)
+     * @see seventh.game.net.NetEntity#getSchema()
      */
     @Override
-    public void write(IOBuffer buffer) {    
-        super.write(buffer);
-        BufferIO.writePlayerId(buffer, ownerId);
+    protected NetSchema getSchema() {
+        return SCHEMA;
     }
 }
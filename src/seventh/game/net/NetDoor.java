@@ -3,7 +3,7 @@
  */
 package seventh.game.net;
 
-import harenet.IOBuffer;
+import harenet.messages.NetSchema;
 import seventh.game.entities.Entity.Type;
 import seventh.network.messages.BufferIO;
 
@@ -15,6 +15,11 @@ import seventh.network.messages.BufferIO;
  */
 public class NetDoor extends NetEntity {
     
+    public static final NetSchema SCHEMA = NetEntity.SCHEMA.extend(NetDoor.class)
+                                           .angle("orientation", ORIENTATION_BITS)
+                                           .unsigned("hinge", 3)
+                                           .build();
+    
     public byte hinge;
     
     public NetDoor() {
@@ -22,22 +27,10 @@ public class NetDoor extends NetEntity {
     }
     
     /* (non-Javadoc)
-     * @see seventh.game.net.NetEntity#read(java.nio.ByteBuffer)
-     */
-    @Override
-    public void read(IOBuffer buffer) {    
-        super.read(buffer);
-        this.orientation = BufferIO.readAngle(buffer);
-        this.hinge = buffer.getByteBits(3);
-    }
-    
-    /* (non-Javadoc)
-     * @see seventh.game.net.NetEntity#write(java.nio.ByteBuffer)
+     * @see seventh.game.net.NetEntity#getSchema()
      */
     @Override
-    public void write(IOBuffer buffer) {    
-        super.write(buffer);
-        BufferIO.writeAngle(buffer, orientation);
-        buffer.putByteBits(hinge, 3);
+    protected NetSchema getSchema() {
+        return SCHEMA;
     }
 }
@@ -3,7 +3,7 @@
  */
 package seventh.game.net;
 
-import harenet.IOBuffer;
+import harenet.messages.NetSchema;
 import seventh.game.entities.Entity.Type;
 import seventh.network.messages.BufferIO;
 
@@ -14,6 +14,10 @@ import seventh.network.messages.BufferIO;
  *
  */
 public class NetDroppedItem extends NetEntity {
+    
+    public static final NetSchema SCHEMA = NetEntity.SCHEMA.extend(NetDroppedItem.class)
+                                           .enumeration("droppedItem", Type.numOfBits())
+                                           .build();
 
     public NetDroppedItem() {
         this.type = Type.DROPPED_ITEM;
@@ -21,20 +25,10 @@ public class NetDroppedItem extends NetEntity {
     public Type droppedItem;
     
     /* (non-Javadoc)
-     * @see seventh.game.net.NetEntity#read(java.nio.ByteBuffer)
-     */
-    @Override
-    public void read(IOBuffer buffer) {    
-        super.read(buffer);
-        droppedItem = BufferIO.readType(buffer);
-    }
-    
-    /* (non-Javadoc)
-     * @see seventh.game.net.NetEntity#write(java.nio.ByteBuffer)
+     * @see seventh.game.net.NetEntity#getSchema()
      */
     @Override
-    public void write(IOBuffer buffer) {    
-        super.write(buffer);
-        BufferIO.writeType(buffer, droppedItem);
+    protected NetSchema getSchema() {
+        return SCHEMA;
     }
 }
@@ -7,15 +7,38 @@ import java.util.List;
 
 import harenet.IOBuffer;
 import harenet.messages.NetMessage;
+import harenet.messages.NetSchema;
 import seventh.game.entities.Entity;
 import seventh.game.entities.Entity.Type;
-import seventh.network.messages.BufferIO;
 
 /**
  * @author Tony
  *
  */
 public class NetEntity implements NetMessage {        
+    
+    /**
+     * Positions are quantized to the bounds of the largest map, 256x256 tiles of 32x32 pixels
+     */
+    public static final int MAX_POSITION = 8191;
+    public static final int POSITION_BITS = 13;
+    
+    /**
+     * Orientations are sent as angles in degrees
+     */
+    public static final int ORIENTATION_BITS = 8;
+    
+    public static final int HEALTH_BITS = 7;
+    
+    /**
+     * NOTE: The type must come first, see BufferIO.readEntity
+     */
+    public static final NetSchema SCHEMA = NetSchema.define(NetEntity.class)
+                                                .enumeration("type", Type.numOfBits())
+                                                .quantized("posX", 0, MAX_POSITION, POSITION_BITS)
+                                                .quantized("posY", 0, MAX_POSITION, POSITION_BITS)
+                                                .build();
+    
     public Type type; 
     public int id;
     
@@ -31,49 +54,27 @@ public class NetEntity implements NetMessage {
 //    public byte events;
     
         
+    /**
+     * @return the {@link NetSchema} describing how the fields of this entity are packed
+     */
+    protected NetSchema getSchema() {
+        return SCHEMA;
+    }
+    
     /* (non-Javadoc)
      * @see seventh.network.messages.NetMessage#read(java.nio.ByteBuffer)
      */
     @Override
     public void read(IOBuffer buffer) {
-        type = BufferIO.readType(buffer);  // NOTE: Must match BufferIO.readEntity
-        //type = buffer.get();
-                
-//        id = buffer.getInt();        
-//        orientation = buffer.getShort();
-        
-//        posX = buffer.getShort();
-//        posY = buffer.getShort();
-        posX = buffer.getIntBits(13); // max X & Y of 256x256 tiles (32x32 tiles) ~8191 
-        posY = buffer.getIntBits(13);
-        
-//        width = buffer.get();
-//        height = buffer.get();
-        
-//        events = buffer.get();
+        getSchema().read(buffer, this);
     }
-    
+
     /* (non-Javadoc)
      * @see seventh.network.messages.NetMessage#write(java.nio.ByteBuffer)
      */
     @Override
     public void write(IOBuffer buffer) {
-        BufferIO.writeType(buffer, type);
-        //buffer.put(type);  
-        
-//        buffer.putInt(id);
-        
-//        buffer.putShort(orientation);
-        
-//        buffer.putShort(posX);
-//        buffer.putShort(posY);
-        buffer.putIntBits(posX, 13);
-        buffer.putIntBits(posY, 13);
-        
-//        buffer.put(width);
-//        buffer.put(height);
-        
-//        buffer.put(events);
+        getSchema().write(buffer, this);
     }
     
     /**
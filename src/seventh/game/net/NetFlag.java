@@ -3,7 +3,7 @@
  */
 package seventh.game.net;
 
-import harenet.IOBuffer;
+import harenet.messages.NetSchema;
 import seventh.game.entities.Entity.Type;
 import seventh.network.messages.BufferIO;
 
@@ -12,6 +12,10 @@ import seventh.network.messages.BufferIO;
  *
  */
 public class NetFlag extends NetEntity {
+    
+    public static final NetSchema SCHEMA = NetEntity.SCHEMA.extend(NetFlag.class)
+                                           .unsigned("carriedBy", BufferIO.numPlayerIdBits())
+                                           .build();
 
     public int carriedBy;
     
@@ -29,20 +33,10 @@ public class NetFlag extends NetEntity {
     }
     
     /* (non-Javadoc)
-     * @see seventh.game.net.NetEntity#read(harenet.IOBuffer)
-     */
-    @Override
-    public void read(IOBuffer buffer) {    
-        super.read(buffer);
-        this.carriedBy = BufferIO.readPlayerId(buffer);
-    }
-
-    /* (non-Javadoc)
-     * @see seventh.game.net.NetEntity#write(harenet.IOBuffer)
+     * @see seventh.game.net.NetEntity#getSchema()
      */
     @Override
-    public void write(IOBuffer buffer) {
-        super.write(buffer);
-        BufferIO.writePlayerId(buffer, carriedBy);
+    protected NetSchema getSchema() {
+        return SCHEMA;
     }
 }
@@ -18,6 +18,7 @@ public class NetGameUpdate implements NetMessage {
     public static final int SOUND_MASK = (1<<1);
     public static final int DEAD_ENTS_MASK = (1<<2);
     public static final int SPEC_MASK = (1<<3);
+    public static final int DELTA_MASK = (1<<4);
     
     public NetEntity[] entities;
     public NetSound[] sounds;
@@ -26,6 +27,24 @@ public class NetGameUpdate implements NetMessage {
     public int time;
     public int spectatingPlayerId = -1;
     
+    /**
+     * The server game clock this update was taken at, which unlike
+     * the remaining match {@link #time} always moves forward
+     */
+    public int serverTime;
+    
+    /**
+     * If set, the entities are sent delta compressed 
+     * against an older snapshot
+     */
+    public NetSnapshot snapshot;
+    
+    /**
+     * How many snapshots back the base snapshot is, 0
+     * if there is no base snapshot
+     */
+    public int baseAge;
+    
 
     private BitArray entityBitArray;
     public BitArray deadPersistantEntities;
@@ -51,30 +70,58 @@ public class NetGameUpdate implements NetMessage {
     
     /* (non-Javadoc)
      * @see seventh.network.messages.NetMessage#read(java.nio.ByteBuffer)
+     * 
+     * NOTE: the update may be read into again (see GameUpdateMessage), so
+     * anything not sent is reset here
      */
     @Override
     public void read(IOBuffer buffer) {
         bits = buffer.getByte();
-        if( (bits & ENTITIES_MASK) != 0) {
-            for(int i = 0; i < numberOfBytes; i++) {
-                entityBitArray.setDataElement(i, buffer.getByte());
+        if( (bits & DELTA_MASK) != 0) {
+            snapshot = NetSnapshot.obtain(buffer.getIntBits(NetSnapshotHistory.SNAPSHOT_ID_BITS));
+            baseAge = buffer.getIntBits(NetSnapshotHistory.BASE_AGE_BITS);
+            snapshot.readDelta(buffer);
+        }
+        else {
+            snapshot = null;
+            baseAge = 0;
+            
+            boolean hasEntities = (bits & ENTITIES_MASK) != 0;
+            if(hasEntities) {
+                for(int i = 0; i < numberOfBytes; i++) {
+                    entityBitArray.setDataElement(i, buffer.getByte());
+                }
             }
             
             for(int i = 0; i < entities.length; i++) {
-                if(entityBitArray.getBit(i)) {
+                if(hasEntities && entityBitArray.getBit(i)) {
                     entities[i] = BufferIO.readEntity(buffer);    
                     entities[i].id = i;
                 }
+                else {
+                    entities[i] = null;
+                }
             }
         }
         
         if( (bits & SOUND_MASK) != 0) {
             numberOfSounds = buffer.getByte();
-            sounds = new NetSound[numberOfSounds];
+            if(sounds == null || sounds.length < numberOfSounds) {
+                NetSound[] newSounds = new NetSound[Math.max(numberOfSounds, 8)];
+                if(sounds != null) {
+                    System.arraycopy(sounds, 0, newSounds, 0, sounds.length);
+                }
+                sounds = newSounds;
+            }
+            
+            /* the sounds are played as soon as the update is applied, so they can be reused */
             for(short i = 0; i < numberOfSounds; i++) {
-                sounds[i] = NetSound.readNetSound(buffer);                
+                sounds[i] = NetSound.readNetSound(buffer, sounds[i]);                
             }
         }
+        else {
+            numberOfSounds = 0;
+        }
         
         if( (bits & DEAD_ENTS_MASK) != 0) {            
             hasDeadEntities = true;
@@ -82,12 +129,17 @@ public class NetGameUpdate implements NetMessage {
                 deadPersistantEntities.setDataElement(i, buffer.getByte());
             }
         }
+        else {
+            deadPersistantEntities.clear();
+        }
         
+        spectatingPlayerId = -1;
         if( (bits & SPEC_MASK) != 0) {
             spectatingPlayerId = buffer.getUnsignedByte();
         }
         
         time = buffer.getInt();
+        serverTime = buffer.getInt();
         
     }
     
@@ -98,7 +150,10 @@ public class NetGameUpdate implements NetMessage {
     public void write(IOBuffer buffer) {
         bits = 0;
         
-        if(entities != null && entities.length > 0) {
+        if(snapshot != null) {
+            bits |= DELTA_MASK;
+        }
+        else if(entities != null && entities.length > 0) {
             bits |= ENTITIES_MASK;
         }
         
@@ -116,7 +171,12 @@ public class NetGameUpdate implements NetMessage {
     
         buffer.putByte(bits);
         
-        if(entities != null && entities.length > 0) {
+        if(snapshot != null) {
+            buffer.putIntBits(snapshot.id, NetSnapshotHistory.SNAPSHOT_ID_BITS);
+            buffer.putIntBits(baseAge, NetSnapshotHistory.BASE_AGE_BITS);
+            snapshot.writeDelta(buffer);
+        }
+        else if(entities != null && entities.length > 0) {
             entityBitArray.clear();
             
             for(int i = 0; i < entities.length; i++) {
@@ -156,9 +216,18 @@ public class NetGameUpdate implements NetMessage {
         }
         
         buffer.putInt(this.time);
+        buffer.putInt(this.serverTime);
         
     }
     
+    /**
+     * @return true if the entities are delta compressed and need to be resolved
+     * against a base snapshot
+     */
+    public boolean isDeltaCompressed() {
+        return snapshot != null;
+    }
+    
     /**
      * Set the number of sounds 
      * 
@@ -3,7 +3,7 @@
  */
 package seventh.game.net;
 
-import harenet.IOBuffer;
+import harenet.messages.NetSchema;
 import seventh.game.entities.Entity.Type;
 
 
@@ -12,6 +12,14 @@ import seventh.game.entities.Entity.Type;
  *
  */
 public class NetLight extends NetEntity {    
+    
+    public static final NetSchema SCHEMA = NetEntity.SCHEMA.extend(NetLight.class)
+                                           .unsigned("r", 8)
+                                           .unsigned("g", 8)
+                                           .unsigned("b", 8)
+                                           .unsigned("luminacity", 8)
+                                           .unsigned("size", 16)
+                                           .build();
 
     public short r, g, b;
     public short luminacity;
@@ -24,32 +32,10 @@ public class NetLight extends NetEntity {
     }
     
     /* (non-Javadoc)
-     * @see seventh.game.net.NetEntity#read(java.nio.ByteBuffer)
-     */
-    @Override
-    public void read(IOBuffer buffer) {    
-        super.read(buffer);
-        
-        r = (short)(buffer.getUnsignedByte());
-        g = (short)(buffer.getUnsignedByte());
-        b = (short)(buffer.getUnsignedByte());
-        
-        luminacity = (short)(buffer.getUnsignedByte());
-        size = buffer.getShort();
-    }
-    
-    /* (non-Javadoc)
-     * @see seventh.game.net.NetEntity#write(java.nio.ByteBuffer)
+     * @see seventh.game.net.NetEntity#getSchema()
      */
     @Override
-    public void write(IOBuffer buffer) {    
-        super.write(buffer);
-        
-        buffer.putUnsignedByte(r);
-        buffer.putUnsignedByte(g);
-        buffer.putUnsignedByte(b);
-        
-        buffer.putUnsignedByte(luminacity);
-        buffer.putShort(size);
+    protected NetSchema getSchema() {
+        return SCHEMA;
     }
 }
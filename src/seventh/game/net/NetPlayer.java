@@ -4,9 +4,10 @@
 package seventh.game.net;
 
 import harenet.IOBuffer;
+import harenet.messages.NetSchema;
 import seventh.game.entities.Entity.State;
 import seventh.game.entities.Entity.Type;
-import seventh.network.messages.BufferIO;
+import seventh.network.messages.PlayerInputMessage;
 
 /**
  * The full player state.  This is message is for the local player.
@@ -16,9 +17,15 @@ import seventh.network.messages.BufferIO;
  */
 public class NetPlayer extends NetEntity {
 
-    public static final int HAS_WEAPON = 2;
-    public static final int IS_OPERATING_VEHICLE = 4;    
-    public static final int IS_SMOKE_GRENADES = 8;
+    public static final NetSchema SCHEMA = NetEntity.SCHEMA.extend(NetPlayer.class)
+                                           .angle("orientation", ORIENTATION_BITS)
+                                           .enumeration("state", State.numOfBits())
+                                           .unsigned("grenades", 4)
+                                           .unsigned("health", HEALTH_BITS)
+                                           .flag("isSmokeGrenades")
+                                           .flag("isOperatingVehicle")
+                                           .unsigned("lastInputSequence", PlayerInputMessage.SEQUENCE_BITS)
+                                           .build();
     
     public NetPlayer() {
         this.type = Type.PLAYER;
@@ -33,26 +40,19 @@ public class NetPlayer extends NetEntity {
     
     public int vehicleId;
     
-    protected byte bits;
+    /**
+     * The sequence number of the latest {@link PlayerInputMessage} the server applied
+     */
+    public int lastInputSequence;
+    
     public NetWeapon weapon;
     
     /* (non-Javadoc)
-     * @see seventh.game.net.NetEntity#checkBits()
+     * @see seventh.game.net.NetEntity#getSchema()
      */
-    
-    protected void checkBits() {        
-        if(weapon!=null) {
-            bits |= HAS_WEAPON;
-        }
-        
-        if(isOperatingVehicle) {
-            bits = 0; /* clear the weapon isRotated */
-            bits |= IS_OPERATING_VEHICLE;
-        }                
-        
-        if(isSmokeGrenades) {
-            bits |= IS_SMOKE_GRENADES;
-        }
+    @Override
+    protected NetSchema getSchema() {
+        return SCHEMA;
     }
     
     /* (non-Javadoc)
@@ -61,26 +61,22 @@ public class NetPlayer extends NetEntity {
     @Override
     public void read(IOBuffer buffer) {    
         super.read(buffer);
-        bits = buffer.getByte();
         
-        orientation = BufferIO.readAngle(buffer);
-        state = BufferIO.readState(buffer);
-        grenades = buffer.getByteBits(4);
-        health = buffer.getByteBits(7);
+        /* If this player is in a vehicle,
+         * send the vehicle ID in lieu of 
+         * weapon information
+         */
+        /* the weapon is not reused, as the client keeps the
+         * weapon states around apart from the player states */
+        weapon = null;
         
-        if((bits & HAS_WEAPON) != 0) {            
+        if(isOperatingVehicle) {
+            vehicleId = buffer.getUnsignedByte();
+        }
+        else if(buffer.getBooleanBit()) {            
             weapon = new NetWeapon();
             weapon.read(buffer);
         }
-                
-        if((bits & IS_OPERATING_VEHICLE) != 0) {
-            isOperatingVehicle = true;
-            vehicleId = buffer.getUnsignedByte();
-        }        
-        
-        if((bits & IS_SMOKE_GRENADES) != 0) {
-            isSmokeGrenades = true;
-        }
     }
     
     /* (non-Javadoc)
@@ -90,21 +86,14 @@ public class NetPlayer extends NetEntity {
     public void write(IOBuffer buffer) {    
         super.write(buffer);
         
-        bits = 0;
-        checkBits();
-        buffer.putByte(bits);
-        
-        BufferIO.writeAngle(buffer, orientation);
-        BufferIO.writeState(buffer, state);
-        buffer.putByteBits(grenades, 4);
-        buffer.putByteBits(health, 7);
-        
-        if(weapon != null && !isOperatingVehicle) {
-            weapon.write(buffer);
-        }
-        
         if(isOperatingVehicle) {
             buffer.putUnsignedByte(vehicleId);
         }
+        else {
+            buffer.putBooleanBit(weapon != null);
+            if(weapon != null) {
+                weapon.write(buffer);
+            }
+        }
     }
 }
@@ -4,6 +4,7 @@
 package seventh.game.net;
 
 import harenet.IOBuffer;
+import harenet.messages.NetSchema;
 import seventh.game.entities.Entity.State;
 import seventh.game.entities.Entity.Type;
 import seventh.game.weapons.Weapon.WeaponState;
@@ -18,6 +19,12 @@ import seventh.network.messages.BufferIO;
  */
 public class NetPlayerPartial extends NetEntity {
 
+    public static final NetSchema SCHEMA = NetEntity.SCHEMA.extend(NetPlayerPartial.class)
+                                           .angle("orientation", ORIENTATION_BITS)
+                                           .enumeration("state", State.numOfBits())
+                                           .unsigned("health", HEALTH_BITS)
+                                           .build();
+    
     
     public NetPlayerPartial() {
         this.type = Type.PLAYER_PARTIAL;
@@ -30,16 +37,20 @@ public class NetPlayerPartial extends NetEntity {
     public boolean isOperatingVehicle;
     public int vehicleId;
     
+    /* (non-Javadoc)
+     * @see seventh.game.net.NetEntity#getSchema()
+     */
+    @Override
+    protected NetSchema getSchema() {
+        return SCHEMA;
+    }
+    
     /* (non-Javadoc)
      * @see seventh.game.net.NetEntity#read(java.nio.ByteBuffer)
      */
     @Override
     public void read(IOBuffer buffer) {    
         super.read(buffer);
-                
-        orientation = BufferIO.readAngle(buffer);
-        state = BufferIO.readState(buffer);
-        health = buffer.getByteBits(7);
         
         /* If this player is in a vehicle,
          * send the vehicle ID in lieu of 
@@ -48,8 +59,10 @@ public class NetPlayerPartial extends NetEntity {
         if(state.isVehicleState()) {
             isOperatingVehicle = true;
             vehicleId = buffer.getUnsignedByte();
+            weapon = null;
         }
         else {            
+            isOperatingVehicle = false;
             readWeapon(buffer);
         }
     }
@@ -70,12 +83,7 @@ public class NetPlayerPartial extends NetEntity {
     @Override
     public void write(IOBuffer buffer) {    
         super.write(buffer);
-                
-        BufferIO.writeAngle(buffer, orientation);
-        BufferIO.writeState(buffer, state);        
-        buffer.putByteBits(health, 7);
         
-
         /* If this player is in a vehicle,
          * send the vehicle ID in lieu of 
          * weapon information
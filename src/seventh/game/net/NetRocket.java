@@ -3,9 +3,8 @@
  */
 package seventh.game.net;
 
-import harenet.IOBuffer;
+import harenet.messages.NetSchema;
 import seventh.game.entities.Entity.Type;
-import seventh.network.messages.BufferIO;
 
 
 /**
@@ -13,26 +12,20 @@ import seventh.network.messages.BufferIO;
  *
  */
 public class NetRocket extends NetBullet {
+    
+    public static final NetSchema SCHEMA = NetBullet.SCHEMA.extend(NetRocket.class)
+                                           .angle("orientation", ORIENTATION_BITS)
+                                           .build();
 
     public NetRocket() {
         this.type = Type.ROCKET;
     }
     
     /* (non-Javadoc)
-     * @see seventh.game.net.NetEntity#read(java.nio.ByteBuffer)
-     */
-    @Override
-    public void read(IOBuffer buffer) {    
-        super.read(buffer);
-        this.orientation = BufferIO.readAngle(buffer);
-    }
-    
-    /* (non-Javadoc)
-     * @see seventh.game.net.NetEntity#write(java.nio.ByteBuffer)
+     * @see seventh.game.net.NetEntity#getSchema()
      */
     @Override
-    public void write(IOBuffer buffer) {    
-        super.write(buffer);
-        BufferIO.writeAngle(buffer, orientation);
+    protected NetSchema getSchema() {
+        return SCHEMA;
     }
 }
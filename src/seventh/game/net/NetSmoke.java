@@ -3,7 +3,6 @@
  */
 package seventh.game.net;
 
-import harenet.IOBuffer;
 import seventh.game.entities.Entity.Type;
 
 
@@ -19,20 +18,4 @@ public class NetSmoke extends NetEntity {
     public NetSmoke() {
         this.type = Type.SMOKE;
     }
-    
-    /* (non-Javadoc)
-     * @see seventh.game.net.NetEntity#read(java.nio.ByteBuffer)
-     */
-    @Override
-    public void read(IOBuffer buffer) {    
-        super.read(buffer);
-    }
-    
-    /* (non-Javadoc)
-     * @see seventh.game.net.NetEntity#write(java.nio.ByteBuffer)
-     */
-    @Override
-    public void write(IOBuffer buffer) {    
-        super.write(buffer);
-    }
 }
@@ -0,0 +1,506 @@
+/*
+ * see license.txt
+ */
+package seventh.game.net;
+
+import harenet.BitArray;
+import harenet.IOBuffer;
+import harenet.RingBuffer;
+import seventh.network.messages.BufferIO;
+import seventh.shared.SeventhConstants;
+
+/**
+ * A snapshot of the encoded {@link NetEntity}s sent to a client.  Each entity is stored as the
+ * exact bits {@link NetEntity#write(IOBuffer)} produced, which allows a snapshot to be delta
+ * compressed against an older snapshot the client is known to have received:
+ *
+ * <ul>
+ *  <li>entities that have not changed only cost 2 bits</li>
+ *  <li>entities that have changed only send the bytes of the record that changed</li>
+ *  <li>everything else is sent in full</li>
+ * </ul>
+ *
+ * @author Tony
+ *
+ */
+public class NetSnapshot {
+    
+    /**
+     * Max record size is 1023 bits
+     */
+    public static final int RECORD_LENGTH_BITS = 10;
+    public static final int MAX_RECORD_BITS = (1 << RECORD_LENGTH_BITS) - 1;
+    
+    /**
+     * Max record size that can be delta compressed is 32 bytes (one bit per byte in an int mask)
+     */
+    private static final int MAX_DELTA_BYTES = 32;
+    
+    /**
+     * Max encoded snapshot size is 65535 bits
+     */
+    private static final int ENCODED_LENGTH_BITS = 16;
+    private static final int MAX_ENCODED_BITS = (1 << ENCODED_LENGTH_BITS) - 1;
+    
+    /**
+     * The size in bytes of the working buffer needed to encode/decode a snapshot
+     */
+    public static final int WORKING_BUFFER_SIZE = (MAX_ENCODED_BITS + 7) / 8;
+    
+    private static final int MODE_BITS = 2;
+    private static final byte MODE_UNCHANGED = 0;
+    private static final byte MODE_DELTA = 1;
+    private static final byte MODE_FULL = 2;
+    
+
+    /**
+     * The snapshots received by a client are pooled, see {@link #obtain(int)}
+     */
+    private static final RingBuffer<NetSnapshot> pool = new RingBuffer<NetSnapshot>(64);
+    
+    /**
+     * @param id
+     * @return a pooled snapshot, which should be {@link #release()}d once it falls out of the snapshot history
+     */
+    public static NetSnapshot obtain(int id) {
+        NetSnapshot snapshot = pool.poll();
+        if(snapshot == null) {
+            return new NetSnapshot(id);
+        }
+        
+        snapshot.reset(id);
+        return snapshot;
+    }
+    
+    /**
+     * Empties this snapshot so that it may be reused, keeping its buffers
+     * 
+     * @param id the new snapshot id
+     */
+    void reset(int id) {
+        this.id = id;
+        this.packetSequence = -1;
+        this.present.clear();
+        this.size = 0;
+        this.encodedBits = 0;
+        this.isResolved = true;
+    }
+    
+    /**
+     * Returns this snapshot to the pool, it must no longer be used
+     */
+    public void release() {
+        pool.offer(this);
+    }
+    
+    /**
+     * The snapshot id
+     */
+    public int id;
+    
+    /**
+     * The packet sequence this snapshot was sent out on, -1 if it
+     * has not been sent yet (server side only)
+     */
+    public volatile int packetSequence;
+    
+    private BitArray present;
+    private int[] offsets;
+    private int[] lengths;
+    
+    private byte[] data;
+    private int size;
+    
+    /* the delta compressed form of this snapshot */
+    private byte[] encoded;
+    private int encodedBits;
+    private boolean isResolved;
+    
+    /**
+     * @param id
+     */
+    public NetSnapshot(int id) {
+        this.id = id;
+        this.packetSequence = -1;
+        
+        this.present = new BitArray(SeventhConstants.MAX_ENTITIES);
+        this.offsets = new int[SeventhConstants.MAX_ENTITIES];
+        this.lengths = new int[SeventhConstants.MAX_ENTITIES];
+        this.data = new byte[1024];
+        this.size = 0;
+        this.isResolved = true;
+    }
+    
+    /**
+     * @param entityId
+     * @return true if this snapshot contains the entity
+     */
+    public boolean hasEntity(int entityId) {
+        return this.present.getBit(entityId);
+    }
+    
+    /**
+     * @return true if this snapshot has been resolved against its base snapshot
+     */
+    public boolean isResolved() {
+        return isResolved;
+    }
+    
+    /**
+     * Records the supplied entities into this snapshot
+     *
+     * @param entities
+     * @param scratch a working buffer
+     * @return false if an entity record was too large to be recorded
+     */
+    public boolean record(NetEntity[] entities, IOBuffer scratch) {
+        this.present.clear();
+        this.size = 0;
+        
+        for(int i = 0; i < entities.length; i++) {
+            NetEntity ent = entities[i];
+            if(ent != null) {
+                scratch.clear();
+                ent.write(scratch);
+                
+                int numberOfBits = scratch.bitPosition();
+                if(numberOfBits > MAX_RECORD_BITS) {
+                    return false;
+                }
+                
+                scratch.bitPosition(0);
+                
+                int offset = allocate(numberOfBytes(numberOfBits));
+                readRecord(scratch, this.data, offset, numberOfBits);
+                
+                this.present.setBit(i);
+                this.offsets[i] = offset;
+                this.lengths[i] = numberOfBits;
+            }
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Decodes the recorded entity
+     *
+     * @param entityId
+     * @param scratch a working buffer
+     * @return the decoded entity, or null if not present in this snapshot
+     */
+    public NetEntity toNetEntity(int entityId, IOBuffer scratch) {
+        if(!hasEntity(entityId)) {
+            return null;
+        }
+        
+        scratch.clear();
+        writeRecord(scratch, this.data, this.offsets[entityId], this.lengths[entityId]);
+        scratch.bitPosition(0);
+        
+        NetEntity ent = BufferIO.readEntity(scratch);
+        ent.id = entityId;
+        return ent;
+    }
+    
+    /**
+     * Decodes all of the recorded entities
+     *
+     * @param results
+     * @param scratch a working buffer
+     * @return the results
+     */
+    public NetEntity[] toNetEntities(NetEntity[] results, IOBuffer scratch) {
+        for(int i = 0; i < results.length; i++) {
+            results[i] = toNetEntity(i, scratch);
+        }
+        return results;
+    }
+    
+    /**
+     * Encodes this snapshot delta compressed against the supplied base snapshot.  The encoded
+     * bits are kept with this snapshot, so that writing it out later on does not depend on
+     * the state of the base snapshot.
+     *
+     * @param base the base snapshot, which may be null
+     * @param scratch a working buffer
+     * @return false if the encoded snapshot was too large
+     */
+    public boolean encodeDelta(NetSnapshot base, IOBuffer scratch) {
+        scratch.clear();
+        
+        boolean samePresence = base != null && isSamePresence(base);
+        scratch.putBooleanBit(samePresence);
+        if(!samePresence) {
+            byte[] bits = this.present.getData();
+            for(int i = 0; i < bits.length; i++) {
+                scratch.putByte(bits[i]);
+            }
+        }
+        
+        for(int i = 0; i < this.lengths.length; i++) {
+            if(!hasEntity(i)) {
+                continue;
+            }
+            
+            int offset = this.offsets[i];
+            int numberOfBits = this.lengths[i];
+            int numberOfBytes = numberOfBytes(numberOfBits);
+            
+            byte mode = MODE_FULL;
+            int changedMask = 0;
+            
+            if(base != null && base.hasEntity(i) && base.lengths[i] == numberOfBits && numberOfBytes <= MAX_DELTA_BYTES) {
+                int baseOffset = base.offsets[i];
+                int numberOfChanges = 0;
+                for(int j = 0; j < numberOfBytes; j++) {
+                    if(this.data[offset + j] != base.data[baseOffset + j]) {
+                        changedMask |= (1 << j);
+                        numberOfChanges++;
+                    }
+                }
+                
+                if(numberOfChanges == 0) {
+                    mode = MODE_UNCHANGED;
+                }
+                else {
+                    int deltaSize = numberOfBytes + (numberOfChanges * 8);
+                    int fullSize = RECORD_LENGTH_BITS + numberOfBits;
+                    if(deltaSize < fullSize) {
+                        mode = MODE_DELTA;
+                    }
+                }
+            }
+            
+            scratch.putByteBits(mode, MODE_BITS);
+            switch(mode) {
+                case MODE_DELTA: {
+                    for(int j = 0; j < numberOfBytes; j++) {
+                        scratch.putBooleanBit( (changedMask & (1 << j)) != 0 );
+                    }
+                    for(int j = 0; j < numberOfBytes; j++) {
+                        if((changedMask & (1 << j)) != 0) {
+                            scratch.putByteBits(this.data[offset + j], bitsInByte(numberOfBits, j));
+                        }
+                    }
+                    break;
+                }
+                case MODE_FULL: {
+                    scratch.putIntBits(numberOfBits, RECORD_LENGTH_BITS);
+                    writeRecord(scratch, this.data, offset, numberOfBits);
+                    break;
+                }
+                default: /* unchanged, nothing to write */
+            }
+        }
+        
+        int numberOfBits = scratch.bitPosition();
+        if(numberOfBits > MAX_ENCODED_BITS) {
+            return false;
+        }
+        
+        scratch.bitPosition(0);
+        
+        int numberOfBytes = numberOfBytes(numberOfBits);
+        if(this.encoded == null || this.encoded.length < numberOfBytes) {
+            this.encoded = new byte[numberOfBytes];
+        }
+        this.encodedBits = numberOfBits;
+        readRecord(scratch, this.encoded, 0, numberOfBits);
+        
+        return true;
+    }
+    
+    /**
+     * Writes out the delta compressed snapshot from {@link #encodeDelta(NetSnapshot, IOBuffer)}
+     *
+     * @param buffer
+     */
+    public void writeDelta(IOBuffer buffer) {
+        buffer.putIntBits(this.encodedBits, ENCODED_LENGTH_BITS);
+        writeRecord(buffer, this.encoded, 0, this.encodedBits);
+    }
+    
+    /**
+     * Reads in a delta compressed snapshot.  The snapshot must then be resolved against its
+     * base snapshot with {@link #resolve(NetSnapshot, IOBuffer)}.
+     *
+     * @param buffer
+     */
+    public void readDelta(IOBuffer buffer) {
+        this.encodedBits = buffer.getIntBits(ENCODED_LENGTH_BITS);
+        
+        int numberOfBytes = numberOfBytes(this.encodedBits);
+        if(this.encoded == null || this.encoded.length < numberOfBytes) {
+            this.encoded = new byte[numberOfBytes];
+        }
+        readRecord(buffer, this.encoded, 0, this.encodedBits);
+        
+        this.present.clear();
+        this.size = 0;
+        this.isResolved = false;
+    }
+    
+    /**
+     * Resolves a delta compressed snapshot against its base snapshot
+     *
+     * @param base the base snapshot (may be null if this snapshot is not based off of another)
+     * @param scratch a working buffer
+     * @return true if successfully resolved, false if the base snapshot does not match
+     */
+    public boolean resolve(NetSnapshot base, IOBuffer scratch) {
+        if(this.isResolved) {
+            return true;
+        }
+        
+        scratch.clear();
+        writeRecord(scratch, this.encoded, 0, this.encodedBits);
+        scratch.bitPosition(0);
+        
+        boolean samePresence = scratch.getBooleanBit();
+        if(samePresence) {
+            if(base == null) {
+                return false;
+            }
+            
+            byte[] theirs = base.present.getData();
+            for(int i = 0; i < theirs.length; i++) {
+                this.present.setDataElement(i, theirs[i]);
+            }
+        }
+        else {
+            for(int i = 0; i < this.present.numberOfBytes(); i++) {
+                this.present.setDataElement(i, scratch.getByte());
+            }
+        }
+        
+        for(int i = 0; i < this.lengths.length; i++) {
+            if(!hasEntity(i)) {
+                continue;
+            }
+            
+            byte mode = scratch.getByteBits(MODE_BITS);
+            if(mode != MODE_FULL) {
+                if(base == null || !base.hasEntity(i)) {
+                    return false;
+                }
+            }
+            
+            switch(mode) {
+                case MODE_UNCHANGED: {
+                    int numberOfBits = base.lengths[i];
+                    int numberOfBytes = numberOfBytes(numberOfBits);
+                    int offset = allocate(numberOfBytes);
+                    System.arraycopy(base.data, base.offsets[i], this.data, offset, numberOfBytes);
+                    
+                    this.offsets[i] = offset;
+                    this.lengths[i] = numberOfBits;
+                    break;
+                }
+                case MODE_DELTA: {
+                    int numberOfBits = base.lengths[i];
+                    int numberOfBytes = numberOfBytes(numberOfBits);
+                    int changedMask = 0;
+                    for(int j = 0; j < numberOfBytes; j++) {
+                        if(scratch.getBooleanBit()) {
+                            changedMask |= (1 << j);
+                        }
+                    }
+                    
+                    int offset = allocate(numberOfBytes);
+                    int baseOffset = base.offsets[i];
+                    for(int j = 0; j < numberOfBytes; j++) {
+                        if((changedMask & (1 << j)) != 0) {
+                            this.data[offset + j] = scratch.getByteBits(bitsInByte(numberOfBits, j));
+                        }
+                        else {
+                            this.data[offset + j] = base.data[baseOffset + j];
+                        }
+                    }
+                    
+                    this.offsets[i] = offset;
+                    this.lengths[i] = numberOfBits;
+                    break;
+                }
+                case MODE_FULL: {
+                    int numberOfBits = scratch.getIntBits(RECORD_LENGTH_BITS);
+                    int offset = allocate(numberOfBytes(numberOfBits));
+                    readRecord(scratch, this.data, offset, numberOfBits);
+                    
+                    this.offsets[i] = offset;
+                    this.lengths[i] = numberOfBits;
+                    break;
+                }
+                default: {
+                    return false;
+                }
+            }
+        }
+        
+        /* the encoded buffer is kept, to be read into again once pooled */
+        this.encodedBits = 0;
+        this.isResolved = true;
+        return true;
+    }
+    
+    /**
+     * @param base
+     * @return true if this snapshot contains the same entities as the base snapshot
+     */
+    private boolean isSamePresence(NetSnapshot base) {
+        byte[] mine = this.present.getData();
+        byte[] theirs = base.present.getData();
+        for(int i = 0; i < mine.length; i++) {
+            if(mine[i] != theirs[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Allocates the number of bytes from the data buffer
+     *
+     * @param numberOfBytes
+     * @return the offset in the data buffer
+     */
+    private int allocate(int numberOfBytes) {
+        int offset = this.size;
+        if(offset + numberOfBytes > this.data.length) {
+            byte[] newData = new byte[Math.max(this.data.length * 2, offset + numberOfBytes)];
+            System.arraycopy(this.data, 0, newData, 0, this.size);
+            this.data = newData;
+        }
+        
+        this.size += numberOfBytes;
+        return offset;
+    }
+    
+    private static int numberOfBytes(int numberOfBits) {
+        return (numberOfBits + 7) / 8;
+    }
+    
+    /**
+     * @param numberOfBits the total number of bits in the record
+     * @param byteIndex the byte index in the record
+     * @return the number of bits used by the byte in the record
+     */
+    private static int bitsInByte(int numberOfBits, int byteIndex) {
+        int remaining = numberOfBits - (byteIndex * 8);
+        return remaining < 8 ? remaining : 8;
+    }
+    
+    private static void readRecord(IOBuffer buffer, byte[] data, int offset, int numberOfBits) {
+        int numberOfBytes = numberOfBytes(numberOfBits);
+        for(int j = 0; j < numberOfBytes; j++) {
+            data[offset + j] = buffer.getByteBits(bitsInByte(numberOfBits, j));
+        }
+    }
+    
+    private static void writeRecord(IOBuffer buffer, byte[] data, int offset, int numberOfBits) {
+        int numberOfBytes = numberOfBytes(numberOfBits);
+        for(int j = 0; j < numberOfBytes; j++) {
+            buffer.putByteBits(data[offset + j], bitsInByte(numberOfBits, j));
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * see license.txt
+ */
+package seventh.game.net;
+
+import harenet.api.Connection;
+
+/**
+ * A ring of the most recent {@link NetSnapshot}s sent to (or received from) a remote client.
+ *
+ * @author Tony
+ *
+ */
+public class NetSnapshotHistory {
+    
+    /**
+     * Snapshot ids wrap around at 16 bits
+     */
+    public static final int SNAPSHOT_ID_BITS = 16;
+    public static final int SNAPSHOT_ID_MASK = (1 << SNAPSHOT_ID_BITS) - 1;
+    
+    /**
+     * The number of bits used to describe how far back the base snapshot is
+     */
+    public static final int BASE_AGE_BITS = 6;
+    
+    /**
+     * The default number of snapshots to keep
+     */
+    public static final int DEFAULT_SIZE = 32;
+    
+    /**
+     * How often a full snapshot is sent regardless of what
+     * the client has acknowledged
+     */
+    public static final int DEFAULT_KEY_FRAME_RATE = 64;
+    
+    private NetSnapshot[] snapshots;
+    private int nextSnapshotId;
+    
+    /* a snapshot that is no longer used, to be handed out by nextSnapshot */
+    private NetSnapshot recycled;
+    
+    private int keyFrameRate;
+    private int framesSinceKeyFrame;
+    
+    /**
+     * @param size the number of snapshots to keep, must be less than 2^{@link #BASE_AGE_BITS}
+     * @param keyFrameRate how often (in number of snapshots) a full snapshot is forced
+     */
+    public NetSnapshotHistory(int size, int keyFrameRate) {
+        if(size >= (1 << BASE_AGE_BITS)) {
+            throw new IllegalArgumentException("Snapshot history size must be less than: " + (1 << BASE_AGE_BITS));
+        }
+        
+        this.snapshots = new NetSnapshot[size];
+        this.nextSnapshotId = 0;
+        this.keyFrameRate = keyFrameRate;
+        this.framesSinceKeyFrame = 0;
+    }
+    
+    /**
+     */
+    public NetSnapshotHistory() {
+        this(DEFAULT_SIZE, DEFAULT_KEY_FRAME_RATE);
+    }
+    
+    /**
+     * Removes all of the snapshots
+     */
+    public void clear() {
+        for(int i = 0; i < this.snapshots.length; i++) {
+            this.snapshots[i] = null;
+        }
+        this.framesSinceKeyFrame = 0;
+    }
+    
+    /**
+     * @return an empty snapshot with the next snapshot id (not yet stored in this history), which is
+     * the recycled snapshot if there is one
+     */
+    public NetSnapshot nextSnapshot() {
+        NetSnapshot snapshot = this.recycled;
+        if(snapshot != null) {
+            this.recycled = null;
+            snapshot.reset(this.nextSnapshotId);
+        }
+        else {
+            snapshot = new NetSnapshot(this.nextSnapshotId);
+        }
+        
+        this.nextSnapshotId = (this.nextSnapshotId + 1) & SNAPSHOT_ID_MASK;
+        return snapshot;
+    }
+    
+    /**
+     * Hands back a snapshot that is no longer used, to be reused by {@link #nextSnapshot()}.  The
+     * snapshot must not be in this history, and nothing else may still refer to it.
+     * 
+     * @param snapshot
+     */
+    public void recycle(NetSnapshot snapshot) {
+        this.recycled = snapshot;
+    }
+    
+    /**
+     * Stores the snapshot, replacing the oldest one
+     *
+     * @param snapshot
+     * @return the snapshot that was replaced, or null if none
+     */
+    public NetSnapshot add(NetSnapshot snapshot) {
+        int index = snapshot.id % this.snapshots.length;
+        NetSnapshot replaced = this.snapshots[index];
+        this.snapshots[index] = snapshot;
+        return (replaced != snapshot) ? replaced : null;
+    }
+    
+    /**
+     * @param snapshotId
+     * @return the snapshot with the supplied id, or null if it is no longer in the history
+     */
+    public NetSnapshot get(int snapshotId) {
+        NetSnapshot snapshot = this.snapshots[snapshotId % this.snapshots.length];
+        if(snapshot != null && snapshot.id == snapshotId) {
+            return snapshot;
+        }
+        return null;
+    }
+    
+    /**
+     * Finds the most recent snapshot that the remote client has acknowledged receiving.
+     *
+     * @param snapshotId the snapshot id that is about to be sent
+     * @param conn the connection to the remote client
+     * @return the most recent acknowledged snapshot or null if none have been acknowledged
+     */
+    public NetSnapshot getLatestAcknowledged(int snapshotId, Connection conn) {
+        for(int age = 1; age < this.snapshots.length; age++) {
+            NetSnapshot snapshot = get((snapshotId - age) & SNAPSHOT_ID_MASK);
+            if(snapshot != null) {
+                int packetSequence = snapshot.packetSequence;
+                if(packetSequence > -1 && conn.isPacketAcknowledged(packetSequence)) {
+                    return snapshot;
+                }
+            }
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Determines which snapshot the supplied snapshot should be delta compressed against.  Every so
+     * often this will force a key frame (i.e., no base snapshot) so that a client that could not
+     * resolve a snapshot is able to recover.
+     *
+     * @param snapshotId the snapshot id that is about to be sent
+     * @param conn the connection to the remote client
+     * @return the base snapshot, or null if a full snapshot should be sent
+     */
+    public NetSnapshot getDeltaBase(int snapshotId, Connection conn) {
+        NetSnapshot base = null;
+        if(this.framesSinceKeyFrame < this.keyFrameRate) {
+            base = getLatestAcknowledged(snapshotId, conn);
+        }
+        
+        if(base == null) {
+            this.framesSinceKeyFrame = 0;
+        }
+        else {
+            this.framesSinceKeyFrame++;
+        }
+        
+        return base;
+    }
+    
+    /**
+     * @param snapshotId
+     * @param base
+     * @return how many snapshots back the base snapshot is from the snapshot id
+     */
+    public static int baseAge(int snapshotId, NetSnapshot base) {
+        if(base == null) {
+            return 0;
+        }
+        return (snapshotId - base.id) & SNAPSHOT_ID_MASK;
+    }
+    
+    /**
+     * @param snapshotId
+     * @param baseAge
+     * @return the base snapshot id
+     */
+    public static int baseSnapshotId(int snapshotId, int baseAge) {
+        return (snapshotId - baseAge) & SNAPSHOT_ID_MASK;
+    }
+}
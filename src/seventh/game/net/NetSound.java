@@ -146,23 +146,32 @@ public class NetSound implements NetMessage {
     }
     
     public static NetSound readNetSound(IOBuffer buffer) {
+        return readNetSound(buffer, null);
+    }
+    
+    /**
+     * Reads in a {@link NetSound}, reusing the supplied sound if it is of the right kind
+     * 
+     * @param buffer
+     * @param reuse a sound that is no longer needed, may be null
+     * @return the sound
+     */
+    public static NetSound readNetSound(IOBuffer buffer, NetSound reuse) {
         NetSound snd = null;
         byte type = buffer.getByte();
         switch(SoundType.fromNet(Bits.getWithoutSignBit(type)).getSourceType()) {
             case REFERENCED:
             case REFERENCED_ATTACHED:
-                snd = new NetSoundByEntity();
+                snd = (reuse instanceof NetSoundByEntity) ? reuse : new NetSoundByEntity();
                 snd.type = type;
+                snd.posX = snd.posY = 0;
                 snd.read(buffer);
                 break;
             case POSITIONAL:
-                snd = new NetSound();
-                snd.type = type;
-                snd.read(buffer);
-                break;
             case GLOBAL:
-                snd = new NetSound();
+                snd = (reuse != null && reuse.getClass() == NetSound.class) ? reuse : new NetSound();
                 snd.type = type;
+                snd.posX = snd.posY = 0;
                 snd.read(buffer);
                 break;
             default: throw new IllegalArgumentException("Invalid NetSound type: " + type);
@@ -3,10 +3,12 @@
  */
 package seventh.game.net;
 
+import seventh.game.entities.Entity.State;
 import seventh.game.entities.Entity.Type;
+import seventh.game.weapons.Weapon.WeaponState;
 import seventh.network.messages.BufferIO;
 import seventh.shared.SeventhConstants;
-import harenet.IOBuffer;
+import harenet.messages.NetSchema;
 
 /**
  * Tank information
@@ -15,6 +17,16 @@ import harenet.IOBuffer;
  *
  */
 public class NetTank extends NetVehicle {
+    
+    public static final NetSchema SCHEMA = NetEntity.SCHEMA.extend(NetTank.class)
+                                           .unsigned("state", State.numOfBits())
+                                           .angle("orientation", ORIENTATION_BITS)
+                                           .angle("turretOrientation", ORIENTATION_BITS)
+                                           .unsigned("primaryWeaponState", WeaponState.numOfBits())
+                                           .unsigned("secondaryWeaponState", WeaponState.numOfBits())
+                                           .unsigned("operatorId", BufferIO.numPlayerIdBits())
+                                           .build();
+    
     public byte state;
     public short turretOrientation;
     public byte primaryWeaponState;
@@ -36,33 +48,10 @@ public class NetTank extends NetVehicle {
     }
     
     /* (non-Javadoc)
-     * @see seventh.game.net.NetEntity#read(harenet.IOBuffer)
-     */
-    @Override
-    public void read(IOBuffer buffer) {    
-        super.read(buffer);
-        
-        state = buffer.getByte();
-        orientation = BufferIO.readAngle(buffer);
-        turretOrientation = BufferIO.readAngle(buffer);
-        primaryWeaponState = buffer.getByte();
-        secondaryWeaponState = buffer.getByte();
-        operatorId = BufferIO.readPlayerId(buffer);
-    }
-    
-    /* (non-Javadoc)
-     * @see seventh.game.net.NetEntity#write(harenet.IOBuffer)
+     * @see seventh.game.net.NetEntity#getSchema()
      */
     @Override
-    public void write(IOBuffer buffer) {    
-        super.write(buffer);
-        
-        buffer.putByte(state);
-        BufferIO.writeAngle(buffer, orientation);
-        BufferIO.writeAngle(buffer, turretOrientation);
-        
-        buffer.putByte(primaryWeaponState);
-        buffer.putByte(secondaryWeaponState);
-        BufferIO.writePlayerId(buffer, operatorId);
+    protected NetSchema getSchema() {
+        return SCHEMA;
     }
 }
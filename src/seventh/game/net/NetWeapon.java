@@ -5,15 +5,23 @@ package seventh.game.net;
 
 import harenet.IOBuffer;
 import harenet.messages.NetMessage;
+import harenet.messages.NetSchema;
 import seventh.game.entities.Entity.Type;
 import seventh.game.weapons.Weapon.WeaponState;
-import seventh.network.messages.BufferIO;
 
 /**
  * @author Tony
  *
  */
 public class NetWeapon implements NetMessage {    
+    
+    public static final NetSchema SCHEMA = NetSchema.define(NetWeapon.class)
+                                                .enumeration("type", Type.numOfBits())
+                                                .unsigned("ammoInClip", 8)
+                                                .unsigned("totalAmmo", 16)
+                                                .enumeration("weaponState", WeaponState.numOfBits())
+                                                .build();
+    
     public Type type;
     public short ammoInClip;
     public short totalAmmo;    
@@ -24,10 +32,7 @@ public class NetWeapon implements NetMessage {
      */
     @Override
     public void read(IOBuffer buffer) {
-        type = BufferIO.readType(buffer);
-        ammoInClip = (short)buffer.getUnsignedByte();
-        totalAmmo = buffer.getShort();
-        weaponState = BufferIO.readWeaponState(buffer);
+        SCHEMA.read(buffer, this);
     }
     
     /* (non-Javadoc)
@@ -35,9 +40,6 @@ public class NetWeapon implements NetMessage {
      */
     @Override
     public void write(IOBuffer buffer) {
-        BufferIO.writeType(buffer, type);
-        buffer.putUnsignedByte(ammoInClip);
-        buffer.putShort(totalAmmo);
-        BufferIO.writeWeaponState(buffer, weaponState);
+        SCHEMA.write(buffer, this);
     }
 }
@@ -5,6 +5,7 @@ package seventh.game.weapons;
 
 import seventh.game.Game;
 import seventh.game.SurfaceTypeToSoundType;
+import seventh.game.SweepCandidates;
 import seventh.game.entities.Entity;
 import seventh.game.net.NetBullet;
 import seventh.game.net.NetEntity;
@@ -31,9 +32,20 @@ public class Bullet extends Entity {
     private int ownerHeightMask;
     private int maxDistance;
     
+    /**
+     * How far back (in msec) to rewind the players, to where the owner saw them
+     */
+    private long rewindTime;
+    
     private boolean piercing;
     private Entity lastEntityTouched;
     
+    /**
+     * The area covering this update's path, and what could be touched within it
+     */
+    private Rectangle sweptBounds;
+    private SweepCandidates sweepCandidates;
+    
     private static class BulletOnTouchListener implements Entity.OnTouchListener {
                 
         @Override
@@ -90,11 +102,14 @@ public class Bullet extends Entity {
         this.previousPos = new Vector2f();
         this.delta = new Vector2f();
         this.origin = new Vector2f(position);
+        this.sweptBounds = new Rectangle();
+        this.sweepCandidates = new SweepCandidates();
         this.onTouch = new BulletOnTouchListener();
         this.onMapObjectTouch = new BulletOnMapObjectTouchListener(game);
         
         this.ownerHeightMask = owner.getHeightMask();
         this.piercing = isPiercing;
+        this.rewindTime = game.getRewindTime(owner);
         
         this.maxDistance = 5000;
     }
@@ -239,38 +254,52 @@ public class Bullet extends Entity {
         
         int heightMask = getOwnerHeightMask();
                 
-        if(dx != 0 || dy != 0) {                        
+        if(dx != 0 || dy != 0) {
+            
+            /* The bounds are swept along the segment to the new position a pixel at a time, with
+             * the x and y steps taken separately so the collideX/collideY know which side was hit.
+             * The map and what the bullet could touch are looked up once for the whole segment, 
+             * and the steps are only tested where there could be a hit.  The first hit is the same
+             * as testing every step, but a bullet out in the open does next to no work.
+             */
+            int distX = Math.abs(newX - bounds.x);
+            int distY = Math.abs(newY - bounds.y);
+            int stepX = bounds.x < newX ? 1 : -1;
+            int stepY = bounds.y < newY ? 1 : -1;
+            int err = distX - distY;
+            
+            sweptBounds.set(Math.min(bounds.x, newX), Math.min(bounds.y, newY), 
+                            distX + bounds.width, distY + bounds.height);
+            
+            boolean mayHitMap = map.rectCollides(sweptBounds, heightMask);
+            boolean mayTouch = !game.findSweepCandidates(this, sweptBounds, rewindTime, sweepCandidates).isEmpty();
+            
             do {        
+                int e2 = err * 2;
                 
-                if(bounds.x != newX) {
-                    if(dx==0) {    
-                        break;
-                    }
+                if(e2 > -distY) {
+                    err -= distY;
                     
-                    bounds.x += dx;
-                    if( map.rectCollides(bounds, heightMask) ) {
-                        isBlocked = collideX(bounds.x, bounds.x-dx);
+                    bounds.x += stepX;
+                    if( mayHitMap && map.rectCollides(bounds, heightMask) ) {
+                        isBlocked = collideX(bounds.x, bounds.x-stepX);
                         if(isBlocked) {
-                            bounds.x -= dx;
+                            bounds.x -= stepX;
                         }
                     }
                 }
                 
-                if(bounds.y != newY && !isBlocked) {
-
-                    if(dy==0) {
-                        break;
-                    }
+                if(e2 < distX && !isBlocked) {
+                    err += distX;
                     
-                    bounds.y += dy;
-                    if( map.rectCollides(bounds, heightMask)) {
-                        isBlocked = collideY(bounds.y, bounds.y-dy);    
+                    bounds.y += stepY;
+                    if( mayHitMap && map.rectCollides(bounds, heightMask)) {
+                        isBlocked = collideY(bounds.y, bounds.y-stepY);    
                         if(isBlocked) {
-                            bounds.y -= dy;
+                            bounds.y -= stepY;
                         }
                     }
-                    
-                 }
+                }
                 
                 if( bounds.y < 0 
                     || bounds.x < 0
@@ -280,7 +309,7 @@ public class Bullet extends Entity {
                     kill(this);
                     break;
                 }
-                else {
+                else if(mayTouch && sweepCandidates.mayTouch(bounds)) {
                     if(collidesAgainstEntity(bounds) || collidesAgainstMapObject(bounds)) {
                         break;
                     }
@@ -312,7 +341,7 @@ public class Bullet extends Entity {
     
     @Override
     protected boolean collidesAgainstEntity(Rectangle bounds) {
-        if(game.doesTouchPlayers(this, origin, targetVel) && !this.piercing) {
+        if(game.doesTouchPlayers(this, origin, targetVel, rewindTime) && !this.piercing) {
             return true;
         }            
         if(game.doesTouchVehicles(this)) {
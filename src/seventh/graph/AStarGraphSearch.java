@@ -4,58 +4,56 @@
 package seventh.graph;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
 import seventh.graph.Edges.Directions;
-import seventh.shared.ArrayMap;
 
 /**
  * Uses the A* (A-Star) optimal-path searching algorithm.
- * 
+ *
+ * <p>
+ * The working state of the search is kept in arrays indexed by {@link GraphNode#getIndex()}, which are
+ * reused between searches.  Rather than clearing the arrays before each search, each entry is stamped with
+ * the search generation that last touched it; any entry with an older stamp is treated as unvisited.  The
+ * open list is a binary heap keyed by the total ('F') score, which supports lowering the score of a node
+ * that is already in the heap.
+ *
+ * <p>
+ * If the start node has not been numbered, the nodes reachable from it are numbered before searching.
+ *
  * @author Tony
  *
  */
 public class AStarGraphSearch<E, T> implements GraphSearchPath<E, T> {
-
-    private Map<GraphNode<E,T>, Integer>  gScores   /* Distance from start to optimal path */
-                                        , hScores   /* Heuristic scores */
-                                        , fScores;  /* Sum of heuristic from node to goal */
-
-    private Map<GraphNode<E,T>, GraphNode<E,T>> cameFrom;  /* Nodes visited to reach goal node */
-
-
-    private Set<GraphNode<E,T>>  closedSet  /* List of nodes we do not care about anymore */
-                               , openSet;   /* Working set of nodes to be tested */
+    
+    private static final int UNVISITED = -1;
+    private static final int CLOSED = -2;
+    
+    private int[] gScores   /* Distance from start to optimal path */
+                , hScores   /* Heuristic scores */
+                , fScores;  /* Sum of heuristic from node to goal */
+    
+    private int[] cameFrom;  /* Nodes visited to reach goal node */
+    
+    private int[] generations;    /* The search that last visited each node */
+    private int[] heapPositions;  /* Position of each node in the open heap, UNVISITED or CLOSED */
+    private GraphNode<E,T>[] nodes;
+    
+    private int[] openHeap;   /* Working set of nodes to be tested */
+    private int openSize;
+    
+    private int generation;
     
     /**
-     * 
+     *
      */
     public AStarGraphSearch() {
-        boolean jdk = false;
-        
-        // TODO - Continue testing working on ArrayMap
-        // removing GC from HashMap Entries
-        if(jdk) {
-            gScores = new HashMap<GraphNode<E,T>, Integer>();    
-            hScores = new HashMap<GraphNode<E,T>, Integer>();            
-            fScores = new HashMap<GraphNode<E,T>, Integer>();    
-            
-            
-            cameFrom = new HashMap<GraphNode<E,T>, GraphNode<E,T>>();
-        }
-        else {
-            gScores = new ArrayMap<>();
-            hScores = new ArrayMap<GraphNode<E,T>, Integer>();
-            fScores = new ArrayMap<>();
-            cameFrom = new ArrayMap<GraphNode<E,T>, GraphNode<E,T>>();
-        }
+        ensureCapacity(64);
         
-        closedSet = new HashSet<GraphNode<E,T>>();
-        openSet   = new HashSet<GraphNode<E,T>>();
+        this.openHeap = new int[64];
+        this.generation = 0;
     }
     
     /*
@@ -67,12 +65,16 @@ public class AStarGraphSearch<E, T> implements GraphSearchPath<E, T> {
             return null;
         }
         
+        if(start.getIndex() < 0) {
+            numberNodes(start);
+        }
+        
         return aStar(start, goal);
     }
     
     /**
      * Calculate the heuristic distance between the currentNode and the goal node.
-     *  
+     *
      * @param currentNode
      * @param goal
      * @return
@@ -83,7 +85,7 @@ public class AStarGraphSearch<E, T> implements GraphSearchPath<E, T> {
     
     /**
      * If this node should be ignored
-     * 
+     *
      * @param node
      * @return true if this node should be ignored
      */
@@ -92,130 +94,290 @@ public class AStarGraphSearch<E, T> implements GraphSearchPath<E, T> {
     }
     
     /**
-     * Retrieves the lowest score (Heuristic 'H') in the supplied set from the map of total scores ('F').
-     * 
-     * <p>
-     * To optimize performance, convert the openSet (set) into a PriorityQueue so this method call
-     * turns into a O(1) versus a O(n) call.
-     * 
-     * @param set - set to retrieve the lowest scored node
-     * @param fScores - map containing the heuristic scores
-     * @return the lowest heuristic {@link GraphNode} in the supplied set.
+     * Numbers the nodes reachable from the start node, for graphs that do not number their own nodes
+     *
+     * @param start
      */
-    private GraphNode<E,T> getLowestScore(Set<GraphNode<E,T>> set, Map<GraphNode<E,T>, Integer> fScores) {
-        GraphNode<E,T> lowerScore = null;
+    private void numberNodes(GraphNode<E,T> start) {
+        List<GraphNode<E,T>> queue = new ArrayList<GraphNode<E,T>>();
+        start.setIndex(0);
+        queue.add(start);
         
-        /*
-         * Search for the lowest H score.
-         */
-        for(GraphNode<E,T> node : set) {
-            
-            /* Set the first node to the lowest */
-            if ( lowerScore == null ) {
-                lowerScore = node;                
-                continue;
+        for(int i = 0; i < queue.size(); i++) {
+            Edges<E, T> edges = queue.get(i).edges();
+            for(int j = 0; j < edges.size(); j++) {
+                Edge<E,T> edge = edges.get(j);
+                if(edge != null && edge.getRight() != null && edge.getRight().getIndex() < 0) {
+                    edge.getRight().setIndex(queue.size());
+                    queue.add(edge.getRight());
+                }
             }
-            
-            int score = fScores.get(node);
-            
-            /* Check to see if this node has a lower H score */
-            if ( score < fScores.get(lowerScore)) {
-                lowerScore = node;
-            }            
+        }
+    }
+    
+    /**
+     * @param length
+     * @return a new array of nodes
+     */
+    @SuppressWarnings("unchecked")
+    private static <E, T> GraphNode<E, T>[] newNodes(int length) {
+        return (GraphNode<E, T>[]) new GraphNode<?, ?>[length];
+    }
+    
+    /**
+     * Grows the working arrays so they can hold the supplied node index
+     *
+     * @param index
+     */
+    private void ensureCapacity(int index) {
+        int length = (this.nodes != null) ? this.nodes.length : 0;
+        if(index < length) {
+            return;
         }
         
-        return lowerScore;
+        int newLength = Math.max(index + 1, length * 2);
+        if(this.nodes == null) {
+            this.gScores = new int[newLength];
+            this.hScores = new int[newLength];
+            this.fScores = new int[newLength];
+            this.cameFrom = new int[newLength];
+            this.generations = new int[newLength];
+            this.heapPositions = new int[newLength];
+            this.nodes = newNodes(newLength);
+        }
+        else {
+            this.gScores = Arrays.copyOf(this.gScores, newLength);
+            this.hScores = Arrays.copyOf(this.hScores, newLength);
+            this.fScores = Arrays.copyOf(this.fScores, newLength);
+            this.cameFrom = Arrays.copyOf(this.cameFrom, newLength);
+            this.generations = Arrays.copyOf(this.generations, newLength);
+            this.heapPositions = Arrays.copyOf(this.heapPositions, newLength);
+            this.nodes = Arrays.copyOf(this.nodes, newLength);
+        }
     }
     
+    /**
+     * Begins a new search, which invalidates the state of all the nodes from the previous search
+     */
+    private void nextGeneration() {
+        this.generation++;
+        
+        /* once the stamps wrap around, an old stamp could match
+         * the new generation, so reset them all */
+        if(this.generation == Integer.MAX_VALUE) {
+            Arrays.fill(this.generations, 0);
+            this.generation = 1;
+        }
+        
+        this.openSize = 0;
+    }
     
     /**
-     * Reconstructs the path from the start to finish nodes.
-     * 
-     * @param <E>
-     * @param <T>
-     * @param cameFrom - path traversed
-     * @param currentNode - current node
-     * @param result - list of {@link GraphNode}s needed to reach the goal
-     * @return the result list - for convience
+     * @param node
+     * @return the index of the node, making sure the working arrays are able to hold it
      */
-    private List<GraphNode<E,T>> reconstructPath(Map<GraphNode<E,T>, GraphNode<E,T>> cameFrom, GraphNode<E,T> currentNode, List<GraphNode<E,T>> result) {
+    private int visit(GraphNode<E,T> node) {
+        int index = node.getIndex();
+        if(index < 0) {
+            throw new IllegalArgumentException("GraphNode has not been numbered: " + node.getValue());
+        }
+        
+        ensureCapacity(index);
         
-        /* If we visited this node, add it to the result set */
-        if ( cameFrom.containsKey(currentNode) ) {
+        if(this.generations[index] != this.generation) {
+            this.generations[index] = this.generation;
+            this.heapPositions[index] = UNVISITED;
+            this.cameFrom[index] = UNVISITED;
+            this.nodes[index] = node;
+        }
+        
+        return index;
+    }
+    
+    /**
+     * Adds the two scores, without overflowing
+     *
+     * @param a
+     * @param b
+     * @return the sum of a and b, clamped to Integer.MAX_VALUE
+     */
+    private static int addScores(int a, int b) {
+        long sum = (long)a + (long)b;
+        return sum > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int)sum;
+    }
+    
+    private boolean isOpen(int index) {
+        return this.heapPositions[index] >= 0;
+    }
+    
+    private boolean isClosed(int index) {
+        return this.heapPositions[index] == CLOSED;
+    }
+    
+    /**
+     * Adds the node to the open heap
+     *
+     * @param index
+     */
+    private void pushOpen(int index) {
+        if(this.openSize >= this.openHeap.length) {
+            this.openHeap = Arrays.copyOf(this.openHeap, this.openHeap.length * 2);
+        }
+        
+        this.openHeap[this.openSize] = index;
+        this.heapPositions[index] = this.openSize;
+        this.openSize++;
+        
+        siftUp(this.openSize - 1);
+    }
+    
+    /**
+     * Removes the node with the lowest total score ('F') from the open heap, and closes it.
+     *
+     * @return the index of the lowest scored node
+     */
+    private int popLowestScore() {
+        int lowest = this.openHeap[0];
+        this.heapPositions[lowest] = CLOSED;
+        
+        this.openSize--;
+        if(this.openSize > 0) {
+            int last = this.openHeap[this.openSize];
+            this.openHeap[0] = last;
+            this.heapPositions[last] = 0;
+            siftDown(0);
+        }
+        
+        return lowest;
+    }
+    
+    private void siftUp(int position) {
+        int index = this.openHeap[position];
+        int score = this.fScores[index];
+        
+        while(position > 0) {
+            int parent = (position - 1) >>> 1;
+            int parentIndex = this.openHeap[parent];
+            if(this.fScores[parentIndex] <= score) {
+                break;
+            }
+            
+            this.openHeap[position] = parentIndex;
+            this.heapPositions[parentIndex] = position;
+            position = parent;
+        }
+        
+        this.openHeap[position] = index;
+        this.heapPositions[index] = position;
+    }
+    
+    private void siftDown(int position) {
+        int index = this.openHeap[position];
+        int score = this.fScores[index];
+        int half = this.openSize >>> 1;
+        
+        while(position < half) {
+            int child = (position << 1) + 1;
+            int childIndex = this.openHeap[child];
             
-            /* Find the rest of the path */
-            reconstructPath(cameFrom, cameFrom.get(currentNode), result);
+            int right = child + 1;
+            if(right < this.openSize && this.fScores[this.openHeap[right]] < this.fScores[childIndex]) {
+                child = right;
+                childIndex = this.openHeap[right];
+            }
             
-            result.add(currentNode);    /* Notice this is after the recursive call - we want the results to be in descending order */
+            if(score <= this.fScores[childIndex]) {
+                break;
+            }
             
-            return result;
+            this.openHeap[position] = childIndex;
+            this.heapPositions[childIndex] = position;
+            position = child;
+        }
+        
+        this.openHeap[position] = index;
+        this.heapPositions[index] = position;
+    }
+    
+    /**
+     * Reconstructs the path from the start to finish nodes.
+     *
+     * @param goal - the goal node index
+     * @return the list of {@link GraphNode}s needed to reach the goal, not including the start node
+     */
+    private List<GraphNode<E,T>> reconstructPath(int goal) {
+        List<GraphNode<E,T>> result = new ArrayList<GraphNode<E,T>>();
+        for(int index = goal; this.cameFrom[index] > UNVISITED; index = this.cameFrom[index]) {
+            result.add(this.nodes[index]);
         }
         
+        /* we walked back from the goal, so flip it around as we
+         * want the results to be in descending order */
+        Collections.reverse(result);
         return result;
     }
     
 
     /**
-     * Find the most optimal path to the goal node. The best (or most optimal) path is calculated by the A* (A-Star) algorithm. 
-     * 
+     * Find the most optimal path to the goal node. The best (or most optimal) path is calculated by the A* (A-Star) algorithm.
+     *
      * @param start - starting node
      * @param goal - ending node
      * @return the optimal node traversal from start to goal nodes.  null if no path found.
      */
     private List<GraphNode<E,T>> aStar(GraphNode<E,T> start, GraphNode<E,T> goal) {
-        gScores.clear();    
-        hScores.clear();            
-        fScores.clear();                    
-        cameFrom.clear();        
-        closedSet.clear();
-        openSet.clear();
+        nextGeneration();
         
+        int startIndex = visit(start);
+        int goalIndex = visit(goal);
         
-        /* Push the start node so we have a starting point */
-        openSet.add(start);
+        gScores[startIndex] = 0;                                                  /* No other possibility, thus 0 to denote optimal path */
+        hScores[startIndex] = heuristicEstimateDistance(start, start, goal);      /* Guess the cost from start to goal nodes */
+        fScores[startIndex] = hScores[startIndex];                                /* Store the sum of the cost 0 + X = X */
         
-        gScores.put(start, 0);                                          /* No other possibility, thus 0 to denote optimal path */
-        hScores.put(start, heuristicEstimateDistance(start, start, goal));     /* Guess the cost from start to goal nodes */
-        fScores.put(start, hScores.get(start));                         /* Store the sum of the cost 0 + X = X */
+        /* Push the start node so we have a starting point */
+        pushOpen(startIndex);
         
         /*
          * Until we run out of nodes of interest, lets compile our path.  If there
          * are no more nodes of interest, and we have not found our goal node, this means
          * there is no path.
          */
-        while( ! openSet.isEmpty() ) {
+        while( this.openSize > 0 ) {
             
-            /* Get the most optimal node to work from */
-            GraphNode<E, T> x = getLowestScore(openSet, fScores);
+            /* Get the most optimal node to work from, this closes it so we don't visit it again */
+            int xIndex = popLowestScore();
             
             /* If this node is the goal, we are done */
-            if ( x == goal ) {
+            if ( xIndex == goalIndex ) {
                 
-                /* optimal path from start to finish */               
-                return reconstructPath(cameFrom, goal, new ArrayList<GraphNode<E, T>>());
+                /* optimal path from start to finish */
+                return reconstructPath(goalIndex);
             }
             
-            /* Remove this node so we don't visit it again */
-            openSet.remove(x);
-            closedSet.add(x);
-            
+            GraphNode<E, T> x = this.nodes[xIndex];
             
             /*
              * For each neighbor (the nodes edges contain the neighbors)
              */
-            Edges<E, T> edges = x.edges();            
+            Edges<E, T> edges = x.edges();
             int skipMask = 0;
             
             for(int i = 0; i < edges.size(); i++) {
-                Edge<E,T> edge = edges.get(i);     
+                Edge<E,T> edge = edges.get(i);
                 if(edge == null) {
                     continue;
                 }
                 
                 GraphNode<E, T> y = edge.getRight();
+                if ( y == null ) {
+                    continue;
+                }
+                
+                int yIndex = visit(y);
                 
                 /* If this node has been visited before, ignore it and move on */
-                if ( y == null || closedSet.contains(y)) {
+                if ( isClosed(yIndex) ) {
                     continue;
                 }
                 
@@ -235,7 +397,7 @@ public class AStarGraphSearch<E, T> implements GraphSearchPath<E, T> {
                                 skipMask |= Directions.SE.getMask();
                                 skipMask |= Directions.SW.getMask();
                                 break;
-                            case W:                                
+                            case W:
                                 skipMask |= Directions.NW.getMask();
                                 skipMask |= Directions.SW.getMask();
                                 break;
@@ -250,40 +412,38 @@ public class AStarGraphSearch<E, T> implements GraphSearchPath<E, T> {
                 }
                 
                 /* Compile the shortest distance traveled between x and y plus the sum scores*/
-                int tentativeGscore = gScores.get(x) + edge.getWeight();
-                boolean tentativeIsBetter = false;
+                int tentativeGscore = addScores(gScores[xIndex], edge.getWeight());
                 
                 /* If this neighbor has not been tested, lets go ahead and add it */
-                if ( ! openSet.contains(y)) {
-                    openSet.add(y);
+                if ( ! isOpen(yIndex) ) {
                     
                     /* Calculate the heuristic to determine if this direction is the most optimal */
-                    hScores.put(y, heuristicEstimateDistance(start, y, goal));
-                    tentativeIsBetter = true;
-                }                                   
+                    hScores[yIndex] = heuristicEstimateDistance(start, y, goal);
+                    
+                    cameFrom[yIndex] = xIndex;                                      /* remember our path */
+                    gScores[yIndex] = tentativeGscore;                              /* Remember our score */
+                    fScores[yIndex] = addScores(tentativeGscore, hScores[yIndex]);  /* remember the total score */
+                    
+                    pushOpen(yIndex);
+                }
                 /* The neighbor is waiting to be tested (in the openSet) so test to see if the distance
                  * from x to y is better than y to goal.  If this neighbor is being visited from another
-                 * parent, it might be a more optimal path so test for that.
+                 * parent, it might be a more optimal path so test for that, and if so override the
+                 * path to this one.
                  */
-                else if ( gScores.containsKey(y) && tentativeGscore < gScores.get(y)) {
-                    tentativeIsBetter = true;
-                }
-                
-                /*
-                 * If traveling to this neighbor is cheaper than from another node, override
-                 * the path to this one.  If this is the first time this neighbor is to be
-                 * visited, place it in our path.
-                 */
-                if ( tentativeIsBetter ) {
-                    cameFrom.put(y, x);                                 /* remember our path */
-                    gScores.put(y, tentativeGscore);                    /* Remember our score */
-                    fScores.put(y, tentativeGscore + hScores.get(y));   /* remember the total score */
+                else if ( tentativeGscore < gScores[yIndex] ) {
+                    cameFrom[yIndex] = xIndex;
+                    gScores[yIndex] = tentativeGscore;
+                    fScores[yIndex] = addScores(tentativeGscore, hScores[yIndex]);
+                    
+                    /* the score can only go down, so move it up the heap */
+                    siftUp(heapPositions[yIndex]);
                 }
             }
-            
+        
         }
         
         return null;    /* No path found */
-        
+    
     }
 }
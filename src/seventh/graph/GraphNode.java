@@ -15,6 +15,7 @@ public class GraphNode<E, T> {
 
     private Edges<E, T> edges;
     private E value;
+    private int index;
     
     /**
      * Constructs a {@link GraphNode}.
@@ -24,6 +25,7 @@ public class GraphNode<E, T> {
     public GraphNode(E value) {
         this.edges = new Edges<E, T>();
         this.value = value;
+        this.index = -1;
     }
     
     
@@ -65,6 +67,24 @@ public class GraphNode<E, T> {
         this.value = value;
     }
 
+    /**
+     * The index of this node within its graph.  Each node of a graph should have a unique index, and the
+     * indexes should be densely packed (i.e., 0 to the number of nodes), as searches use the index to look up
+     * the node in arrays.
+     *
+     * @return the index of this node, or -1 if it hasn't been numbered
+     */
+    public int getIndex() {
+        return this.index;
+    }
+
+    /**
+     * @param index the index to set
+     */
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
     /**
      * Get the graphs {@link Edge}s.
      * 
@@ -0,0 +1,407 @@
+/*
+ * see license.txt
+ */
+package seventh.map;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import seventh.map.Tile.CollisionMask;
+import seventh.math.Rectangle;
+
+/**
+ * The collidable layers of an {@link OrthoMap} compiled down into one plane per height mask, so that collision
+ * queries do not have to walk each {@link Layer} and dispatch to each {@link Tile}'s {@link CollisionMask}.
+ *
+ * <p>
+ * Each plane holds a code per tile cell; the cell is either empty, solid, a pixel pattern, or must be tested
+ * against the tiles directly.  A pattern is a row of bits per pixel row of the cell, made up of the {@link CollisionMask}s
+ * of every tile in the cell that collides for the height mask.  The patterns are shared between cells and planes,
+ * as most maps only use a handful of combinations.  A rectangle is tested against a pattern by AND'ing each row it
+ * covers with the bits of the columns it covers.
+ *
+ * <p>
+ * Only {@link CollisionMask}s made up of whole pixel rectangles can be turned into patterns (the triangles and the
+ * circle are not), and only when the tile lines up with its cell; any other cell must be tested against the tiles.
+ * The planes give exactly the same results as testing the tiles.
+ *
+ * <p>
+ * The planes are compiled the first time their height mask is queried, and each cell is recompiled when a tile
+ * is added to or removed from it (see {@link #update(int, int)}).
+ *
+ * <p>
+ * The planes may be queried from multiple threads at once; a plane (and any pattern it refers to) is completely
+ * compiled before it is handed to any thread.  The map must not be modified while it is being queried.
+ *
+ * @author Tony
+ *
+ */
+public class CollisionBitmap {
+    
+    /**
+     * The largest height mask that gets its own plane, queries with any other height mask must
+     * test the tiles directly
+     */
+    public static final int MAX_HEIGHT_MASK = 7;
+    
+    /**
+     * Nothing in the cell collides
+     */
+    public static final int EMPTY = 0;
+    
+    /**
+     * Everything in the cell collides
+     */
+    public static final int SOLID = 1;
+    
+    /**
+     * The tiles in the cell must be tested directly
+     */
+    public static final int EXACT = 2;
+    
+    /**
+     * The first code that refers to a pattern
+     */
+    private static final int FIRST_PATTERN = 3;
+    
+    /**
+     * Marks a {@link CollisionMask} which can not be turned into a pattern
+     */
+    private static final long[] NOT_A_PATTERN = new long[0];
+    
+    private final OrthoMap map;
+    
+    private final AtomicReferenceArray<int[]> planes;
+    private volatile long[][] patterns;
+    private int numberOfPatterns;
+    private EnumMap<CollisionMask, long[]> maskPatterns;
+    private long[] scratch;
+    
+    /**
+     * @param map
+     */
+    public CollisionBitmap(OrthoMap map) {
+        this.map = map;
+        this.planes = new AtomicReferenceArray<int[]>(MAX_HEIGHT_MASK + 1);
+        this.patterns = new long[16][];
+        this.maskPatterns = new EnumMap<CollisionMask, long[]>(CollisionMask.class);
+    }
+    
+    /**
+     * Throws away all of the planes, this must be invoked if the map is reloaded
+     */
+    public synchronized void invalidate() {
+        for(int heightMask = 0; heightMask < this.planes.length(); heightMask++) {
+            this.planes.set(heightMask, null);
+        }
+        
+        this.patterns = new long[16][];
+        this.numberOfPatterns = 0;
+        this.maskPatterns.clear();
+        this.scratch = null;
+    }
+    
+    /**
+     * Recompiles the cell in each of the planes, this must be invoked if a tile is added or
+     * removed from the collidable layers
+     *
+     * @param tileX
+     * @param tileY
+     */
+    public synchronized void update(int tileX, int tileY) {
+        if(this.map.checkTileBounds(tileX, tileY)) {
+            return;
+        }
+        
+        int index = tileY * this.map.getTileWorldWidth() + tileX;
+        for(int heightMask = 0; heightMask < this.planes.length(); heightMask++) {
+            int[] plane = this.planes.get(heightMask);
+            if(plane != null) {
+                plane[index] = compileCell(tileX, tileY, heightMask);
+            }
+        }
+    }
+    
+    /**
+     * @return the number of distinct pixel patterns
+     */
+    public synchronized int getNumberOfPatterns() {
+        return numberOfPatterns;
+    }
+    
+    /**
+     * @param heightMask
+     * @return the plane for the height mask, compiling it if need be; or null if the height
+     * mask doesn't get a plane
+     */
+    private int[] getPlane(int heightMask) {
+        if(heightMask < 0 || heightMask > MAX_HEIGHT_MASK) {
+            return null;
+        }
+        
+        int[] plane = this.planes.get(heightMask);
+        if(plane == null) {
+            synchronized (this) {
+                plane = this.planes.get(heightMask);
+                if(plane == null) {
+                    plane = compilePlane(heightMask);
+                    this.planes.set(heightMask, plane);
+                }
+            }
+        }
+        
+        return plane;
+    }
+    
+    /**
+     * The cell must be within the map
+     *
+     * @param tileX
+     * @param tileY
+     * @param heightMask
+     * @return the code of the cell, {@link #EMPTY}, {@link #SOLID}, {@link #EXACT} or a pattern
+     */
+    public int getCell(int tileX, int tileY, int heightMask) {
+        int[] plane = getPlane(heightMask);
+        if(plane == null) {
+            return EXACT;
+        }
+        
+        return plane[tileY * this.map.getTileWorldWidth() + tileX];
+    }
+    
+    /**
+     * @param code the code of a cell
+     * @return true if the code refers to a pattern
+     */
+    public static boolean isPattern(int code) {
+        return code >= FIRST_PATTERN;
+    }
+    
+    /**
+     * @param code the pattern code of a cell
+     * @param x the pixel column within the cell
+     * @param y the pixel row within the cell
+     * @return true if the pixel collides
+     */
+    public boolean patternContains(int code, int x, int y) {
+        long[] pattern = this.patterns[code - FIRST_PATTERN];
+        return (pattern[y] & (1L << x)) != 0;
+    }
+    
+    /**
+     * @param code the pattern code of a cell
+     * @param minX the first pixel column within the cell
+     * @param minY the first pixel row within the cell
+     * @param maxX the last pixel column within the cell (inclusive)
+     * @param maxY the last pixel row within the cell (inclusive)
+     * @return true if any pixel in the area collides
+     */
+    public boolean patternCollides(int code, int minX, int minY, int maxX, int maxY) {
+        if(minX > maxX) {
+            return false;
+        }
+        
+        long[] pattern = this.patterns[code - FIRST_PATTERN];
+        long columns = (-1L >>> (63 - maxX)) & (-1L << minX);
+        for(int y = minY; y <= maxY; y++) {
+            if((pattern[y] & columns) != 0) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+    
+    private int[] compilePlane(int heightMask) {
+        int width = this.map.getTileWorldWidth();
+        int height = this.map.getTileWorldHeight();
+        
+        int[] plane = new int[width * height];
+        for(int y = 0; y < height; y++) {
+            for(int x = 0; x < width; x++) {
+                plane[y * width + x] = compileCell(x, y, heightMask);
+            }
+        }
+        
+        return plane;
+    }
+    
+    /**
+     * Combines the tiles in the cell, in the same manner as {@link OrthoMap#rectCollides(Rectangle, int)}
+     *
+     * @param tileX
+     * @param tileY
+     * @param heightMask
+     * @return the cell code
+     */
+    private int compileCell(int tileX, int tileY, int heightMask) {
+        int tileWidth = this.map.getTileWidth();
+        int tileHeight = this.map.getTileHeight();
+        
+        Layer[] layers = this.map.getCollidableLayers();
+        
+        boolean isSolid = false;
+        boolean isExact = false;
+        boolean hasPattern = false;
+        
+        for(int i = 0; i < layers.length; i++) {
+            Tile tile = layers[i].getRow(tileY)[tileX];
+            if(tile == null) {
+                continue;
+            }
+            
+            int tileHeightMask = tile.getHeightMask();
+            if(tileHeightMask > 0 && (tileHeightMask & heightMask) != tileHeightMask) {
+                continue;
+            }
+            
+            CollisionMask mask = tile.getCollisionMask();
+            if(mask == CollisionMask.NO_COLLISION) {
+                continue;
+            }
+            
+            /* the collision tile position is reported from the tile, so the tile must
+             * line up with the cell for the plane to stand in for it */
+            if(tile.getX() != tileX * tileWidth || tile.getY() != tileY * tileHeight ||
+               tile.getWidth() != tileWidth || tile.getHeight() != tileHeight) {
+                return EXACT;
+            }
+            
+            if(mask == CollisionMask.ALL_SOLID) {
+                isSolid = true;
+                continue;
+            }
+            
+            long[] pattern = getMaskPattern(mask);
+            if(pattern == NOT_A_PATTERN) {
+                isExact = true;
+                continue;
+            }
+            
+            if(!hasPattern) {
+                Arrays.fill(this.scratch, 0);
+                hasPattern = true;
+            }
+            
+            for(int y = 0; y < tileHeight; y++) {
+                this.scratch[y] |= pattern[y];
+            }
+        }
+        
+        if(isSolid) {
+            return SOLID;
+        }
+        
+        if(isExact) {
+            return EXACT;
+        }
+        
+        if(hasPattern) {
+            return internPattern(this.scratch);
+        }
+        
+        return EMPTY;
+    }
+    
+    private int internPattern(long[] pattern) {
+        long[][] patterns = this.patterns;
+        for(int i = 0; i < this.numberOfPatterns; i++) {
+            if(Arrays.equals(patterns[i], pattern)) {
+                return i + FIRST_PATTERN;
+            }
+        }
+        
+        if(this.numberOfPatterns >= patterns.length) {
+            patterns = Arrays.copyOf(patterns, patterns.length * 2);
+        }
+        
+        patterns[this.numberOfPatterns] = pattern.clone();
+        
+        /* publishes the pattern to the threads querying the planes */
+        this.patterns = patterns;
+        return FIRST_PATTERN + this.numberOfPatterns++;
+    }
+    
+    /**
+     * @param mask
+     * @return the pixels of the mask, or {@link #NOT_A_PATTERN}
+     */
+    private long[] getMaskPattern(CollisionMask mask) {
+        long[] pattern = this.maskPatterns.get(mask);
+        if(pattern == null) {
+            pattern = rasterize(mask, this.map.getTileWidth(), this.map.getTileHeight());
+            this.maskPatterns.put(mask, pattern);
+            
+            if(this.scratch == null) {
+                this.scratch = new long[this.map.getTileHeight()];
+            }
+        }
+        
+        return pattern;
+    }
+    
+    /**
+     * @param mask
+     * @param tileWidth
+     * @param tileHeight
+     * @return the pixels of the mask, or {@link #NOT_A_PATTERN} if the mask isn't made up of whole pixels
+     */
+    private static long[] rasterize(CollisionMask mask, int tileWidth, int tileHeight) {
+        switch(mask) {
+            case UPPER_LEFT_TRIANGLE:
+            case UPPER_RIGHT_TRIANGLE:
+            case BOTTOM_LEFT_TRIANGLE:
+            case BOTTOM_RIGHT_TRIANGLE:
+            case CENTER_CIRCLE:
+                return NOT_A_PATTERN;
+            default:
+        }
+        
+        if(tileWidth > 64 || tileWidth < 1 || tileHeight < 1) {
+            return NOT_A_PATTERN;
+        }
+        
+        Rectangle a = new Rectangle();
+        Rectangle b = new Rectangle();
+        
+        /* the mask must not reach outside of the tile, otherwise rectangles
+         * in the neighboring cells would collide with it too */
+        int[][] outside = {
+            { -tileWidth, -tileHeight, tileWidth * 3, tileHeight },
+            { -tileWidth, tileHeight, tileWidth * 3, tileHeight },
+            { -tileWidth, 0, tileWidth, tileHeight },
+            { tileWidth, 0, tileWidth, tileHeight },
+        };
+        for(int[] area : outside) {
+            a.set(0, 0, tileWidth, tileHeight);
+            b.set(area[0], area[1], area[2], area[3]);
+            if(mask.rectCollide(a, b)) {
+                return NOT_A_PATTERN;
+            }
+        }
+        
+        /* the same pattern serves both the point and rectangle tests, so they
+         * must agree on every pixel */
+        long[] pattern = new long[tileHeight];
+        for(int y = 0; y < tileHeight; y++) {
+            for(int x = 0; x < tileWidth; x++) {
+                a.set(0, 0, tileWidth, tileHeight);
+                b.set(x, y, 1, 1);
+                boolean rectCollides = mask.rectCollide(a, b);
+                
+                a.set(0, 0, tileWidth, tileHeight);
+                if(rectCollides != mask.pointCollide(a, x, y)) {
+                    return NOT_A_PATTERN;
+                }
+                
+                if(rectCollides) {
+                    pattern[y] |= (1L << x);
+                }
+            }
+        }
+        
+        return pattern;
+    }
+}
@@ -434,6 +434,12 @@ public abstract interface Map extends Renderable, Debugable {
      */
     public abstract boolean lineCollides(Vector2f a, Vector2f b, int heightMask);
     
+    /**
+     * @return the {@link TileVisibility} used for calculating which tiles
+     * are visible from another tile
+     */
+    public abstract TileVisibility getTileVisibility();
+    
     /**
      * Check the {@link Map} boundaries
      * @param worldX
@@ -481,8 +487,7 @@ public abstract interface Map extends Renderable, Debugable {
      * @return the new {@link MapGraph}
      */
     public <E> MapGraph<E> createMapGraph(GraphNodeFactory<E> factory);
-    @SuppressWarnings("rawtypes")
-    public <E> void addNode(GraphNodeFactory<E> factory, GraphNode[][] nodes, GraphNode<Tile, E> node, int x, int y);
+    public <E> void addNode(GraphNodeFactory<E> factory, GraphNode<Tile, E>[][] nodes, GraphNode<Tile, E> node, int x, int y);
     
     /**
      * Convert world coordinates to tile coordinates
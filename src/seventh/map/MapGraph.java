@@ -23,26 +23,50 @@ import seventh.math.Vector2f;
 @SuppressWarnings("all")
 public class MapGraph<T> {
 
-    public GraphNode[][] graph;
+    public GraphNode<Tile, T>[][] graph;
     private seventh.map.Map map;
     private Random random;
     private int width, height;
+    private int version;
     private GraphSearchPath<Tile, T> defaultSearchPath;
     /**
      * 
      */
-    public MapGraph(Map map, GraphNode[][] graph) {
+    public MapGraph(Map map, GraphNode<Tile, T>[][] graph) {
         this.map = map;
         this.graph = graph;
         
         this.height = graph.length;
         this.width = graph[0].length;
         
+        /* number the nodes by their tile position, so searches
+         * can store their working state in arrays */
+        for(int y = 0; y < this.height; y++) {
+            for(int x = 0; x < this.width; x++) {
+                GraphNode<Tile, T> node = graph[y][x];
+                if(node != null) {
+                    node.setIndex(y * this.width + x);
+                }
+            }
+        }
+        
         this.random = new Random();
         
         this.defaultSearchPath = new AStarGraphSearch<>();
     }
     
+    /**
+     * Allocates an empty table of nodes for a {@link MapGraph}
+     * 
+     * @param numberOfRows
+     * @param numberOfColumns
+     * @return the table of nodes, indexed by [y][x]
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> GraphNode<Tile, T>[][] newNodes(int numberOfRows, int numberOfColumns) {
+        return (GraphNode<Tile, T>[][]) new GraphNode<?, ?>[numberOfRows][numberOfColumns];
+    }
+    
     /**
      * Removes a node, when removing this will make that tile
      * not walkable.
@@ -55,6 +79,7 @@ public class MapGraph<T> {
         if(node != null) {
             node.edges().removeEdges();
             graph[y][x] = null;
+            this.version++;
         }
     }
     
@@ -69,18 +94,52 @@ public class MapGraph<T> {
         Tile tile = this.map.getTile(0, x, y);
         if(tile != null) {
             GraphNode<Tile, T> node = new GraphNode<Tile, T>(tile);
+            node.setIndex(y * this.width + x);
             graph[y][x] = node;
             this.map.addNode(null, graph, node, x, y);
+            this.version++;
         }
     }
     
+    /**
+     * The version is bumped each time a node is added or removed, so anything
+     * derived from this graph can tell when it is out of date.
+     * 
+     * @return the current version of this graph
+     */
+    public int getVersion() {
+        return version;
+    }
+    
+    /**
+     * @return the number of tiles wide this graph is
+     */
+    public int getWidth() {
+        return width;
+    }
+    
+    /**
+     * @return the number of tiles high this graph is
+     */
+    public int getHeight() {
+        return height;
+    }
+    
+    /**
+     * @param index the {@link GraphNode#getIndex()}
+     * @return the {@link GraphNode} with the supplied index, or null if that tile isn't walkable
+     */
+    public GraphNode<Tile, T> getNode(int index) {
+        return graph[index / this.width][index % this.width];
+    }
+    
     /**
      * @param x
      * @param y
      * @return get the {@link GraphNode} by the x and y index (not world coordinates)
      */
     public GraphNode<Tile, T> getNodeByIndex(int x, int y) {
-        return (GraphNode<Tile, T>)graph[y][x];
+        return graph[y][x];
     }
     
     /**
@@ -99,7 +158,7 @@ public class MapGraph<T> {
             return null;
         }
         
-        return x<width && y<height ? (GraphNode<Tile, T>)graph[y][x] : null;
+        return x<width && y<height ? graph[y][x] : null;
     }
     
     public GraphNode<Tile, T> getNearestNodeByWorld(Vector2f pos) {
@@ -16,6 +16,7 @@ import seventh.client.gfx.effects.ShadeTiles;
 import seventh.graph.Edge;
 import seventh.graph.Edges.Directions;
 import seventh.graph.GraphNode;
+import seventh.map.Tile.CollisionMask;
 import seventh.map.Tile.SurfaceType;
 import seventh.math.OBB;
 import seventh.math.Rectangle;
@@ -94,7 +95,6 @@ public class OrthoMap implements Map {
     
     private java.util.Map<Integer, TextureRegion> shadeTilesLookup;
     
-    private Vector2f collisionTilePos;
     private List<MapObject> mapObjects;
     private MapObjectFactory mapObjectsFactory;
     
@@ -103,6 +103,9 @@ public class OrthoMap implements Map {
     
     private Layer collisionLayerToAddTiles;
     
+    private TileVisibility tileVisibility;
+    private CollisionBitmap collisionBitmap;
+    
     /**
      * Constructs a new {@link OrthoMap}.
      */
@@ -111,7 +114,8 @@ public class OrthoMap implements Map {
         this.destroyedTiles = new ArrayList<Tile>();
         this.addedTiles = new ArrayList<>();
         
-        this.collisionTilePos = new Vector2f();
+        this.tileVisibility = new TileVisibility(this);
+        this.collisionBitmap = new CollisionBitmap(this);
         
         this.backgroundMapObjects = new ArrayList<>();
         this.foregroundMapObjects = new ArrayList<>();
@@ -303,23 +307,7 @@ public class OrthoMap implements Map {
         int tileOffset_y = 0;//(y % this.tileHeight);
         int wy = (tileOffset_y + y) / this.tileHeight;
         
-        for (int i = 0; i < this.collidableLayers.length; i++) {        
-            //Tile tile = this.backgroundLayers[this.collidableLayers[i].getIndex()].getRow(wy)[wx];                     
-            Tile tile = this.collidableLayers[i].getRow(wy)[wx];
-            if (tile != null) {
-                int tileHeightMask = tile.getHeightMask();
-                if(tileHeightMask > 0) {
-                    if ((tileHeightMask & heightMask) == tileHeightMask && (tile.pointCollide(x, y))) {
-                        return true;
-                    }
-                }
-                else if( tile.pointCollide(x, y) ) {
-                    return true;
-                }
-            }
-            
-        }
-        return false;
+        return cellCollides(wx, wy, x, y, heightMask);
     }
     
     @Override
@@ -352,59 +340,88 @@ public class OrthoMap implements Map {
      */
     @Override
     public boolean rectCollides(Rectangle rect, int heightMask, Vector2f collisionTilePos) {       
-        collisionTilePos.set(-1, -1);
+        if(collisionTilePos != null) {
+            collisionTilePos.set(-1, -1);
+        }
         
         if(!worldBounds.contains(rect)) {
             return true;
         }
         
-        // screen pixel x,y coordinate to draw the current tile to
-        int pixelX = 0;
-        int pixelY = 0;
-
-        int indexX = 0;
-        int indexY = 0;
-        
-        int toIndex_x = 0, toIndex_y = 0;
-        
-        // Current Tile offset (to pixels)
-        int tileOffset_x = -(rect.x % this.tileWidth);
-        toIndex_x        = (tileOffset_x + rect.x) / this.tileWidth;
-
-        // current tile y offset (to pixels)
-        int tileOffset_y = -(rect.y % this.tileHeight);
-        toIndex_y        = (tileOffset_y + rect.y) / this.tileHeight;
+        /* the cells from the one holding the top left corner, up to the ones
+         * holding the last pixel row and column of the rectangle */
+        int right = rect.x + rect.width - 1;
+        int bottom = rect.y + rect.height - 1;
+        if(right < 0 || bottom < 0) {
+            return false;
+        }
         
+        int minIndexX = rect.x / this.tileWidth;
+        int minIndexY = rect.y / this.tileHeight;
+        int maxIndexX = Math.min(right / this.tileWidth, this.maxX - 1);
+        int maxIndexY = Math.min(bottom / this.tileHeight, this.maxY - 1);
         
-        indexY = toIndex_y;
-        for (pixelY = tileOffset_y;
-             pixelY < rect.height && indexY < this.maxY;              
-             pixelY += this.tileHeight, indexY++) {
-                        
-            for (pixelX = tileOffset_x, indexX = toIndex_x; 
-                 pixelX < rect.width && indexX < this.maxX; 
-                 pixelX += this.tileWidth, indexX++) {
+        for (int indexY = minIndexY; indexY <= maxIndexY; indexY++) {
+            int cellY = indexY * this.tileHeight;
+            
+            for (int indexX = minIndexX; indexX <= maxIndexX; indexX++) {
+                int cellX = indexX * this.tileWidth;
                 
+                boolean collides = false;
                 
-                if ( (indexY >= 0 && indexX >= 0) && (indexY < this.maxY && indexX < this.maxX) ) {
-                    for (int i = 0; i < collidableLayers.length; i++) {
-                        Layer layer = collidableLayers[i];
-                            
-                        Tile tile = layer.getRow(indexY)[indexX];
-                        if (tile != null) {
-                            int tileHeightMask = tile.getHeightMask();
-                            if(tileHeightMask > 0) {                            
-                                if ( (tileHeightMask & heightMask) == tileHeightMask && (tile.rectCollide(rect)) ) {
-                                    collisionTilePos.set(tile.getX(), tile.getY());
-                                    return true;
-                                }
-                            } 
-                            else if( tile.rectCollide(rect) ) {
-                                collisionTilePos.set(tile.getX(), tile.getY());
-                                return true;
-                            }
-                        }
+                int cell = this.collisionBitmap.getCell(indexX, indexY, heightMask);
+                if(cell == CollisionBitmap.SOLID) {
+                    collides = true;
+                }
+                else if(CollisionBitmap.isPattern(cell)) {
+                    collides = this.collisionBitmap.patternCollides(cell, 
+                            Math.max(rect.x, cellX) - cellX, 
+                            Math.max(rect.y, cellY) - cellY, 
+                            Math.min(right, cellX + this.tileWidth - 1) - cellX, 
+                            Math.min(bottom, cellY + this.tileHeight - 1) - cellY);
+                }
+                else if(cell == CollisionBitmap.EXACT) {
+                    if(cellRectCollides(indexX, indexY, rect, heightMask, collisionTilePos)) {
+                        return true;
+                    }
+                }
+                
+                if(collides) {
+                    if(collisionTilePos != null) {
+                        collisionTilePos.set(cellX, cellY);
                     }
+                    return true;
+                }
+            }
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Tests the rectangle against the tiles of the collidable layers at the supplied tile index
+     * 
+     * @param wx the x tile index
+     * @param wy the y tile index
+     * @param rect
+     * @param heightMask
+     * @param collisionTilePos the position of the tile that collided, may be null
+     * @return true if the rectangle collides
+     */
+    private boolean cellRectCollides(int wx, int wy, Rectangle rect, int heightMask, Vector2f collisionTilePos) {
+        for (int i = 0; i < this.collidableLayers.length; i++) {
+            Tile tile = this.collidableLayers[i].getRow(wy)[wx];
+            if (tile != null) {
+                int tileHeightMask = tile.getHeightMask();
+                if(tileHeightMask > 0 && (tileHeightMask & heightMask) != tileHeightMask) {
+                    continue;
+                }
+                
+                if( tile.rectCollide(rect) ) {
+                    if(collisionTilePos != null) {
+                        collisionTilePos.set(tile.getX(), tile.getY());
+                    }
+                    return true;
                 }
             }
         }
@@ -417,7 +434,7 @@ public class OrthoMap implements Map {
      */
     @Override
     public boolean rectCollides(Rectangle rect, int heightMask) {
-        return rectCollides(rect, heightMask, this.collisionTilePos);
+        return rectCollides(rect, heightMask, null);
     }
 
     @Override
@@ -425,19 +442,103 @@ public class OrthoMap implements Map {
         return lineCollides(a, b, 1);
     }
     
+    /*
+     * The collision classification of a tile cell for a particular
+     * height mask
+     */
+    private static final int CELL_EMPTY   = 0;
+    private static final int CELL_SOLID   = 1;
+    private static final int CELL_PARTIAL = 2;
+    
+    /**
+     * Determines how the tiles in the collidable layers at the supplied tile index
+     * collide with the height mask.  This mirrors the checks done in {@link #pointCollides(int, int, int)}.
+     * 
+     * @param wx the x tile index
+     * @param wy the y tile index
+     * @param heightMask
+     * @return {@link #CELL_EMPTY} if no point in the cell can collide, {@link #CELL_SOLID} if every
+     * point in the cell collides, otherwise {@link #CELL_PARTIAL}
+     */
+    private int classifyCell(int wx, int wy, int heightMask) {
+        int cell = this.collisionBitmap.getCell(wx, wy, heightMask);
+        if(cell == CollisionBitmap.EMPTY) {
+            return CELL_EMPTY;
+        }
+        if(cell == CollisionBitmap.SOLID) {
+            return CELL_SOLID;
+        }
+        if(CollisionBitmap.isPattern(cell)) {
+            return CELL_PARTIAL;
+        }
+        
+        int result = CELL_EMPTY;
+        for (int i = 0; i < this.collidableLayers.length; i++) {
+            Tile tile = this.collidableLayers[i].getRow(wy)[wx];
+            if (tile != null) {
+                int tileHeightMask = tile.getHeightMask();
+                if(tileHeightMask > 0 && (tileHeightMask & heightMask) != tileHeightMask) {
+                    continue;
+                }
+                
+                CollisionMask mask = tile.getCollisionMask();
+                if(mask == CollisionMask.ALL_SOLID) {
+                    return CELL_SOLID;
+                }
+                
+                if(mask != CollisionMask.NO_COLLISION) {
+                    result = CELL_PARTIAL;
+                }
+            }
+        }
+        
+        return result;
+    }
+    
+    /**
+     * @param wx the x tile index
+     * @param wy the y tile index
+     * @param heightMask
+     * @return true if no point of the cell can collide with the height mask
+     */
+    boolean isCellEmpty(int wx, int wy, int heightMask) {
+        return classifyCell(wx, wy, heightMask) == CELL_EMPTY;
+    }
+    
+    /* (non-Javadoc)
+     * @see seventh.map.Map#getTileVisibility()
+     */
+    @Override
+    public TileVisibility getTileVisibility() {
+        return this.tileVisibility;
+    }
+    
     /* (non-Javadoc)
      * @see leola.live.game.Map#lineCollides(leola.live.math.Vector2f, leola.live.math.Vector2f)
      */
     @Override
     public boolean lineCollides(Vector2f a, Vector2f b, int heightMask) {
-        
-        // Uses the Bresenham Line Algorithm
-        int x1 = (int)b.x;
-        int y1 = (int)b.y;
-        
-        int x0 = (int)a.x;
-        int y0 = (int)a.y;
-        
+        return lineCollides((int)a.x, (int)a.y, (int)b.x, (int)b.y, heightMask);
+    }
+    
+    /**
+     * Determines if the line between the two points collides
+     * 
+     * @param x0 the x world coordinate of the start point
+     * @param y0 the y world coordinate of the start point
+     * @param x1 the x world coordinate of the end point
+     * @param y1 the y world coordinate of the end point
+     * @param heightMask
+     * @return true if the line collides
+     */
+    boolean lineCollides(int x0, int y0, int x1, int y1, int heightMask) {
+        
+        /* Walks the same pixels as the Bresenham Line Algorithm (so the results
+         * are exactly the same as testing each pixel), but the collidable layers
+         * are only consulted once per tile cell the line passes through.  Pixels 
+         * are only tested against the tile collision masks if the cell is partially
+         * solid.
+         */
         int dx = Math.abs(x1 - x0);
         int dy = Math.abs(y1 - y0);
         
@@ -449,9 +550,34 @@ public class OrthoMap implements Map {
         
         int err = dx - dy;
         
+        // the pixel bounds of the current cell, starts out empty
+        // to force a look up
+        int cellMinX = 1, cellMaxX = 0;
+        int cellMinY = 1, cellMaxY = 0;
+        int cellX = 0, cellY = 0;
+        int cell = CELL_EMPTY;
                                 
         do {        
-            if(this.pointCollides(x0, y0, heightMask)) {
+            if(x0 < cellMinX || x0 > cellMaxX || y0 < cellMinY || y0 > cellMaxY) {
+                if(checkBounds(x0, y0)) {
+                    return true;
+                }
+                
+                cellX = x0 / this.tileWidth;
+                cellY = y0 / this.tileHeight;
+                
+                cellMinX = cellX * this.tileWidth;
+                cellMaxX = cellMinX + this.tileWidth - 1;
+                cellMinY = cellY * this.tileHeight;
+                cellMaxY = cellMinY + this.tileHeight - 1;
+                
+                cell = classifyCell(cellX, cellY, heightMask);
+                if(cell == CELL_SOLID) {
+                    return true;
+                }
+            }
+            
+            if(cell == CELL_PARTIAL && cellCollides(cellX, cellY, x0, y0, heightMask)) {
                 return true;
             }
             
@@ -466,11 +592,9 @@ public class OrthoMap implements Map {
                 x0 = x0 + sx;
             }
             
+            /* the end point is tested at the top of the loop */
             if(x0 == x1 && y0 == y1) {
-                if(this.pointCollides(x0, y0, heightMask)) {
-                    return true;
-                }
-                break;
+                continue;
             }
             
             if(e2 < dx) {
@@ -478,10 +602,6 @@ public class OrthoMap implements Map {
                 y0 = y0 + sy;
             }
             
-            if(checkBounds(x0, y0)) {                    
-                return true;
-            }
-            
         } while( true );
         
         
@@ -489,6 +609,46 @@ public class OrthoMap implements Map {
         
     }
     
+    /**
+     * Tests the point against the tiles of the collidable layers at the supplied tile index.  This assumes
+     * the point is within the bounds of the map.
+     * 
+     * @param wx the x tile index
+     * @param wy the y tile index
+     * @param x the x world coordinate
+     * @param y the y world coordinate
+     * @param heightMask
+     * @return true if the point collides
+     */
+    private boolean cellCollides(int wx, int wy, int x, int y, int heightMask) {
+        int cell = this.collisionBitmap.getCell(wx, wy, heightMask);
+        if(cell == CollisionBitmap.EMPTY) {
+            return false;
+        }
+        if(cell == CollisionBitmap.SOLID) {
+            return true;
+        }
+        if(CollisionBitmap.isPattern(cell)) {
+            return this.collisionBitmap.patternContains(cell, x - wx * this.tileWidth, y - wy * this.tileHeight);
+        }
+        
+        for (int i = 0; i < this.collidableLayers.length; i++) {
+            Tile tile = this.collidableLayers[i].getRow(wy)[wx];
+            if (tile != null) {
+                int tileHeightMask = tile.getHeightMask();
+                if(tileHeightMask > 0) {
+                    if ((tileHeightMask & heightMask) == tileHeightMask && (tile.pointCollide(x, y))) {
+                        return true;
+                    }
+                }
+                else if( tile.pointCollide(x, y) ) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
     /* (non-Javadoc)
      * @see leola.live.game.Map#setMask(java.util.List, int)
      */
@@ -814,6 +974,8 @@ public class OrthoMap implements Map {
         }
 
         this.surfaces = info.getSurfaces();
+        this.tileVisibility.invalidate();
+        this.collisionBitmap.invalidate();
         
         if(this.shadeTilesLookup != null) {
             this.shadeTilesLookup = createShadeLookup(75);
@@ -861,10 +1023,7 @@ public class OrthoMap implements Map {
         int numberOfRows = backgroundLayers[0].numberOfRows();
         int numberOfColumns = backgroundLayers[0].getRow(0).length;
         
-        GraphNode[][] nodes = new GraphNode[numberOfRows][numberOfColumns];
-        for(int i = 0; i < numberOfRows; i++) {
-            nodes[i] = new GraphNode[numberOfColumns];
-        }
+        GraphNode<Tile, E>[][] nodes = MapGraph.newNodes(numberOfRows, numberOfColumns);
         
         // first build all graph nodes.
         for(int y = 0; y < numberOfRows; y++) {
@@ -905,12 +1064,12 @@ public class OrthoMap implements Map {
     
     @SuppressWarnings("all")
     @Override
-    public <E> void addNode(GraphNodeFactory<E> factory, GraphNode[][] nodes, GraphNode<Tile, E> node, int x, int y) {
+    public <E> void addNode(GraphNodeFactory<E> factory, GraphNode<Tile, E>[][] nodes, GraphNode<Tile, E> node, int x, int y) {
         addNode(factory, nodes, node, x, y, true);
     }
     
     @SuppressWarnings("all")
-    private <E> void addNode(GraphNodeFactory<E> factory, GraphNode[][] nodes, GraphNode<Tile, E> node, int x, int y, boolean addAdjacent) {
+    private <E> void addNode(GraphNodeFactory<E> factory, GraphNode<Tile, E>[][] nodes, GraphNode<Tile, E> node, int x, int y, boolean addAdjacent) {
         int numberOfRows = backgroundLayers[0].numberOfRows();
         int numberOfColumns = backgroundLayers[0].getRow(0).length;
         
@@ -1463,6 +1622,11 @@ public class OrthoMap implements Map {
             }
         }
         
+        if(wasRemoved) {
+            this.tileVisibility.invalidate();
+            this.collisionBitmap.update(tileX, tileY);
+        }
+        
         return wasRemoved;
     }
     
@@ -1477,9 +1641,11 @@ public class OrthoMap implements Map {
             layer.addTile(tile);
             
             tile.setDestroyed(false);            
+            this.collisionBitmap.update(tile.getXIndex(), tile.getYIndex());
         }
         
         this.destroyedTiles.clear();
+        this.tileVisibility.invalidate();
     }
 
     @Override
@@ -1498,6 +1664,9 @@ public class OrthoMap implements Map {
             
             this.collisionLayerToAddTiles.addTile(collisionTile);
         }
+        
+        this.tileVisibility.invalidate();
+        this.collisionBitmap.update(tile.getXIndex(), tile.getYIndex());
     }
     
     @Override
@@ -1515,9 +1684,12 @@ public class OrthoMap implements Map {
             if(this.destructableLayer.length > 0) {
                 this.destructableLayer[0].removeTile(tile);
             }
+            
+            this.collisionBitmap.update(tile.getXIndex(), tile.getYIndex());
         }
         
         this.addedTiles.clear();
+        this.tileVisibility.invalidate();
     }
     
     @Override
@@ -1302,6 +1302,18 @@ public class Tile implements Renderable {
                              isFlippedVert       = (1 << 1), 
                              isFlippedDiagnally  = (1 << 2);
     
+    /**
+     * The {@link CollisionMask}s shrink the bounds they are handed, so each thread
+     * testing for collisions gets its own; the line of sight is calculated from the
+     * game update workers, and the AI sense workers, at the same time
+     */
+    private static final ThreadLocal<Rectangle> collisionBounds = new ThreadLocal<Rectangle>() {
+        @Override
+        protected Rectangle initialValue() {
+            return new Rectangle();
+        }
+    };
+    
     private int x,y;
     private int width, height;    
     private int xIndex, yIndex;
@@ -1631,6 +1643,7 @@ public class Tile implements Renderable {
      * @return true if the point collides, false otherwise
      */
     public boolean pointCollide(int x, int y) {
+        Rectangle bounds = collisionBounds.get();
         bounds.set(this.x, this.y, width, height);
         return this.collisionMask.pointCollide(bounds, x, y);
     }        
@@ -1641,6 +1654,7 @@ public class Tile implements Renderable {
      * @return true if the rectangle collides, false otherwise
      */
     public boolean rectCollide(Rectangle rect) {
+        Rectangle bounds = collisionBounds.get();
         bounds.set(this.x, this.y, width, height);
         return this.collisionMask.rectCollide(bounds, rect);
     }
@@ -0,0 +1,273 @@
+/*
+ * see license.txt
+ */
+package seventh.map;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+
+/**
+ * Calculates which tiles are visible from a point on the {@link OrthoMap}.  A tile is visible if the line from the
+ * center of the tile to the point does not collide (see {@link OrthoMap#lineCollides(int, int, int, int, int)}), which
+ * walks the line pixel by pixel and tests the tiles of the collidable layers in the same manner as
+ * {@link OrthoMap#pointCollides(int, int, int)}.
+ *
+ * <p>
+ * The line only visits the pixels in between its end points, so if none of the tile cells in between the tile and
+ * the point can collide the tile is visible without walking the line.  This is answered in constant time from a
+ * table of the number of non-empty cells, which is built once per height mask.
+ *
+ * <p>
+ * The results are cached by the point, the height mask and the radius; and the tiles of a result are only calculated
+ * once they are asked for.  The cache is invalidated whenever a tile is added or removed from the map.
+ *
+ * @author Tony
+ *
+ */
+public class TileVisibility {
+    
+    /**
+     * The maximum number of cached {@link VisibilityField}s
+     */
+    private static final int MAX_CACHED_FIELDS = 256;
+    
+    /**
+     * The set of tiles visible from a point
+     *
+     * @author Tony
+     *
+     */
+    public static class VisibilityField {
+        private final TileVisibility visibility;
+        private final int x, y;
+        private final int originX, originY;
+        private final int radius;
+        private final int heightMask;
+        private final int size;
+        private final long[] known;
+        private final long[] bits;
+        
+        VisibilityField(TileVisibility visibility, int x, int y, int radius, int heightMask) {
+            this.visibility = visibility;
+            this.x = x;
+            this.y = y;
+            this.originX = visibility.map.worldToTileX(x);
+            this.originY = visibility.map.worldToTileY(y);
+            this.radius = radius;
+            this.heightMask = heightMask;
+            this.size = radius * 2 + 1;
+            
+            int numberOfWords = ((this.size * this.size) + 63) / 64;
+            this.known = new long[numberOfWords];
+            this.bits = new long[numberOfWords];
+        }
+        
+        private int index(int tileX, int tileY) {
+            int x = tileX - this.originX + this.radius;
+            int y = tileY - this.originY + this.radius;
+            if(x < 0 || y < 0 || x >= this.size || y >= this.size) {
+                return -1;
+            }
+            
+            return y * this.size + x;
+        }
+        
+        /**
+         * @param tileX
+         * @param tileY
+         * @return true if the tile is visible from the point
+         */
+        public boolean isVisible(int tileX, int tileY) {
+            int index = index(tileX, tileY);
+            if(index < 0) {
+                return false;
+            }
+            
+            int word = index >>> 6;
+            long bit = 1L << (index & 63);
+            
+            synchronized (this) {
+                if((this.known[word] & bit) == 0) {
+                    this.known[word] |= bit;
+                    if(this.visibility.calculateVisible(tileX, tileY, this.x, this.y, this.heightMask)) {
+                        this.bits[word] |= bit;
+                    }
+                }
+                
+                return (this.bits[word] & bit) != 0;
+            }
+        }
+        
+        /**
+         * @return the x world coordinate the tiles are seen from
+         */
+        public int getX() {
+            return x;
+        }
+        
+        /**
+         * @return the y world coordinate the tiles are seen from
+         */
+        public int getY() {
+            return y;
+        }
+        
+        /**
+         * @return the radius in number of tiles
+         */
+        public int getRadius() {
+            return radius;
+        }
+    }
+    
+    private final OrthoMap map;
+    private final LinkedHashMap<Long, VisibilityField> cache;
+    private final HashMap<Integer, int[]> nonEmptyCells;
+    
+    private long cacheHits;
+    private long cacheMisses;
+    
+    /**
+     * @param map
+     */
+    @SuppressWarnings("serial")
+    public TileVisibility(OrthoMap map) {
+        this.map = map;
+        this.cache = new LinkedHashMap<Long, VisibilityField>(MAX_CACHED_FIELDS, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(java.util.Map.Entry<Long, VisibilityField> eldest) {
+                return size() > MAX_CACHED_FIELDS;
+            }
+        };
+        this.nonEmptyCells = new HashMap<Integer, int[]>();
+    }
+    
+    /**
+     * Clears the cached results, this must be invoked if the collidable layers change
+     */
+    public synchronized void invalidate() {
+        this.cache.clear();
+        this.nonEmptyCells.clear();
+    }
+    
+    /**
+     * @return the number of queries answered from the cache
+     */
+    public synchronized long getCacheHits() {
+        return cacheHits;
+    }
+    
+    /**
+     * @return the number of queries that required a new {@link VisibilityField}
+     */
+    public synchronized long getCacheMisses() {
+        return cacheMisses;
+    }
+    
+    /**
+     * Retrieves the tiles visible from the point
+     *
+     * @param x the x world coordinate
+     * @param y the y world coordinate
+     * @param radius the radius in number of tiles, tiles further away than this are not visible
+     * @param heightMask
+     * @return the {@link VisibilityField}
+     */
+    public synchronized VisibilityField getField(int x, int y, int radius, int heightMask) {
+        Long key = ((long)(x & 0xFFFF) << 48) |
+                   ((long)(y & 0xFFFF) << 32) |
+                   ((long)(radius & 0xFFFF) << 16) |
+                   (heightMask & 0xFFFF);
+        
+        VisibilityField field = this.cache.get(key);
+        if(field != null) {
+            this.cacheHits++;
+            return field;
+        }
+        
+        this.cacheMisses++;
+        
+        field = new VisibilityField(this, x, y, radius, heightMask);
+        this.cache.put(key, field);
+        return field;
+    }
+    
+    /**
+     * @param tileX
+     * @param tileY
+     * @param x the x world coordinate
+     * @param y the y world coordinate
+     * @param heightMask
+     * @return true if the tile is visible from the point
+     */
+    private boolean calculateVisible(int tileX, int tileY, int x, int y, int heightMask) {
+        if(this.map.checkTileBounds(tileX, tileY)) {
+            return false;
+        }
+        
+        int tileWidth = this.map.getTileWidth();
+        int tileHeight = this.map.getTileHeight();
+        
+        int centerX = tileX * tileWidth + tileWidth / 2;
+        int centerY = tileY * tileHeight + tileHeight / 2;
+        
+        if(!this.map.checkBounds(x, y)) {
+            int pointX = x / tileWidth;
+            int pointY = y / tileHeight;
+            
+            int[] table = getNonEmptyCells(heightMask);
+            if(countNonEmptyCells(table, Math.min(tileX, pointX), Math.min(tileY, pointY),
+                                         Math.max(tileX, pointX), Math.max(tileY, pointY)) == 0) {
+                return true;
+            }
+        }
+        
+        return !this.map.lineCollides(centerX, centerY, x, y, heightMask);
+    }
+    
+    /**
+     * @param table
+     * @param minX
+     * @param minY
+     * @param maxX
+     * @param maxY
+     * @return the number of non-empty cells within the tile indexes, inclusive
+     */
+    private int countNonEmptyCells(int[] table, int minX, int minY, int maxX, int maxY) {
+        int width = this.map.getTileWorldWidth() + 1;
+        return table[(maxY + 1) * width + (maxX + 1)]
+             - table[(minY) * width + (maxX + 1)]
+             - table[(maxY + 1) * width + (minX)]
+             + table[(minY) * width + (minX)];
+    }
+    
+    /**
+     * @param heightMask
+     * @return the summed area table of the cells which are able to collide with the height mask, building it
+     * if need be
+     */
+    private synchronized int[] getNonEmptyCells(int heightMask) {
+        int[] table = this.nonEmptyCells.get(heightMask);
+        if(table == null) {
+            int maxX = this.map.getTileWorldWidth();
+            int maxY = this.map.getTileWorldHeight();
+            int width = maxX + 1;
+            
+            table = new int[width * (maxY + 1)];
+            for(int y = 0; y < maxY; y++) {
+                int rowCount = 0;
+                for(int x = 0; x < maxX; x++) {
+                    if(!this.map.isCellEmpty(x, y, heightMask)) {
+                        rowCount++;
+                    }
+                    
+                    table[(y + 1) * width + (x + 1)] = table[y * width + (x + 1)] + rowCount;
+                }
+            }
+            
+            this.nonEmptyCells.put(heightMask, table);
+        }
+        
+        return table;
+    }
+}
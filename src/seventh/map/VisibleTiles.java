@@ -0,0 +1,198 @@
+/*
+ * see license.txt
+ */
+package seventh.map;
+
+import seventh.math.Vector2f;
+
+/**
+ * The result of a line of sight query; a bit set over the tile indexes of a {@link Map}.  Unlike marking
+ * each {@link Tile} with {@link Tile#setMask(int)}, each caller owns its own {@link VisibleTiles}, so line of sight
+ * can be calculated for several entities at once (each with their own instance) without touching the shared
+ * {@link Tile}s.
+ *
+ * @author Tony
+ *
+ */
+public class VisibleTiles {
+    
+    private int width, height;
+    private int tileWidth, tileHeight;
+    
+    private long[] bits;
+    
+    /**
+     * The tile indexes that have been marked visible, used to quickly clear
+     * and iterate over the visible tiles
+     */
+    private int[] indexes;
+    private int size;
+    
+    /**
+     */
+    public VisibleTiles() {
+        this.bits = new long[0];
+        this.indexes = new int[0];
+    }
+    
+    /**
+     * @param map
+     */
+    public VisibleTiles(Map map) {
+        this();
+        setup(map);
+    }
+    
+    /**
+     * Prepares this for a new query against the supplied {@link Map}, this clears out any
+     * existing results
+     *
+     * @param map
+     */
+    public void setup(Map map) {
+        int width = map.getTileWorldWidth();
+        int height = map.getTileWorldHeight();
+        if(width != this.width || height != this.height) {
+            this.width = width;
+            this.height = height;
+            this.bits = new long[((width * height) + 63) / 64];
+            this.indexes = new int[64];
+            this.size = 0;
+        }
+        else {
+            clear();
+        }
+        
+        this.tileWidth = map.getTileWidth();
+        this.tileHeight = map.getTileHeight();
+    }
+    
+    /**
+     * Clears out the visible tiles
+     */
+    public void clear() {
+        for(int i = 0; i < this.size; i++) {
+            int index = this.indexes[i];
+            this.bits[index >>> 6] = 0;
+        }
+        this.size = 0;
+    }
+    
+    private boolean checkBounds(int tileX, int tileY) {
+        return tileX < 0 || tileY < 0 || tileX >= this.width || tileY >= this.height;
+    }
+    
+    /**
+     * Marks the tile as being visible
+     *
+     * @param tileX
+     * @param tileY
+     */
+    public void setVisible(int tileX, int tileY) {
+        if(checkBounds(tileX, tileY)) {
+            return;
+        }
+        
+        int index = tileY * this.width + tileX;
+        long mask = 1L << (index & 63);
+        if((this.bits[index >>> 6] & mask) == 0) {
+            this.bits[index >>> 6] |= mask;
+            
+            if(this.size >= this.indexes.length) {
+                int[] newIndexes = new int[this.indexes.length * 2];
+                System.arraycopy(this.indexes, 0, newIndexes, 0, this.size);
+                this.indexes = newIndexes;
+            }
+            
+            this.indexes[this.size++] = index;
+        }
+    }
+    
+    /**
+     * Marks the tile as not being visible
+     *
+     * @param tileX
+     * @param tileY
+     */
+    public void setInvisible(int tileX, int tileY) {
+        if(checkBounds(tileX, tileY)) {
+            return;
+        }
+        
+        int index = tileY * this.width + tileX;
+        this.bits[index >>> 6] &= ~(1L << (index & 63));
+    }
+    
+    /**
+     * @param tileX
+     * @param tileY
+     * @return true if the tile is visible
+     */
+    public boolean isVisible(int tileX, int tileY) {
+        if(checkBounds(tileX, tileY)) {
+            return false;
+        }
+        
+        int index = tileY * this.width + tileX;
+        return (this.bits[index >>> 6] & (1L << (index & 63))) != 0;
+    }
+    
+    /**
+     * @param worldX
+     * @param worldY
+     * @return true if the tile at the supplied world coordinates is visible
+     */
+    public boolean isVisibleWorld(int worldX, int worldY) {
+        if(worldX < 0 || worldY < 0 || this.tileWidth == 0 || this.tileHeight == 0) {
+            return false;
+        }
+        
+        return isVisible(worldX / this.tileWidth, worldY / this.tileHeight);
+    }
+    
+    /**
+     * The number of tiles that have been marked visible.  Tiles marked with {@link #setInvisible(int, int)}
+     * are still counted, use {@link #isVisible(int)} when iterating.
+     *
+     * @return the number of marked tiles
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * @param i the i'th marked tile
+     * @return true if the i'th marked tile is still visible
+     */
+    public boolean isVisible(int i) {
+        int index = this.indexes[i];
+        return (this.bits[index >>> 6] & (1L << (index & 63))) != 0;
+    }
+    
+    /**
+     * @param i the i'th marked tile
+     * @return the x tile index of the i'th marked tile
+     */
+    public int getTileX(int i) {
+        return this.indexes[i] % this.width;
+    }
+    
+    /**
+     * @param i the i'th marked tile
+     * @return the y tile index of the i'th marked tile
+     */
+    public int getTileY(int i) {
+        return this.indexes[i] / this.width;
+    }
+    
+    /**
+     * @param i the i'th marked tile
+     * @param result the world coordinates of the center of the i'th marked tile
+     * @return the result
+     */
+    public Vector2f getTileCenterPos(int i, Vector2f result) {
+        result.set(getTileX(i) * this.tileWidth + (this.tileWidth / 2),
+                   getTileY(i) * this.tileHeight + (this.tileHeight / 2));
+        return result;
+    }
+}
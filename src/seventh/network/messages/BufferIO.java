@@ -4,6 +4,7 @@
 package seventh.network.messages;
 
 import harenet.IOBuffer;
+import harenet.RingBuffer;
 import harenet.messages.NetMessage;
 import harenet.messages.NetMessageFactory;
 import seventh.game.PlayerClass;
@@ -128,7 +129,7 @@ public class BufferIO {
                     break;
                 case GAME_PARTIAL_STATS: message = new GamePartialStatsMessage();
                     break;
-                case GAME_UPDATE: message = new GameUpdateMessage();
+                case GAME_UPDATE: message = GameUpdateMessage.obtain();
                     break;
                 case PLAYER_CONNECTED: message = new PlayerConnectedMessage();
                     break;
@@ -150,7 +151,7 @@ public class BufferIO {
                     break;
                 case PLAYER_SWITCH_TILE: message = new PlayerSwitchTileMessage();
                     break;
-                case PLAYER_INPUT: message = new PlayerInputMessage();
+                case PLAYER_INPUT: message = PlayerInputMessage.obtain();
                     break;                    
                 case PLAYER_COMMANDER: message = new PlayerCommanderMessage();
                     break;
@@ -354,14 +355,60 @@ public class BufferIO {
         return PlayerClass.fromNet(buffer.getByteBits(3));
     }
     
+    /**
+     * The free lists of the {@link NetEntity}s read in, by entity type
+     */
+    private static final RingBuffer<NetEntity>[] entityPools = newEntityPools(Type.values().length);
+    static {
+        for(int i = 0; i < entityPools.length; i++) {
+            entityPools[i] = new RingBuffer<NetEntity>(128);
+        }
+    }
+    
+    /**
+     * @param length
+     * @return a new array of entity free lists
+     */
+    @SuppressWarnings("unchecked")
+    private static RingBuffer<NetEntity>[] newEntityPools(int length) {
+        return (RingBuffer<NetEntity>[]) new RingBuffer<?>[length];
+    }
+    
+    /**
+     * Returns a {@link NetEntity} read in by {@link #readEntity(IOBuffer)} to be reused.  Nothing
+     * may hold on to the entity afterwards.
+     * 
+     * @param entity
+     */
+    public static void releaseEntity(NetEntity entity) {
+        if(entity != null && entity.type != null) {
+            entityPools[entity.type.ordinal()].offer(entity);
+        }
+    }
+    
+    /**
+     * Reads in a {@link NetEntity}, reusing a released one of the same type if available
+     * 
+     * @param buffer
+     * @return the entity
+     */
     public static NetEntity readEntity(IOBuffer buffer) {
-        NetEntity result = null;
-        
         byte type = buffer.getByteBits(Type.numOfBits());
         /* so the entity can re-read the type */
         buffer.bitPosition(buffer.bitPosition() - Type.numOfBits());
         
         Type entType = Type.fromNet(type);
+        NetEntity result = entityPools[entType.ordinal()].poll();
+        if(result == null) {
+            result = newEntity(entType);
+        }
+        
+        result.read(buffer);
+        return result;
+    }
+    
+    private static NetEntity newEntity(Type entType) {
+        NetEntity result = null;
         switch(entType) {
             case ROCKET:
                 result = new NetRocket();
@@ -434,7 +481,6 @@ public class BufferIO {
             }
         }
         
-        result.read(buffer);
         return result;
     }
 }
@@ -4,6 +4,7 @@
 package seventh.network.messages;
 
 import harenet.IOBuffer;
+import harenet.messages.PrioritizedNetMessage;
 import seventh.game.net.NetGamePartialStats;
 
 /**
@@ -12,7 +13,7 @@ import seventh.game.net.NetGamePartialStats;
  * @author Tony
  *
  */
-public class GamePartialStatsMessage extends AbstractNetMessage {
+public class GamePartialStatsMessage extends AbstractNetMessage implements PrioritizedNetMessage {
     public NetGamePartialStats stats;
     
     /**
@@ -40,4 +41,12 @@ public class GamePartialStatsMessage extends AbstractNetMessage {
         super.write(buffer);
         stats.write(buffer);
     }
+    
+    /* (non-Javadoc)
+     * @see harenet.messages.PrioritizedNetMessage#getPriority()
+     */
+    @Override
+    public int getPriority() {
+        return LOW_PRIORITY;
+    }
 }
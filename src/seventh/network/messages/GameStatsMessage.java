@@ -4,13 +4,14 @@
 package seventh.network.messages;
 
 import harenet.IOBuffer;
+import harenet.messages.PrioritizedNetMessage;
 import seventh.game.net.NetGameStats;
 
 /**
  * @author Tony
  *
  */
-public class GameStatsMessage extends AbstractNetMessage {
+public class GameStatsMessage extends AbstractNetMessage implements PrioritizedNetMessage {
     public NetGameStats stats;
     
     /**
@@ -38,4 +39,12 @@ public class GameStatsMessage extends AbstractNetMessage {
         super.write(buffer);
         stats.write(buffer);
     }
+    
+    /* (non-Javadoc)
+     * @see harenet.messages.PrioritizedNetMessage#getPriority()
+     */
+    @Override
+    public int getPriority() {
+        return LOW_PRIORITY;
+    }
 }
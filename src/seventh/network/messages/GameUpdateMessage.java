@@ -4,13 +4,34 @@
 package seventh.network.messages;
 
 import harenet.IOBuffer;
+import harenet.RingBuffer;
+import harenet.messages.PooledNetMessage;
+import harenet.messages.PrioritizedNetMessage;
+import harenet.messages.SequencedNetMessage;
 import seventh.game.net.NetGameUpdate;
 
 /**
+ * The game update is the bulk of what a client receives, so the messages that are read in are pooled
+ * along with their {@link NetGameUpdate}.
+ * 
  * @author Tony
  *
  */
-public class GameUpdateMessage extends AbstractNetMessage {
+public class GameUpdateMessage extends AbstractNetMessage implements SequencedNetMessage, PrioritizedNetMessage, PooledNetMessage {
+    
+    private static final RingBuffer<GameUpdateMessage> pool = new RingBuffer<GameUpdateMessage>(64);
+    
+    /**
+     * @return a pooled message to be read in
+     */
+    public static GameUpdateMessage obtain() {
+        GameUpdateMessage msg = pool.poll();
+        if(msg == null) {
+            msg = new GameUpdateMessage();
+        }
+        return msg;
+    }
+    
     public NetGameUpdate netUpdate;
     
     /**
@@ -26,7 +47,9 @@ public class GameUpdateMessage extends AbstractNetMessage {
     @Override
     public void read(IOBuffer buffer) {    
         super.read(buffer);
-        netUpdate = new NetGameUpdate();
+        if(netUpdate == null) {
+            netUpdate = new NetGameUpdate();
+        }
         netUpdate.read(buffer);
     }
     
@@ -38,4 +61,30 @@ public class GameUpdateMessage extends AbstractNetMessage {
         super.write(buffer);
         netUpdate.write(buffer);
     }
+    
+    /* (non-Javadoc)
+     * @see harenet.messages.SequencedNetMessage#onPacked(int)
+     */
+    @Override
+    public void onPacked(int packetSequence) {
+        if(netUpdate != null && netUpdate.snapshot != null) {
+            netUpdate.snapshot.packetSequence = packetSequence;
+        }
+    }
+    
+    /* (non-Javadoc)
+     * @see harenet.messages.PrioritizedNetMessage#getPriority()
+     */
+    @Override
+    public int getPriority() {
+        return HIGHEST_PRIORITY;
+    }
+    
+    /* (non-Javadoc)
+     * @see harenet.messages.PooledNetMessage#release()
+     */
+    @Override
+    public void release() {
+        pool.offer(this);
+    }
 }
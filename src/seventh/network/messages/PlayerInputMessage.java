@@ -4,15 +4,71 @@
 package seventh.network.messages;
 
 import harenet.IOBuffer;
+import harenet.RingBuffer;
+import harenet.messages.PooledNetMessage;
+import harenet.messages.PrioritizedNetMessage;
 
 /**
+ * The server receives one of these from every client every frame, so the messages that are
+ * read in are pooled.
+ * 
  * @author Tony
  *
  */
-public class PlayerInputMessage extends AbstractNetMessage {
+public class PlayerInputMessage extends AbstractNetMessage implements PrioritizedNetMessage, PooledNetMessage {
+    
+    private static final RingBuffer<PlayerInputMessage> pool = new RingBuffer<PlayerInputMessage>(256);
+    
+    /**
+     * @return a pooled message to be read in
+     */
+    public static PlayerInputMessage obtain() {
+        PlayerInputMessage msg = pool.poll();
+        if(msg == null) {
+            msg = new PlayerInputMessage();
+        }
+        return msg;
+    }
+    
+    /**
+     * The max interpolation delay that can be sent, in msec
+     */
+    public static final int MAX_INTERPOLATION_DELAY = 1023;
+    private static final int INTERPOLATION_DELAY_BITS = 10;
+    
+    /**
+     * The input sequence numbers wrap around at 16 bits
+     */
+    public static final int SEQUENCE_BITS = 16;
+    public static final int SEQUENCE_MASK = (1 << SEQUENCE_BITS) - 1;
+    
+    /**
+     * Determines if an input sequence number comes after another, taking into
+     * account wrapping around
+     * 
+     * @param sequence
+     * @param other
+     * @return true if sequence is newer than other
+     */
+    public static boolean isNewerSequence(int sequence, int other) {
+        int delta = (sequence - other) & SEQUENCE_MASK;
+        return delta != 0 && delta <= (SEQUENCE_MASK >> 1);
+    }
+    
+    /**
+     * The client increments this for every input it sends, the server
+     * echoes back the latest one it has applied so that the client knows
+     * which of its predicted moves still have to be replayed
+     */
+    public int sequence;
     public int keys;
     public float orientation;
     
+    /**
+     * How far behind the latest game update (in msec) the client is rendering
+     */
+    public int interpolationDelay;
+    
     /**
      * 
      */
@@ -26,8 +82,10 @@ public class PlayerInputMessage extends AbstractNetMessage {
     @Override
     public void read(IOBuffer buffer) {    
         super.read(buffer);
+        sequence = buffer.getIntBits(SEQUENCE_BITS);
         keys = buffer.getInt();
         orientation = buffer.getFloat();
+        interpolationDelay = buffer.getIntBits(INTERPOLATION_DELAY_BITS);
     }
     
     /* (non-Javadoc)
@@ -36,7 +94,25 @@ public class PlayerInputMessage extends AbstractNetMessage {
     @Override
     public void write(IOBuffer buffer) {    
         super.write(buffer);
+        buffer.putIntBits(sequence & SEQUENCE_MASK, SEQUENCE_BITS);
         buffer.putInt(keys);
         buffer.putFloat(orientation);
+        buffer.putIntBits(Math.max(0, Math.min(MAX_INTERPOLATION_DELAY, interpolationDelay)), INTERPOLATION_DELAY_BITS);
+    }
+    
+    /* (non-Javadoc)
+     * @see harenet.messages.PrioritizedNetMessage#getPriority()
+     */
+    @Override
+    public int getPriority() {
+        return HIGHEST_PRIORITY;
+    }
+    
+    /* (non-Javadoc)
+     * @see harenet.messages.PooledNetMessage#release()
+     */
+    @Override
+    public void release() {
+        pool.offer(this);
     }
 }
@@ -4,12 +4,13 @@
 package seventh.network.messages;
 
 import harenet.IOBuffer;
+import harenet.messages.PrioritizedNetMessage;
 
 /**
  * @author Tony
  *
  */
-public class PlayerSpeechMessage extends AbstractNetMessage {
+public class PlayerSpeechMessage extends AbstractNetMessage implements PrioritizedNetMessage {
     public int playerId;
     public int posX;
     public int posY;
@@ -47,5 +48,12 @@ public class PlayerSpeechMessage extends AbstractNetMessage {
         buffer.putIntBits(posY, 13);
         buffer.putByteBits(speechCommand, 4);
     }
-
+    
+    /* (non-Javadoc)
+     * @see harenet.messages.PrioritizedNetMessage#getPriority()
+     */
+    @Override
+    public int getPriority() {
+        return HIGH_PRIORITY;
+    }
 }
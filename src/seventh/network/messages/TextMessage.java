@@ -4,12 +4,13 @@
 package seventh.network.messages;
 
 import harenet.IOBuffer;
+import harenet.messages.PrioritizedNetMessage;
 
 /**
  * @author Tony
  *
  */
-public class TextMessage extends AbstractNetMessage {
+public class TextMessage extends AbstractNetMessage implements PrioritizedNetMessage {
     public int playerId;
     public String message;
     
@@ -39,4 +40,12 @@ public class TextMessage extends AbstractNetMessage {
         BufferIO.writePlayerId(buffer, playerId);
         BufferIO.writeString(buffer, message);
     }
+    
+    /* (non-Javadoc)
+     * @see harenet.messages.PrioritizedNetMessage#getPriority()
+     */
+    @Override
+    public int getPriority() {
+        return LOWEST_PRIORITY;
+    }
 }
@@ -9,6 +9,8 @@ import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 import harenet.api.Server;
 import leola.vm.Leola;
@@ -34,7 +36,9 @@ import seventh.shared.Scripting;
 import seventh.shared.State;
 import seventh.shared.StateMachine;
 import seventh.shared.StateMachine.StateMachineListener;
+import seventh.shared.TickClock;
 import seventh.shared.TimeStep;
+import seventh.shared.TimingHistogram;
 
 
 
@@ -55,6 +59,19 @@ public class GameServer {
     private boolean isRunning;        
     private int port;
     
+    /**
+     * Park the main loop thread in between server ticks, as opposed
+     * to spinning
+     */
+    private volatile boolean parkBetweenTicks;
+    
+    /**
+     * How late each server tick starts, and how far past the
+     * tick budget each server frame runs
+     */
+    private final TimingHistogram tickJitter = new TimingHistogram("Tick jitter");
+    private final TimingHistogram tickOverrun = new TimingHistogram("Tick overrun");
+    
     private Console console;
     private final boolean isLocal;
         
@@ -278,6 +295,8 @@ public class GameServer {
         });
         
                 
+        this.parkBetweenTicks = config.isServerParkBetweenTicks();
+        
         setupServerCommands(console);        
         
         config.setServerName(settings.serverName);
@@ -551,6 +570,36 @@ public class GameServer {
             }
         });
         
+        console.addCommand(new Command("sv_parkbetweenticks") {            
+            @Override
+            public void execute(Console console, String... args) {
+                if(args.length > 0) {
+                    int enabled = Integer.parseInt(args[0]);
+                    parkBetweenTicks = enabled != 0;
+                }
+                
+                console.println("sv_parkbetweenticks: " + (parkBetweenTicks ? 1 : 0));
+            }
+        });
+        
+        console.addCommand(new Command("sv_tickstats") {            
+            @Override
+            public void execute(Console console, String... args) {
+                if(args.length > 0 && args[0].equalsIgnoreCase("reset")) {
+                    tickJitter.reset();
+                    tickOverrun.reset();
+                    console.println("Tick statistics have been reset");
+                }
+                else {
+                    console.println("\n");
+                    tickJitter.printTo(console);
+                    console.println("");
+                    tickOverrun.printTo(console);
+                    console.println("\n");
+                }
+            }
+        });
+        
         console.addCommand(new Command("sv_exit") {            
             @Override
             public void execute(Console console, String... args) {
@@ -763,16 +812,18 @@ public class GameServer {
         Cons.println("*** Listening on port: " + port + " ***");
         
         try {
-            long currentTime = System.currentTimeMillis();
-            long accumalator = 0;
-
-            long gameClock = 0;
-            
             final int maxIterations = 5;
             final long maxDelta = 250;
             final long frameRate = Math.abs(serverContext.getConfig().getServerFrameRate());
             final long dt = 1000 / frameRate == 0 ? 20 : frameRate;
+            
+            final long dtNanos = TimeUnit.MILLISECONDS.toNanos(dt);
+            final long maxDeltaNanos = TimeUnit.MILLISECONDS.toNanos(maxDelta);
+            
+            final TickClock clock = new TickClock(dtNanos, maxDeltaNanos, maxIterations, System.nanoTime());
 
+            long gameClock = 0;
+            
             final TimeStep timeStep = new TimeStep();
             timeStep.setDeltaTime(dt);
             timeStep.setGameClock(gameClock);
@@ -780,27 +831,32 @@ public class GameServer {
             // flush pending console commands
             updateConsole(timeStep);
                         
-            while(this.isRunning) {                            
-                long newTime = System.currentTimeMillis();
-                long deltaTime = newTime - currentTime;
-
-                if(deltaTime > maxDelta) {
-                    deltaTime = maxDelta;
+            while(this.isRunning) {
+                
+                /* rather than burning a core spinning, park until the next tick is due */
+                long nextTickTime = clock.getNextTickTime();
+                if(this.parkBetweenTicks) {
+                    long remaining = nextTickTime - System.nanoTime();
+                    while(remaining > 0 && this.isRunning) {
+                        LockSupport.parkNanos(remaining);
+                        remaining = nextTickTime - System.nanoTime();
+                    }
                 }
-                                
-                if ( deltaTime >= dt ) {
-                    currentTime = newTime;
-
-                    accumalator += deltaTime;
-                    int iteration = 0;
-                    while( accumalator >= dt && iteration < maxIterations) {
+                
+                long newTime = System.nanoTime();
+                int frames = clock.tick(newTime);
+                if ( frames > 0 ) {
+                    this.tickJitter.record(newTime - nextTickTime);
+                    
+                    for(int iteration = 0; iteration < frames; iteration++) {
                         timeStep.setDeltaTime(dt);
-                        timeStep.setGameClock(gameClock);                        
-                        serverFrame(sm, timeStep);                        
+                        timeStep.setGameClock(gameClock);
+                        
+                        long frameStart = System.nanoTime();
+                        serverFrame(sm, timeStep);
+                        this.tickOverrun.record(System.nanoTime() - frameStart - dtNanos);
 
                         gameClock += dt;
-                        accumalator -= dt;
-                        iteration++;
                     }
                 }                        
             }
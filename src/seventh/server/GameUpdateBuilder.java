@@ -0,0 +1,247 @@
+/*
+ * see license.txt
+ */
+package seventh.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import harenet.IOBuffer;
+import seventh.game.Game;
+import seventh.game.ViewBuffers;
+import seventh.game.net.NetGameUpdate;
+import seventh.game.net.NetSnapshot;
+import seventh.game.net.NetSnapshotHistory;
+import seventh.shared.Cons;
+
+/**
+ * Builds the {@link NetGameUpdate} for each client.  The game updates can either be built
+ * on the game thread, one client after another, or spread across a pool of worker threads.  When using
+ * the worker threads, the game thread also builds updates and waits until every update has been
+ * built, so the {@link Game} is never modified while the updates are being built.
+ *
+ * <p>
+ * Each worker owns its own {@link ViewBuffers} and delta compression buffers, the only shared state
+ * is the game itself, which is read only once {@link Game#prepareNetGameUpdates()} has been invoked.
+ *
+ * @author Tony
+ *
+ */
+public class GameUpdateBuilder {
+    
+    /**
+     * The working buffers of a thread building game updates
+     *
+     * @author Tony
+     *
+     */
+    private static class Worker {
+        final ViewBuffers buffers;
+        final IOBuffer entityBuffer;
+        final IOBuffer snapshotBuffer;
+        
+        Worker() {
+            this.buffers = new ViewBuffers();
+            this.entityBuffer = IOBuffer.Factory.allocate(256);
+            this.snapshotBuffer = IOBuffer.Factory.allocate(NetSnapshot.WORKING_BUFFER_SIZE);
+        }
+    }
+    
+    private final Game game;
+    
+    private ExecutorService pool;
+    private Worker[] workers;
+    private int numberOfThreads;
+    
+    private List<RemoteClient> clients;
+    private NetGameUpdate[] updates;
+    private boolean deltaSnapshots;
+    
+    private final AtomicInteger nextClient;
+    private final List<Future<?>> futures;
+    
+    /**
+     * @param game
+     * @param numberOfThreads the number of worker threads, if 0 all of the
+     * game updates are built on the game thread
+     */
+    public GameUpdateBuilder(Game game, int numberOfThreads) {
+        this.game = game;
+        this.clients = new ArrayList<RemoteClient>();
+        this.updates = new NetGameUpdate[0];
+        this.nextClient = new AtomicInteger();
+        this.futures = new ArrayList<Future<?>>();
+        
+        setNumberOfThreads(numberOfThreads);
+    }
+    
+    /**
+     * Sets the number of worker threads, this will replace the existing worker threads.
+     *
+     * @param numberOfThreads the number of worker threads, if 0 all of the
+     * game updates are built on the game thread
+     */
+    public void setNumberOfThreads(int numberOfThreads) {
+        shutdown();
+        
+        this.numberOfThreads = Math.max(0, numberOfThreads);
+        
+        /* the game thread gets a worker too */
+        this.workers = new Worker[this.numberOfThreads + 1];
+        for(int i = 0; i < this.workers.length; i++) {
+            this.workers[i] = new Worker();
+        }
+        
+        if(this.numberOfThreads > 0) {
+            this.pool = Executors.newFixedThreadPool(this.numberOfThreads, new ThreadFactory() {
+                private int threadId;
+                
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "net-update-worker-" + (threadId++));
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
+    
+    /**
+     * @return the number of worker threads
+     */
+    public int getNumberOfThreads() {
+        return numberOfThreads;
+    }
+    
+    /**
+     * Shuts down the worker threads
+     */
+    public void shutdown() {
+        if(this.pool != null) {
+            this.pool.shutdownNow();
+            this.pool = null;
+        }
+    }
+    
+    /**
+     * Builds the game update for each of the supplied clients.  This must be invoked from the game thread, after
+     * {@link Game#prepareNetGameUpdates()}.
+     *
+     * @param clients the clients to build the game updates for
+     * @param deltaSnapshots if the game updates should be delta compressed
+     */
+    public void buildUpdates(List<RemoteClient> clients, boolean deltaSnapshots) {
+        this.clients = clients;
+        this.deltaSnapshots = deltaSnapshots;
+        
+        int numberOfClients = clients.size();
+        if(this.updates.length < numberOfClients) {
+            this.updates = new NetGameUpdate[numberOfClients];
+        }
+        
+        this.nextClient.set(0);
+        
+        int numberOfTasks = Math.min(this.workers.length, numberOfClients);
+        for(int i = 1; i < numberOfTasks; i++) {
+            final Worker worker = this.workers[i];
+            this.futures.add(this.pool.submit(new Runnable() {
+                
+                @Override
+                public void run() {
+                    buildUpdates(worker);
+                }
+            }));
+        }
+        
+        buildUpdates(this.workers[0]);
+        
+        for(int i = 0; i < this.futures.size(); i++) {
+            try {
+                this.futures.get(i).get();
+            }
+            catch(Exception e) {
+                Cons.println("*** Error waiting for game updates to be built: " + e);
+            }
+        }
+        
+        this.futures.clear();
+    }
+    
+    /**
+     * @param index the index of the client passed into {@link #buildUpdates(List, boolean)}
+     * @return the game update for the client, or null if there isn't one
+     */
+    public NetGameUpdate getUpdate(int index) {
+        NetGameUpdate netUpdate = this.updates[index];
+        this.updates[index] = null;
+        return netUpdate;
+    }
+    
+    /**
+     * Takes the next client until there are no more clients
+     *
+     * @param worker
+     */
+    private void buildUpdates(Worker worker) {
+        int numberOfClients = this.clients.size();
+        int index = 0;
+        while( (index = this.nextClient.getAndIncrement()) < numberOfClients) {
+            RemoteClient client = this.clients.get(index);
+            try {
+                NetGameUpdate netUpdate = this.game.getNetGameUpdateFor(client.getId(), worker.buffers);
+                if(netUpdate != null && this.deltaSnapshots) {
+                    deltaCompress(worker, client, netUpdate);
+                }
+                
+                this.updates[index] = netUpdate;
+            }
+            catch(Exception e) {
+                Cons.println("*** Error building game update for client: " + e);
+                this.updates[index] = null;
+            }
+        }
+    }
+    
+    /**
+     * Delta compresses the entities of the game update against the most recent
+     * snapshot the client has acknowledged receiving.  If the snapshot is unable to
+     * be compressed, the game update is left as a full update.
+     *
+     * @param worker
+     * @param client
+     * @param netUpdate
+     */
+    private void deltaCompress(Worker worker, RemoteClient client, NetGameUpdate netUpdate) {
+        NetSnapshotHistory history = client.getSnapshotHistory();
+        
+        NetSnapshot snapshot = history.nextSnapshot();
+        if(!snapshot.record(netUpdate.entities, worker.entityBuffer)) {
+            history.recycle(snapshot);
+            return;
+        }
+        
+        NetSnapshot base = history.getDeltaBase(snapshot.id, client.getConnection());
+        if(!snapshot.encodeDelta(base, worker.snapshotBuffer)) {
+            history.recycle(snapshot);
+            return;
+        }
+        
+        /* 
+         * the replaced snapshot is reused once it has been packed, by then its game
+         * update has long since been written out; one that was never sent may still
+         * be queued up, so it is left alone
+         */
+        NetSnapshot replaced = history.add(snapshot);
+        if(replaced != null && replaced.packetSequence > -1) {
+            history.recycle(replaced);
+        }
+        
+        netUpdate.snapshot = snapshot;
+        netUpdate.baseAge = NetSnapshotHistory.baseAge(snapshot.id, base);
+    }
+}
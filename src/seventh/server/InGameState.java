@@ -4,6 +4,8 @@
 package seventh.server;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import harenet.api.Connection;
 import seventh.game.Game;
@@ -110,6 +112,10 @@ public class InGameState implements State {
 
     private boolean gameEnded;
     private boolean calculatePing;
+    private boolean deltaSnapshots;
+    
+    private GameUpdateBuilder updateBuilder;
+    private List<RemoteClient> readyClients;
     
     private GameStatsMessage statsMessage;
     private GamePartialStatsMessage partialStatsMessage;
@@ -147,6 +153,12 @@ public class InGameState implements State {
         this.nextGameStatUpdate = 2_000; // first big update, wait only 2 seconds
         this.nextGamePartialStatUpdate = this.netPartialStatDelay;
         this.nextGameUpdate = this.netUpdateRate;
+        
+        this.game.setLagCompensation(config.getServerLagCompensationMaxRewind(), config.getServerFrameRate());
+        
+        this.deltaSnapshots = config.isServerNetDeltaSnapshots();
+        this.updateBuilder = new GameUpdateBuilder(this.game, config.getServerNetUpdateThreads());
+        this.readyClients = new ArrayList<RemoteClient>();
                 
         this.statsMessage = new GameStatsMessage();
         this.partialStatsMessage = new GamePartialStatsMessage();
@@ -156,7 +168,7 @@ public class InGameState implements State {
             @Override
             public void onRemoteClient(RemoteClient client) {
                 if(client.isReady()) {            
-                    sendGameUpdateMessage(client.getId());
+                    readyClients.add(client);
                 }
                 
                 if(calculatePing) {
@@ -399,6 +411,32 @@ public class InGameState implements State {
             }
         });
         
+        this.serverContext.getConsole().addCommand(new Command("sv_netdeltasnapshots") {
+            
+            @Override
+            public void execute(Console console, String... args) {
+                if(args.length > 0) {
+                    int enabled = Integer.parseInt(args[0]);
+                    deltaSnapshots = enabled != 0;
+                }
+                
+                console.println("sv_netdeltasnapshots: " + (deltaSnapshots ? 1 : 0));                
+            }
+        });
+        
+        this.serverContext.getConsole().addCommand(new Command("sv_netupdatethreads") {
+            
+            @Override
+            public void execute(Console console, String... args) {
+                if(args.length > 0) {
+                    int numberOfThreads = Integer.parseInt(args[0]);
+                    updateBuilder.setNumberOfThreads(numberOfThreads);
+                }
+                
+                console.println("sv_netupdatethreads: " + updateBuilder.getNumberOfThreads());                
+            }
+        });
+        
         this.gameEnded = false;
         this.gameEndTime = 0;
                         
@@ -425,6 +463,9 @@ public class InGameState implements State {
     public void exit() {        
         this.gameSession.destroy();        
         this.serverContext.getConsole().removeCommand("sv_fow");
+        this.serverContext.getConsole().removeCommand("sv_netdeltasnapshots");
+        this.serverContext.getConsole().removeCommand("sv_netupdatethreads");
+        this.updateBuilder.shutdown();
     }
     
     /* (non-Javadoc)
@@ -467,8 +508,21 @@ public class InGameState implements State {
     private void sendClientGameUpdates(TimeStep timeStep) {
         this.nextGameUpdate -= timeStep.getDeltaTime();        
         if(this.nextGameUpdate <= 0) {
+            this.game.prepareNetGameUpdates();
+            
+            this.readyClients.clear();
             this.clients.foreach(this.clientIterator);
             
+            /* the game updates may be built in parallel, but
+             * are always sent in client order
+             */
+            this.updateBuilder.buildUpdates(this.readyClients, this.deltaSnapshots);            
+            for(int i = 0; i < this.readyClients.size(); i++) {
+                sendGameUpdateMessage(this.readyClients.get(i).getId(), this.updateBuilder.getUpdate(i));
+            }
+            
+            this.readyClients.clear();
+            
             this.nextGameUpdate = this.netUpdateRate;
         }
     }
@@ -501,11 +555,10 @@ public class InGameState implements State {
      * Sends a game update to the client
      * 
      * @param clientId
+     * @param netUpdate
      */
-    private void sendGameUpdateMessage(int clientId) {
-        NetGameUpdate netUpdate = this.game.getNetGameUpdateFor(clientId);
+    private void sendGameUpdateMessage(int clientId, NetGameUpdate netUpdate) {
         if(netUpdate != null) {
-            
             GameUpdateMessage updateMessage = new GameUpdateMessage();
             updateMessage.netUpdate = netUpdate;
                         
@@ -5,6 +5,7 @@ package seventh.server;
 
 import harenet.api.Connection;
 import seventh.game.Player;
+import seventh.game.net.NetSnapshotHistory;
 
 
 
@@ -23,6 +24,8 @@ public class RemoteClient {
     private long rconToken;
     private boolean isRconAuthenticated;
     
+    private NetSnapshotHistory snapshotHistory;
+    
     /**
      * @param network
      */
@@ -33,6 +36,15 @@ public class RemoteClient {
         
         this.rconToken = ServerContext.INVALID_RCON_TOKEN;
         this.isRconAuthenticated = false;
+        
+        this.snapshotHistory = new NetSnapshotHistory();
+    }
+    
+    /**
+     * @return the history of game update snapshots sent to this client
+     */
+    public NetSnapshotHistory getSnapshotHistory() {
+        return snapshotHistory;
     }
     
     /**
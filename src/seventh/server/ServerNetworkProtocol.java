@@ -328,6 +328,11 @@ public class ServerNetworkProtocol extends NetworkProtocol implements GameSessio
      */
     @Override
     public void receivePlayerInputMessage(Connection conn, PlayerInputMessage msg) {        
+        RemoteClient client = this.clients.getClient(conn.getId());
+        if(client != null) {
+            client.getPlayer().setViewDelay(conn.getReturnTripTime() + msg.interpolationDelay);
+        }
+        
         this.game.applyPlayerInput(conn.getId(), msg);
     }
     
@@ -226,10 +226,58 @@ public class ServerSeventhConfig extends SeventhConfig {
         this.config.set(fps, "sv_framerate");
     }
     
+    /**
+     * @return true if the main server loop should park the thread in between
+     * server ticks, false if it should spin
+     */
+    public boolean isServerParkBetweenTicks() {
+        return this.config.getBool(true, "sv_parkbetweenticks");
+    }
+    
+    public void setServerParkBetweenTicks(boolean parkBetweenTicks) {
+        this.config.set(LeoObject.valueOf(parkBetweenTicks), "sv_parkbetweenticks");
+    }
+    
     public int getServerNetUpdateRate() {
         return this.config.getInt(20, "sv_netupdaterate");
     }
     
+    /**
+     * @return true if game updates should be delta compressed against the last
+     * snapshot the client acknowledged
+     */
+    public boolean isServerNetDeltaSnapshots() {
+        return this.config.getBool(false, "sv_netdeltasnapshots");
+    }
+    
+    public void setServerNetDeltaSnapshots(boolean deltaSnapshots) {
+        this.config.set(LeoObject.valueOf(deltaSnapshots), "sv_netdeltasnapshots");
+    }
+    
+    /**
+     * @return the number of worker threads used to build the game updates for 
+     * the clients, if 0 the game updates are built on the game thread
+     */
+    public int getServerNetUpdateThreads() {
+        return this.config.getInt(0, "sv_netupdatethreads");
+    }
+    
+    public void setServerNetUpdateThreads(int numberOfThreads) {
+        this.config.set(LeoObject.valueOf(numberOfThreads), "sv_netupdatethreads");
+    }
+    
+    /**
+     * @return the max amount of time (in msec) the server rewinds the players by when
+     * checking a remote player's shots, 0 disables lag compensation
+     */
+    public int getServerLagCompensationMaxRewind() {
+        return this.config.getInt(500, "sv_lagcompensationmaxrewind");
+    }
+    
+    public void setServerLagCompensationMaxRewind(int maxRewind) {
+        this.config.set(LeoObject.valueOf(maxRewind), "sv_lagcompensationmaxrewind");
+    }
+    
     public int getServerNetFullStatDelay() {
         return this.config.getInt(20_000, "sv_netfullstatdelay");
     }
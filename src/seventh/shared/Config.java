@@ -8,9 +8,11 @@ import java.io.DataOutput;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.file.Files;
 import java.util.Map;
 
 import harenet.NetConfig;
+import harenet.PacketCodec;
 import leola.vm.Leola;
 import leola.vm.types.LeoArray;
 import leola.vm.types.LeoMap;
@@ -96,6 +98,27 @@ public class Config {
             if(useDirectBuffers != null) {
                 this.netConfig.setUseDirectBuffers(LeoObject.isTrue(useDirectBuffers));
             }
+            
+            LeoObject bandwidthLimit = netMap.getByString("bandwidth_limit");
+            if(bandwidthLimit != null && bandwidthLimit.isNumber()) {
+                this.netConfig.setBandwidthLimit(bandwidthLimit.asInt());
+            }
+            
+            LeoObject packetDictionary = netMap.getByString("packet_dictionary");
+            if(packetDictionary != null && !LeoObject.isNull(packetDictionary)) {
+                this.netConfig.setPacketDictionary(Files.readAllBytes(new File(packetDictionary.toString()).toPath()));
+                this.netConfig.setPacketCodec(PacketCodec.DICTIONARY);
+            }
+            
+            LeoObject ioBatchSize = netMap.getByString("io_batch_size");
+            if(ioBatchSize != null && ioBatchSize.isNumber()) {
+                this.netConfig.setIOBatchSize(ioBatchSize.asInt());
+            }
+            
+            LeoObject packetCapture = netMap.getByString("packet_capture");
+            if(packetCapture != null && !LeoObject.isNull(packetCapture)) {
+                this.netConfig.setPacketCaptureFile(new File(packetCapture.toString()));
+            }
         }
     }
     
@@ -14,6 +14,10 @@ import java.util.List;
 
 import seventh.map.Map;
 import seventh.map.Tile;
+import seventh.map.TileVisibility;
+import seventh.map.TileVisibility.VisibilityField;
+import seventh.map.VisibleTiles;
+import seventh.math.Rectangle;
 import seventh.math.Vector2f;
 
 /**
@@ -39,7 +43,31 @@ public class Geom {
     }
     
     /**
-     * Utility function for calculating entity line of sight
+     * Retrieves the {@link VisibilityField} for an entity standing at the supplied position.  The view 
+     * circle is pushed out in the facing direction, so the visibility field must reach the far side of it;
+     * the facing is applied by the view circle, which allows the field to be shared regardless of which 
+     * way the entity is facing.
+     * 
+     * @param pos
+     * @param radius
+     * @param map
+     * @param heightMask
+     * @return the {@link VisibilityField}
+     */
+    private static VisibilityField getVisibilityField(Vector2f pos, int radius, Map map, int heightMask) {
+        int tileSize = Math.min(map.getTileWidth(), map.getTileHeight());
+        int fieldRadius = (radius * 2 + tileSize - 1) / tileSize + 1;
+        
+        return map.getTileVisibility().getField((int)pos.x, (int)pos.y, fieldRadius, heightMask);
+    }
+    
+    /**
+     * Utility function for calculating entity line of sight.  A tile is visible if the line from the center
+     * of the tile to the entity's position does not collide, see {@link TileVisibility}.
+     * 
+     * <p>
+     * NOTE: This marks the shared {@link Tile}s, which is only appropriate for rendering; server side line 
+     * of sight should use {@link #calculateLineOfSight(VisibleTiles, Vector2f, Vector2f, int, Map, int)}
      * 
      * @param tiles
      * @param pos
@@ -54,24 +82,95 @@ public class Geom {
         float fy = facing.y * radius + (facing.y * -64);
         
         tiles = map.getTilesInCircle((int)(pos.x + fx), (int)(pos.y + fy), radius, tiles);
-        Vector2f tilePos = cache; // avoid allocation
+        
+        VisibilityField field = getVisibilityField(pos, radius, map, heightMask);
         
         int size = tiles.size();
         for(int i = 0; i < size; i++) {
             Tile tile = tiles.get(i);            
-            tilePos.set(tile.getX() + (tile.getWidth()/2), tile.getY() + (tile.getHeight()/2));
-            //tilePos.set(tile.getX(), tile.getY());
-            if(map.lineCollides(tilePos, pos, heightMask) /*|| map.lineCollides(pos, tilePos)*/) {
-                tile.setMask(TILE_INVISIBLE);
+            if(field.isVisible(tile.getXIndex(), tile.getYIndex())) {
+                tile.setMask(TILE_VISIBLE);
             }
             else {
-                tile.setMask(TILE_VISIBLE);
+                tile.setMask(TILE_INVISIBLE);
             }
         
         }
         return tiles;
     }
     
+    /**
+     * Utility function for calculating entity line of sight.  This produces the same visible tiles as 
+     * {@link #calculateLineOfSight(List, Vector2f, Vector2f, int, Map, int, Vector2f)}, but stores them
+     * in the caller's {@link VisibleTiles} rather than marking the shared {@link Tile}s.
+     * 
+     * @param result the visible tiles, this is cleared out first
+     * @param pos
+     * @param facing
+     * @param radius
+     * @param map
+     * @param heightMask
+     * @return the result
+     */
+    public static VisibleTiles calculateLineOfSight(VisibleTiles result, Vector2f pos, Vector2f facing, int radius, Map map, int heightMask) {
+        result.setup(map);
+        
+        float fx = facing.x * radius + (facing.x * -64);
+        float fy = facing.y * radius + (facing.y * -64);
+        
+        int centerX = (int)(pos.x + fx);
+        int centerY = (int)(pos.y + fy);
+        
+        VisibilityField field = getVisibilityField(pos, radius, map, heightMask);
+        
+        int tileWidth = map.getTileWidth();
+        int tileHeight = map.getTileHeight();
+        
+        /* visits the same tiles as Map.getTilesInCircle */
+        int length = (radius * 2) + 1;
+        for(int y = centerY - (length / 2); y <= (centerY + (length / 2)); y += tileHeight) {
+            for(int x = centerX - (length / 2); x <= (centerX + (length / 2)); x += tileWidth) {
+                if(!map.checkBounds(x, y)) {
+                    int tileX = x / tileWidth;
+                    int tileY = y / tileHeight;
+                    if(map.getTile(0, tileX, tileY) != null && field.isVisible(tileX, tileY)) {
+                        result.setVisible(tileX, tileY);
+                    }
+                }
+            }
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Calculates the area that {@link #calculateLineOfSight(VisibleTiles, Vector2f, Vector2f, int, Map, int)} visits, any
+     * point outside of it is never visible.
+     * 
+     * @param result the out parameter
+     * @param pos
+     * @param facing
+     * @param radius
+     * @param map
+     * @return the same instance as result, just returned for convenience
+     */
+    public static Rectangle getLineOfSightBounds(Rectangle result, Vector2f pos, Vector2f facing, int radius, Map map) {
+        float fx = facing.x * radius + (facing.x * -64);
+        float fy = facing.y * radius + (facing.y * -64);
+        
+        int centerX = (int)(pos.x + fx);
+        int centerY = (int)(pos.y + fy);
+        
+        int tileWidth = map.getTileWidth();
+        int tileHeight = map.getTileHeight();
+        
+        /* the visited points are within the radius of the center, and their tiles
+         * reach out at most one tile further */
+        result.set(centerX - radius - tileWidth, centerY - radius - tileHeight, 
+                  (radius + tileWidth) * 2 + 1, (radius + tileHeight) * 2 + 1);
+        return result;
+    }
+    
     public static List<Tile> addFadeEffect(Map map, List<Tile> tiles) {
         int size = tiles.size();
                 
@@ -3,14 +3,15 @@
  */
 package seventh.shared;
 
+import harenet.RingBuffer;
+import harenet.RingQueue;
 import harenet.api.Connection;
 import harenet.api.ConnectionListener;
 import harenet.api.Endpoint;
 import harenet.messages.NetMessage;
+import harenet.messages.PooledNetMessage;
 
 import java.io.IOException;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
 
 
 
@@ -27,20 +28,19 @@ public abstract class NetworkProtocol implements ConnectionListener {
     }
     
     
-    private class InboundMessage {
+    /**
+     * The number of messages that can be queued up between the network thread and 
+     * the game thread before the queue has to allocate
+     */
+    private static final int INBOUND_RING_SIZE = 1024;
+    
+    private static class InboundMessage {
         Connection conn;
         NetMessage msg;
-        /**
-         * @param conn
-         * @param msg
-         */
-        public InboundMessage(Connection conn, NetMessage msg) {            
-            this.conn = conn;
-            this.msg = msg;
-        }                
     }
     
-    private Queue<InboundMessage> messageQ;
+    private RingQueue<InboundMessage> messageQ;
+    private RingBuffer<InboundMessage> freeMessages;
     private Endpoint endpoint;    
     
     /**
@@ -48,7 +48,11 @@ public abstract class NetworkProtocol implements ConnectionListener {
      */
     public NetworkProtocol(Endpoint endpoint) {
         this.endpoint = endpoint;
-        this.messageQ = new ConcurrentLinkedQueue<InboundMessage>();
+        this.messageQ = new RingQueue<InboundMessage>(INBOUND_RING_SIZE);
+        this.freeMessages = new RingBuffer<InboundMessage>(INBOUND_RING_SIZE);
+        for(int i = 0; i < INBOUND_RING_SIZE; i++) {
+            this.freeMessages.offer(new InboundMessage());
+        }
     }
 
 
@@ -67,7 +71,14 @@ public abstract class NetworkProtocol implements ConnectionListener {
     }
     
     protected void queueInboundMessage(Connection conn, NetMessage msg) {
-        this.messageQ.add(new InboundMessage(conn, msg));
+        InboundMessage p = this.freeMessages.poll();
+        if(p == null) {
+            p = new InboundMessage();
+        }
+        
+        p.conn = conn;
+        p.msg = msg;
+        this.messageQ.add(p);
     }
     
     /**
@@ -93,7 +104,9 @@ public abstract class NetworkProtocol implements ConnectionListener {
     protected abstract void processMessage(Connection conn, NetMessage message) throws IOException;
     
     /**
-     * Reads/writes to the network buffers
+     * Reads/writes to the network buffers.  Once processed, any {@link PooledNetMessage}s
+     * are released back to their pools.
+     * 
      * @param timeStep
      */
     public void updateNetwork(TimeStep timeStep) {        
@@ -101,11 +114,24 @@ public abstract class NetworkProtocol implements ConnectionListener {
         while(!this.messageQ.isEmpty() && maxMessage > 0) {
             maxMessage--;
             InboundMessage p = this.messageQ.poll();
+            if(p == null) {
+                break;
+            }
+            
             try {
                 processMessage(p.conn, p.msg);
             } catch (IOException e) {
                 Cons.println("Failed to send message: " + e);
             }
+            finally {
+                if(p.msg instanceof PooledNetMessage) {
+                    ((PooledNetMessage)p.msg).release();
+                }
+                
+                p.conn = null;
+                p.msg = null;
+                this.freeMessages.offer(p);
+            }
         }
     }
     
@@ -0,0 +1,82 @@
+/*
+ * see license.txt
+ */
+package seventh.shared;
+
+/**
+ * Keeps time for a fixed time step loop, in nanoseconds.  A tick is due once a full time step has passed since
+ * the last tick, which is also the deadline ({@link #getNextTickTime()}) a loop may sleep until; so a loop that
+ * waits until the deadline runs exactly one iteration per tick.  When the loop falls behind, each tick catches up
+ * on at most a maximum number of frames.
+ *
+ * @author Tony
+ *
+ */
+public class TickClock {
+    
+    private final long dtNanos;
+    private final long maxDeltaNanos;
+    private final int maxIterations;
+    
+    private long currentTime;
+    private long accumalator;
+    
+    /**
+     * @param dtNanos the time step, in nano seconds
+     * @param maxDeltaNanos the most time a single tick will catch up on, in nano seconds
+     * @param maxIterations the most frames a single tick will run
+     * @param startTime the current time, in nano seconds
+     */
+    public TickClock(long dtNanos, long maxDeltaNanos, int maxIterations, long startTime) {
+        this.dtNanos = dtNanos;
+        this.maxDeltaNanos = maxDeltaNanos;
+        this.maxIterations = maxIterations;
+        this.currentTime = startTime;
+    }
+    
+    /**
+     * @return the time step, in nano seconds
+     */
+    public long getDeltaTimeNanos() {
+        return dtNanos;
+    }
+    
+    /**
+     * @return the time at which the next tick is due, in nano seconds
+     */
+    public long getNextTickTime() {
+        return this.currentTime + this.dtNanos;
+    }
+    
+    /**
+     * @param now the current time, in nano seconds
+     * @return true if a tick is due
+     */
+    public boolean isTickDue(long now) {
+        return now - this.currentTime >= this.dtNanos;
+    }
+    
+    /**
+     * Starts a tick, if one is due
+     *
+     * @param now the current time, in nano seconds
+     * @return the number of frames to run for this tick, 0 if a tick is not due
+     */
+    public int tick(long now) {
+        if(!isTickDue(now)) {
+            return 0;
+        }
+        
+        long deltaTime = Math.min(now - this.currentTime, this.maxDeltaNanos);
+        this.currentTime = now;
+        this.accumalator += deltaTime;
+        
+        int frames = 0;
+        while(this.accumalator >= this.dtNanos && frames < this.maxIterations) {
+            this.accumalator -= this.dtNanos;
+            frames++;
+        }
+        
+        return frames;
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * see license.txt
+ */
+package seventh.shared;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A fixed bucket histogram of durations, recorded in nanoseconds and reported in milliseconds.  The buckets
+ * are upper bounds (exclusive), the last bucket catches everything above the largest bound.
+ *
+ * <p>
+ * NOTE: This is not thread safe; it is expected that one thread records samples.  Reading from another thread
+ * may see slightly stale values, which is fine for reporting.
+ *
+ * @author Tony
+ *
+ */
+public class TimingHistogram {
+    
+    /**
+     * Default bucket bounds, in microseconds
+     */
+    public static final long[] DEFAULT_BOUNDS_MICROS = {
+        100, 250, 500, 1000, 2000, 5000, 10000, 20000, 50000, 100000
+    };
+    
+    private final String name;
+    private final long[] boundsNanos;
+    private final long[] counts;
+    
+    private long numberOfSamples;
+    private long totalNanos;
+    private long maxNanos;
+    
+    /**
+     * @param name the name of this histogram
+     * @param boundsMicros the upper bound of each bucket in microseconds, in ascending order
+     */
+    public TimingHistogram(String name, long[] boundsMicros) {
+        this.name = name;
+        this.boundsNanos = new long[boundsMicros.length];
+        for(int i = 0; i < boundsMicros.length; i++) {
+            if(i > 0 && boundsMicros[i] <= boundsMicros[i-1]) {
+                throw new IllegalArgumentException("Bucket bounds must be in ascending order");
+            }
+            
+            this.boundsNanos[i] = TimeUnit.MICROSECONDS.toNanos(boundsMicros[i]);
+        }
+        
+        this.counts = new long[boundsMicros.length + 1];
+    }
+    
+    /**
+     * @param name the name of this histogram
+     */
+    public TimingHistogram(String name) {
+        this(name, DEFAULT_BOUNDS_MICROS);
+    }
+    
+    /**
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Records a sample, negative values are recorded as zero
+     *
+     * @param nanos the duration in nanoseconds
+     */
+    public void record(long nanos) {
+        if(nanos < 0) {
+            nanos = 0;
+        }
+        
+        int bucket = 0;
+        while(bucket < this.boundsNanos.length && nanos >= this.boundsNanos[bucket]) {
+            bucket++;
+        }
+        
+        this.counts[bucket]++;
+        this.numberOfSamples++;
+        this.totalNanos += nanos;
+        if(nanos > this.maxNanos) {
+            this.maxNanos = nanos;
+        }
+    }
+    
+    /**
+     * Clears out all of the recorded samples
+     */
+    public void reset() {
+        for(int i = 0; i < this.counts.length; i++) {
+            this.counts[i] = 0;
+        }
+        
+        this.numberOfSamples = 0;
+        this.totalNanos = 0;
+        this.maxNanos = 0;
+    }
+    
+    /**
+     * @return the number of buckets
+     */
+    public int getNumberOfBuckets() {
+        return this.counts.length;
+    }
+    
+    /**
+     * @param bucket
+     * @return the number of samples in the supplied bucket
+     */
+    public long getCount(int bucket) {
+        return this.counts[bucket];
+    }
+    
+    /**
+     * @return the numberOfSamples
+     */
+    public long getNumberOfSamples() {
+        return numberOfSamples;
+    }
+    
+    /**
+     * @return the largest sample in milliseconds
+     */
+    public double getMaxMsec() {
+        return this.maxNanos / 1000000.0;
+    }
+    
+    /**
+     * @return the average sample in milliseconds
+     */
+    public double getAverageMsec() {
+        if(this.numberOfSamples == 0) {
+            return 0;
+        }
+        return (this.totalNanos / (double)this.numberOfSamples) / 1000000.0;
+    }
+    
+    /**
+     * Approximates the percentile by returning the upper bound of the bucket that contains it.  If the
+     * percentile falls in the last (unbounded) bucket, the max sample is returned.
+     *
+     * @param percentile a value between 0 and 1
+     * @return the approximated percentile in milliseconds
+     */
+    public double getPercentileMsec(double percentile) {
+        if(this.numberOfSamples == 0) {
+            return 0;
+        }
+        
+        long threshold = (long)Math.ceil(this.numberOfSamples * percentile);
+        long tally = 0;
+        for(int i = 0; i < this.boundsNanos.length; i++) {
+            tally += this.counts[i];
+            if(tally >= threshold) {
+                return this.boundsNanos[i] / 1000000.0;
+            }
+        }
+        
+        return getMaxMsec();
+    }
+    
+    /**
+     * Prints out the histogram
+     *
+     * @param console
+     */
+    public void printTo(Console console) {
+        console.printf("%s: samples: %d avg: %.3f ms p99: %.3f ms max: %.3f ms\n"
+                , this.name, this.numberOfSamples, getAverageMsec(), getPercentileMsec(0.99), getMaxMsec());
+        
+        long lower = 0;
+        for(int i = 0; i < this.counts.length; i++) {
+            if(i < this.boundsNanos.length) {
+                console.printf("\t%8.3f - %8.3f ms: %d\n", lower / 1000000.0, this.boundsNanos[i] / 1000000.0, this.counts[i]);
+                lower = this.boundsNanos[i];
+            }
+            else {
+                console.printf("\t%8.3f+           ms: %d\n", lower / 1000000.0, this.counts[i]);
+            }
+        }
+    }
+}
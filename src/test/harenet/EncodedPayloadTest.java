@@ -0,0 +1,107 @@
+/*
+ * see license.txt
+ */
+package test.harenet;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import harenet.IOBuffer;
+import harenet.messages.EncodedPayload;
+import harenet.messages.NetMessage;
+
+/**
+ * @author Tony
+ *
+ */
+public class EncodedPayloadTest {
+    
+    /**
+     * Writes out an odd number of bits, so the payload does not end on a byte boundary
+     */
+    static class BitsMessage implements NetMessage {
+        long seed;
+        int count;
+        
+        BitsMessage(long seed, int count) {
+            this.seed = seed;
+            this.count = count;
+        }
+        
+        @Override
+        public void read(IOBuffer buffer) {
+        }
+        
+        @Override
+        public void write(IOBuffer buffer) {
+            Random random = new Random(seed);
+            for(int i = 0; i < count; i++) {
+                buffer.putBooleanBit(random.nextBoolean());
+                buffer.putIntBits(random.nextInt(1 << 11), 11);
+                buffer.putInt(random.nextInt());
+            }
+        }
+    }
+    
+    private static byte[] written(IOBuffer buffer) {
+        byte[] bytes = new byte[(buffer.bitPosition() + 7) / 8];
+        buffer.bitPosition(0);
+        buffer.getBits(bytes, bytes.length * 8);
+        return bytes;
+    }
+    
+    /*
+     * purpose : copying the encoded payload gives the same bits as writing the message directly, at any bit position
+     */
+    @Test
+    public void testWriteTo() {
+        for(int offset = 0; offset < 16; offset++) {
+            for(int count = 0; count < 40; count += 7) {
+                BitsMessage message = new BitsMessage(offset * 31 + count, count);
+                
+                IOBuffer expected = IOBuffer.Factory.allocate(1500);
+                expected.putIntBits(0x5A5A, offset);
+                message.write(expected);
+                expected.putIntBits(0x3, 2);
+                
+                EncodedPayload payload = EncodedPayload.encode(message);
+                assertEquals(count * 44, payload.getNumberOfBits());
+                assertEquals((count * 44 + 7) / 8, payload.getNumberOfBytes());
+                
+                IOBuffer actual = IOBuffer.Factory.allocate(1500);
+                actual.putIntBits(0x5A5A, offset);
+                payload.writeTo(actual);
+                actual.putIntBits(0x3, 2);
+                
+                assertEquals(expected.bitPosition(), actual.bitPosition());
+                assertArrayEquals(written(expected), written(actual));
+                
+                payload.release();
+            }
+        }
+    }
+    
+    /*
+     * purpose : a released payload can be reused for a different message without any of the old bits leaking in
+     */
+    @Test
+    public void testReuse() {
+        EncodedPayload large = EncodedPayload.encode(new BitsMessage(1, 2));
+        large.release();
+        
+        EncodedPayload small = EncodedPayload.encode(new BitsMessage(2, 1));
+        
+        IOBuffer expected = IOBuffer.Factory.allocate(64);
+        new BitsMessage(2, 1).write(expected);
+        
+        IOBuffer actual = IOBuffer.Factory.allocate(64);
+        small.writeTo(actual);
+        
+        assertEquals(expected.bitPosition(), actual.bitPosition());
+        assertArrayEquals(written(expected), written(actual));
+        small.release();
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * see license.txt
+ */
+package test.harenet;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import harenet.FragmentAssembler;
+import harenet.IOBuffer;
+import harenet.MessageHeader;
+import harenet.NetConfig;
+import harenet.messages.EncodedPayload;
+import harenet.messages.FragmentMessage;
+import harenet.messages.Message;
+import harenet.messages.NetMessage;
+import harenet.messages.NetMessageFactory;
+
+/**
+ * @author Tony
+ *
+ */
+public class FragmentAssemblerTest {
+    
+    /**
+     * A message with a large number of values
+     */
+    static class LargeMessage implements NetMessage {
+        int[] values;
+        
+        @Override
+        public void read(IOBuffer buffer) {
+            values = new int[buffer.getIntBits(16)];
+            for(int i = 0; i < values.length; i++) {
+                values[i] = buffer.getIntBits(31);
+            }
+        }
+        
+        @Override
+        public void write(IOBuffer buffer) {
+            buffer.putIntBits(values.length, 16);
+            for(int i = 0; i < values.length; i++) {
+                buffer.putIntBits(values[i], 31);
+            }
+        }
+    }
+    
+    private static NetConfig config() {
+        return new NetConfig(new NetMessageFactory() {
+            @Override
+            public NetMessage readNetMessage(IOBuffer buffer) {
+                LargeMessage msg = new LargeMessage();
+                msg.read(buffer);
+                return msg;
+            }
+        });
+    }
+    
+    private static LargeMessage largeMessage(int size, long seed) {
+        Random random = new Random(seed);
+        LargeMessage msg = new LargeMessage();
+        msg.values = new int[size];
+        for(int i = 0; i < size; i++) {
+            msg.values[i] = random.nextInt(Integer.MAX_VALUE);
+        }
+        return msg;
+    }
+    
+    /**
+     * Splits up the message, and sends each fragment through a packet buffer
+     */
+    private static List<FragmentMessage> fragment(NetMessage msg, int groupId, int numberOfFragments, NetMessageFactory factory) {
+        EncodedPayload payload = EncodedPayload.encode(msg);
+        
+        List<FragmentMessage> fragments = new ArrayList<FragmentMessage>();
+        for(int i = 0; i < numberOfFragments; i++) {
+            FragmentMessage fragment = new FragmentMessage(payload, groupId, i, numberOfFragments, 0);
+            fragment.setMessageId(groupId * 100 + i);
+            
+            IOBuffer packet = IOBuffer.Factory.allocate(1500);
+            packet.putIntBits(5, 3); // don't start on a byte boundary
+            fragment.writeTo(packet);
+            fragment.release();
+            
+            assertTrue(packet.position() < 1500);
+            
+            packet.bitPosition(3);
+            fragments.add( (FragmentMessage)MessageHeader.readMessageHeader(packet, factory) );
+        }
+        
+        payload.release();
+        return fragments;
+    }
+    
+    /*
+     * purpose : fragments received in any order, with duplicates, are put back together into the original message
+     */
+    @Test
+    public void testReassemble() {
+        NetConfig config = config();
+        FragmentAssembler assembler = new FragmentAssembler(config);
+        
+        for(int attempt = 0; attempt < 3; attempt++) {
+            LargeMessage original = largeMessage(1000 + attempt * 333, attempt);
+            List<FragmentMessage> fragments = fragment(original, attempt + 1, 4 + attempt, config.getMessageFactory());
+            Collections.shuffle(fragments, new Random(attempt));
+            fragments.add(1, fragments.get(0));
+            
+            Message result = null;
+            for(int i = 0; i < fragments.size(); i++) {
+                assertNull(result);
+                result = assembler.receive(fragments.get(i), 0);
+            }
+            
+            assertNotNull(result);
+            assertArrayEquals(original.values, ((LargeMessage)result.getMessage()).values);
+            assertEquals(0, assembler.getPendingSize());
+        }
+    }
+    
+    /*
+     * purpose : messages over the memory limits are dropped, and stale partial messages are thrown away
+     */
+    @Test
+    public void testLimits() {
+        NetConfig config = config();
+        config.setMaxReassemblySize(2000);
+        config.setMaxPendingReassemblySize(5000);
+        FragmentAssembler assembler = new FragmentAssembler(config);
+        
+        /* ~3.8k bytes, over the max message size */
+        List<FragmentMessage> tooLarge = fragment(largeMessage(1000, 1), 1, 4, config.getMessageFactory());
+        for(FragmentMessage fragment : tooLarge) {
+            assertNull(assembler.receive(fragment, 0));
+        }
+        assertEquals(4, assembler.getNumberOfDroppedFragments());
+        assertEquals(0, assembler.getPendingSize());
+        
+        /* ~1.9k bytes each, only two can be pending at once */
+        List<FragmentMessage> first = fragment(largeMessage(500, 2), 2, 2, config.getMessageFactory());
+        List<FragmentMessage> second = fragment(largeMessage(500, 3), 3, 2, config.getMessageFactory());
+        List<FragmentMessage> third = fragment(largeMessage(500, 4), 4, 2, config.getMessageFactory());
+        assertNull(assembler.receive(first.get(0), 0));
+        assertNull(assembler.receive(second.get(0), 100));
+        assertNull(assembler.receive(third.get(0), 100));
+        assertEquals(5, assembler.getNumberOfDroppedFragments());
+        
+        /* the first partial message times out, making room for the third */
+        assembler.timeout(1000, 950);
+        assertEquals(1, assembler.getNumberOfLostMessages());
+        assertNull(assembler.receive(third.get(0), 1000));
+        assertNotNull(assembler.receive(third.get(1), 1000));
+        assertNotNull(assembler.receive(second.get(1), 1000));
+        assertEquals(0, assembler.getPendingSize());
+        assertEquals(1, assembler.getNumberOfLostMessages());
+    }
+    
+    /*
+     * purpose : a partial message that keeps receiving fragments is not timed out, however long it takes
+     */
+    @Test
+    public void testTimeoutOnlyWithoutProgress() {
+        NetConfig config = config();
+        FragmentAssembler assembler = new FragmentAssembler(config);
+        
+        LargeMessage original = largeMessage(1000, 5);
+        List<FragmentMessage> fragments = fragment(original, 5, 4, config.getMessageFactory());
+        
+        Message result = null;
+        for(int i = 0; i < fragments.size(); i++) {
+            long currentTime = i * 900;
+            assembler.timeout(currentTime, 950);
+            assertNull(result);
+            result = assembler.receive(fragments.get(i), currentTime);
+        }
+        
+        assertNotNull(result);
+        assertArrayEquals(original.values, ((LargeMessage)result.getMessage()).values);
+        assertEquals(0, assembler.getNumberOfLostMessages());
+        assertEquals(0, assembler.getNumberOfDroppedFragments());
+    }
+}
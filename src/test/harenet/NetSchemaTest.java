@@ -0,0 +1,157 @@
+/*
+ * see license.txt
+ */
+package test.harenet;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import harenet.IOBuffer;
+import harenet.messages.NetSchema;
+
+/**
+ * @author Tony
+ *
+ */
+public class NetSchemaTest {
+    
+    static enum Kind {
+        A,
+        B,
+        C,
+        UNKNOWN,
+        ;
+    }
+    
+    static class Message {
+        int posX;
+        short orientation;
+        byte health;
+        float speed;
+        boolean flag;
+        Kind kind;
+    }
+    
+    static class SubMessage extends Message {
+        int ownerId;
+    }
+    
+    private static final NetSchema SCHEMA = NetSchema.define(Message.class)
+                                                .enumeration("kind", 2)
+                                                .quantized("posX", 0, 8191, 13)
+                                                .angle("orientation", 8)
+                                                .unsigned("health", 7)
+                                                .quantized("speed", -1, 1, 8)
+                                                .flag("flag")
+                                                .build();
+    
+    private static final NetSchema SUB_SCHEMA = SCHEMA.extend(SubMessage.class)
+                                                .unsigned("ownerId", 5)
+                                                .build();
+    
+    private static <T> T roundTrip(NetSchema schema, Object message, T result) {
+        IOBuffer buffer = IOBuffer.Factory.allocate(64);
+        schema.write(buffer, message);
+        assertEquals(schema.getNumberOfBits(), buffer.bitPosition());
+        
+        buffer.bitPosition(0);
+        schema.read(buffer, result);
+        assertEquals(schema.getNumberOfBits(), buffer.bitPosition());
+        return result;
+    }
+    
+    /*
+     * purpose : fields make it across, packed into the declared number of bits
+     */
+    @Test
+    public void testRoundTrip() {
+        assertEquals(2 + 13 + 8 + 7 + 8 + 1, SCHEMA.getNumberOfBits());
+        assertEquals(SCHEMA.getNumberOfBits() + 5, SUB_SCHEMA.getNumberOfBits());
+        
+        SubMessage message = new SubMessage();
+        message.posX = 4000;
+        message.orientation = 90;
+        message.health = 100;
+        message.speed = 0.5f;
+        message.flag = true;
+        message.kind = Kind.C;
+        message.ownerId = 17;
+        
+        SubMessage result = roundTrip(SUB_SCHEMA, message, new SubMessage());
+        assertEquals(4000, result.posX);
+        assertEquals(90, result.orientation);
+        assertEquals(100, result.health);
+        assertEquals(0.5f, result.speed, 0.01f);
+        assertTrue(result.flag);
+        assertEquals(Kind.C, result.kind);
+        assertEquals(17, result.ownerId);
+    }
+    
+    /*
+     * purpose : values outside of the range are clamped, angles wrap around
+     */
+    @Test
+    public void testClamping() {
+        Message message = new Message();
+        message.posX = 10000;
+        message.orientation = -90;
+        message.health = -5;
+        message.speed = 4f;
+        message.kind = null;
+        
+        Message result = roundTrip(SCHEMA, message, new Message());
+        assertEquals(8191, result.posX);
+        assertEquals(270, result.orientation);
+        assertEquals(0, result.health);
+        assertEquals(1f, result.speed, 0.01f);
+        assertEquals(Kind.UNKNOWN, result.kind);
+        
+        message.posX = -20;
+        message.orientation = 720;
+        result = roundTrip(SCHEMA, message, new Message());
+        assertEquals(0, result.posX);
+        assertEquals(0, result.orientation);
+    }
+    
+    /*
+     * purpose : angles lose precision to the number of bits
+     */
+    @Test
+    public void testAngleQuantization() {
+        Message message = new Message();
+        message.kind = Kind.A;
+        for(int degrees = 0; degrees < 360; degrees++) {
+            message.orientation = (short)degrees;
+            Message result = roundTrip(SCHEMA, message, new Message());
+            assertTrue(Math.abs(result.orientation - degrees) <= 1 || Math.abs(result.orientation - degrees) == 359);
+        }
+    }
+    
+    /*
+     * purpose : bad fields are caught when the schema is built
+     */
+    @Test
+    public void testInvalidFields() {
+        try {
+            NetSchema.define(Message.class).unsigned("missing", 4);
+            fail("missing field");
+        }
+        catch(IllegalArgumentException e) {
+        }
+        
+        try {
+            NetSchema.define(Message.class).unsigned("posX", 0);
+            fail("no bits");
+        }
+        catch(IllegalArgumentException e) {
+        }
+        
+        try {
+            NetSchema.define(Message.class).quantized("speed", 1, -1, 8);
+            fail("empty range");
+        }
+        catch(IllegalArgumentException e) {
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * see license.txt
+ */
+package test.harenet;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import harenet.Host;
+import harenet.IOBuffer;
+import harenet.NetConfig;
+import harenet.PacketCapture;
+import harenet.PacketReplay;
+import harenet.Peer;
+import harenet.Protocol;
+import harenet.messages.EncodedPayload;
+import harenet.messages.Message;
+import harenet.messages.NetMessage;
+import harenet.messages.NetMessageFactory;
+import harenet.messages.UnReliableNetMessage;
+
+/**
+ * @author Tony
+ *
+ */
+public class PacketCaptureTest {
+    
+    static class ValueMessage implements NetMessage {
+        int value;
+        
+        @Override
+        public void read(IOBuffer buffer) {
+            value = buffer.getInt();
+        }
+        
+        @Override
+        public void write(IOBuffer buffer) {
+            buffer.putInt(value);
+        }
+    }
+    
+    private static NetConfig config() {
+        return new NetConfig(new NetMessageFactory() {
+            @Override
+            public NetMessage readNetMessage(IOBuffer buffer) {
+                ValueMessage msg = new ValueMessage();
+                msg.read(buffer);
+                return msg;
+            }
+        });
+    }
+    
+    /**
+     * Builds a packet as a client would send it
+     */
+    private static ByteBuffer packet(byte peerId, int sequence, int firstValue, int numberOfValues) {
+        IOBuffer buffer = IOBuffer.Factory.allocate(1500);
+        Protocol protocol = new Protocol(0, 1500);
+        buffer.position(protocol.size());
+        
+        for(int i = 0; i < numberOfValues; i++) {
+            ValueMessage value = new ValueMessage();
+            value.value = firstValue + i;
+            
+            Message msg = UnReliableNetMessage.obtain(value, EncodedPayload.encode(value));
+            msg.writeTo(buffer);
+            msg.release();
+        }
+        
+        protocol.setPeerId(peerId);
+        protocol.setNumberOfMessages((byte)numberOfValues);
+        protocol.setSendSequence(sequence);
+        protocol.writeTo(buffer);
+        
+        ByteBuffer datagram = buffer.sendSync().asByteBuffer();
+        datagram.flip();
+        return datagram;
+    }
+    
+    static class Recorder implements Host.MessageListener {
+        List<Integer> values = new ArrayList<Integer>();
+        int numberOfDisconnects;
+        
+        @Override
+        public void onConnected(Peer peer) {
+        }
+        
+        @Override
+        public void onDisconnected(Peer peer) {
+            numberOfDisconnects++;
+        }
+        
+        @Override
+        public void onServerFull(Peer peer) {
+        }
+        
+        @Override
+        public void onMessage(Peer peer, Message message) {
+            if(message.getMessage() instanceof ValueMessage) {
+                values.add(((ValueMessage)message.getMessage()).value);
+            }
+        }
+    }
+    
+    /*
+     * purpose : captured packets are read back in the order they were captured, with their addresses
+     */
+    @Test
+    public void testCapture() throws Exception {
+        File file = File.createTempFile("capture", ".cap");
+        file.deleteOnExit();
+        
+        InetSocketAddress a = new InetSocketAddress("127.0.0.1", 9000);
+        InetSocketAddress b = new InetSocketAddress("127.0.0.1", 9001);
+        
+        PacketCapture capture = new PacketCapture(file, 1500);
+        ByteBuffer datagram = ByteBuffer.wrap(new byte[] { 1, 2, 3 });
+        capture.packetReceived(a, datagram);
+        assertEquals(0, datagram.position());
+        
+        capture.packetSent(b, ByteBuffer.wrap(new byte[] { 4, 5 }));
+        capture.packetReceived(a, ByteBuffer.wrap(new byte[] { 6 }));
+        capture.close();
+        assertEquals(3, capture.getNumberOfPackets());
+        
+        List<PacketCapture.Packet> packets = new ArrayList<PacketCapture.Packet>();
+        PacketCapture.readPackets(file, packets);
+        assertEquals(3, packets.size());
+        
+        assertFalse(packets.get(0).sent);
+        assertEquals(a, packets.get(0).address);
+        assertArrayEquals(new byte[] { 1, 2, 3 }, packets.get(0).data);
+        
+        assertTrue(packets.get(1).sent);
+        assertEquals(b, packets.get(1).address);
+        assertEquals(1, packets.get(1).endpoint);
+        assertArrayEquals(new byte[] { 4, 5 }, packets.get(1).data);
+        
+        assertEquals(packets.get(0).endpoint, packets.get(2).endpoint);
+        assertTrue(packets.get(2).time >= packets.get(0).time);
+    }
+    
+    /*
+     * purpose : replaying a capture decodes every message, the same way each time, and runs off of the
+     * capture's clock rather than the wall clock
+     */
+    @Test
+    public void testReplay() throws Exception {
+        InetSocketAddress client = new InetSocketAddress("127.0.0.1", 9000);
+        
+        List<PacketCapture.Packet> packets = new ArrayList<PacketCapture.Packet>();
+        int value = 0;
+        for(int i = 0; i < 20; i++) {
+            ByteBuffer datagram = packet((i == 0) ? Host.INVALID_PEER_ID : 0, i + 1, value, 5);
+            value += 5;
+            
+            PacketCapture.Packet packet = new PacketCapture.Packet();
+            packet.time = i * 33;
+            packet.address = client;
+            packet.data = new byte[datagram.remaining()];
+            datagram.get(packet.data);
+            packets.add(packet);
+        }
+        
+        PacketReplay replay = new PacketReplay(config(), packets);
+        for(int run = 0; run < 2; run++) {
+            Recorder recorder = new Recorder();
+            replay.replay(recorder, true, false, -1);
+            
+            assertEquals(20, replay.getNumberOfPackets());
+            assertEquals(100, recorder.values.size());
+            for(int i = 0; i < 100; i++) {
+                assertEquals(i, recorder.values.get(i).intValue());
+            }
+            assertEquals(0, recorder.numberOfDisconnects);
+        }
+        
+        /* a gap longer than the timeout in the capture times the client out, even though
+         * the replay itself takes no time at all */
+        packets.get(packets.size() - 1).time += config().getTimeout() + 1000;
+        
+        Recorder recorder = new Recorder();
+        replay.replay(recorder, true, false, -1);
+        assertEquals(1, recorder.numberOfDisconnects);
+    }
+}
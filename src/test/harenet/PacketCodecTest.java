@@ -0,0 +1,154 @@
+/*
+ * see license.txt
+ */
+package test.harenet;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import harenet.DictionaryPacketCodec;
+import harenet.IOBuffer;
+import harenet.PacketCodec;
+import harenet.PacketCodecStats;
+import harenet.Protocol;
+import harenet.messages.NetMessage;
+import harenet.messages.NetMessageFactory;
+
+/**
+ * @author Tony
+ *
+ */
+public class PacketCodecTest {
+    
+    private static final NetMessageFactory FACTORY = new NetMessageFactory() {
+        @Override
+        public NetMessage readNetMessage(IOBuffer buffer) {
+            return null;
+        }
+    };
+    
+    /**
+     * Something that looks like a game update, a handful of entities with small changes between packets
+     */
+    private static void writeBody(IOBuffer buffer, Random random) {
+        for(int i = 0; i < 40; i++) {
+            buffer.putShort((short)i);
+            buffer.putByte((byte)3);
+            buffer.putShort((short)(1000 + i * 32 + random.nextInt(4)));
+            buffer.putShort((short)(2000 + i * 16));
+            buffer.putByte((byte)(random.nextInt(2)));
+            buffer.putInt(0x7f7f0000);
+        }
+    }
+    
+    private static byte[] body(Random random) {
+        IOBuffer buffer = IOBuffer.Factory.allocate(1500);
+        writeBody(buffer, random);
+        byte[] bytes = buffer.array();
+        byte[] sample = new byte[buffer.position()];
+        System.arraycopy(bytes, 0, sample, 0, sample.length);
+        return sample;
+    }
+    
+    /**
+     * Sends the packet from the write protocol to the read protocol, checking the body makes it across
+     */
+    private static boolean sendPacket(Protocol writeProtocol, Protocol readProtocol, long seed) {
+        IOBuffer writeBuffer = IOBuffer.Factory.allocate(1500);
+        IOBuffer readBuffer = IOBuffer.Factory.allocate(1500);
+        
+        writeProtocol.reset();
+        writeBuffer.position(writeProtocol.size());
+        writeProtocol.setPeerId((byte)3);
+        writeProtocol.setSendSequence(42);
+        writeBody(writeBuffer, new Random(seed));
+        writeProtocol.writeTo(writeBuffer);
+        
+        ByteBuffer out = writeBuffer.sendSync().asByteBuffer();
+        out.flip();
+        
+        ByteBuffer in = readBuffer.clear().asByteBuffer();
+        in.clear();
+        in.put(out.array(), 0, out.limit());
+        in.flip();
+        readBuffer.receiveSync();
+        
+        readProtocol.reset();
+        readProtocol.readFrom(readBuffer, FACTORY);
+        if(!readProtocol.isValid()) {
+            return false;
+        }
+        
+        assertEquals(3, readProtocol.getPeerId());
+        assertEquals(42, readProtocol.getSendSequence());
+        
+        IOBuffer expected = IOBuffer.Factory.allocate(1500);
+        writeBody(expected, new Random(seed));
+        expected.flip();
+        while(expected.hasRemaining()) {
+            assertEquals(expected.getByte(), readBuffer.getByte());
+        }
+        return true;
+    }
+    
+    /*
+     * purpose : packets compressed by each codec make it across intact, and smaller
+     */
+    @Test
+    public void testRoundTrip() {
+        List<byte[]> samples = new ArrayList<byte[]>();
+        Random random = new Random(1);
+        for(int i = 0; i < 50; i++) {
+            samples.add(body(random));
+        }
+        byte[] dictionary = DictionaryPacketCodec.train(samples, DictionaryPacketCodec.DEFAULT_DICTIONARY_SIZE);
+        assertTrue(dictionary.length > 0);
+        
+        Protocol deflate = new Protocol(100, 1500, PacketCodec.DEFLATE, dictionary);
+        Protocol dict = new Protocol(100, 1500, PacketCodec.DICTIONARY, dictionary);
+        
+        for(int i = 0; i < 10; i++) {
+            assertTrue(sendPacket(deflate, dict, 100 + i));
+            assertTrue(deflate.getNumberOfBytesCompressed() > 0);
+            
+            assertTrue(sendPacket(dict, deflate, 100 + i));
+            assertTrue(dict.getNumberOfBytesCompressed() > 0);
+        }
+        
+        PacketCodecStats deflateStats = deflate.getCodecStats(PacketCodec.DEFLATE);
+        PacketCodecStats dictStats = dict.getCodecStats(PacketCodec.DICTIONARY);
+        assertEquals(10, deflateStats.getNumberOfPacketsEncoded());
+        assertEquals(10, dictStats.getNumberOfPacketsEncoded());
+        assertEquals(10, deflate.getCodecStats(PacketCodec.DICTIONARY).getNumberOfPacketsDecoded());
+        
+        /* the trained dictionary does better than huffman coding alone */
+        assertTrue(dictStats.getCompressionRatio() < deflateStats.getCompressionRatio());
+    }
+    
+    /*
+     * purpose : a packet compressed with a dictionary the other end doesn't have is thrown away
+     */
+    @Test
+    public void testDictionaryMismatch() {
+        byte[] dictionary = new byte[64];
+        new Random(2).nextBytes(dictionary);
+        
+        Protocol writeProtocol = new Protocol(100, 1500, PacketCodec.DICTIONARY, dictionary);
+        assertFalse(sendPacket(writeProtocol, new Protocol(100, 1500), 1));
+        
+        byte[] otherDictionary = new byte[64];
+        new Random(3).nextBytes(otherDictionary);
+        Protocol readProtocol = new Protocol(100, 1500, PacketCodec.DICTIONARY, otherDictionary);
+        assertFalse(sendPacket(writeProtocol, readProtocol, 1));
+        assertEquals(1, readProtocol.getCodecStats(PacketCodec.DICTIONARY).getNumberOfPacketsMalformed());
+        
+        /* without a dictionary, falls back to deflate */
+        assertEquals(PacketCodec.DEFLATE, new Protocol(100, 1500, PacketCodec.DICTIONARY, null).getCodec().getId());
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * see license.txt
+ */
+package test.harenet;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import harenet.RingBuffer;
+import harenet.RingQueue;
+import harenet.messages.Message;
+import harenet.messages.UnReliableNetMessage;
+
+/**
+ * @author Tony
+ *
+ */
+public class RingBufferTest {
+    
+    /*
+     * purpose : elements come out in order, and offering to a full ring fails rather than overwriting
+     */
+    @Test
+    public void testRingBuffer() {
+        RingBuffer<Integer> ring = new RingBuffer<Integer>(3);
+        assertEquals(4, ring.capacity());
+        assertTrue(ring.isEmpty());
+        assertNull(ring.poll());
+        assertNull(ring.peek());
+        
+        for(int round = 0; round < 3; round++) {
+            for(int i = 0; i < 4; i++) {
+                assertTrue(ring.offer(i));
+            }
+            assertFalse(ring.offer(4));
+            assertEquals(4, ring.size());
+            
+            assertEquals(Integer.valueOf(0), ring.peek());
+            for(int i = 0; i < 4; i++) {
+                assertEquals(Integer.valueOf(i), ring.poll());
+            }
+            assertTrue(ring.isEmpty());
+        }
+        
+        ring.offer(1);
+        ring.clear();
+        assertTrue(ring.isEmpty());
+    }
+    
+    /*
+     * purpose : once the ring is full elements spill over, and still come out in the order they went in
+     */
+    @Test
+    public void testRingQueueOverflow() {
+        RingQueue<Integer> queue = new RingQueue<Integer>(4);
+        for(int i = 0; i < 10; i++) {
+            queue.add(i);
+        }
+        assertTrue(queue.isOverflowing());
+        assertEquals(10, queue.size());
+        
+        /* drain part of the ring, new elements must go behind the overflow */
+        assertEquals(Integer.valueOf(0), queue.poll());
+        assertEquals(Integer.valueOf(1), queue.poll());
+        queue.add(10);
+        
+        for(int i = 2; i <= 10; i++) {
+            assertEquals(Integer.valueOf(i), queue.peek());
+            assertEquals(Integer.valueOf(i), queue.poll());
+        }
+        assertTrue(queue.isEmpty());
+        assertFalse(queue.isOverflowing());
+        assertNull(queue.poll());
+    }
+    
+    /*
+     * purpose : nothing is lost or duplicated with several threads offering and polling at once
+     */
+    @Test
+    public void testConcurrent() throws Exception {
+        final RingBuffer<Integer> ring = new RingBuffer<Integer>(64);
+        final int numberOfProducers = 4;
+        final int numberPerProducer = 20000;
+        final int[] received = new int[numberOfProducers * numberPerProducer];
+        final CountDownLatch done = new CountDownLatch(numberOfProducers);
+        
+        for(int p = 0; p < numberOfProducers; p++) {
+            final int producer = p;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for(int i = 0; i < numberPerProducer; i++) {
+                        while(!ring.offer(producer * numberPerProducer + i)) {
+                            Thread.yield();
+                        }
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+        
+        int count = 0;
+        while(count < received.length) {
+            Integer value = ring.poll();
+            if(value != null) {
+                received[value]++;
+                count++;
+            }
+        }
+        
+        done.await();
+        assertNull(ring.poll());
+        for(int i = 0; i < received.length; i++) {
+            assertEquals(1, received[i]);
+        }
+    }
+    
+    /*
+     * purpose : a pooled message is only reused once every queue holding it has released it
+     */
+    @Test
+    public void testPooledMessage() {
+        UnReliableNetMessage msg = UnReliableNetMessage.obtain();
+        msg.setMessageId(7);
+        msg.retain();
+        
+        msg.release();
+        assertEquals(7, msg.getMessageId());
+        
+        msg.release();
+        
+        /* reused, and reset */
+        Message reused = UnReliableNetMessage.obtain();
+        assertEquals(0, reused.getMessageId());
+        assertFalse(reused.hasBeenSent());
+        assertNull(reused.getMessage());
+        reused.release();
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * see license.txt
+ */
+package test.harenet;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import harenet.SendScheduler;
+import harenet.messages.PrioritizedNetMessage;
+
+/**
+ * @author Tony
+ *
+ */
+public class SendSchedulerTest {
+    
+    /*
+     * purpose : without any starvation the priorities are packed highest first
+     */
+    @Test
+    public void testPriorityOrder() {
+        SendScheduler scheduler = new SendScheduler(0, 1500);
+        int[] order = scheduler.getPriorityOrder();
+        for(int i = 0; i < order.length; i++) {
+            assertEquals(i, order[i]);
+        }
+    }
+    
+    /*
+     * purpose : a starved priority eventually moves ahead of the higher priorities, and drops back once served
+     */
+    @Test
+    public void testStarvation() {
+        SendScheduler scheduler = new SendScheduler(0, 1500);
+        
+        int low = PrioritizedNetMessage.LOW_PRIORITY;
+        for(int i = 0; i < SendScheduler.STARVATION_LIMIT; i++) {
+            scheduler.starved(low);
+        }
+        assertEquals(low, scheduler.getPriorityOrder()[low]);
+        
+        scheduler.starved(low);
+        assertEquals(low, scheduler.getPriorityOrder()[low - 1]);
+        assertEquals(SendScheduler.STARVATION_LIMIT + 1, scheduler.getNumberOfStarvedPackets(low));
+        
+        for(int i = 0; i < SendScheduler.STARVATION_LIMIT * (low - 1); i++) {
+            scheduler.starved(low);
+        }
+        assertEquals(low, scheduler.getPriorityOrder()[0]);
+        
+        scheduler.served(low);
+        assertEquals(PrioritizedNetMessage.HIGHEST_PRIORITY, scheduler.getPriorityOrder()[0]);
+        assertEquals(low, scheduler.getPriorityOrder()[low]);
+        assertEquals(SendScheduler.STARVATION_LIMIT * low + 1, scheduler.getNumberOfStarvedPackets(low));
+    }
+    
+    /*
+     * purpose : the packets are limited by the bandwidth budget, which is built back up over time
+     */
+    @Test
+    public void testBandwidthLimit() {
+        SendScheduler scheduler = new SendScheduler(10_000, 1500);
+        assertTrue(scheduler.isLimited());
+        
+        /* starts out with a full burst of a quarter of a second */
+        assertEquals(1500, scheduler.beginPacket(0, 1500));
+        scheduler.endPacket(1500);
+        assertEquals(1000, scheduler.beginPacket(0, 1500));
+        scheduler.endPacket(1000);
+        assertEquals(0, scheduler.beginPacket(0, 1500));
+        
+        /* 100 ms worth of bandwidth */
+        assertEquals(1000, scheduler.beginPacket(100, 1500));
+        
+        /* never builds up past the burst */
+        assertEquals(1500, scheduler.beginPacket(10_000, 1500));
+        assertEquals(1000, scheduler.beginPacket(10_000, 1000));
+        
+        SendScheduler unlimited = new SendScheduler(0, 1500);
+        assertFalse(unlimited.isLimited());
+        unlimited.endPacket(1500);
+        assertEquals(1500, unlimited.beginPacket(0, 1500));
+    }
+}
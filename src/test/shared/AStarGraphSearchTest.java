@@ -0,0 +1,208 @@
+package test.shared;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import seventh.graph.AStarGraphSearch;
+import seventh.graph.Edge;
+import seventh.graph.Edges.Directions;
+import seventh.graph.GraphNode;
+
+public class AStarGraphSearchTest {
+    
+    private static final int[][] OFFSETS = {
+        { 0, -1}, // N
+        { 1,  0}, // E
+        { 0,  1}, // S
+        {-1,  0}, // W
+        { 1, -1}, // NE
+        { 1,  1}, // SE
+        {-1,  1}, // SW
+        {-1, -1}, // NW
+    };
+    
+    /**
+     * Builds a grid of nodes, where each node value is its {x,y} position, and blocked cells have no node
+     */
+    @SuppressWarnings("unchecked")
+    private static GraphNode<int[], Void>[][] buildGrid(boolean[][] blocked, Random random, boolean number) {
+        int height = blocked.length;
+        int width = blocked[0].length;
+        GraphNode<int[], Void>[][] grid = new GraphNode[height][width];
+        for(int y = 0; y < height; y++) {
+            for(int x = 0; x < width; x++) {
+                if(!blocked[y][x]) {
+                    grid[y][x] = new GraphNode<int[], Void>(new int[] {x, y});
+                    if(number) {
+                        grid[y][x].setIndex(y * width + x);
+                    }
+                }
+            }
+        }
+        
+        for(int y = 0; y < height; y++) {
+            for(int x = 0; x < width; x++) {
+                GraphNode<int[], Void> node = grid[y][x];
+                if(node == null) {
+                    continue;
+                }
+                
+                for(int i = 0; i < OFFSETS.length; i++) {
+                    int nx = x + OFFSETS[i][0];
+                    int ny = y + OFFSETS[i][1];
+                    if(nx >= 0 && ny >= 0 && nx < width && ny < height && grid[ny][nx] != null) {
+                        int weight = (random != null) ? random.nextInt(10) : 1;
+                        node.addEdge(Directions.fromIndex(i), new Edge<int[], Void>(node, grid[ny][nx], null, weight));
+                    }
+                }
+            }
+        }
+        
+        return grid;
+    }
+    
+    /**
+     * Brute force shortest path cost, by relaxing every edge until nothing changes
+     */
+    private static int shortestCost(GraphNode<int[], Void>[][] grid, GraphNode<int[], Void> start, GraphNode<int[], Void> goal) {
+        int height = grid.length;
+        int width = grid[0].length;
+        int[][] costs = new int[height][width];
+        for(int[] row : costs) {
+            Arrays.fill(row, Integer.MAX_VALUE);
+        }
+        costs[start.getValue()[1]][start.getValue()[0]] = 0;
+        
+        boolean changed = true;
+        while(changed) {
+            changed = false;
+            for(int y = 0; y < height; y++) {
+                for(int x = 0; x < width; x++) {
+                    if(grid[y][x] == null || costs[y][x] == Integer.MAX_VALUE) {
+                        continue;
+                    }
+                    
+                    for(int i = 0; i < 8; i++) {
+                        Edge<int[], Void> edge = grid[y][x].edges().get(i);
+                        if(edge != null) {
+                            int[] pos = edge.getRight().getValue();
+                            int cost = costs[y][x] + edge.getWeight();
+                            if(cost < costs[pos[1]][pos[0]]) {
+                                costs[pos[1]][pos[0]] = cost;
+                                changed = true;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        
+        return costs[goal.getValue()[1]][goal.getValue()[0]];
+    }
+    
+    private static int pathCost(GraphNode<int[], Void> start, List<GraphNode<int[], Void>> path) {
+        int cost = 0;
+        GraphNode<int[], Void> current = start;
+        for(GraphNode<int[], Void> node : path) {
+            Edge<int[], Void> edge = current.getEdge(node);
+            assertNotNull("path nodes are not linked", edge);
+            cost += edge.getWeight();
+            current = node;
+        }
+        return cost;
+    }
+    
+    /*
+     * purpose : the path found is as cheap as the brute force shortest path, and excludes the start node
+     */
+    @Test
+    public void testOptimalPaths() {
+        Random random = new Random(8);
+        boolean[][] blocked = new boolean[24][32];
+        for(int y = 0; y < blocked.length; y++) {
+            for(int x = 0; x < blocked[y].length; x++) {
+                blocked[y][x] = random.nextInt(4) == 0;
+            }
+        }
+        
+        GraphNode<int[], Void>[][] grid = buildGrid(blocked, random, true);
+        
+        /* the same search is reused, to make sure nothing leaks between searches */
+        AStarGraphSearch<int[], Void> search = new AStarGraphSearch<int[], Void>();
+        for(int i = 0; i < 200; i++) {
+            GraphNode<int[], Void> start = grid[random.nextInt(24)][random.nextInt(32)];
+            GraphNode<int[], Void> goal = grid[random.nextInt(24)][random.nextInt(32)];
+            if(start == null || goal == null) {
+                continue;
+            }
+            
+            int expectedCost = shortestCost(grid, start, goal);
+            List<GraphNode<int[], Void>> path = search.search(start, goal);
+            if(expectedCost == Integer.MAX_VALUE) {
+                assertNull(path);
+                continue;
+            }
+            
+            assertNotNull(path);
+            assertEquals(expectedCost, pathCost(start, path));
+            if(start != goal) {
+                assertFalse(path.contains(start));
+                assertSame(goal, path.get(path.size() - 1));
+            }
+            else {
+                assertTrue(path.isEmpty());
+            }
+        }
+    }
+    
+    /*
+     * purpose : ignored nodes are avoided, and diagonals are not taken around an ignored node
+     */
+    @Test
+    public void testShouldIgnore() {
+        boolean[][] blocked = new boolean[3][3];
+        final GraphNode<int[], Void>[][] grid = buildGrid(blocked, null, true);
+        
+        AStarGraphSearch<int[], Void> search = new AStarGraphSearch<int[], Void>() {
+            @Override
+            protected boolean shouldIgnore(GraphNode<int[], Void> node) {
+                return node == grid[1][1] || node == grid[0][1];
+            }
+        };
+        
+        /* can't cut the corner of the ignored node going from the top left to the middle right */
+        List<GraphNode<int[], Void>> path = search.search(grid[0][0], grid[1][2]);
+        assertNotNull(path);
+        assertEquals(5, path.size());
+        assertSame(grid[1][0], path.get(0));
+        assertSame(grid[2][1], path.get(2));
+        assertFalse(path.contains(grid[1][1]));
+        
+        path = search.search(grid[0][0], grid[0][2]);
+        assertNotNull(path);
+        assertFalse(path.contains(grid[0][1]));
+        assertFalse(path.contains(grid[1][1]));
+    }
+    
+    /*
+     * purpose : graphs that do not number their nodes can still be searched
+     */
+    @Test
+    public void testUnnumberedNodes() {
+        boolean[][] blocked = new boolean[4][4];
+        blocked[0][1] = blocked[1][1] = blocked[2][1] = true;
+        GraphNode<int[], Void>[][] grid = buildGrid(blocked, null, false);
+        
+        List<GraphNode<int[], Void>> path = new AStarGraphSearch<int[], Void>().search(grid[0][0], grid[0][2]);
+        assertNotNull(path);
+        assertEquals(shortestCost(grid, grid[0][0], grid[0][2]), pathCost(grid[0][0], path));
+        assertTrue(grid[0][2].getIndex() >= 0);
+        
+        assertNull(new AStarGraphSearch<int[], Void>().search(null, grid[0][2]));
+    }
+}
@@ -0,0 +1,145 @@
+package test.shared;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import seventh.map.Layer;
+import seventh.map.OrthoMap;
+import seventh.map.Tile;
+import seventh.map.Tile.CollisionMask;
+import seventh.math.Rectangle;
+import seventh.math.Vector2f;
+
+public class CollisionBitmapTest {
+    
+    private static final int SIZE = 12;
+    private static final int TILE_SIZE = 32;
+    private static final int[] HEIGHT_MASKS = { 0, 1, 2, 3, 9 };
+    
+    private OrthoMap map;
+    private MapBuilder builder;
+    private Random random;
+    
+    @Before
+    public void setUp() throws Exception {
+        random = new Random(11);
+        
+        builder = new MapBuilder(SIZE, TILE_SIZE);
+        Layer walls = builder.addCollidableLayer("walls", true);
+        Layer crates = builder.addCollidableLayer("crates", false);
+        
+        CollisionMask[] masks = CollisionMask.values();
+        for(int y = 0; y < SIZE; y++) {
+            for(int x = 0; x < SIZE; x++) {
+                if(random.nextInt(3) > 0) {
+                    walls.addTile(builder.newTile(1, x, y, masks[random.nextInt(masks.length)], 0));
+                }
+                if(random.nextInt(4) == 0) {
+                    crates.addTile(builder.newTile(2, x, y, masks[random.nextInt(masks.length)], random.nextInt(3)));
+                }
+            }
+        }
+        
+        // a tile which doesn't line up with its cell
+        Tile offset = builder.newTile(2, 5, 5, CollisionMask.WEST_HALF_SOLID, 0);
+        offset.setPosition(5 * TILE_SIZE + 7, 5 * TILE_SIZE);
+        crates.getRow(5)[5] = offset;
+        
+        map = builder.build();
+    }
+    
+    private static boolean appliesTo(Tile tile, int heightMask) {
+        int tileHeightMask = tile.getHeightMask();
+        return tileHeightMask <= 0 || (tileHeightMask & heightMask) == tileHeightMask;
+    }
+    
+    /**
+     * Tests each tile the rectangle's pixels are in, in order
+     */
+    private boolean bruteForceRect(Rectangle rect, int heightMask, Vector2f collisionTilePos) {
+        collisionTilePos.set(-1, -1);
+        if(!new Rectangle(0, 0, map.getMapWidth(), map.getMapHeight()).contains(rect)) {
+            return true;
+        }
+        
+        for(int y = rect.y / TILE_SIZE; y * TILE_SIZE < rect.y + rect.height && y < SIZE; y++) {
+            for(int x = rect.x / TILE_SIZE; x * TILE_SIZE < rect.x + rect.width && x < SIZE; x++) {
+                for(Layer layer : map.getCollidableLayers()) {
+                    Tile tile = layer.getRow(y)[x];
+                    if(tile != null && appliesTo(tile, heightMask) && tile.rectCollide(rect)) {
+                        collisionTilePos.set(tile.getX(), tile.getY());
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+    
+    private boolean bruteForcePoint(int x, int y, int heightMask) {
+        if(map.checkBounds(x, y)) {
+            return true;
+        }
+        
+        for(Layer layer : map.getCollidableLayers()) {
+            Tile tile = layer.getRow(y / TILE_SIZE)[x / TILE_SIZE];
+            if(tile != null && appliesTo(tile, heightMask) && tile.pointCollide(x, y)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private void assertMatchesBruteForce() {
+        Vector2f expectedPos = new Vector2f();
+        Vector2f pos = new Vector2f();
+        
+        for(int i = 0; i < 3000; i++) {
+            Rectangle rect = new Rectangle(random.nextInt(SIZE * TILE_SIZE + 20) - 10, random.nextInt(SIZE * TILE_SIZE + 20) - 10,
+                                           random.nextInt(48), random.nextInt(48));
+            int heightMask = HEIGHT_MASKS[random.nextInt(HEIGHT_MASKS.length)];
+            
+            boolean expected = bruteForceRect(rect, heightMask, expectedPos);
+            assertEquals(rect.toString(), expected, map.rectCollides(rect, heightMask, pos));
+            assertEquals(expectedPos, pos);
+            assertEquals(expected, map.rectCollides(rect, heightMask));
+            
+            int x = random.nextInt(SIZE * TILE_SIZE + 20) - 10;
+            int y = random.nextInt(SIZE * TILE_SIZE + 20) - 10;
+            assertEquals(bruteForcePoint(x, y, heightMask), map.pointCollides(x, y, heightMask));
+        }
+    }
+    
+    /*
+     * purpose : the compiled planes collide exactly as the tiles themselves do
+     */
+    @Test
+    public void testMatchesTiles() {
+        assertMatchesBruteForce();
+    }
+    
+    /*
+     * purpose : the planes follow tiles being destroyed, restored and added
+     */
+    @Test
+    public void testTileChanges() {
+        assertMatchesBruteForce();
+        
+        for(int i = 0; i < 20; i++) {
+            map.removeDestructableTileAt(random.nextInt(SIZE), random.nextInt(SIZE));
+        }
+        assertMatchesBruteForce();
+        
+        map.addTile(builder.newTile(0, 3, 4, CollisionMask.NORTH_HALF_SOLID, 0));
+        map.addTile(builder.newTile(0, 7, 1, CollisionMask.ALL_SOLID, 0));
+        assertMatchesBruteForce();
+        
+        map.removeAddedTiles();
+        map.restoreDestroyedTiles();
+        assertMatchesBruteForce();
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * see license.txt
+ */
+package test.shared;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import seventh.client.inputs.InputHistory;
+import seventh.game.Player;
+import seventh.network.messages.PlayerInputMessage;
+
+/**
+ * @author Tony
+ *
+ */
+public class InputHistoryTest {
+    
+    /*
+     * purpose : acknowledged moves are dropped, the rest are kept in order for replaying
+     */
+    @Test
+    public void testAcknowledge() {
+        InputHistory history = new InputHistory(4);
+        history.add(1, 10, 1, 0, 16);
+        history.add(2, 20, 0, 1, 17);
+        history.add(3, 30, -1, 0, 18);
+        
+        assertEquals(2, history.acknowledge(1));
+        assertEquals(2, history.getSequence(0));
+        assertEquals(20, history.getKeys(0));
+        assertEquals(1, history.getVelocityY(0), 0.001f);
+        assertEquals(18, history.getDeltaTime(1));
+        
+        /* an older acknowledgement changes nothing */
+        assertEquals(2, history.acknowledge(0));
+        
+        /* wraps around, dropping the oldest */
+        history.add(4, 40, 0, 0, 16);
+        history.add(5, 50, 0, 0, 16);
+        history.add(6, 60, 0, 0, 16);
+        assertEquals(4, history.size());
+        assertEquals(3, history.getSequence(0));
+        
+        assertEquals(0, history.acknowledge(6));
+    }
+    
+    /*
+     * purpose : sequence numbers wrap around, and late inputs are dropped by the server
+     */
+    @Test
+    public void testSequence() {
+        int max = PlayerInputMessage.SEQUENCE_MASK;
+        assertTrue(PlayerInputMessage.isNewerSequence(2, 1));
+        assertFalse(PlayerInputMessage.isNewerSequence(1, 1));
+        assertFalse(PlayerInputMessage.isNewerSequence(1, 2));
+        assertTrue(PlayerInputMessage.isNewerSequence(0, max));
+        assertFalse(PlayerInputMessage.isNewerSequence(max, 0));
+        
+        InputHistory history = new InputHistory(4);
+        history.add(max, 0, 0, 0, 16);
+        history.add(0, 0, 0, 0, 16);
+        assertEquals(1, history.acknowledge(max));
+        
+        Player player = new Player(0);
+        assertEquals(-1, player.getLastInputSequence());
+        assertTrue(player.updateInputSequence(5000));
+        assertFalse(player.updateInputSequence(5000));
+        assertFalse(player.updateInputSequence(4999));
+        assertTrue(player.updateInputSequence(5001));
+        
+        /* the client started counting over */
+        assertTrue(player.updateInputSequence(1));
+        assertEquals(1, player.getLastInputSequence());
+    }
+}
@@ -0,0 +1,184 @@
+package test.shared;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import seventh.map.Layer;
+import seventh.map.OrthoMap;
+import seventh.map.Tile;
+import seventh.map.Tile.CollisionMask;
+import seventh.math.Vector2f;
+
+public class LineCollidesTest {
+    
+    private static final int SIZE = 12;
+    private static final int TILE_SIZE = 32;
+    private static final int[] HEIGHT_MASKS = { 0, 1, 2, 3, 9 };
+    
+    private OrthoMap map;
+    private Random random;
+    
+    /**
+     * @param wallChance the chance (out of 8) of a cell having a wall
+     */
+    private void buildMap(long seed, int wallChance) throws Exception {
+        random = new Random(seed);
+        
+        MapBuilder builder = new MapBuilder(SIZE, TILE_SIZE);
+        Layer walls = builder.addCollidableLayer("walls", true);
+        Layer crates = builder.addCollidableLayer("crates", false);
+        
+        CollisionMask[] masks = CollisionMask.values();
+        for(int y = 0; y < SIZE; y++) {
+            for(int x = 0; x < SIZE; x++) {
+                if(random.nextInt(8) < wallChance) {
+                    walls.addTile(builder.newTile(1, x, y, masks[random.nextInt(masks.length)], 0));
+                }
+                if(random.nextInt(6) == 0) {
+                    crates.addTile(builder.newTile(2, x, y, masks[random.nextInt(masks.length)], random.nextInt(3)));
+                }
+            }
+        }
+        
+        // a tile which doesn't line up with its cell
+        Tile offset = builder.newTile(2, 5, 5, CollisionMask.WEST_HALF_SOLID, 0);
+        offset.setPosition(5 * TILE_SIZE + 7, 5 * TILE_SIZE);
+        crates.getRow(5)[5] = offset;
+        
+        map = builder.build();
+    }
+    
+    private static boolean appliesTo(Tile tile, int heightMask) {
+        int tileHeightMask = tile.getHeightMask();
+        return tileHeightMask <= 0 || (tileHeightMask & heightMask) == tileHeightMask;
+    }
+    
+    private boolean bruteForcePoint(int x, int y, int heightMask) {
+        if(map.checkBounds(x, y)) {
+            return true;
+        }
+        
+        for(Layer layer : map.getCollidableLayers()) {
+            Tile tile = layer.getRow(y / TILE_SIZE)[x / TILE_SIZE];
+            if(tile != null && appliesTo(tile, heightMask) && tile.pointCollide(x, y)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * The per pixel Bresenham line walk lineCollides used to be, testing each pixel in turn
+     */
+    private boolean bruteForceLine(Vector2f a, Vector2f b, int heightMask) {
+        int x1 = (int)b.x;
+        int y1 = (int)b.y;
+        
+        int x0 = (int)a.x;
+        int y0 = (int)a.y;
+        
+        int dx = Math.abs(x1 - x0);
+        int dy = Math.abs(y1 - y0);
+        
+        int sx = x0 < x1 ? 1 : -1;
+        int sy = y0 < y1 ? 1 : -1;
+        
+        int err = dx - dy;
+        
+        do {
+            if(bruteForcePoint(x0, y0, heightMask)) {
+                return true;
+            }
+            
+            if(x0 == x1 && y0 == y1) {
+                break;
+            }
+            
+            int e2 = err * 2;
+            
+            if(e2 > -dy) {
+                err = err - dy;
+                x0 = x0 + sx;
+            }
+            
+            if(x0 == x1 && y0 == y1) {
+                if(bruteForcePoint(x0, y0, heightMask)) {
+                    return true;
+                }
+                break;
+            }
+            
+            if(e2 < dx) {
+                err = err + dx;
+                y0 = y0 + sy;
+            }
+            
+            if(map.checkBounds(x0, y0)) {
+                return true;
+            }
+        
+        } while(true);
+        
+        return false;
+    }
+    
+    private Vector2f randomPoint(int margin) {
+        int worldSize = SIZE * TILE_SIZE;
+        return new Vector2f(random.nextInt(worldSize + margin * 2) - margin + random.nextFloat(),
+                            random.nextInt(worldSize + margin * 2) - margin + random.nextFloat());
+    }
+    
+    private void assertMatchesBruteForce() {
+        int numberOfHits = 0;
+        for(int i = 0; i < 4000; i++) {
+            Vector2f a = randomPoint(i % 4 == 0 ? 40 : 0);
+            Vector2f b;
+            switch(i % 3) {
+                /* short segments, mostly within a few cells */
+                case 0: b = new Vector2f(a.x + random.nextInt(97) - 48, a.y + random.nextInt(97) - 48); break;
+                /* straight along an axis */
+                case 1: b = (i % 2 == 0) ? new Vector2f(a.x, randomPoint(0).y) : new Vector2f(randomPoint(0).x, a.y); break;
+                default: b = randomPoint(i % 5 == 0 ? 40 : 0);
+            }
+            
+            int heightMask = HEIGHT_MASKS[random.nextInt(HEIGHT_MASKS.length)];
+            
+            boolean expected = bruteForceLine(a, b, heightMask);
+            assertEquals(a + " -> " + b + " (" + heightMask + ")", expected, map.lineCollides(a, b, heightMask));
+            if(expected) {
+                numberOfHits++;
+            }
+        }
+        
+        /* both answers are well represented */
+        assertTrue(numberOfHits > 400);
+        assertTrue(numberOfHits < 3600);
+    }
+    
+    /*
+     * purpose : walking the line a cell at a time hits exactly what walking it a pixel at a time
+     * did, on partly solid maps, for every height mask, including lines leaving the map
+     */
+    @Test
+    public void testMatchesPerPixelWalk() throws Exception {
+        for(int wallChance = 1; wallChance <= 5; wallChance += 2) {
+            buildMap(17 + wallChance, wallChance);
+            assertMatchesBruteForce();
+        }
+    }
+    
+    /*
+     * purpose : the line walk follows tiles being destroyed
+     */
+    @Test
+    public void testMatchesAfterTileChanges() throws Exception {
+        buildMap(23, 4);
+        for(int i = 0; i < 30; i++) {
+            map.removeDestructableTileAt(random.nextInt(SIZE), random.nextInt(SIZE));
+        }
+        assertMatchesBruteForce();
+    }
+}
@@ -0,0 +1,70 @@
+package test.shared;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import seventh.map.Layer;
+import seventh.map.Map.SceneDef;
+import seventh.map.OrthoMap;
+import seventh.map.Tile;
+import seventh.map.Tile.CollisionMask;
+
+/**
+ * Builds small square {@link OrthoMap}s for the map tests: a ground layer covering every cell, plus
+ * any number of (initially empty) collidable layers.
+ */
+public class MapBuilder {
+    
+    private final int size;
+    private final int tileSize;
+    private final List<Layer> layers;
+    
+    public MapBuilder(int size, int tileSize) {
+        this.size = size;
+        this.tileSize = tileSize;
+        this.layers = new ArrayList<>();
+        
+        Layer ground = new Layer("ground", false, false, false, true, 0, 0, size);
+        for(int y = 0; y < size; y++) {
+            Tile[] row = new Tile[size];
+            for(int x = 0; x < size; x++) {
+                row[x] = new Tile(null, 1, 0, tileSize, tileSize);
+                row[x].setPosition(x * tileSize, y * tileSize);
+            }
+            ground.addRow(y, row);
+        }
+        this.layers.add(ground);
+    }
+    
+    public Layer addCollidableLayer(String name, boolean isDestructable) {
+        Layer layer = new Layer(name, true, false, isDestructable, true, this.layers.size(), 0, this.size);
+        for(int y = 0; y < this.size; y++) {
+            layer.addRow(y, new Tile[this.size]);
+        }
+        this.layers.add(layer);
+        return layer;
+    }
+    
+    public Tile newTile(int layer, int x, int y, CollisionMask mask, int heightMask) {
+        Tile tile = new Tile(null, 1, layer, this.tileSize, this.tileSize);
+        tile.setPosition(x * this.tileSize, y * this.tileSize);
+        tile.setCollisionMask(mask);
+        tile.setHeightMask(heightMask);
+        return tile;
+    }
+    
+    public OrthoMap build() throws Exception {
+        SceneDef def = new SceneDef();
+        def.setBackgroundLayers(this.layers.toArray(new Layer[0]));
+        def.setForegroundLayers(new Layer[0]);
+        def.setDimensionX(this.size);
+        def.setDimensionY(this.size);
+        def.setTileWidth(this.tileSize);
+        def.setTileHeight(this.tileSize);
+        def.setMapObjects(new ArrayList<>());
+        
+        OrthoMap map = new OrthoMap(false);
+        map.init(def);
+        return map;
+    }
+}
@@ -0,0 +1,190 @@
+package test.shared;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import harenet.IOBuffer;
+import seventh.game.entities.Entity.State;
+import seventh.game.entities.Entity.Type;
+import seventh.game.net.NetBullet;
+import seventh.game.net.NetEntity;
+import seventh.game.net.NetGameUpdate;
+import seventh.game.net.NetPlayerPartial;
+import seventh.game.net.NetSnapshot;
+import seventh.game.net.NetSnapshotHistory;
+import seventh.network.messages.BufferIO;
+import seventh.network.messages.GameUpdateMessage;
+import seventh.shared.SeventhConstants;
+
+public class NetSnapshotTest {
+    
+    private IOBuffer entityBuffer;
+    private IOBuffer serverBuffer;
+    private IOBuffer clientBuffer;
+    
+    @Before
+    public void setUp() throws Exception {
+        entityBuffer = IOBuffer.Factory.allocate(256);
+        serverBuffer = IOBuffer.Factory.allocate(NetSnapshot.WORKING_BUFFER_SIZE);
+        clientBuffer = IOBuffer.Factory.allocate(NetSnapshot.WORKING_BUFFER_SIZE);
+    }
+    
+    private NetEntity[] newEntities() {
+        NetEntity[] entities = new NetEntity[SeventhConstants.MAX_ENTITIES];
+        
+        NetPlayerPartial player = new NetPlayerPartial();
+        player.posX = 100;
+        player.posY = 200;
+        player.orientation = 90;
+        player.state = State.IDLE;
+        player.health = 100;
+        entities[3] = player;
+        
+        NetBullet bullet = new NetBullet();
+        bullet.type = Type.BULLET;
+        bullet.posX = 1200;
+        bullet.posY = 40;
+        entities[70] = bullet;
+        
+        return entities;
+    }
+    
+    private GameUpdateMessage sendAndReceive(NetGameUpdate netUpdate) {
+        GameUpdateMessage msg = new GameUpdateMessage();
+        msg.netUpdate = netUpdate;
+        
+        IOBuffer packet = IOBuffer.Factory.allocate(1500);
+        msg.write(packet);
+        packet.bitPosition(0);
+        
+        return (GameUpdateMessage) new BufferIO.SeventhNetMessageFactory().readNetMessage(packet);
+    }
+    
+    private NetGameUpdate encode(NetSnapshotHistory history, NetEntity[] entities, NetSnapshot base) {
+        NetGameUpdate netUpdate = new NetGameUpdate();
+        System.arraycopy(entities, 0, netUpdate.entities, 0, entities.length);
+        
+        NetSnapshot snapshot = history.nextSnapshot();
+        assertTrue(snapshot.record(netUpdate.entities, entityBuffer));
+        assertTrue(snapshot.encodeDelta(base, serverBuffer));
+        history.add(snapshot);
+        
+        netUpdate.snapshot = snapshot;
+        netUpdate.baseAge = NetSnapshotHistory.baseAge(snapshot.id, base);
+        return netUpdate;
+    }
+    
+    /*
+     * purpose : a snapshot without a base snapshot can be resolved on its own
+     */
+    @Test
+    public void testFullSnapshot() {
+        NetSnapshotHistory server = new NetSnapshotHistory();
+        
+        NetGameUpdate received = sendAndReceive(encode(server, newEntities(), null)).netUpdate;
+        assertTrue(received.isDeltaCompressed());
+        assertEquals(0, received.baseAge);
+        assertTrue(received.snapshot.resolve(null, clientBuffer));
+        
+        received.snapshot.toNetEntities(received.entities, clientBuffer);
+        assertEquals(Type.PLAYER_PARTIAL, received.entities[3].type);
+        assertEquals(100, received.entities[3].posX);
+        assertEquals(200, received.entities[3].posY);
+        assertEquals(Type.BULLET, received.entities[70].type);
+        assertEquals(1200, received.entities[70].posX);
+        assertNull(received.entities[4]);
+    }
+    
+    /*
+     * purpose : a delta snapshot is resolved against the base snapshot, and is smaller
+     * than the full snapshot
+     */
+    @Test
+    public void testDeltaSnapshot() {
+        NetSnapshotHistory server = new NetSnapshotHistory();
+        NetSnapshotHistory client = new NetSnapshotHistory();
+        
+        NetEntity[] entities = newEntities();
+        
+        NetGameUpdate first = encode(server, entities, null);
+        NetGameUpdate received = sendAndReceive(first).netUpdate;
+        assertTrue(received.snapshot.resolve(null, clientBuffer));
+        client.add(received.snapshot);
+        
+        entities[3].posX = 104;
+        
+        NetGameUpdate second = encode(server, entities, first.snapshot);
+        
+        IOBuffer fullSize = IOBuffer.Factory.allocate(1500);
+        first.write(fullSize);
+        IOBuffer deltaSize = IOBuffer.Factory.allocate(1500);
+        second.write(deltaSize);
+        assertTrue(deltaSize.bitPosition() < fullSize.bitPosition());
+        
+        received = sendAndReceive(second).netUpdate;
+        assertEquals(1, received.baseAge);
+        
+        NetSnapshot base = client.get(NetSnapshotHistory.baseSnapshotId(received.snapshot.id, received.baseAge));
+        assertNotNull(base);
+        assertTrue(received.snapshot.resolve(base, clientBuffer));
+        
+        received.snapshot.toNetEntities(received.entities, clientBuffer);
+        assertEquals(104, received.entities[3].posX);
+        assertEquals(200, received.entities[3].posY);
+        assertEquals(1200, received.entities[70].posX);
+    }
+    
+    /*
+     * purpose : a delta snapshot can not be resolved without its base snapshot
+     */
+    @Test
+    public void testMissingBase() {
+        NetSnapshotHistory server = new NetSnapshotHistory();
+        
+        NetEntity[] entities = newEntities();
+        NetGameUpdate first = encode(server, entities, null);
+        
+        entities[70] = null;
+        NetGameUpdate received = sendAndReceive(encode(server, entities, first.snapshot)).netUpdate;
+        assertFalse(received.snapshot.resolve(null, clientBuffer));
+    }
+    
+    /*
+     * purpose : a recycled snapshot is handed out again empty, and its (larger) encoded buffer
+     * is reused for a smaller snapshot without affecting what is sent
+     */
+    @Test
+    public void testRecycledSnapshot() {
+        NetSnapshotHistory server = new NetSnapshotHistory(2, NetSnapshotHistory.DEFAULT_KEY_FRAME_RATE);
+        
+        NetGameUpdate first = encode(server, newEntities(), null);
+        NetSnapshot recycled = first.snapshot;
+        server.recycle(recycled);
+        
+        NetEntity[] entities = new NetEntity[SeventhConstants.MAX_ENTITIES];
+        NetBullet bullet = new NetBullet();
+        bullet.type = Type.BULLET;
+        bullet.posX = 7;
+        bullet.posY = 9;
+        entities[12] = bullet;
+        
+        NetGameUpdate second = encode(server, entities, null);
+        assertSame(recycled, second.snapshot);
+        assertEquals(1, second.snapshot.id);
+        assertEquals(-1, second.snapshot.packetSequence);
+        assertFalse(second.snapshot.hasEntity(3));
+        
+        NetGameUpdate received = sendAndReceive(second).netUpdate;
+        assertTrue(received.snapshot.resolve(null, clientBuffer));
+        received.snapshot.toNetEntities(received.entities, clientBuffer);
+        assertNull(received.entities[3]);
+        assertNull(received.entities[70]);
+        assertEquals(7, received.entities[12].posX);
+        assertEquals(9, received.entities[12].posY);
+        
+        /* nothing recycled, so a new one is made */
+        assertNotSame(recycled, server.nextSnapshot());
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * see license.txt
+ */
+package test.shared;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import seventh.game.PlayerBoundsHistory;
+import seventh.math.Rectangle;
+
+/**
+ * @author Tony
+ *
+ */
+public class PlayerBoundsHistoryTest {
+    
+    private static void tick(PlayerBoundsHistory history, long time, int x) {
+        history.beginTick(time);
+        history.record(0, new Rectangle(x, 0, 24, 24));
+        history.record(70, new Rectangle(0, x, 24, 24));
+    }
+    
+    /*
+     * purpose : players are rewound to where they were, interpolating between ticks
+     */
+    @Test
+    public void testRewind() {
+        PlayerBoundsHistory history = new PlayerBoundsHistory(3, 72);
+        assertEquals(4, history.capacity());
+        
+        Rectangle result = new Rectangle();
+        assertFalse(history.getBounds(0, 0, result));
+        
+        tick(history, 0, 0);
+        tick(history, 50, 100);
+        tick(history, 100, 200);
+        
+        assertTrue(history.getBounds(0, 25, result));
+        assertEquals(50, result.x);
+        assertEquals(24, result.width);
+        
+        assertTrue(history.getBounds(70, 75, result));
+        assertEquals(150, result.y);
+        
+        /* past the latest tick */
+        assertTrue(history.getBounds(0, 500, result));
+        assertEquals(200, result.x);
+        
+        /* wraps around, dropping the oldest */
+        tick(history, 150, 300);
+        tick(history, 200, 400);
+        assertEquals(4, history.size());
+        assertEquals(50, history.getOldestTime());
+        assertTrue(history.getBounds(0, 0, result));
+        assertEquals(100, result.x);
+        
+        /* not recorded */
+        assertFalse(history.getBounds(1, 100, result));
+    }
+    
+    /*
+     * purpose : a player is only hit where they were alive, and a new player in the slot isn't rewound
+     */
+    @Test
+    public void testPresence() {
+        PlayerBoundsHistory history = new PlayerBoundsHistory(8, 24);
+        Rectangle result = new Rectangle();
+        
+        tick(history, 0, 0);
+        history.beginTick(50);
+        tick(history, 100, 200);
+        
+        /* absent at the later tick, so held where last seen */
+        assertTrue(history.getBounds(0, 25, result));
+        assertEquals(0, result.x);
+        
+        assertFalse(history.getBounds(0, 75, result));
+        assertTrue(history.getBounds(0, 100, result));
+        
+        history.remove(0);
+        assertFalse(history.getBounds(0, 100, result));
+        assertFalse(history.getBounds(0, 0, result));
+        
+        history.clear();
+        assertEquals(0, history.size());
+        assertFalse(history.getBounds(0, 100, result));
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * see license.txt
+ */
+package test.shared;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import seventh.client.entities.SnapshotBuffer;
+import seventh.client.network.PlayoutDelay;
+import seventh.game.net.NetEntity;
+
+/**
+ * @author Tony
+ *
+ */
+public class SnapshotBufferTest {
+    
+    private static NetEntity state(int x) {
+        NetEntity state = new NetEntity();
+        state.posX = x;
+        return state;
+    }
+    
+    private static float sampleX(SnapshotBuffer buffer) {
+        NetEntity from = buffer.getFrom();
+        NetEntity to = buffer.getTo();
+        return from.posX + buffer.getAlpha() * (to.posX - from.posX);
+    }
+    
+    /*
+     * purpose : states are interpolated at the render time, even with a missing state
+     */
+    @Test
+    public void testInterpolate() {
+        SnapshotBuffer buffer = new SnapshotBuffer(4);
+        assertEquals(SnapshotBuffer.EMPTY, buffer.sample(0, 100));
+        
+        buffer.add(state(0), 1000);
+        assertEquals(SnapshotBuffer.HELD, buffer.sample(1050, 100));
+        assertEquals(0, sampleX(buffer), 0.001f);
+        
+        buffer.add(state(100), 1100);
+        /* the state at 1200 was lost */
+        buffer.add(state(300), 1300);
+        
+        assertEquals(SnapshotBuffer.INTERPOLATED, buffer.sample(1050, 100));
+        assertEquals(50, sampleX(buffer), 0.001f);
+        
+        assertEquals(SnapshotBuffer.INTERPOLATED, buffer.sample(1200, 100));
+        assertEquals(200, sampleX(buffer), 0.001f);
+        
+        /* stale states are dropped */
+        assertFalse(buffer.add(state(1000), 1200));
+        assertEquals(300, buffer.getNewest().posX);
+        
+        /* older than the oldest state */
+        assertEquals(SnapshotBuffer.INTERPOLATED, buffer.sample(500, 100));
+        assertEquals(0, sampleX(buffer), 0.001f);
+        
+        /* wraps around, dropping the oldest */
+        buffer.add(state(400), 1400);
+        buffer.add(state(500), 1500);
+        assertEquals(4, buffer.size());
+        assertEquals(SnapshotBuffer.INTERPOLATED, buffer.sample(1000, 100));
+        assertEquals(100, sampleX(buffer), 0.001f);
+    }
+    
+    /*
+     * purpose : past the latest state, motion is extrapolated for a bounded time
+     */
+    @Test
+    public void testExtrapolate() {
+        SnapshotBuffer buffer = new SnapshotBuffer(4);
+        buffer.add(state(0), 1000);
+        buffer.add(state(100), 1100);
+        
+        assertEquals(SnapshotBuffer.EXTRAPOLATED, buffer.sample(1150, 100));
+        assertEquals(150, sampleX(buffer), 0.001f);
+        
+        assertEquals(SnapshotBuffer.HELD, buffer.sample(1500, 100));
+        assertEquals(200, sampleX(buffer), 0.001f);
+        
+        buffer.clear();
+        assertEquals(SnapshotBuffer.EMPTY, buffer.sample(1500, 100));
+    }
+    
+    /*
+     * purpose : the playout delay covers the update interval, and grows with jitter
+     */
+    @Test
+    public void testPlayoutDelay() {
+        PlayoutDelay steady = new PlayoutDelay(0, 500, 100);
+        PlayoutDelay jittery = new PlayoutDelay(0, 500, 100);
+        
+        long serverTime = 10000;
+        long localTime = 0;
+        for(int i = 0; i < 200; i++) {
+            serverTime += 50;
+            localTime += 50;
+            
+            steady.updateReceived(serverTime, localTime + 20);
+            jittery.updateReceived(serverTime, localTime + 20 + ((i % 2 == 0) ? 0 : 40));
+            
+            steady.update(localTime + 20);
+            jittery.update(localTime + 20);
+        }
+        
+        assertEquals(50, steady.getUpdateInterval(), 1f);
+        assertEquals(50, steady.getTargetDelay(), 1);
+        assertEquals(steady.getTargetDelay(), steady.getDelay());
+        
+        assertTrue(jittery.getJitter() > 30);
+        assertTrue(jittery.getTargetDelay() > steady.getTargetDelay() + 50);
+        
+        /* rendered behind the latest update */
+        assertTrue(steady.getRenderTime() <= serverTime - 40);
+        assertTrue(steady.getRenderTime() >= serverTime - 60);
+        assertFalse(steady.isUnderrun());
+        
+        /* updates stop coming in */
+        for(int i = 0; i < 10; i++) {
+            localTime += 20;
+            steady.update(localTime + 20);
+        }
+        assertTrue(steady.isUnderrun());
+        assertEquals(1, steady.getNumberOfUnderruns());
+    }
+}
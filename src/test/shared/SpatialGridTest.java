@@ -0,0 +1,125 @@
+package test.shared;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import seventh.game.SpatialGrid;
+import seventh.math.Line;
+import seventh.math.Rectangle;
+import seventh.math.Vector2f;
+
+public class SpatialGridTest {
+    
+    private static final int WORLD_SIZE = 1024;
+    private static final int CELL_SIZE = 32;
+    private static final int NUMBER_OF_HANDLES = 200;
+    
+    private static Rectangle randomBounds(Random random) {
+        return new Rectangle(random.nextInt(WORLD_SIZE + 200) - 100, random.nextInt(WORLD_SIZE + 200) - 100,
+                             random.nextInt(100) + 1, random.nextInt(100) + 1);
+    }
+    
+    private static boolean circleIntersects(Vector2f center, float radius, Rectangle bounds) {
+        float closestX = Math.max(bounds.x, Math.min(center.x, bounds.x + bounds.width));
+        float closestY = Math.max(bounds.y, Math.min(center.y, bounds.y + bounds.height));
+        float dx = center.x - closestX;
+        float dy = center.y - closestY;
+        return (dx * dx + dy * dy) <= radius * radius;
+    }
+    
+    /*
+     * purpose : handles are found in each cell they overlap, and are removed
+     */
+    @Test
+    public void testUpdateRemove() {
+        SpatialGrid grid = new SpatialGrid(WORLD_SIZE, WORLD_SIZE, CELL_SIZE, CELL_SIZE, 10);
+        SpatialGrid.Result result = new SpatialGrid.Result();
+        
+        grid.update(3, new Rectangle(10, 10, 40, 10));
+        assertTrue(grid.contains(3));
+        
+        grid.queryRect(new Rectangle(40, 0, 4, 4), result);
+        assertEquals(1, result.size());
+        assertEquals(3, result.get(0));
+        
+        grid.queryRect(new Rectangle(500, 500, 4, 4), result);
+        assertEquals(0, result.size());
+        
+        grid.update(3, new Rectangle(500, 500, 10, 10));
+        grid.queryRect(new Rectangle(40, 0, 4, 4), result);
+        assertEquals(0, result.size());
+        
+        grid.queryRect(new Rectangle(500, 500, 4, 4), result);
+        assertEquals(1, result.size());
+        
+        grid.remove(3);
+        assertFalse(grid.contains(3));
+        grid.queryRect(new Rectangle(500, 500, 4, 4), result);
+        assertEquals(0, result.size());
+    }
+    
+    /*
+     * purpose : the queries find every handle brute force does, in ascending order
+     */
+    @Test
+    public void testQueriesMatchBruteForce() {
+        Random random = new Random(7);
+        
+        SpatialGrid grid = new SpatialGrid(WORLD_SIZE, WORLD_SIZE, CELL_SIZE, CELL_SIZE, NUMBER_OF_HANDLES);
+        Rectangle[] bounds = new Rectangle[NUMBER_OF_HANDLES];
+        for(int i = 0; i < NUMBER_OF_HANDLES; i++) {
+            bounds[i] = randomBounds(random);
+            grid.update(i, bounds[i]);
+        }
+        
+        // move some of them around
+        for(int i = 0; i < NUMBER_OF_HANDLES; i += 3) {
+            bounds[i] = randomBounds(random);
+            grid.update(i, bounds[i]);
+        }
+        
+        SpatialGrid.Result result = new SpatialGrid.Result();
+        for(int query = 0; query < 500; query++) {
+            Rectangle area = randomBounds(random);
+            grid.queryRect(area, result);
+            assertSorted(result);
+            for(int i = 0; i < NUMBER_OF_HANDLES; i++) {
+                if(area.intersects(bounds[i])) {
+                    assertTrue(result.contains(i));
+                }
+                
+                /* a single handle test agrees with the query */
+                assertEquals(result.contains(i), grid.overlaps(i, area));
+            }
+            
+            Vector2f center = new Vector2f(random.nextInt(WORLD_SIZE), random.nextInt(WORLD_SIZE));
+            float radius = random.nextInt(150) + 1;
+            grid.queryCircle(center, radius, result);
+            assertSorted(result);
+            for(int i = 0; i < NUMBER_OF_HANDLES; i++) {
+                if(circleIntersects(center, radius, bounds[i])) {
+                    assertTrue(result.contains(i));
+                }
+            }
+            
+            Vector2f a = new Vector2f(random.nextInt(WORLD_SIZE), random.nextInt(WORLD_SIZE));
+            Vector2f b = new Vector2f(random.nextInt(WORLD_SIZE), random.nextInt(WORLD_SIZE));
+            grid.querySegment(a, b, result);
+            assertSorted(result);
+            for(int i = 0; i < NUMBER_OF_HANDLES; i++) {
+                if(Line.lineIntersectsRectangle(a, b, bounds[i])) {
+                    assertTrue(result.contains(i));
+                }
+            }
+        }
+    }
+    
+    private static void assertSorted(SpatialGrid.Result result) {
+        for(int i = 1; i < result.size(); i++) {
+            assertTrue(result.get(i - 1) < result.get(i));
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package test.shared;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import seventh.ai.basic.ThinkScheduler;
+import seventh.ai.basic.ThinkScheduler.Thinker;
+import seventh.math.Vector2f;
+import seventh.shared.TimeStep;
+
+public class ThinkSchedulerTest {
+    
+    private static final long DT = 20L;
+    
+    private static final float NEAR = 100;
+    private static final float FAR = 200;
+    
+    /**
+     * A brain at a fixed distance from the one human, at the origin
+     */
+    static class StubThinker implements Thinker {
+        boolean alive = true;
+        boolean inCombat;
+        Vector2f pos;
+        long spinNanos;
+        
+        int thinkInterval;
+        int numberOfActs;
+        int numberOfThoughts;
+        long lastThinkDeltaTime;
+        int lastThinkUpdate;
+        
+        StubThinker(float distance) {
+            this.pos = new Vector2f(distance, 0);
+        }
+        
+        @Override
+        public boolean isEntityAlive() {
+            return alive;
+        }
+        
+        @Override
+        public boolean isInCombat() {
+            return inCombat;
+        }
+        
+        @Override
+        public Vector2f getCenterPos() {
+            return pos;
+        }
+        
+        @Override
+        public void setThinkInterval(int thinkInterval) {
+            this.thinkInterval = thinkInterval;
+        }
+        
+        @Override
+        public void act(TimeStep timeStep, TimeStep thinkTimeStep) {
+            this.numberOfActs++;
+            if(thinkTimeStep != null) {
+                this.numberOfThoughts++;
+                this.lastThinkDeltaTime = thinkTimeStep.getDeltaTime();
+                this.lastThinkUpdate = (int)(timeStep.getGameClock() / DT);
+                
+                long startTime = System.nanoTime();
+                while(System.nanoTime() - startTime < this.spinNanos) {
+                    /* hog the budget */
+                }
+            }
+        }
+    }
+    
+    private ThinkScheduler newScheduler(long thinkBudget, int maxBrains) {
+        return new ThinkScheduler(null, thinkBudget, NEAR, FAR, maxBrains) {
+            @Override
+            protected void findHumans() {
+                addHuman(0, 0);
+            }
+        };
+    }
+    
+    private void update(ThinkScheduler scheduler, Thinker[] brains, TimeStep timeStep, int update) {
+        timeStep.setGameClock(update * DT);
+        timeStep.setDeltaTime(DT);
+        scheduler.act(brains, timeStep);
+    }
+    
+    /*
+     * purpose : brains in combat or near a human think every update, a ways away every
+     * MID_THINK_INTERVAL updates and far away every FAR_THINK_INTERVAL updates
+     */
+    @Test
+    public void testThinkIntervals() {
+        StubThinker combat = new StubThinker(500);
+        combat.inCombat = true;
+        StubThinker near = new StubThinker(50);
+        StubThinker mid = new StubThinker(150);
+        StubThinker far = new StubThinker(500);
+        StubThinker dead = new StubThinker(50);
+        dead.alive = false;
+        
+        Thinker[] brains = { combat, null, near, mid, far, dead };
+        ThinkScheduler scheduler = newScheduler(0, brains.length);
+        TimeStep timeStep = new TimeStep();
+        
+        for(int update = 1; update <= 8; update++) {
+            update(scheduler, brains, timeStep, update);
+        }
+        
+        assertEquals(ThinkScheduler.NEAR_THINK_INTERVAL, combat.thinkInterval);
+        assertEquals(ThinkScheduler.NEAR_THINK_INTERVAL, near.thinkInterval);
+        assertEquals(ThinkScheduler.MID_THINK_INTERVAL, mid.thinkInterval);
+        assertEquals(ThinkScheduler.FAR_THINK_INTERVAL, far.thinkInterval);
+        
+        assertEquals(8, combat.numberOfThoughts);
+        assertEquals(8, near.numberOfThoughts);
+        assertEquals(4, mid.numberOfThoughts);
+        assertEquals(2, far.numberOfThoughts);
+        assertEquals(0, dead.numberOfActs);
+        
+        /* everyone living acts every update, thinking or not */
+        assertEquals(8, mid.numberOfActs);
+        assertEquals(8, far.numberOfActs);
+        
+        /* the time since the last think is handed over */
+        assertEquals(DT, near.lastThinkDeltaTime);
+        assertEquals(2 * DT, mid.lastThinkDeltaTime);
+        assertEquals(4 * DT, far.lastThinkDeltaTime);
+        assertEquals(0, scheduler.getNumberOfDeferred());
+    }
+    
+    /*
+     * purpose : once the budget is spent, brains which do not think every update are put off,
+     * but never past twice their interval
+     */
+    @Test
+    public void testDeferredUpToTwiceTheInterval() {
+        StubThinker hog = new StubThinker(50);
+        hog.spinNanos = 2_000_000L;
+        StubThinker mid = new StubThinker(150);
+        StubThinker far = new StubThinker(500);
+        
+        Thinker[] brains = { hog, mid, far };
+        ThinkScheduler scheduler = newScheduler(1, brains.length);
+        TimeStep timeStep = new TimeStep();
+        
+        /* staggered by their index, mid is first due at update 1 and far at update 2 */
+        for(int update = 1; update <= 16; update++) {
+            update(scheduler, brains, timeStep, update);
+            
+            assertTrue(scheduler.getUpdateTime() >= hog.spinNanos);
+            
+            if(update == 1) {
+                /* mid is due, but the hog spent the budget */
+                assertEquals(1, scheduler.getNumberOfDeferred());
+                assertEquals(1, scheduler.getNumberOfThoughts());
+            }
+            
+            if(update % 4 == 3) {
+                assertEquals(update, mid.lastThinkUpdate);
+                assertEquals(update > 4 ? 4 * DT : 3 * DT, mid.lastThinkDeltaTime);
+            }
+            
+            if(update % 8 == 6) {
+                assertEquals(update, far.lastThinkUpdate);
+                assertEquals(update > 8 ? 8 * DT : 6 * DT, far.lastThinkDeltaTime);
+            }
+        }
+        
+        assertEquals(16, hog.numberOfThoughts);
+        assertEquals(4, mid.numberOfThoughts);
+        assertEquals(2, far.numberOfThoughts);
+    }
+    
+    /*
+     * purpose : brains that spawn together, or respawn together, are spread out over their interval
+     * rather than all thinking on the same update
+     */
+    @Test
+    public void testSpawnedTogetherAreStaggered() {
+        int numberOfBrains = ThinkScheduler.FAR_THINK_INTERVAL * 2;
+        StubThinker[] brains = new StubThinker[numberOfBrains];
+        for(int i = 0; i < numberOfBrains; i++) {
+            brains[i] = new StubThinker(500);
+        }
+        
+        ThinkScheduler scheduler = newScheduler(0, numberOfBrains);
+        TimeStep timeStep = new TimeStep();
+        
+        int update = 0;
+        for(int life = 0; life < 2; life++) {
+            for(StubThinker brain : brains) {
+                brain.alive = true;
+                brain.numberOfThoughts = 0;
+            }
+            
+            for(int i = 0; i < ThinkScheduler.FAR_THINK_INTERVAL * 2; i++) {
+                update(scheduler, brains, timeStep, ++update);
+                
+                /* the same number think on every update */
+                assertEquals(numberOfBrains / ThinkScheduler.FAR_THINK_INTERVAL, scheduler.getNumberOfThoughts());
+            }
+            
+            for(StubThinker brain : brains) {
+                assertEquals(2, brain.numberOfThoughts);
+                brain.alive = false;
+            }
+            
+            update(scheduler, brains, timeStep, ++update);
+            assertEquals(0, scheduler.getNumberOfThoughts());
+        }
+    }
+}
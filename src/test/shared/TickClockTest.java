@@ -0,0 +1,79 @@
+package test.shared;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import seventh.shared.TickClock;
+
+public class TickClockTest {
+    
+    private static final long DT = 50_000_000L;
+    private static final long MAX_DELTA = 250_000_000L;
+    private static final int MAX_ITERATIONS = 5;
+    
+    /*
+     * purpose : a loop which sleeps until the next tick time runs one iteration per tick,
+     * even when it wakes up late or the frames take a while
+     */
+    @Test
+    public void testOneIterationPerTick() {
+        Random random = new Random(3);
+        long start = 1_000L;
+        long now = start;
+        TickClock clock = new TickClock(DT, MAX_DELTA, MAX_ITERATIONS, now);
+        
+        int ticks = 0;
+        int frames = 0;
+        for(int iteration = 0; iteration < 1000; iteration++) {
+            /* sleep until the deadline, waking up to 2ms late */
+            now = Math.max(now, clock.getNextTickTime()) + random.nextInt(2_000_000);
+            
+            int ran = clock.tick(now);
+            assertTrue(ran > 0);
+            ticks++;
+            frames += ran;
+            
+            /* the lateness is caught up on, never more */
+            assertEquals((now - start) / DT, frames);
+            
+            /* the frames take up to 30ms */
+            now += random.nextInt(30_000_000);
+        }
+        
+        assertEquals(1000, ticks);
+    }
+    
+    /*
+     * purpose : the next tick time is exactly when the next tick is due
+     */
+    @Test
+    public void testNextTickTimeIsWhenTickIsDue() {
+        TickClock clock = new TickClock(DT, MAX_DELTA, MAX_ITERATIONS, 0);
+        for(int i = 0; i < 10; i++) {
+            long nextTickTime = clock.getNextTickTime();
+            assertFalse(clock.isTickDue(nextTickTime - 1));
+            assertEquals(0, clock.tick(nextTickTime - 1));
+            assertTrue(clock.isTickDue(nextTickTime));
+            assertEquals(1, clock.tick(nextTickTime + i * 1000));
+        }
+    }
+    
+    /*
+     * purpose : a late tick catches up on the missed frames, but no more than the max
+     * delta and max iterations allow
+     */
+    @Test
+    public void testCatchUp() {
+        TickClock clock = new TickClock(DT, MAX_DELTA, MAX_ITERATIONS, 0);
+        assertEquals(3, clock.tick(3 * DT));
+        assertEquals(5, clock.tick(3 * DT + 10 * DT));
+        
+        clock = new TickClock(DT, MAX_DELTA, 3, 0);
+        assertEquals(3, clock.tick(5 * DT));
+        assertEquals(3, clock.tick(6 * DT)); /* the 2 left over plus one */
+        assertEquals(1, clock.tick(7 * DT));
+    }
+}
@@ -0,0 +1,74 @@
+package test.shared;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import seventh.map.Tile;
+import seventh.map.Tile.CollisionMask;
+
+public class TileTest {
+    
+    private static final int TILE_SIZE = 32;
+    
+    /*
+     * purpose : several threads testing points against the same tiles at once, as the game update
+     * workers do when calculating the line of sight, get the same answers as a single thread
+     */
+    @Test
+    public void testPointCollideFromManyThreads() throws Exception {
+        CollisionMask[] masks = CollisionMask.values();
+        final Tile[] tiles = new Tile[masks.length];
+        final boolean[][] expected = new boolean[masks.length][TILE_SIZE * TILE_SIZE];
+        for(int i = 0; i < masks.length; i++) {
+            tiles[i] = new Tile(null, 1, 0, TILE_SIZE, TILE_SIZE);
+            tiles[i].setPosition(TILE_SIZE, TILE_SIZE);
+            tiles[i].setCollisionMask(masks[i]);
+            
+            for(int y = 0; y < TILE_SIZE; y++) {
+                for(int x = 0; x < TILE_SIZE; x++) {
+                    expected[i][y * TILE_SIZE + x] = tiles[i].pointCollide(TILE_SIZE + x, TILE_SIZE + y);
+                }
+            }
+        }
+        
+        final int numberOfThreads = 4;
+        final int numberOfPasses = 200;
+        final AtomicInteger mismatches = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(numberOfThreads);
+        
+        for(int t = 0; t < numberOfThreads; t++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for(int pass = 0; pass < numberOfPasses; pass++) {
+                            for(int i = 0; i < tiles.length; i++) {
+                                for(int y = 0; y < TILE_SIZE; y++) {
+                                    for(int x = 0; x < TILE_SIZE; x++) {
+                                        if(tiles[i].pointCollide(TILE_SIZE + x, TILE_SIZE + y) != expected[i][y * TILE_SIZE + x]) {
+                                            mismatches.incrementAndGet();
+                                        }
+                                    }
+                                }
+                            }
+                        }
+                    }
+                    catch(InterruptedException e) {
+                        mismatches.incrementAndGet();
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+        
+        start.countDown();
+        done.await();
+        assertEquals(0, mismatches.get());
+    }
+}
@@ -0,0 +1,215 @@
+package test.shared;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import seventh.map.Layer;
+import seventh.map.OrthoMap;
+import seventh.map.Tile;
+import seventh.map.Tile.CollisionMask;
+import seventh.map.TileVisibility;
+import seventh.map.TileVisibility.VisibilityField;
+import seventh.map.VisibleTiles;
+import seventh.math.Rectangle;
+import seventh.math.Vector2f;
+import seventh.shared.Geom;
+
+public class TileVisibilityTest {
+    
+    private static final int SIZE = 16;
+    private static final int TILE_SIZE = 32;
+    
+    private OrthoMap map;
+    
+    @Before
+    public void setUp() throws Exception {
+        MapBuilder builder = new MapBuilder(SIZE, TILE_SIZE);
+        Layer walls = builder.addCollidableLayer("walls", true);
+        
+        // a wall running north to south, with a gap at y = 12
+        for(int y = 2; y < SIZE; y++) {
+            if(y != 12) {
+                walls.addTile(builder.newTile(1, 8, y, CollisionMask.ALL_SOLID, 0));
+            }
+        }
+        
+        map = builder.build();
+    }
+    
+    private static OrthoMap newRandomMap(Random random) throws Exception {
+        MapBuilder builder = new MapBuilder(SIZE, TILE_SIZE);
+        Layer walls = builder.addCollidableLayer("walls", true);
+        
+        /* partially solid tiles, some of which only collide with some heights */
+        CollisionMask[] masks = CollisionMask.values();
+        for(int y = 0; y < SIZE; y++) {
+            for(int x = 0; x < SIZE; x++) {
+                if(random.nextInt(4) == 0) {
+                    walls.addTile(builder.newTile(1, x, y, masks[random.nextInt(masks.length)], random.nextInt(3)));
+                }
+            }
+        }
+        
+        return builder.build();
+    }
+    
+    private static int centerOf(int tileIndex) {
+        return tileIndex * TILE_SIZE + TILE_SIZE / 2;
+    }
+    
+    /*
+     * purpose : tiles behind a wall are not visible, walls themselves are not visible
+     */
+    @Test
+    public void testWallBlocksView() {
+        VisibilityField field = map.getTileVisibility().getField(centerOf(4), centerOf(8), 10, 0);
+        
+        assertTrue(field.isVisible(4, 8));
+        assertTrue(field.isVisible(7, 8));
+        assertFalse(field.isVisible(8, 8));
+        assertFalse(field.isVisible(10, 8));
+        assertTrue(field.isVisible(8, 0));
+        assertFalse(field.isVisible(15, 15));
+        
+        // looking through the gap
+        field = map.getTileVisibility().getField(centerOf(4), centerOf(12), 10, 0);
+        assertTrue(field.isVisible(10, 12));
+        assertFalse(field.isVisible(10, 8));
+    }
+    
+    /*
+     * purpose : repeated queries come from the cache, until a tile is removed
+     */
+    @Test
+    public void testCache() {
+        TileVisibility visibility = map.getTileVisibility();
+        VisibilityField field = visibility.getField(centerOf(4), centerOf(8), 10, 0);
+        assertSame(field, visibility.getField(centerOf(4), centerOf(8), 10, 0));
+        assertNotSame(field, visibility.getField(centerOf(4) + 1, centerOf(8), 10, 0));
+        assertEquals(1, visibility.getCacheHits());
+        assertFalse(field.isVisible(10, 8));
+        
+        // knock a hole in the wall
+        assertTrue(map.removeDestructableTileAt(8, 8));
+        
+        field = visibility.getField(centerOf(4), centerOf(8), 10, 0);
+        assertEquals(3, visibility.getCacheMisses());
+        assertTrue(field.isVisible(8, 8));
+        assertTrue(field.isVisible(10, 8));
+    }
+    
+    /*
+     * purpose : the caller owned visible tiles match the tiles marked visible on the map
+     */
+    @Test
+    public void testVisibleTilesMatchTileMasks() {
+        Vector2f pos = new Vector2f(4 * TILE_SIZE + 10, 8 * TILE_SIZE + 20);
+        Vector2f facing = new Vector2f(1, 0);
+        
+        VisibleTiles visibleTiles = new VisibleTiles();
+        Geom.calculateLineOfSight(visibleTiles, pos, facing, 150, map, 0);
+        
+        List<Tile> tiles = Geom.calculateLineOfSight(new ArrayList<Tile>(), pos, facing, 150, map, 0, new Vector2f());
+        assertFalse(tiles.isEmpty());
+        
+        int numberVisible = 0;
+        for(Tile tile : tiles) {
+            boolean isVisible = tile.getMask() == Tile.TILE_VISIBLE;
+            assertEquals(isVisible, visibleTiles.isVisible(tile.getXIndex(), tile.getYIndex()));
+            assertEquals(isVisible, visibleTiles.isVisibleWorld(tile.getX() + 1, tile.getY() + 1));
+            if(isVisible) {
+                numberVisible++;
+            }
+        }
+        
+        assertTrue(numberVisible > 0);
+        assertEquals(numberVisible, visibleTiles.size());
+        
+        visibleTiles.setInvisible(5, 8);
+        assertFalse(visibleTiles.isVisible(5, 8));
+        
+        visibleTiles.clear();
+        assertEquals(0, visibleTiles.size());
+        assertFalse(visibleTiles.isVisible(4, 8));
+    }
+    
+    /*
+     * purpose : the visible tiles are exactly those whose center has a clear line to the
+     * position, which is how they were calculated before the visibility was cached
+     */
+    @Test
+    public void testMatchesRayCast() throws Exception {
+        Random random = new Random(5);
+        OrthoMap map = newRandomMap(random);
+        
+        VisibleTiles visibleTiles = new VisibleTiles();
+        List<Tile> tiles = new ArrayList<Tile>();
+        Vector2f tilePos = new Vector2f();
+        
+        int numberVisible = 0;
+        int numberInvisible = 0;
+        for(int i = 0; i < 300; i++) {
+            Vector2f pos = new Vector2f(random.nextFloat() * SIZE * TILE_SIZE, random.nextFloat() * SIZE * TILE_SIZE);
+            Vector2f facing = new Vector2f(random.nextFloat() - 0.5f, random.nextFloat() - 0.5f);
+            Vector2f.Vector2fNormalize(facing, facing);
+            int radius = 64 + random.nextInt(200);
+            int heightMask = random.nextInt(4);
+            
+            Geom.calculateLineOfSight(visibleTiles, pos, facing, radius, map, heightMask);
+            tiles = Geom.calculateLineOfSight(tiles, pos, facing, radius, map, heightMask, new Vector2f());
+            
+            for(Tile tile : tiles) {
+                tilePos.set(tile.getX() + (tile.getWidth()/2), tile.getY() + (tile.getHeight()/2));
+                boolean expected = !map.lineCollides(tilePos, pos, heightMask);
+                
+                assertEquals(expected, tile.getMask() == Tile.TILE_VISIBLE);
+                assertEquals(expected, visibleTiles.isVisible(tile.getXIndex(), tile.getYIndex()));
+                
+                if(expected) {
+                    numberVisible++;
+                }
+                else {
+                    numberInvisible++;
+                }
+            }
+        }
+        
+        assertTrue(numberVisible > 0);
+        assertTrue(numberInvisible > 0);
+    }
+    
+    /*
+     * purpose : no visible tile reaches outside of the line of sight bounds
+     */
+    @Test
+    public void testLineOfSightBounds() {
+        VisibleTiles visibleTiles = new VisibleTiles();
+        Rectangle bounds = new Rectangle();
+        Vector2f tilePos = new Vector2f();
+        
+        Random random = new Random(7);
+        for(int i = 0; i < 200; i++) {
+            Vector2f pos = new Vector2f(random.nextInt(SIZE * TILE_SIZE), random.nextInt(SIZE * TILE_SIZE));
+            Vector2f facing = new Vector2f(random.nextFloat() - 0.5f, random.nextFloat() - 0.5f);
+            Vector2f.Vector2fNormalize(facing, facing);
+            int radius = 64 + random.nextInt(200);
+            
+            Geom.calculateLineOfSight(visibleTiles, pos, facing, radius, map, 0);
+            Geom.getLineOfSightBounds(bounds, pos, facing, radius, map);
+            
+            for(int j = 0; j < visibleTiles.size(); j++) {
+                visibleTiles.getTileCenterPos(j, tilePos);
+                int x = (int)tilePos.x - TILE_SIZE / 2;
+                int y = (int)tilePos.y - TILE_SIZE / 2;
+                assertTrue(bounds.contains(x, y));
+                assertTrue(bounds.contains(x + TILE_SIZE - 1, y + TILE_SIZE - 1));
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package test.shared;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import seventh.shared.TimingHistogram;
+
+public class TimingHistogramTest {
+    
+    /*
+     * purpose : samples land in the bucket whose upper bound is above them
+     */
+    @Test
+    public void testRecord() {
+        TimingHistogram histogram = new TimingHistogram("test", new long[] { 100, 1000 });
+        assertEquals(3, histogram.getNumberOfBuckets());
+        
+        histogram.record(-5);
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(50));
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(100));
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(5000));
+        
+        assertEquals(2, histogram.getCount(0));
+        assertEquals(1, histogram.getCount(1));
+        assertEquals(1, histogram.getCount(2));
+        assertEquals(4, histogram.getNumberOfSamples());
+        assertEquals(5.0, histogram.getMaxMsec(), 0.0001);
+        assertEquals(0.1, histogram.getPercentileMsec(0.5), 0.0001);
+        assertEquals(5.0, histogram.getPercentileMsec(0.99), 0.0001);
+        
+        histogram.reset();
+        assertEquals(0, histogram.getNumberOfSamples());
+        assertEquals(0, histogram.getCount(0));
+        assertEquals(0, histogram.getAverageMsec(), 0.0001);
+    }
+    
+    /*
+     * purpose : bucket bounds must be ascending
+     */
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidBounds() {
+        new TimingHistogram("test", new long[] { 100, 100 });
+    }
+}